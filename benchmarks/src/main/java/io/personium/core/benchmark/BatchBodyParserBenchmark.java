@@ -0,0 +1,101 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.benchmark;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.personium.core.rs.odata.BatchBodyParser;
+import io.personium.core.rs.odata.BatchBodyPart;
+
+/**
+ * Benchmark of BatchBodyParser.
+ * The body consists of GET requests and POST requests in change sets alternately.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchBodyParserBenchmark {
+
+    private static final String BOUNDARY = "batch_XAmu9BiJJLBa20sRWIq74jp2UlNAVueztqu";
+    private static final String CHANGESET = "changeset_76c10b01-3eb6-4bb0-b3bd-c5b4b9e3f5b4";
+    private static final String REQUEST_URI = "http://localhost/cell/box/col/$batch";
+
+    /** Number of requests in the body. */
+    @Param({"10", "100"})
+    private int requests;
+
+    private String body;
+
+    /**
+     * Prepare the body.
+     */
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < requests; i++) {
+            sb.append("--").append(BOUNDARY).append("\n");
+            if (i % 2 == 0) {
+                sb.append("Content-Type: application/http\n");
+                sb.append("Content-Transfer-Encoding:binary\n\n");
+                sb.append("GET Supplier('id").append(i).append("')\n");
+                sb.append("Host: localhost\n\n");
+            } else {
+                String json = "{\"__id\":\"id" + i + "\",\"name\":\"supplier\"}";
+                sb.append("Content-Type: multipart/mixed; boundary=").append(CHANGESET).append("\n\n");
+                sb.append("--").append(CHANGESET).append("\n");
+                sb.append("Content-Type: application/http\n");
+                sb.append("Content-Transfer-Encoding: binary\n\n");
+                sb.append("POST Supplier HTTP/1.1\n");
+                sb.append("Host: \n");
+                sb.append("Connection: close\n");
+                sb.append("Accept: application/json\n");
+                sb.append("Content-Type: application/json\n");
+                sb.append("Content-Length: ").append(json.length()).append("\n\n");
+                sb.append(json).append("\n\n");
+                sb.append("--").append(CHANGESET).append("--\n\n");
+            }
+        }
+        sb.append("--").append(BOUNDARY).append("--");
+        body = sb.toString();
+    }
+
+    /**
+     * Parse the body.
+     * @return requests
+     */
+    @Benchmark
+    public List<BatchBodyPart> parse() {
+        return new BatchBodyParser().parse(BOUNDARY, new StringReader(body), REQUEST_URI);
+    }
+}
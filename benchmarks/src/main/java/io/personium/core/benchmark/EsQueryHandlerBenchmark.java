@@ -0,0 +1,106 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.core4j.Enumerable;
+import org.odata4j.edm.EdmEntityType;
+import org.odata4j.edm.EdmProperty;
+import org.odata4j.edm.EdmSimpleType;
+import org.odata4j.expression.BoolCommonExpression;
+import org.odata4j.producer.QueryInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.personium.core.model.impl.es.odata.EsQueryHandler;
+import io.personium.core.odata.PersoniumOptionsQueryParser;
+
+/**
+ * Benchmark of the translation of $filter into the query of Elasticsearch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EsQueryHandlerBenchmark {
+
+    /** $filter of the request. */
+    @Param({
+        "name eq 'user001'",
+        "age ge 20 and age lt 30 and substringof('tokyo', address)",
+        "(name eq 'a' or name eq 'b' or name eq 'c') and not (age eq null) and startswith(address, 'jp')"
+        })
+    private String filter;
+
+    private EdmEntityType entityType;
+    private BoolCommonExpression filterExpression;
+
+    /**
+     * Prepare the entity type and the parsed $filter.
+     */
+    @Setup
+    public void setUp() {
+        entityType = EdmEntityType.newBuilder()
+                .setNamespace("UserData")
+                .setName("Person")
+                .addProperties(Enumerable.create(
+                        EdmProperty.newBuilder("name").setType(EdmSimpleType.STRING),
+                        EdmProperty.newBuilder("age").setType(EdmSimpleType.INT32),
+                        EdmProperty.newBuilder("address").setType(EdmSimpleType.STRING)).toList())
+                .addKeys("__id")
+                .build();
+        filterExpression = PersoniumOptionsQueryParser.parseFilter(filter);
+    }
+
+    /**
+     * Parse $filter and translate it.
+     * @return query of Elasticsearch
+     */
+    @Benchmark
+    public Map<String, Object> parseAndTranslate() {
+        return translate(PersoniumOptionsQueryParser.parseFilter(filter));
+    }
+
+    /**
+     * Translate parsed $filter.
+     * @return query of Elasticsearch
+     */
+    @Benchmark
+    public Map<String, Object> translate() {
+        return translate(filterExpression);
+    }
+
+    private Map<String, Object> translate(BoolCommonExpression expression) {
+        QueryInfo queryInfo = new QueryInfo(null, null, null, expression, null, null, null, null, null);
+        EsQueryHandler handler = new EsQueryHandler(entityType);
+        handler.initialize(queryInfo, null);
+        return handler.getSource();
+    }
+}
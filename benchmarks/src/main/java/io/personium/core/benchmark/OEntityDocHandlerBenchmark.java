@@ -0,0 +1,104 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.odata4j.edm.EdmDataServices;
+import org.odata4j.edm.EdmEntitySet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.personium.core.model.ctl.Account;
+import io.personium.core.model.ctl.CtlSchema;
+import io.personium.core.model.impl.es.doc.OEntityDocHandler;
+import io.personium.core.odata.OEntityWrapper;
+
+/**
+ * Benchmark of the conversion between documents of Elasticsearch and OEntity.
+ * Documents are created on memory instead of being read from Elasticsearch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OEntityDocHandlerBenchmark {
+
+    private EdmDataServices metadata;
+    private EdmEntitySet entitySet;
+    private OEntityWrapper entity;
+
+    /**
+     * Prepare the schema and an Account.
+     */
+    @Setup
+    public void setUp() {
+        metadata = CtlSchema.getEdmDataServicesForCellCtl().build();
+        entitySet = metadata.findEdmEntitySet(Account.EDM_TYPE_NAME);
+        entity = toOEntity();
+    }
+
+    /**
+     * Convert a document into OEntity as on reading.
+     * @return entity
+     */
+    @Benchmark
+    public OEntityWrapper toOEntity() {
+        return createDocument().createOEntity(entitySet);
+    }
+
+    /**
+     * Convert OEntity into a document as on writing.
+     * @return source of the document
+     */
+    @Benchmark
+    public Map<String, Object> fromOEntity() {
+        return new OEntityDocHandler(Account.EDM_TYPE_NAME, entity, metadata).getSource();
+    }
+
+    private static OEntityDocHandler createDocument() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> staticFields = new HashMap<String, Object>();
+        staticFields.put("Name", "user001");
+        staticFields.put("Type", "basic");
+        staticFields.put("LastAuthenticated", now);
+        Map<String, Object> hiddenFields = new HashMap<String, Object>();
+        hiddenFields.put("HashedCredential", "2ZV2IhPZu2eA4m1xWzz0kQ8Wqb03W5HnvFk7Y6kfY6Q");
+
+        OEntityDocHandler doc = new OEntityDocHandler();
+        doc.setId("00000000000000000000000000000001");
+        doc.setVersion(1L);
+        doc.setPublished(now);
+        doc.setUpdated(now);
+        doc.setStaticFields(staticFields);
+        doc.setDynamicFields(new HashMap<String, Object>());
+        doc.setHiddenFields(hiddenFields);
+        return doc;
+    }
+}
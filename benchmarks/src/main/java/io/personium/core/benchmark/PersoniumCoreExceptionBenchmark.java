@@ -0,0 +1,102 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.personium.core.PersoniumCoreAuthzException;
+import io.personium.core.PersoniumCoreException;
+
+/**
+ * Benchmark of PersoniumCoreException.
+ * Exceptions are created for each request to a missing resource or with an invalid token.
+ * The expected outcomes (404 and 401) are created without the stack trace,
+ * and compared with a 400 error which fills in the stack trace.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersoniumCoreExceptionBenchmark {
+
+    private static final String URL = "https://unit.example/cell/box/col/missing.txt";
+
+    /** Depth of the stack the exception is created at, as deep as in a resource method of Jersey. */
+    @Param({"20", "150"})
+    private int depth;
+
+    /**
+     * Create a 404 error with parameters, without the stack trace.
+     * @return exception
+     */
+    @Benchmark
+    public PersoniumCoreException notFoundParams() {
+        return notFoundParams(depth);
+    }
+
+    /**
+     * Create a 401 error with realm, without the stack trace.
+     * @return exception
+     */
+    @Benchmark
+    public PersoniumCoreException authorizationRequiredRealm() {
+        return authorizationRequiredRealm(depth);
+    }
+
+    /**
+     * Create a 400 error with parameters, with the stack trace.
+     * @return exception
+     */
+    @Benchmark
+    public PersoniumCoreException badRequestParams() {
+        return badRequestParams(depth);
+    }
+
+    private static PersoniumCoreException notFoundParams(int remaining) {
+        if (remaining > 0) {
+            return notFoundParams(remaining - 1);
+        }
+        return PersoniumCoreException.Dav.BOX_NOT_FOUND.params(URL);
+    }
+
+    private static PersoniumCoreException authorizationRequiredRealm(int remaining) {
+        if (remaining > 0) {
+            return authorizationRequiredRealm(remaining - 1);
+        }
+        return PersoniumCoreAuthzException.AUTHORIZATION_REQUIRED.realm(URL);
+    }
+
+    private static PersoniumCoreException badRequestParams(int remaining) {
+        if (remaining > 0) {
+            return badRequestParams(remaining - 1);
+        }
+        return PersoniumCoreException.OData.QUERY_PARSE_ERROR_WITH_PARAM.params(URL);
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.benchmark;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.odata4j.edm.EdmDataServices;
+import org.odata4j.format.xml.EdmxFormatWriter;
+import org.odata4j.stax2.XMLEventReader2;
+import org.odata4j.stax2.staximpl.StaxXMLFactoryProvider2;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.personium.core.model.ctl.CtlSchema;
+import io.personium.core.odata.PersoniumEdmxFormatParser;
+
+/**
+ * Benchmark of PersoniumEdmxFormatParser.
+ * Schema of user data is parsed from edmx on each access unless it is cached.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersoniumEdmxFormatParserBenchmark {
+
+    private String edmx;
+
+    /**
+     * Prepare the edmx.
+     */
+    @Setup
+    public void setUp() {
+        StringWriter writer = new StringWriter();
+        EdmxFormatWriter.write(CtlSchema.getEdmDataServicesForCellCtl().build(), writer);
+        edmx = writer.toString();
+    }
+
+    /**
+     * Parse the edmx.
+     * @return schema
+     */
+    @Benchmark
+    public EdmDataServices parseMetadata() {
+        XMLEventReader2 reader = StaxXMLFactoryProvider2.getInstance().newXMLInputFactory2()
+                .createXMLEventReader(new StringReader(edmx));
+        return new PersoniumEdmxFormatParser().parseMetadata(reader);
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.odata4j.expression.CommonExpression;
+import org.odata4j.expression.OrderByExpression;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.personium.core.odata.PersoniumExpressionParser;
+
+/**
+ * Benchmark of the parser of OData query options.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersoniumExpressionParserBenchmark {
+
+    /** Expression to parse. */
+    @Param({
+        "name eq 'user001'",
+        "age ge 20 and age lt 30 and substringof('tokyo', address)",
+        "(name eq 'a' or name eq 'b' or name eq 'c') and not (age eq null) and startswith(address, 'jp')"
+        })
+    private String expression;
+
+    /**
+     * Tokenize the expression.
+     * @return tokens
+     */
+    @Benchmark
+    public List<PersoniumExpressionParser.Token> tokenize() {
+        return PersoniumExpressionParser.tokenize(expression);
+    }
+
+    /**
+     * Parse the expression.
+     * @return expression
+     */
+    @Benchmark
+    public CommonExpression parse() {
+        return PersoniumExpressionParser.parse(expression);
+    }
+
+    /**
+     * Parse $orderby.
+     * @return expressions
+     */
+    @Benchmark
+    public List<OrderByExpression> parseOrderBy() {
+        return PersoniumExpressionParser.parseOrderBy("name desc,age,__updated desc");
+    }
+}
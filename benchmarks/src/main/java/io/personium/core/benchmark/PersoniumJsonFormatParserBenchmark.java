@@ -0,0 +1,82 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.benchmark;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.MediaType;
+
+import org.odata4j.core.ODataVersion;
+import org.odata4j.core.OEntity;
+import org.odata4j.core.OEntityKey;
+import org.odata4j.edm.EdmDataServices;
+import org.odata4j.format.Entry;
+import org.odata4j.format.FormatParser;
+import org.odata4j.format.Settings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.personium.core.model.ctl.Account;
+import io.personium.core.model.ctl.CtlSchema;
+import io.personium.core.odata.PersoniumFormatParserFactory;
+
+/**
+ * Benchmark of the parser of the request body of OData entities.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersoniumJsonFormatParserBenchmark {
+
+    /** Request body creating an Account. */
+    static final String BODY = "{\"Name\":\"user001\",\"Type\":\"basic\",\"Cell\":null}";
+
+    private EdmDataServices metadata;
+
+    /**
+     * Prepare the schema of cell control objects.
+     */
+    @Setup
+    public void setUp() {
+        metadata = CtlSchema.getEdmDataServicesForCellCtl().build();
+    }
+
+    /**
+     * Parse the request body in the same way as POST of OData.
+     * @return entity
+     */
+    @Benchmark
+    public OEntity parseEntry() {
+        // Requests are parsed as V1 (see AbstractODataResource).
+        FormatParser<Entry> parser = PersoniumFormatParserFactory.getParser(Entry.class,
+                MediaType.APPLICATION_JSON_TYPE, new Settings(ODataVersion.V1, metadata, Account.EDM_TYPE_NAME,
+                        OEntityKey.create(""), null, false));
+        return parser.parse(new StringReader(BODY)).getEntity();
+    }
+}
@@ -0,0 +1,23 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * JMH benchmarks of the request hot paths.
+ * <p>
+ * Benchmarks only use data on memory, and run without Elasticsearch, memcached and the message broker.
+ * Build with "mvn package" and run with "java -jar target/benchmarks.jar [regexp of the benchmarks]".
+ */
+package io.personium.core.benchmark;
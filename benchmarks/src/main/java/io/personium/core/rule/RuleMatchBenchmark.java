@@ -0,0 +1,96 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.rule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.personium.core.event.PersoniumEvent;
+
+/**
+ * Benchmark of the matching of events against the rules of a cell.
+ * Placed in the package of RuleManager to reach its package-private members.
+ * RuleManager is created without initialization, so no rule is loaded from DB.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RuleMatchBenchmark {
+
+    /** Number of rules in the cell. */
+    @Param({"10", "100", "1000"})
+    private int ruleCount;
+
+    private RuleManager manager;
+    private List<RuleManager.RuleInfo> rules;
+    private PersoniumEvent event;
+
+    /**
+     * Prepare the rules and the event.
+     */
+    @Setup
+    public void setUp() {
+        manager = new RuleManager();
+        rules = new ArrayList<RuleManager.RuleInfo>();
+        for (int i = 0; i < ruleCount; i++) {
+            RuleManager.RuleInfo rule = manager.new RuleInfo();
+            rule.external = Boolean.TRUE;
+            rule.type = "type" + (i % 10);
+            rule.object = RuleManager.LOCALCELL + "/box/col" + i;
+            rule.action = "log";
+            rule.name = "rule" + i;
+            rules.add(rule);
+        }
+        event = new PersoniumEvent.Builder()
+                .external()
+                .type("type0.sub")
+                .object(RuleManager.LOCALCELL + "/box/col0/entity")
+                .info("info")
+                .build();
+    }
+
+    /**
+     * Match the event against all the rules.
+     * @return number of matched rules
+     */
+    @Benchmark
+    public int match() {
+        int matched = 0;
+        for (RuleManager.RuleInfo rule : rules) {
+            if (manager.match(rule, event)) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+}
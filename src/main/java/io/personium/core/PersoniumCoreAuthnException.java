@@ -173,7 +173,28 @@ public final class PersoniumCoreAuthnException extends PersoniumCoreException {
             final int status,
             final String error,
             final String realm) {
-        super(code, severity, message, status);
+        this(code, severity, message, status, error, realm, status >= HttpStatus.SC_INTERNAL_SERVER_ERROR);
+    }
+
+    /**
+     * constructor.
+     * Authentication failures other than server errors are expected outcomes, and created without the stack trace.
+     * @param code error code
+     * @param severity error level
+     * @param message error message
+     * @param status HTTP response status
+     * @param error Error code of OAuth authentication error
+     * @param realm To return the WWWW-Authenticate header, set the realm value here
+     * @param writableStackTrace whether the stack trace is filled in
+     */
+    private PersoniumCoreAuthnException(final String code,
+            final Severity severity,
+            final String message,
+            final int status,
+            final String error,
+            final String realm,
+            final boolean writableStackTrace) {
+        super(code, severity, message, status, null, writableStackTrace);
         this.error = error;
         this.realm = realm;
     }
@@ -220,7 +241,7 @@ public final class PersoniumCoreAuthnException extends PersoniumCoreException {
     public PersoniumCoreException reason(final Throwable t) {
         //Make a clone
         PersoniumCoreException ret = new PersoniumCoreAuthnException(
-                this.code, this.severity, this.message, this.status, this.error, this.realm);
+                this.code, this.severity, this.message, this.status, this.error, this.realm, true);
         //Set stack trace
         ret.setStackTrace(t.getStackTrace());
         return ret;
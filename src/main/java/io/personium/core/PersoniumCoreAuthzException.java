@@ -104,7 +104,27 @@ public final class PersoniumCoreAuthzException extends PersoniumCoreException {
             final int status,
             final String realm,
             final AcceptableAuthScheme authScheme) {
-        super(code, severity, message, status);
+        this(code, severity, message, status, realm, authScheme, !isExpectedOutcome(status));
+    }
+
+    /**
+     * constructor.
+     * @param code error code
+     * @param severity error level
+     * @param message error message
+     * @param status HTTP response status
+     * @param realm To return the WWWW-Authenticate header, set the realm value here
+     * @param authScheme AuthScheme type to allow authentication
+     * @param writableStackTrace whether the stack trace is filled in
+     */
+    private PersoniumCoreAuthzException(final String code,
+            final Severity severity,
+            final String message,
+            final int status,
+            final String realm,
+            final AcceptableAuthScheme authScheme,
+            final boolean writableStackTrace) {
+        super(code, severity, message, status, null, writableStackTrace);
         this.realm = realm;
         this.authScheme = authScheme;
     }
@@ -164,7 +184,7 @@ public final class PersoniumCoreAuthzException extends PersoniumCoreException {
     public PersoniumCoreException reason(final Throwable t) {
         //Make a clone
         PersoniumCoreException ret = new PersoniumCoreAuthzException(
-                this.code, this.severity, this.message, this.status, this.realm, this.authScheme);
+                this.code, this.severity, this.message, this.status, this.realm, this.authScheme, true);
         //Set stack trace
         ret.setStackTrace(t.getStackTrace());
         return ret;
@@ -428,6 +428,11 @@ public class PersoniumCoreException extends RuntimeException {
          */
         public static final PersoniumCoreException SERVICE_SOURCE_COLLECTION_PROHIBITED_TO_CONTAIN_COLLECTION =
                 create("PR400-DV-0018");
+        /**
+         * When the source of COPY contains OData collection or Service collection.
+         * {0}: URL of the collection
+         */
+        public static final PersoniumCoreException RESOURCE_PROHIBITED_TO_COPY = create("PR400-DV-0019");
 
         /**
          * When the resource does not exist.
@@ -463,6 +468,11 @@ public class PersoniumCoreException extends RuntimeException {
          * {0}: value of Destination header
          */
         public static final PersoniumCoreException DESTINATION_EQUALS_SOURCE_URL = create("PR403-DV-0005");
+        /**
+         * When the destination is under the source collection.
+         * {0}: value of Destination header
+         */
+        public static final PersoniumCoreException DESTINATION_UNDER_SOURCE_URL = create("PR403-DV-0006");
 
         /**
          * When the parent resource does not exist at PUT, MKCOL, MOVE of the collection file.
@@ -529,6 +539,10 @@ public class PersoniumCoreException extends RuntimeException {
          * Error when incorrect HTTP response is returned in service invocation.
          */
         public static final PersoniumCoreException SC_INVALID_HTTP_RESPONSE_ERROR = create("PR500-SC-0006");
+        /**
+         * Engine did not respond within the time limit of the relay.
+         */
+        public static final PersoniumCoreException SC_ENGINE_TIMEOUT = create("PR504-SC-0001");
     }
 
     /**
@@ -1027,7 +1041,26 @@ public class PersoniumCoreException extends RuntimeException {
             final String message,
             final int status,
             final Throwable t) {
-        super(t);
+        this(code, severity, message, status, t, !isExpectedOutcome(status));
+    }
+
+    /**
+     * constructor.
+     * @param code error code
+     * @param severity error level
+     * @param message error message
+     * @param status HTTP response status
+     * @param t cause exception
+     * @param writableStackTrace whether the stack trace is filled in.
+     *        false for the expected outcomes, not to capture the stack trace on every throw.
+     */
+    PersoniumCoreException(final String code,
+            final Severity severity,
+            final String message,
+            final int status,
+            final Throwable t,
+            final boolean writableStackTrace) {
+        super(null, t, true, writableStackTrace);
         this.code = code;
         this.severity = severity;
         this.message = message;
@@ -1138,6 +1171,18 @@ public class PersoniumCoreException extends RuntimeException {
         return new PersoniumCoreException(code, severity, message, statusCode);
     }
 
+    /**
+     * Whether the response status is an expected outcome of requests, such as a missing resource or
+     * a failed authorization, for which the stack trace is of no use.
+     * Exceptions of the expected outcomes are created without the stack trace, since they are thrown
+     * frequently by the requests to missing resources or with invalid tokens.
+     * @param status HTTP response status
+     * @return true if an expected outcome
+     */
+    static boolean isExpectedOutcome(int status) {
+        return status == HttpStatus.SC_NOT_FOUND || status == HttpStatus.SC_UNAUTHORIZED;
+    }
+
     /**
      * Determination of log level from response code.
      * @param statusCode Status code
@@ -21,7 +21,14 @@ import javax.servlet.ServletContextListener;
 import javax.servlet.ServletContextEvent;
 
 import io.personium.core.event.EventBus;
+import io.personium.core.eventlog.EventLogWriter;
+import io.personium.core.model.impl.es.AccountLastAuthenticatedWriter;
+import io.personium.core.model.impl.es.cache.CellCtlCache;
+import io.personium.core.model.impl.fs.DavContentSweeper;
+import io.personium.core.model.impl.fs.DavTrashManager;
+import io.personium.core.model.lock.AccountLockManager;
 import io.personium.core.rs.PersoniumCoreApplication;
+import io.personium.core.rs.box.EngineRelayExecutor;
 import io.personium.core.ws.WebSocketService;
 
 /**
@@ -31,25 +38,73 @@ import io.personium.core.ws.WebSocketService;
 public class PersoniumCoreListener implements ServletContextListener {
     @Override
     public void contextInitialized(ServletContextEvent sce) {
+        // Start reloading the updated configuration file.
+        PersoniumUnitConfig.startReloadChecker();
+
         // Start Application.
         PersoniumCoreApplication.start();
 
+        // Start writer of the event logs.
+        EventLogWriter.start();
+
         // Start EventBus.
         EventBus.start();
 
+        // Start notification of account locks.
+        AccountLockManager.start();
+
+        // Start notification of changes of cell control objects.
+        CellCtlCache.start();
+
         // Start WebSocketService.
         WebSocketService.start();
+
+        // Start reaper of the trash area.
+        DavTrashManager.start();
+
+        // Start sweeper of the replaced versions of Dav file content.
+        DavContentSweeper.start();
+
+        // Start writer of the last login time.
+        AccountLastAuthenticatedWriter.start();
+
+        // Start executor of the relays to Engine.
+        EngineRelayExecutor.start();
     }
 
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
+        // Stop executor of the relays to Engine.
+        EngineRelayExecutor.stop();
+
+        // Stop writer of the last login time.
+        AccountLastAuthenticatedWriter.stop();
+
+        // Stop sweeper of the replaced versions of Dav file content.
+        DavContentSweeper.stop();
+
+        // Stop reaper of the trash area.
+        DavTrashManager.stop();
+
         // Stop WebSocket service.
         WebSocketService.stop();
 
+        // Stop notification of changes of cell control objects.
+        CellCtlCache.stop();
+
+        // Stop notification of account locks.
+        AccountLockManager.stop();
+
         // Stop EventBus.
         EventBus.stop();
 
+        // Stop writer of the event logs.
+        EventLogWriter.stop();
+
         // Stop Application.
         PersoniumCoreApplication.stop();
+
+        // Stop reloading the configuration file.
+        PersoniumUnitConfig.stopReloadChecker();
     }
 }
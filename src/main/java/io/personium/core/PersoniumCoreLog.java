@@ -382,6 +382,26 @@ public final class PersoniumCoreLog {
         return ret;
     }
 
+    /**
+     * Returns whether the log is output at its severity.
+     * Used to skip building expensive parameters of logs not output.
+     * @return true: output
+     */
+    public boolean isEnabled() {
+        switch (this.severity) {
+        case INFO:
+            return log.isInfoEnabled();
+        case WARN:
+            return log.isWarnEnabled();
+        case ERROR:
+            return log.isErrorEnabled();
+        case DEBUG:
+            return log.isDebugEnabled();
+        default:
+            return true;
+        }
+    }
+
     /**
      * Log output.
      * When outputting the log, display the class name, method name, and the number of lines of the log output source.
@@ -22,14 +22,24 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.ws.rs.core.UriBuilder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import io.personium.common.utils.PersoniumCoreUtils;
 import io.personium.core.utils.UriUtils;
 
@@ -50,6 +60,9 @@ public class PersoniumUnitConfig {
     /** Key for setting the Core version.*/
     public static final String CORE_VERSION = KEY_ROOT + "version";
 
+    /** Interval to check the update of the configuration file (sec). 0 disables the check. */
+    public static final String CONFIG_RELOAD_INTERVAL = KEY_ROOT + "config.reload.interval";
+
     /** Thread pool num io cell key. */
     public static final String THREAD_POOL_NUM_IO_CELL = KEY_ROOT + "thread.pool.num.io.cell";
     /** Thread pool num io box key. */
@@ -98,10 +111,10 @@ public class PersoniumUnitConfig {
         /** Timeout time for $ batch processing.*/
         public static final String BATCH_REQUEST_TIMEOUT_IN_MILLIS = KEY_ROOT + "odata.batch.timeoutInMillis";
 
-        /** Sleep time for $ batch processing.*/
+        /** Maximum time for $ batch processing to wait for other requests waiting for Lock.*/
         public static final String BATCH_SLEEP_IN_MILLIS = KEY_ROOT + "odata.batch.sleepInMillis";
 
-        /** Sleep interval of $ batch processing.*/
+        /** Minimum interval of $ batch processing to give Lock to other requests.*/
         public static final String BATCH_SLEEP_INTERVAL_IN_MILLIS = KEY_ROOT + "odata.batch.sleepIntervalInMillis";
 
         /** N: The maximum number of N links that $ links can create.*/
@@ -139,6 +152,9 @@ public class PersoniumUnitConfig {
     public static final class Account {
         /** Whether or not to update the last login time of Account at the time of successful password authentication (true: Update (default) false: Do not update).*/
         public static final String ACCOUNT_LAST_AUTHENTICATED_ENABLED = KEY_ROOT + "account.lastauthenticated.enabled";
+        /** Interval in milliseconds to write the last login time of Accounts. */
+        public static final String ACCOUNT_LAST_AUTHENTICATED_FLUSH_INTERVAL =
+                KEY_ROOT + "account.lastauthenticated.flushInterval";
     }
 
     /**
@@ -176,6 +192,21 @@ public class PersoniumUnitConfig {
         /** Account lock expiration date (s).*/
         public static final String ACCOUNTLOCK_LIFETIME = KEY_ROOT + "lock.accountlock.time";
 
+        /** Maximum account lock time (s) reached by back-off of repeated locks.*/
+        public static final String ACCOUNTLOCK_MAX_LIFETIME = KEY_ROOT + "lock.accountlock.time.max";
+
+        /** Number of authentication failures within the window that locks the account.*/
+        public static final String ACCOUNTLOCK_FAILURE_COUNT = KEY_ROOT + "lock.accountlock.failure.count";
+
+        /** Window to count authentication failures (s).*/
+        public static final String ACCOUNTLOCK_FAILURE_WINDOW = KEY_ROOT + "lock.accountlock.failure.window";
+
+        /** Maximum number of accounts whose failures are kept on memory.*/
+        public static final String ACCOUNTLOCK_MAX_ACCOUNTS = KEY_ROOT + "lock.accountlock.maxAccounts";
+
+        /** Whether to notify other units of account locks via EventBus.*/
+        public static final String ACCOUNTLOCK_REPLICATION_ENABLED = KEY_ROOT + "lock.accountlock.replication.enabled";
+
         /** Number of retries at lock acquisition.*/
         public static final String RETRY_TIMES = KEY_ROOT + "lock.retry.times";
 
@@ -219,6 +250,24 @@ public class PersoniumUnitConfig {
 
         /** Retry interval at error occurrence.*/
         public static final String RETRY_INTERVAL = KEY_ROOT + "es.retryInterval";
+
+        /** Number of documents read at once on internal full scans. */
+        public static final String SCAN_BATCH_SIZE = KEY_ROOT + "es.scan.batchSize";
+
+        /** Whether to read the next page in background on internal full scans. */
+        public static final String SCAN_PREFETCH = KEY_ROOT + "es.scan.prefetch";
+
+        /** Whether to write concurrent single entity updates of user data in bulk. */
+        public static final String GROUP_COMMIT_ENABLED = KEY_ROOT + "es.groupCommit.enabled";
+
+        /** Maximum number of writes in a bulk request. */
+        public static final String GROUP_COMMIT_MAX_SIZE = KEY_ROOT + "es.groupCommit.maxSize";
+
+        /** Number of ES request logs waiting to be written. 0 writes them on the request thread. */
+        public static final String AUDIT_LOG_QUEUE_SIZE = KEY_ROOT + "es.auditLog.queueSize";
+
+        /** Maximum length of each parameter of ES request logs. Longer ones are truncated. */
+        public static final String AUDIT_LOG_MAX_LENGTH = KEY_ROOT + "es.auditLog.maxLength";
     }
 
     /**
@@ -236,6 +285,15 @@ public class PersoniumUnitConfig {
 
         /** Retry interval (msec) at the time of reading / writing Dav file, hard link creation / file name modification.*/
         public static final String RETRY_INTERVAL = KEY_ROOT + "binaryData.dav.retry.interval";
+
+        /** Interval (msec) between runs of the reaper deleting the trashed files.*/
+        public static final String TRASH_REAPER_INTERVAL = KEY_ROOT + "binaryData.trash.reaper.interval";
+
+        /** Maximum number of files the trash reaper deletes in one run.*/
+        public static final String TRASH_REAPER_BATCH_SIZE = KEY_ROOT + "binaryData.trash.reaper.batchSize";
+
+        /** Period (msec) the replaced versions of Dav file content are kept for the readers.*/
+        public static final String DAV_VERSION_GRACE_PERIOD = KEY_ROOT + "binaryData.dav.version.gracePeriod";
     }
 
     /**
@@ -271,6 +329,16 @@ public class PersoniumUnitConfig {
     public static final class Event {
         /** Storage directory of the latest event log file.*/
         public static final String EVENT_LOG_CURRENT_DIR = KEY_ROOT + "event.log.current.dir";
+        /** Number of event log records waiting to be written. */
+        public static final String EVENT_LOG_QUEUE_SIZE = KEY_ROOT + "event.log.queue.size";
+        /** Maximum number of event log files kept open. */
+        public static final String EVENT_LOG_MAX_OPEN_FILES = KEY_ROOT + "event.log.maxOpenFiles";
+        /** Size of the event log file to rotate (bytes). */
+        public static final String EVENT_LOG_MAX_FILE_SIZE = KEY_ROOT + "event.log.maxFileSize";
+        /** Age of the event log file to rotate (sec). */
+        public static final String EVENT_LOG_ROTATE_INTERVAL = KEY_ROOT + "event.log.rotateInterval";
+        /** Number of the archived event log files kept. */
+        public static final String EVENT_LOG_MAX_ARCHIVE_FILES = KEY_ROOT + "event.log.maxArchiveFiles";
         /** Maximum event hop count. */
         public static final String EVENT_HOP_MAXNUM = KEY_ROOT + "event.hop.maxnum";
     }
@@ -302,6 +370,39 @@ public class PersoniumUnitConfig {
 
         /** Cache expiration date.*/
         public static final String MEMCACHED_EXPIRES_IN = KEY_ROOT + "cache.memcached.expiresin";
+
+        /** Whether caching of Basic authentication on memory is enabled Tolerance: true/false.*/
+        public static final String BASIC_AUTH_CACHE_ENABLED = KEY_ROOT + "cache.basicAuth.enabled";
+
+        /** Expiration of the cached Basic authentication (s).*/
+        public static final String BASIC_AUTH_CACHE_EXPIRES_IN = KEY_ROOT + "cache.basicAuth.expiresIn";
+
+        /** Maximum number of cached Basic authentications.*/
+        public static final String BASIC_AUTH_CACHE_MAX_SIZE = KEY_ROOT + "cache.basicAuth.maxSize";
+
+        /** Whether caching of ACLs and role URLs on memory is enabled Tolerance: true/false.*/
+        public static final String ACL_CACHE_ENABLED = KEY_ROOT + "cache.acl.enabled";
+
+        /** Expiration of the cached role URLs of a cell (s).*/
+        public static final String ACL_CACHE_ROLE_EXPIRES_IN = KEY_ROOT + "cache.acl.roleExpiresIn";
+
+        /** Maximum number of cells whose role URLs are cached.*/
+        public static final String ACL_CACHE_MAX_CELLS = KEY_ROOT + "cache.acl.maxCells";
+
+        /** Maximum number of cached ACLs.*/
+        public static final String ACL_CACHE_MAX_SIZE = KEY_ROOT + "cache.acl.maxSize";
+
+        /** Whether caching of cell control objects on memory is enabled Tolerance: true/false.*/
+        public static final String CELLCTL_CACHE_ENABLED = KEY_ROOT + "cache.cellCtl.enabled";
+
+        /** Expiration of the cached cell control objects (s).*/
+        public static final String CELLCTL_CACHE_EXPIRES_IN = KEY_ROOT + "cache.cellCtl.expiresIn";
+
+        /** Maximum number of cells whose cell control objects are cached.*/
+        public static final String CELLCTL_CACHE_MAX_CELLS = KEY_ROOT + "cache.cellCtl.maxCells";
+
+        /** Maximum number of cached cell control objects per cell.*/
+        public static final String CELLCTL_CACHE_MAX_SIZE = KEY_ROOT + "cache.cellCtl.maxSize";
     }
 
     /**
@@ -316,6 +417,18 @@ public class PersoniumUnitConfig {
 
         /** Path key of Engine.*/
         public static final String PATH = KEY_ROOT + "engine.path";
+
+        /** Number of the threads relaying requests to Engine.*/
+        public static final String RELAY_THREAD_NUM = KEY_ROOT + "engine.relay.thread.num";
+
+        /** Maximum number of the relays of a service collection running at the same time. 0 means no limit.*/
+        public static final String RELAY_MAX_CONCURRENCY = KEY_ROOT + "engine.relay.maxConcurrencyPerService";
+
+        /** Maximum number of the relays waiting for the threads.*/
+        public static final String RELAY_QUEUE_SIZE = KEY_ROOT + "engine.relay.queueSize";
+
+        /** Time in seconds to wait for the response of Engine. 0 means no limit.*/
+        public static final String RELAY_TIMEOUT = KEY_ROOT + "engine.relay.timeout";
     }
 
     /**
@@ -354,6 +467,15 @@ public class PersoniumUnitConfig {
 
         /** Store in memcached bar The validity period (in seconds) of the installation processing status.*/
         public static final String BAR_PROGRESS_EXPIRE_IN_SEC = KEY_ROOT + "bar.progress.expireInSec";
+
+        /** Number of threads installing the contents on bar install. */
+        public static final String BAR_INSTALL_CONTENTS_THREAD_NUM = KEY_ROOT + "bar.install.contents.threadNum";
+
+        /** Number of threads compressing files on bar export. */
+        public static final String BAR_EXPORT_COMPRESS_THREAD_NUM = KEY_ROOT + "bar.export.compress.threadNum";
+
+        /** Maximum size (MB) of files compressed in parallel per bar export. */
+        public static final String BAR_EXPORT_COMPRESS_BUFFER_SIZE = KEY_ROOT + "bar.export.compress.bufferSize";
     }
 
     /**
@@ -386,8 +508,17 @@ public class PersoniumUnitConfig {
         /** topic name for rule event. */
         public static final String TOPIC_RULE = KEY_ROOT + "eventbus.topic.rule";
 
-        /** Number of threads to process event. */
+        /** topic name for account lock. */
+        public static final String TOPIC_ACCOUNTLOCK = KEY_ROOT + "eventbus.topic.accountlock";
+
+        /** topic name for changes of cell control objects. */
+        public static final String TOPIC_CELLCTL = KEY_ROOT + "eventbus.topic.cellctl";
+
+        /** Number of threads to process event. 0 means the number of processors. */
         public static final String EVENTPROC_THREAD_NUM = KEY_ROOT + "eventbus.eventProcessing.thread.num";
+
+        /** Number of events waiting on each thread to process event. */
+        public static final String EVENTPROC_QUEUE_SIZE = KEY_ROOT + "eventbus.eventProcessing.queue.size";
     }
 
     /**
@@ -396,6 +527,15 @@ public class PersoniumUnitConfig {
     public static final class Rule {
         /** Number of threads to manage timer event. */
         public static final String TIMEREVENT_THREAD_NUM = KEY_ROOT + "rule.timerEvent.thread.num";
+
+        /** Number of cells whose rules are kept on memory. */
+        public static final String CACHE_SIZE = KEY_ROOT + "rule.cache.size";
+
+        /** File of the timer table. */
+        public static final String TIMER_TABLE_FILE = KEY_ROOT + "rule.timerTable.file";
+
+        /** Interval to save the timer table (sec). */
+        public static final String TIMER_TABLE_SAVE_INTERVAL = KEY_ROOT + "rule.timerTable.saveInterval";
     }
 
     /**
@@ -408,6 +548,124 @@ public class PersoniumUnitConfig {
         public static final String PASSWORD = KEY_ROOT + "introspect.password";
     }
 
+    /**
+     * Metrics configurations.
+     */
+    public static final class Metrics {
+        /** Whether to measure the time of request phases. */
+        public static final String ENABLED = KEY_ROOT + "metrics.enabled";
+
+        /** Whether to return the time of request phases in Server-Timing header. */
+        public static final String SERVER_TIMING_ENABLED = KEY_ROOT + "metrics.serverTiming.enabled";
+    }
+
+    /**
+     * Response compression configurations.
+     */
+    public static final class Compression {
+        /** Whether to compress the responses with gzip or deflate. */
+        public static final String ENABLED = KEY_ROOT + "compression.enabled";
+
+        /** Minimum size of the response body to compress (byte). */
+        public static final String MIN_SIZE = KEY_ROOT + "compression.minSize";
+
+        /** Compression level (0-9). */
+        public static final String LEVEL = KEY_ROOT + "compression.level";
+
+        /** Media types to compress (comma separated). */
+        public static final String MEDIA_TYPES = KEY_ROOT + "compression.mediaTypes";
+
+        /** Maximum number of pooled compressors for each format. */
+        public static final String POOL_SIZE = KEY_ROOT + "compression.poolSize";
+    }
+
+    /**
+     * Immutable settings.
+     * Numeric and boolean values are parsed on first use and kept, so that the getters called on every request
+     * do not parse the strings each time. A new instance is made on reload.
+     */
+    public static final class Snapshot {
+        private final Map<String, String> values;
+        private final ConcurrentHashMap<String, Integer> ints = new ConcurrentHashMap<String, Integer>();
+        private final ConcurrentHashMap<String, Long> longs = new ConcurrentHashMap<String, Long>();
+        private final ConcurrentHashMap<String, Boolean> booleans = new ConcurrentHashMap<String, Boolean>();
+
+        /**
+         * Constructor.
+         * @param properties settings to copy
+         */
+        public Snapshot(Properties properties) {
+            Map<String, String> map = new HashMap<String, String>();
+            for (String key : properties.stringPropertyNames()) {
+                map.put(key, properties.getProperty(key));
+            }
+            this.values = Collections.unmodifiableMap(map);
+        }
+
+        /**
+         * Get the setting value.
+         * @param key setting key
+         * @return setting value. null if not set.
+         */
+        public String get(String key) {
+            return values.get(key);
+        }
+
+        /**
+         * Get the setting value as int.
+         * @param key setting key
+         * @return setting value
+         * @throws NumberFormatException not set or not a number
+         */
+        public int getInt(String key) {
+            Integer value = ints.get(key);
+            if (value == null) {
+                value = Integer.parseInt(values.get(key));
+                ints.put(key, value);
+            }
+            return value;
+        }
+
+        /**
+         * Get the setting value as long.
+         * @param key setting key
+         * @return setting value
+         * @throws NumberFormatException not set or not a number
+         */
+        public long getLong(String key) {
+            Long value = longs.get(key);
+            if (value == null) {
+                value = Long.parseLong(values.get(key));
+                longs.put(key, value);
+            }
+            return value;
+        }
+
+        /**
+         * Get the setting value as boolean.
+         * @param key setting key
+         * @return true: the value is "true" ignoring case
+         */
+        public boolean getBoolean(String key) {
+            Boolean value = booleans.get(key);
+            if (value == null) {
+                value = Boolean.parseBoolean(values.get(key));
+                booleans.put(key, value);
+            }
+            return value;
+        }
+
+        /**
+         * Get all the settings.
+         * @return copy of the settings
+         */
+        public Properties toProperties() {
+            Properties properties = new Properties();
+            properties.putAll(values);
+            return properties;
+        }
+    }
+
     static {
         //Forcibly load various message output classes
         PersoniumCoreLog.loadConfig();
@@ -415,6 +673,12 @@ public class PersoniumUnitConfig {
         PersoniumCoreAuthnException.loadConfig();
     }
 
+    /** Listeners called after the settings are changed. */
+    private static final List<Runnable> RELOAD_LISTENERS = new CopyOnWriteArrayList<Runnable>();
+
+    /** Checker of the update of the configuration file. */
+    private static ScheduledExecutorService reloadChecker;
+
     /** singleton. */
     private static PersoniumUnitConfig singleton = new PersoniumUnitConfig();
 
@@ -423,6 +687,9 @@ public class PersoniumUnitConfig {
     /** Property entity that stores the setting value.*/
     private final Properties props = new Properties();
 
+    /** Settings read by the getters. Replaced as a whole when the settings are changed. */
+    private volatile Snapshot snapshot;
+
     /** Property entity that stores setting values to be overridden.*/
     private final Properties propsOverride = new Properties();
 
@@ -468,6 +735,7 @@ public class PersoniumUnitConfig {
             log.debug("Overriding Config " + key + "=" + value);
             this.props.setProperty(key, value);
         }
+        this.snapshot = new Snapshot(this.props);
     }
 
     private static boolean isSpaceSeparatedValueIncluded(String spaceSeparatedValue, String testValue, String unitUrl) {
@@ -570,7 +838,7 @@ public class PersoniumUnitConfig {
      * @return setting value
      */
     private String doGet(final String key) {
-        return props.getProperty(key);
+        return snapshot.get(key);
     }
 
     /**
@@ -578,16 +846,26 @@ public class PersoniumUnitConfig {
      * @param key
      * @param value value
      */
-    private void doSet(final String key, final String value) {
+    private synchronized void doSet(final String key, final String value) {
         props.setProperty(key, value);
+        snapshot = new Snapshot(props);
     }
 
     /**
      * Get all the properties.
-     * @return property list object
+     * @return copy of the properties
      */
     public static Properties getProperties() {
-        return singleton.props;
+        return singleton.snapshot.toProperties();
+    }
+
+    /**
+     * Get the current settings.
+     * The returned object is not affected by later reloads.
+     * @return settings
+     */
+    public static Snapshot snapshot() {
+        return singleton.snapshot;
     }
 
     /**
@@ -606,6 +884,27 @@ public class PersoniumUnitConfig {
      */
     public static void set(final String key, final String value) {
         singleton.doSet(key, value);
+        notifyReload();
+    }
+
+    private static int getInt(final String key) {
+        return singleton.snapshot.getInt(key);
+    }
+
+    private static long getLong(final String key) {
+        return singleton.snapshot.getLong(key);
+    }
+
+    private static long getLong(final String key, long defaultValue) {
+        String value = get(key);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        return getLong(key);
+    }
+
+    private static boolean getBoolean(final String key) {
+        return singleton.snapshot.getBoolean(key);
     }
 
     /**
@@ -621,7 +920,7 @@ public class PersoniumUnitConfig {
      * @return thread pool num
      */
     public static int getThreadPoolNumForCellIO() {
-        return Integer.parseInt(get(THREAD_POOL_NUM_IO_CELL));
+        return getInt(THREAD_POOL_NUM_IO_CELL);
     }
 
     /**
@@ -629,7 +928,7 @@ public class PersoniumUnitConfig {
      * @return thread pool num
      */
     public static int getThreadPoolNumForBoxIO() {
-        return Integer.parseInt(get(THREAD_POOL_NUM_IO_BOX));
+        return getInt(THREAD_POOL_NUM_IO_BOX);
     }
 
     /**
@@ -637,7 +936,7 @@ public class PersoniumUnitConfig {
      * @return thread pool num
      */
     public static int getThreadPoolNumForMisc() {
-        return Integer.parseInt(get(THREAD_POOL_NUM_MISC));
+        return getInt(THREAD_POOL_NUM_MISC);
     }
 
     /**
@@ -669,7 +968,7 @@ public class PersoniumUnitConfig {
     public static int getUnitPort() {
         int port;
         try {
-            port = Integer.parseInt(get(UNIT_PORT));
+            port = getInt(UNIT_PORT);
         } catch (NumberFormatException e) {
             port = -1;
         }
@@ -689,7 +988,7 @@ public class PersoniumUnitConfig {
      * @return true: path based. false: per cell fqdn.
      */
     public static boolean isPathBasedCellUrlEnabled() {
-        return Boolean.parseBoolean(get(PATH_BASED_CELL_URL_ENABLED));
+        return getBoolean(PATH_BASED_CELL_URL_ENABLED);
     }
 
     /**
@@ -754,36 +1053,21 @@ public class PersoniumUnitConfig {
      * @return $ batch processing timeout time (ms)
      */
     public static long getOdataBatchRequestTimeoutInMillis() {
-
-        String mSecInStr = get(OData.BATCH_REQUEST_TIMEOUT_IN_MILLIS);
-        if (null != mSecInStr && !mSecInStr.isEmpty()) {
-            return Long.parseLong(mSecInStr);
-        }
-        return DEFAULT_BATCH_TIMEOUT;
+        return getLong(OData.BATCH_REQUEST_TIMEOUT_IN_MILLIS, DEFAULT_BATCH_TIMEOUT);
     }
 
     /**
-     * @return $ sleep time for batch processing (ms)
+     * @return $ maximum time for batch processing to wait for other requests waiting for Lock (ms)
      */
     public static long getOdataBatchSleepInMillis() {
-
-        String mSecInStr = get(OData.BATCH_SLEEP_IN_MILLIS);
-        if (null != mSecInStr && !mSecInStr.isEmpty()) {
-            return Long.parseLong(mSecInStr);
-        }
-        return DEFAULT_BATCH_SLEEP;
+        return getLong(OData.BATCH_SLEEP_IN_MILLIS, DEFAULT_BATCH_SLEEP);
     }
 
     /**
-     * @return $ sleep interval of batch processing (ms)
+     * @return $ minimum interval of batch processing to give Lock to other requests (ms)
      */
     public static long getOdataBatchSleepIntervalInMillis() {
-
-        String mSecInStr = get(OData.BATCH_SLEEP_INTERVAL_IN_MILLIS);
-        if (null != mSecInStr && !mSecInStr.isEmpty()) {
-            return Long.parseLong(mSecInStr);
-        }
-        return DEFAULT_BATCH_SLEEP_INTERVAL;
+        return getLong(OData.BATCH_SLEEP_INTERVAL_IN_MILLIS, DEFAULT_BATCH_SLEEP_INTERVAL);
     }
 
     /**
@@ -791,7 +1075,7 @@ public class PersoniumUnitConfig {
      * @return Maximum number of child elements of collection
      */
     public static int getMaxChildResourceCount() {
-        return Integer.parseInt(get(Dav.COLLECTION_CHILDRESOURCE_MAX_NUM));
+        return getInt(Dav.COLLECTION_CHILDRESOURCE_MAX_NUM);
     }
 
     /**
@@ -799,7 +1083,7 @@ public class PersoniumUnitConfig {
      * @return Maximum number of hierarchies in collection
      */
     public static int getMaxCollectionDepth() {
-        return Integer.parseInt(get(Dav.COLLECTION_DEPTH_MAX_NUM));
+        return getInt(Dav.COLLECTION_DEPTH_MAX_NUM);
     }
 
     /**
@@ -807,70 +1091,70 @@ public class PersoniumUnitConfig {
      * @return true if it is valid
      */
     public static boolean getFsyncEnabled() {
-        return Boolean.parseBoolean(get(BinaryData.FSYNC_ENABLED));
+        return getBoolean(BinaryData.FSYNC_ENABLED);
     }
 
     /**
      * @return N: Get the maximum number of links that $ links can create.
      */
     public static int getLinksNtoNMaxSize() {
-        return Integer.parseInt(get(OData.NN_LINKS_MAX_NUM));
+        return getInt(OData.NN_LINKS_MAX_NUM);
     }
 
     /**
      * @return $ expand Maximum number of times specified by specifying expand.
      */
     public static int getTopQueryMaxSizeWithExpand() {
-        return Integer.parseInt(get(OData.EXPAND_TOP_MAXNUM));
+        return getInt(OData.EXPAND_TOP_MAXNUM);
     }
 
     /**
      * @return Max expanded number of $ expand (when getting list).
      */
     public static int getMaxExpandSizeForList() {
-        return Integer.parseInt(get(OData.EXPAND_LIST_MAXNUM));
+        return getInt(OData.EXPAND_LIST_MAXNUM);
     }
 
     /**
      * @return Max expanded number of $ expand (when acquiring one case).
      */
     public static int getMaxExpandSizeForRetrive() {
-        return Integer.parseInt(get(OData.EXPAND_RETRIEVE_MAXNUM));
+        return getInt(OData.EXPAND_RETRIEVE_MAXNUM);
     }
 
     /**
      * @return The maximum value that can be specified for $ top.
      */
     public static int getTopQueryMaxSize() {
-        return Integer.parseInt(get(OData.TOP_MAX_NUM));
+        return getInt(OData.TOP_MAX_NUM);
     }
 
     /**
      * @return The maximum value that can be specified for $ skip.
      */
     public static int getSkipQueryMaxSize() {
-        return Integer.parseInt(get(OData.SKIP_MAX_NUM));
+        return getInt(OData.SKIP_MAX_NUM);
     }
 
     /**
      * @return Default number of return cases when obtaining list.
      */
     public static int getTopQueryDefaultSize() {
-        return Integer.parseInt(get(OData.TOP_DEFAULT));
+        return getInt(OData.TOP_DEFAULT);
     }
 
     /**
      * @return The maximum number of properties of $ expand (when listing).
      */
     public static int getExpandPropertyMaxSizeForList() {
-        return Integer.parseInt(get(OData.EXPAND_PROPERTY_MAX_NUM_LIST));
+        return getInt(OData.EXPAND_PROPERTY_MAX_NUM_LIST);
     }
 
     /**
      * @return The maximum number of properties of $ expand (when acquiring one item).
      */
     public static int getExpandPropertyMaxSizeForRetrieve() {
-        return Integer.parseInt(get(OData.EXPAND_PROPERTY_MAX_NUM_RETRIEVE));
+        return getInt(OData.EXPAND_PROPERTY_MAX_NUM_RETRIEVE);
     }
 
     /**
@@ -887,6 +1171,41 @@ public class PersoniumUnitConfig {
         return get(Lock.ACCOUNTLOCK_LIFETIME);
     }
 
+    /**
+     * @return Maximum account lock time (s).
+     */
+    public static int getAccountLockMaxLifetime() {
+        return getInt(Lock.ACCOUNTLOCK_MAX_LIFETIME);
+    }
+
+    /**
+     * @return Number of authentication failures within the window that locks the account.
+     */
+    public static int getAccountLockFailureCount() {
+        return getInt(Lock.ACCOUNTLOCK_FAILURE_COUNT);
+    }
+
+    /**
+     * @return Window to count authentication failures (s).
+     */
+    public static int getAccountLockFailureWindow() {
+        return getInt(Lock.ACCOUNTLOCK_FAILURE_WINDOW);
+    }
+
+    /**
+     * @return Maximum number of accounts whose failures are kept on memory.
+     */
+    public static int getAccountLockMaxAccounts() {
+        return getInt(Lock.ACCOUNTLOCK_MAX_ACCOUNTS);
+    }
+
+    /**
+     * @return true: notify other units of account locks.
+     */
+    public static boolean isAccountLockReplicationEnabled() {
+        return getBoolean(Lock.ACCOUNTLOCK_REPLICATION_ENABLED);
+    }
+
     /**
      * @return The number of retries at lock acquisition.
      */
@@ -905,14 +1224,14 @@ public class PersoniumUnitConfig {
      * @return Number of retries when acquiring cell lock.
      */
     public static int getCellLockRetryTimes() {
-        return Integer.parseInt(get(Lock.CELL_RETRY_TIMES));
+        return getInt(Lock.CELL_RETRY_TIMES);
     }
 
     /**
      * @return Interval at cell retry acquisition retry.
      */
     public static long getCellLockRetryInterval() {
-        return Long.parseLong(get(Lock.CELL_RETRY_INTERVAL));
+        return getLong(Lock.CELL_RETRY_INTERVAL);
     }
 
     /**
@@ -933,7 +1252,7 @@ public class PersoniumUnitConfig {
      * @return memcached operation for locking timeout value (ms).
      */
     public static long getLockMemcachedOpTimeout() {
-        return Long.parseLong(get(Lock.MEMCACHED_OPTIMEOUT));
+        return getLong(Lock.MEMCACHED_OPTIMEOUT);
     }
 
     /**
@@ -943,12 +1262,52 @@ public class PersoniumUnitConfig {
         return get(Event.EVENT_LOG_CURRENT_DIR);
     }
 
+    /**
+     * Get number of event log records waiting to be written.
+     * @return queue size
+     */
+    public static int getEventLogQueueSize() {
+        return getInt(Event.EVENT_LOG_QUEUE_SIZE);
+    }
+
+    /**
+     * Get maximum number of event log files kept open.
+     * @return number of files
+     */
+    public static int getEventLogMaxOpenFiles() {
+        return getInt(Event.EVENT_LOG_MAX_OPEN_FILES);
+    }
+
+    /**
+     * Get size of the event log file to rotate.
+     * @return size (bytes)
+     */
+    public static long getEventLogMaxFileSize() {
+        return getLong(Event.EVENT_LOG_MAX_FILE_SIZE);
+    }
+
+    /**
+     * Get age of the event log file to rotate.
+     * @return age (sec). 0 if rotated only by size.
+     */
+    public static long getEventLogRotateInterval() {
+        return getLong(Event.EVENT_LOG_ROTATE_INTERVAL);
+    }
+
+    /**
+     * Get number of the archived event log files kept.
+     * @return number of files
+     */
+    public static int getEventLogMaxArchiveFiles() {
+        return getInt(Event.EVENT_LOG_MAX_ARCHIVE_FILES);
+    }
+
     /**
      * Get event hop maximum number.
      * @return event hop maximum number
      */
     public static int getMaxEventHop() {
-        return Integer.parseInt(get(Event.EVENT_HOP_MAXNUM));
+        return getInt(Event.EVENT_HOP_MAXNUM);
     }
 
     /**
@@ -979,7 +1338,7 @@ public class PersoniumUnitConfig {
      * Get the set value of search result output upper limit of @return Es.
      */
     public static int getEsTopNum() {
-        return Integer.parseInt(get(ES.TOP_NUM));
+        return getInt(ES.TOP_NUM);
     }
 
     /**
@@ -1002,7 +1361,7 @@ public class PersoniumUnitConfig {
      * @return true: physical delete, false: logical delete
      */
     public static boolean getPhysicalDeleteMode() {
-        return Boolean.parseBoolean(get(BinaryData.PHYSICAL_DELETE_MODE));
+        return getBoolean(BinaryData.PHYSICAL_DELETE_MODE);
     }
 
     /**
@@ -1010,7 +1369,7 @@ public class PersoniumUnitConfig {
      * @return retry count
      */
     public static int getDavFileOperationRetryCount() {
-        return Integer.parseInt(get(BinaryData.MAX_RETRY_COUNT));
+        return getInt(BinaryData.MAX_RETRY_COUNT);
     }
 
     /**
@@ -1018,7 +1377,31 @@ public class PersoniumUnitConfig {
      * @return Retry interval (msec)
      */
     public static long getDavFileOperationRetryInterval() {
-        return Long.parseLong(get(BinaryData.RETRY_INTERVAL));
+        return getLong(BinaryData.RETRY_INTERVAL);
+    }
+
+    /**
+     * Interval (msec) between runs of the trash reaper.
+     * @return interval (msec)
+     */
+    public static long getTrashReaperInterval() {
+        return getLong(BinaryData.TRASH_REAPER_INTERVAL);
+    }
+
+    /**
+     * Maximum number of files the trash reaper deletes in one run.
+     * @return batch size
+     */
+    public static int getTrashReaperBatchSize() {
+        return getInt(BinaryData.TRASH_REAPER_BATCH_SIZE);
+    }
+
+    /**
+     * Period (msec) the replaced versions of Dav file content are kept for the readers.
+     * @return grace period (msec)
+     */
+    public static long getDavVersionGracePeriod() {
+        return getLong(BinaryData.DAV_VERSION_GRACE_PERIOD);
     }
 
     /**
@@ -1035,12 +1418,60 @@ public class PersoniumUnitConfig {
         return get(ES.RETRY_INTERVAL);
     }
 
+    /**
+     * Get number of documents read at once on internal full scans.
+     * @return batch size
+     */
+    public static int getEsScanBatchSize() {
+        return getInt(ES.SCAN_BATCH_SIZE);
+    }
+
+    /**
+     * Get whether to read the next page in background on internal full scans.
+     * @return true: enabled
+     */
+    public static boolean isEsScanPrefetchEnabled() {
+        return getBoolean(ES.SCAN_PREFETCH);
+    }
+
+    /**
+     * Get whether to write concurrent single entity updates of user data in bulk.
+     * @return true: enabled
+     */
+    public static boolean isEsGroupCommitEnabled() {
+        return getBoolean(ES.GROUP_COMMIT_ENABLED);
+    }
+
+    /**
+     * Get maximum number of writes in a bulk request.
+     * @return maximum number
+     */
+    public static int getEsGroupCommitMaxSize() {
+        return getInt(ES.GROUP_COMMIT_MAX_SIZE);
+    }
+
+    /**
+     * Get number of ES request logs waiting to be written.
+     * @return number of logs
+     */
+    public static int getEsAuditLogQueueSize() {
+        return getInt(ES.AUDIT_LOG_QUEUE_SIZE);
+    }
+
+    /**
+     * Get maximum length of each parameter of ES request logs.
+     * @return number of characters
+     */
+    public static int getEsAuditLogMaxLength() {
+        return getInt(ES.AUDIT_LOG_MAX_LENGTH);
+    }
+
     /**
      * Get max size of bar file.
      * @return max size of bar file
      */
     public static long getBarEntryMaxSize() {
-        return Long.parseLong(get(BAR.BAR_ENTRY_MAX_SIZE));
+        return getLong(BAR.BAR_ENTRY_MAX_SIZE);
     }
 
     /**
@@ -1052,11 +1483,27 @@ public class PersoniumUnitConfig {
     }
 
     /**
-     * Get temp dir path for barexport.
-     * @return temp dir path
+     * Get number of threads installing the contents on bar install.
+     * @return number of threads
+     */
+    public static int getBarInstallContentsThreadNum() {
+        return getInt(BAR.BAR_INSTALL_CONTENTS_THREAD_NUM);
+    }
+
+    /**
+     * Get number of threads compressing files on bar export.
+     * @return number of threads
+     */
+    public static int getBarExportCompressThreadNum() {
+        return getInt(BAR.BAR_EXPORT_COMPRESS_THREAD_NUM);
+    }
+
+    /**
+     * Get maximum size of files compressed in parallel per bar export.
+     * @return size (byte)
      */
-    public static String getBarExportTempDir() {
-        return get(BAR.BAR_TMP_DIR) + "/export";
+    public static long getBarExportCompressBufferSize() {
+        return getLong(BAR.BAR_EXPORT_COMPRESS_BUFFER_SIZE) * 1024 * 1024;
     }
 
     /**
@@ -1091,7 +1538,7 @@ public class PersoniumUnitConfig {
      * @return cache memcached operation timeout value (ms).
      */
     public static long getCacheMemcachedOpTimeout() {
-        return Long.parseLong(get(Cache.MEMCACHED_OPTIMEOUT));
+        return getLong(Cache.MEMCACHED_OPTIMEOUT);
     }
 
     /**
@@ -1099,7 +1546,7 @@ public class PersoniumUnitConfig {
      * @return true if it is valid.
      */
     public static boolean isCellCacheEnabled() {
-        return Boolean.parseBoolean(get(Cache.CELL_CACHE_ENABLED));
+        return getBoolean(Cache.CELL_CACHE_ENABLED);
     }
 
     /**
@@ -1107,7 +1554,7 @@ public class PersoniumUnitConfig {
      * @return true if it is valid.
      */
     public static boolean isBoxCacheEnabled() {
-        return Boolean.parseBoolean(get(Cache.BOX_CACHE_ENABLED));
+        return getBoolean(Cache.BOX_CACHE_ENABLED);
     }
 
     /**
@@ -1115,14 +1562,91 @@ public class PersoniumUnitConfig {
      * @return true if it is valid.
      */
     public static boolean isSchemaCacheEnabled() {
-        return Boolean.parseBoolean(get(Cache.SCHEMA_CACHE_ENABLED));
+        return getBoolean(Cache.SCHEMA_CACHE_ENABLED);
     }
 
     /**
      * @return memcached Cache expiration date.
      */
     public static int getCacheMemcachedExpiresIn() {
-        return Integer.parseInt(get(Cache.MEMCACHED_EXPIRES_IN));
+        return getInt(Cache.MEMCACHED_EXPIRES_IN);
+    }
+
+    /**
+     * @return true: Basic authentication is cached on memory.
+     */
+    public static boolean isBasicAuthCacheEnabled() {
+        return getBoolean(Cache.BASIC_AUTH_CACHE_ENABLED);
+    }
+
+    /**
+     * @return Expiration of the cached Basic authentication (s).
+     */
+    public static int getBasicAuthCacheExpiresIn() {
+        return getInt(Cache.BASIC_AUTH_CACHE_EXPIRES_IN);
+    }
+
+    /**
+     * @return Maximum number of cached Basic authentications.
+     */
+    public static int getBasicAuthCacheMaxSize() {
+        return getInt(Cache.BASIC_AUTH_CACHE_MAX_SIZE);
+    }
+
+    /**
+     * @return true: ACLs and role URLs are cached on memory.
+     */
+    public static boolean isAclCacheEnabled() {
+        return getBoolean(Cache.ACL_CACHE_ENABLED);
+    }
+
+    /**
+     * @return Expiration of the cached role URLs of a cell (s).
+     */
+    public static int getAclCacheRoleExpiresIn() {
+        return getInt(Cache.ACL_CACHE_ROLE_EXPIRES_IN);
+    }
+
+    /**
+     * @return Maximum number of cells whose role URLs are cached.
+     */
+    public static int getAclCacheMaxCells() {
+        return getInt(Cache.ACL_CACHE_MAX_CELLS);
+    }
+
+    /**
+     * @return Maximum number of cached ACLs.
+     */
+    public static int getAclCacheMaxSize() {
+        return getInt(Cache.ACL_CACHE_MAX_SIZE);
+    }
+
+    /**
+     * @return true: cell control objects are cached on memory.
+     */
+    public static boolean isCellCtlCacheEnabled() {
+        return getBoolean(Cache.CELLCTL_CACHE_ENABLED);
+    }
+
+    /**
+     * @return Expiration of the cached cell control objects (s).
+     */
+    public static int getCellCtlCacheExpiresIn() {
+        return getInt(Cache.CELLCTL_CACHE_EXPIRES_IN);
+    }
+
+    /**
+     * @return Maximum number of cells whose cell control objects are cached.
+     */
+    public static int getCellCtlCacheMaxCells() {
+        return getInt(Cache.CELLCTL_CACHE_MAX_CELLS);
+    }
+
+    /**
+     * @return Maximum number of cached cell control objects per cell.
+     */
+    public static int getCellCtlCacheMaxSize() {
+        return getInt(Cache.CELLCTL_CACHE_MAX_SIZE);
     }
 
     /**
@@ -1138,7 +1662,7 @@ public class PersoniumUnitConfig {
      * @return setting value
      */
     public static int getEnginePort() {
-        return Integer.parseInt(get(Engine.PORT));
+        return getInt(Engine.PORT);
     }
 
     /**
@@ -1149,6 +1673,38 @@ public class PersoniumUnitConfig {
         return get(Engine.PATH);
     }
 
+    /**
+     * Get the number of the threads relaying requests to Engine.
+     * @return number of the threads
+     */
+    public static int getEngineRelayThreadNum() {
+        return getInt(Engine.RELAY_THREAD_NUM);
+    }
+
+    /**
+     * Get the maximum number of the relays of a service collection running at the same time.
+     * @return maximum number. 0 means no limit.
+     */
+    public static int getEngineRelayMaxConcurrency() {
+        return getInt(Engine.RELAY_MAX_CONCURRENCY);
+    }
+
+    /**
+     * Get the maximum number of the relays waiting for the threads.
+     * @return maximum number
+     */
+    public static int getEngineRelayQueueSize() {
+        return getInt(Engine.RELAY_QUEUE_SIZE);
+    }
+
+    /**
+     * Get the time in seconds to wait for the response of Engine.
+     * @return time (seconds). 0 means no limit.
+     */
+    public static long getEngineRelayTimeout() {
+        return getLong(Engine.RELAY_TIMEOUT);
+    }
+
     /**
      * Get the set value of the path of the X509 secret key file of this UNIT.
      * @return setting value
@@ -1199,7 +1755,7 @@ public class PersoniumUnitConfig {
      * @return true: enabled false: disabled
      */
     public static boolean isDavEncryptEnabled() {
-        return Boolean.parseBoolean(get(Security.DAV_ENCRYPT_ENABLED));
+        return getBoolean(Security.DAV_ENCRYPT_ENABLED);
     }
 
     /**
@@ -1250,12 +1806,36 @@ public class PersoniumUnitConfig {
         return get(EventBus.TOPIC_RULE);
     }
 
+    /**
+     * Get topic name for account lock.
+     * @return topic name
+     */
+    public static String getEventBusAccountLockTopicName() {
+        return get(EventBus.TOPIC_ACCOUNTLOCK);
+    }
+
+    /**
+     * Get topic name for changes of cell control objects.
+     * @return topic name
+     */
+    public static String getEventBusCellCtlTopicName() {
+        return get(EventBus.TOPIC_CELLCTL);
+    }
+
     /**
      * Get thread number for eventprocessing.
      * @return thread num
      */
     public static int getEventProcThreadNum() {
-        return Integer.parseInt(get(EventBus.EVENTPROC_THREAD_NUM));
+        return getInt(EventBus.EVENTPROC_THREAD_NUM);
+    }
+
+    /**
+     * Get number of events waiting on each thread for eventprocessing.
+     * @return queue size
+     */
+    public static int getEventProcQueueSize() {
+        return getInt(EventBus.EVENTPROC_QUEUE_SIZE);
     }
 
     /**
@@ -1263,7 +1843,31 @@ public class PersoniumUnitConfig {
      * @return thread num
      */
     public static int getTimerEventThreadNum() {
-        return Integer.parseInt(get(Rule.TIMEREVENT_THREAD_NUM));
+        return getInt(Rule.TIMEREVENT_THREAD_NUM);
+    }
+
+    /**
+     * Get number of cells whose rules are kept on memory.
+     * @return number of cells
+     */
+    public static int getRuleCacheSize() {
+        return getInt(Rule.CACHE_SIZE);
+    }
+
+    /**
+     * Get file of the timer table.
+     * @return file path. empty if the timer table is not saved.
+     */
+    public static String getTimerTableFile() {
+        return get(Rule.TIMER_TABLE_FILE);
+    }
+
+    /**
+     * Get interval to save the timer table.
+     * @return interval (sec)
+     */
+    public static long getTimerTableSaveInterval() {
+        return getLong(Rule.TIMER_TABLE_SAVE_INTERVAL);
     }
 
     /**
@@ -1290,11 +1894,132 @@ public class PersoniumUnitConfig {
         return value;
     }
 
+    /**
+     * Get whether to measure the time of request phases.
+     * @return true: measure
+     */
+    public static boolean isMetricsEnabled() {
+        return getBoolean(Metrics.ENABLED);
+    }
+
+    /**
+     * Get whether to return the time of request phases in Server-Timing header.
+     * @return true: return
+     */
+    public static boolean isServerTimingEnabled() {
+        return getBoolean(Metrics.SERVER_TIMING_ENABLED);
+    }
+
+    /**
+     * Get whether to compress the responses.
+     * @return true: compress
+     */
+    public static boolean isCompressionEnabled() {
+        return getBoolean(Compression.ENABLED);
+    }
+
+    /**
+     * Get the minimum size of the response body to compress.
+     * @return minimum size (byte)
+     */
+    public static int getCompressionMinSize() {
+        return getInt(Compression.MIN_SIZE);
+    }
+
+    /**
+     * Get the compression level.
+     * @return compression level (0-9)
+     */
+    public static int getCompressionLevel() {
+        return getInt(Compression.LEVEL);
+    }
+
+    /**
+     * Get the media types to compress.
+     * @return media types (comma separated)
+     */
+    public static String getCompressionMediaTypes() {
+        return get(Compression.MEDIA_TYPES);
+    }
+
+    /**
+     * Get the maximum number of pooled compressors for each format.
+     * @return maximum number
+     */
+    public static int getCompressionPoolSize() {
+        return getInt(Compression.POOL_SIZE);
+    }
+
     /**
      * Reload the configuration information.
      */
     public static void reload() {
         singleton.doReload();
+        notifyReload();
+    }
+
+    /**
+     * Add the listener called after the settings are reloaded or changed.
+     * Used to update the values kept by other classes.
+     * @param listener listener
+     */
+    public static void addReloadListener(Runnable listener) {
+        RELOAD_LISTENERS.add(listener);
+    }
+
+    private static void notifyReload() {
+        for (Runnable listener : RELOAD_LISTENERS) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                LoggerFactory.getLogger(PersoniumUnitConfig.class).warn("Failed to apply reloaded config", e);
+            }
+        }
+    }
+
+    /**
+     * Start reloading the settings when the configuration file is updated.
+     * Does nothing when the interval is 0 or the file is not specified by the system property.
+     */
+    public static synchronized void startReloadChecker() {
+        long interval = getLong(CONFIG_RELOAD_INTERVAL);
+        String configFilePath = System.getProperty(KEY_CONFIG_FILE);
+        if (interval <= 0 || configFilePath == null || reloadChecker != null) {
+            return;
+        }
+        final File configFile = new File(configFilePath);
+        final ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+        builder.setNameFormat("config-reload-checker-%d");
+        builder.setDaemon(true);
+        reloadChecker = Executors.newSingleThreadScheduledExecutor(builder.build());
+        reloadChecker.scheduleWithFixedDelay(new Runnable() {
+            private long lastModified = configFile.lastModified();
+
+            @Override
+            public void run() {
+                long modified = configFile.lastModified();
+                if (modified == 0 || modified == lastModified) {
+                    return;
+                }
+                lastModified = modified;
+                LoggerFactory.getLogger(PersoniumUnitConfig.class).info("Reloading " + configFile);
+                try {
+                    reload();
+                } catch (RuntimeException e) {
+                    LoggerFactory.getLogger(PersoniumUnitConfig.class).warn("Failed to reload config", e);
+                }
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop checking the update of the configuration file.
+     */
+    public static synchronized void stopReloadChecker() {
+        if (reloadChecker != null) {
+            reloadChecker.shutdownNow();
+            reloadChecker = null;
+        }
     }
 
     /**
@@ -1320,7 +2045,7 @@ public class PersoniumUnitConfig {
      * @return Maximum number of EntityType
      */
     public static int getUserdataMaxEntityCount() {
-        return Integer.parseInt(get(UserDataProperties.MAX_ENTITY_TYPES));
+        return getInt(UserDataProperties.MAX_ENTITY_TYPES);
     }
 
     /**
@@ -1328,7 +2053,7 @@ public class PersoniumUnitConfig {
      * @return Maximum number of properties in EntityType
      */
     public static int getMaxPropertyCountInEntityType() {
-        return Integer.parseInt(get(UserDataProperties.MAX_PROPERTY_COUNT_IN_ENTITY));
+        return getInt(UserDataProperties.MAX_PROPERTY_COUNT_IN_ENTITY);
     }
 
     /**
@@ -1355,7 +2080,15 @@ public class PersoniumUnitConfig {
      * @return true: Update (default) false: Do not update
      */
     public static boolean getAccountLastAuthenticatedEnable() {
-        return Boolean.parseBoolean(get(Account.ACCOUNT_LAST_AUTHENTICATED_ENABLED));
+        return getBoolean(Account.ACCOUNT_LAST_AUTHENTICATED_ENABLED);
+    }
+
+    /**
+     * Interval to write the last login time of Accounts.
+     * @return interval (milliseconds)
+     */
+    public static long getAccountLastAuthenticatedFlushInterval() {
+        return getLong(Account.ACCOUNT_LAST_AUTHENTICATED_FLUSH_INTERVAL);
     }
 
     /**
@@ -16,8 +16,6 @@
  */
 package io.personium.core.auth;
 
-import java.net.URI;
-import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -45,9 +43,9 @@ import io.personium.core.PersoniumCoreException;
 import io.personium.core.PersoniumCoreLog;
 import io.personium.core.PersoniumUnitConfig;
 import io.personium.core.auth.OAuth2Helper.AcceptableAuthScheme;
+import io.personium.core.metrics.RequestTiming;
 import io.personium.core.model.Box;
 import io.personium.core.model.Cell;
-import io.personium.core.model.jaxb.Ace;
 import io.personium.core.model.jaxb.Acl;
 import io.personium.core.odata.OEntityWrapper;
 import io.personium.core.rs.cell.AuthResourceUtils;
@@ -175,6 +173,18 @@ public class AccessContext {
     public static AccessContext create(String authzHeaderValue,
             UriInfo requestURIInfo, String pCookiePeer, String pCookieAuthValue,
             Cell cell, String baseUri, String headerHost, String xPersoniumUnitUser) {
+        RequestTiming.begin(RequestTiming.Phase.ACCESS);
+        try {
+            return doCreate(authzHeaderValue, requestURIInfo, pCookiePeer, pCookieAuthValue,
+                    cell, baseUri, headerHost, xPersoniumUnitUser);
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.ACCESS);
+        }
+    }
+
+    private static AccessContext doCreate(String authzHeaderValue,
+            UriInfo requestURIInfo, String pCookiePeer, String pCookieAuthValue,
+            Cell cell, String baseUri, String headerHost, String xPersoniumUnitUser) {
         if (authzHeaderValue == null) {
             if (pCookiePeer == null || 0 == pCookiePeer.length()) {
                 return new AccessContext(TYPE_ANONYMOUS, cell, baseUri, requestURIInfo);
@@ -201,7 +211,7 @@ public class AccessContext {
             String authToken = decodedCookieValue.substring(separatorIndex + 1);
             if (pCookiePeer.equals(peer)) {
                 //Generate appropriate AccessContext with recursive call.
-                return create(OAuth2Helper.Scheme.BEARER + " " + authToken,
+                return doCreate(OAuth2Helper.Scheme.BEARER + " " + authToken,
                         requestURIInfo, null, null, cell, baseUri, headerHost, xPersoniumUnitUser);
             } else {
                 return new AccessContext(
@@ -336,49 +346,7 @@ public class AccessContext {
         if (resourcePrivilege == null) {
             return false;
         }
-
-        //Acquire ROLE information from ACL and obtain authority
-        if (acl.getAceList() == null) {
-            return false;
-        }
-        for (Ace ace : acl.getAceList()) {
-            //When an empty ace is set, it continues because there is no need for checking
-            if (ace.getGrantedPrivilegeList().size() == 0 && ace.getPrincipalHref() == null) {
-                continue;
-            }
-            //Accessible when Principal is all
-            if (ace.getPrincipalAll() != null) {
-                if (requireAcePrivilege(ace.getGrantedPrivilegeList(), resourcePrivilege)) {
-                    return true;
-                }
-                continue;
-            }
-            //If a Role associated with Account does not exist, it is not accessible
-            if (this.roles == null) {
-                return false;
-            }
-
-            for (Role role : this.roles) {
-                //Relative path roll URL correspondence
-                String principalHref = getPrincipalHrefUrl(acl.getBase(), ace.getPrincipalHref());
-                if (principalHref == null) {
-                    return false;
-                }
-
-                //Detect setting corresponding to role
-                if (role.localCreateUrl(cellUrl).equals(principalHref)) {
-                    //Confirm whether Root is set
-                    if (ace.getGrantedPrivilegeList().contains(CellPrivilege.ROOT.getName())) {
-                        return true;
-                    }
-                    //Detect setting corresponding to role
-                    if (requireAcePrivilege(ace.getGrantedPrivilegeList(), resourcePrivilege)) {
-                       return true;
-                    }
-                }
-            }
-        }
-        return false;
+        return acl.getCompiled().allows(this.roles, resourcePrivilege, cellUrl);
     }
 
     /**
@@ -651,6 +619,24 @@ public class AccessContext {
         String username = idpw[0];
         String password = idpw[1];
 
+        //Reuse the authentication verified shortly before
+        BasicAuthCache cache = BasicAuthCache.getInstance();
+        long now = System.currentTimeMillis();
+        long generation = 0;
+        if (cache != null) {
+            BasicAuthCache.Entry verified = cache.get(cell.getId(), username, password, now);
+            if (verified != null) {
+                if (!AuthResourceUtils.isLockedAccount(verified.getAccountId())) {
+                    AccessContext ret = new AccessContext(TYPE_BASIC, cell, baseUri, uriInfo);
+                    ret.subject = username;
+                    ret.roles = verified.getRoles();
+                    return ret;
+                }
+                cache.remove(cell.getId(), username, password);
+            }
+            generation = cache.generation(cell.getId());
+        }
+
         OEntityWrapper oew = cell.getAccount(username);
         if (oew == null) {
             return new AccessContext(TYPE_INVALID, cell, baseUri, uriInfo, InvalidReason.basicAuthFormat);
@@ -660,14 +646,14 @@ public class AccessContext {
         String accountId = oew.getUuid();
         Boolean isLock = AuthResourceUtils.isLockedAccount(accountId);
         if (isLock) {
-            //Update lock time of memcached
+            //Count the failure, which extends the lock
             AuthResourceUtils.registAccountLock(accountId);
             return new AccessContext(TYPE_INVALID, cell, baseUri, uriInfo, InvalidReason.basicAuthErrorInAccountLock);
         }
 
         boolean authnSuccess = cell.authenticateAccount(oew, password);
         if (!authnSuccess) {
-            //Make lock on memcached
+            //Count the failure for the account lock
             AuthResourceUtils.registAccountLock(accountId);
             return new AccessContext(TYPE_INVALID, cell, baseUri, uriInfo, InvalidReason.basicAuthError);
         }
@@ -676,6 +662,9 @@ public class AccessContext {
         ret.subject = username;
         //Acquire role information
         ret.roles = cell.getRoleListForAccount(username);
+        if (cache != null) {
+            cache.put(cell.getId(), username, password, generation, accountId, ret.roles, now);
+        }
         return ret;
     }
 
@@ -788,48 +777,6 @@ public class AccessContext {
         return ret;
     }
 
-    /**
-     * It checks whether necessary privilege is set to Privilege of ACL.
-     * @param acePrivileges List of Privilege settings configured on the ACE
-     * @param resourcePrivilege Required authority
-     * @return Checkability
-     */
-    private boolean requireAcePrivilege(List<String> acePrivileges, Privilege resourcePrivilege) {
-        for (String aclPrivilege : acePrivileges) {
-            Privilege priv = Privilege.get(resourcePrivilege.getClass(), aclPrivilege);
-            if (priv != null
-                    && priv.includes(resourcePrivilege)) {
-                //Notes
-                //Privilege.get ($ {setting the ACL}) includes ($ {necessary value to access the resource})) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /**
-     * Relative path resolution of configuration role URL.
-     * The value of the xml: base attribute of the @param base ACL
-     * @param principal Href principal-Href of ACL
-     * @return
-     */
-    private String getPrincipalHrefUrl(String base, String principalHref) {
-        String result = null;
-        if (base != null && !"".equals(base)) {
-            //Relative path resolution
-            try {
-                URI url = new URI(base);
-                result = url.resolve(principalHref).toString();
-            } catch (URISyntaxException e) {
-                return null;
-            }
-        } else {
-            //If xml: base is not set, treat it as full path setting to href
-            result = principalHref;
-        }
-        return result;
-    }
-
     /**
      * Set basic authentication invalid state in the context.
      */
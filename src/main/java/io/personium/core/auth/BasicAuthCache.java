@@ -0,0 +1,267 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.auth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import io.personium.common.auth.token.Role;
+import io.personium.common.utils.PersoniumCoreUtils;
+import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.model.Box;
+import io.personium.core.model.ctl.Account;
+
+/**
+ * Cache of successful Basic authentication on memory of this unit.
+ * <p>
+ * Holds the Account ID and the roles for a pair of user name and password verified shortly before,
+ * so that repeated Basic authentication of WebDAV clients does not search the Account and its roles.
+ * The password is kept only as a keyed hash with a key generated on startup.
+ * Entries of a cell are discarded after the Accounts, the roles, the Boxes or their links are written
+ * in this unit, and expire within a short time to follow the changes made in other units.
+ */
+public class BasicAuthCache {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int KEY_LENGTH = 32;
+    private static final long MILLIS = 1000L;
+
+    /** Entity sets the cached authentication depends on. */
+    private static final Set<String> DEPENDENCIES = Collections.unmodifiableSet(new HashSet<String>(
+            Arrays.asList(Account.EDM_TYPE_NAME, Role.EDM_TYPE_NAME, Box.EDM_TYPE_NAME)));
+
+    private static volatile BasicAuthCache singleton;
+
+    private final Map<String, Entry> entries;
+    /** Generation of the cached data per cell. Cell ID -> generation. */
+    private final ConcurrentHashMap<String, AtomicLong> generations = new ConcurrentHashMap<String, AtomicLong>();
+    private final byte[] hashKey;
+    private final long expiresInMillis;
+
+    /**
+     * Constructor.
+     * @param maxSize maximum number of entries
+     * @param expiresInMillis time the entry is valid (ms)
+     */
+    BasicAuthCache(final int maxSize, long expiresInMillis) {
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+        this.expiresInMillis = expiresInMillis;
+        this.hashKey = new byte[KEY_LENGTH];
+        new SecureRandom().nextBytes(this.hashKey);
+    }
+
+    /**
+     * Get the instance.
+     * @return BasicAuthCache. null if disabled.
+     */
+    static BasicAuthCache getInstance() {
+        if (!PersoniumUnitConfig.isBasicAuthCacheEnabled()) {
+            return null;
+        }
+        if (singleton == null) {
+            synchronized (BasicAuthCache.class) {
+                if (singleton == null) {
+                    singleton = new BasicAuthCache(PersoniumUnitConfig.getBasicAuthCacheMaxSize(),
+                            PersoniumUnitConfig.getBasicAuthCacheExpiresIn() * MILLIS);
+                }
+            }
+        }
+        return singleton;
+    }
+
+    /**
+     * Discard the entries of the cell, if the entity sets the authentication depends on are written.
+     * Must be called after the write, so that the authentication verified meanwhile is not cached.
+     * @param cellId cell ID
+     * @param entitySetNames entity sets written, including both ends of the links written
+     */
+    public static void clear(String cellId, Collection<String> entitySetNames) {
+        if (!Collections.disjoint(DEPENDENCIES, entitySetNames)) {
+            clear(cellId);
+        }
+    }
+
+    /**
+     * Discard the entries of the cell.
+     * @param cellId cell ID
+     */
+    public static void clear(String cellId) {
+        BasicAuthCache cache = getInstance();
+        if (cache != null) {
+            cache.invalidate(cellId);
+        }
+    }
+
+    /**
+     * Get the current generation of the cell.
+     * Must be taken before reading the data to cache, so that changes made meanwhile invalidate the entry.
+     * @param cellId cell ID
+     * @return generation
+     */
+    long generation(String cellId) {
+        AtomicLong generation = generations.get(cellId);
+        return generation == null ? 0 : generation.get();
+    }
+
+    /**
+     * Discard the entries of the cell.
+     * @param cellId cell ID
+     */
+    void invalidate(String cellId) {
+        AtomicLong generation = generations.get(cellId);
+        if (generation == null) {
+            AtomicLong created = new AtomicLong();
+            generation = generations.putIfAbsent(cellId, created);
+            if (generation == null) {
+                generation = created;
+            }
+        }
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Get the verified authentication.
+     * @param cellId cell ID
+     * @param username user name
+     * @param password password
+     * @param now current time (ms)
+     * @return verified authentication. null if not cached.
+     */
+    Entry get(String cellId, String username, String password, long now) {
+        String key = key(cellId, username, password);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= now || entry.generation != generation(cellId)) {
+            remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Cache the verified authentication.
+     * @param cellId cell ID
+     * @param username user name
+     * @param password password
+     * @param generation generation of the cell taken before the verification
+     * @param accountId Account ID
+     * @param roles roles of the Account
+     * @param now current time (ms)
+     */
+    void put(String cellId, String username, String password, long generation,
+            String accountId, List<Role> roles, long now) {
+        if (generation != generation(cellId)) {
+            return;
+        }
+        Entry entry = new Entry(accountId, roles, generation, now + expiresInMillis);
+        String key = key(cellId, username, password);
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * Discard the entry.
+     * @param cellId cell ID
+     * @param username user name
+     * @param password password
+     */
+    void remove(String cellId, String username, String password) {
+        String key = key(cellId, username, password);
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    private void remove(String key, Entry entry) {
+        synchronized (entries) {
+            if (entries.get(key) == entry) {
+                entries.remove(key);
+            }
+        }
+    }
+
+    private String key(String cellId, String username, String password) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(hashKey, HMAC_ALGORITHM));
+            byte[] hash = mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+            return cellId + "\n" + username + "\n" + PersoniumCoreUtils.byteArray2HexString(hash);
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Verified authentication.
+     */
+    static final class Entry {
+        private final String accountId;
+        private final List<Role> roles;
+        private final long generation;
+        private final long expiresAt;
+
+        Entry(String accountId, List<Role> roles, long generation, long expiresAt) {
+            this.accountId = accountId;
+            this.roles = roles == null ? null : Collections.unmodifiableList(new ArrayList<Role>(roles));
+            this.generation = generation;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * @return Account ID
+         */
+        String getAccountId() {
+            return accountId;
+        }
+
+        /**
+         * @return roles of the Account
+         */
+        List<Role> getRoles() {
+            return roles == null ? null : new ArrayList<Role>(roles);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.auth;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.personium.common.auth.token.Role;
+import io.personium.core.model.jaxb.Ace;
+import io.personium.core.model.jaxb.Acl;
+
+/**
+ * ACL compiled for access checks.
+ * <p>
+ * The principal URLs are resolved against xml:base and the granted privileges are kept as bits
+ * when compiled, so that checking the access does neither resolve URLs nor look up privileges by name.
+ */
+public final class CompiledAcl {
+
+    private final List<CompiledAce> aces;
+
+    private CompiledAcl(List<CompiledAce> aces) {
+        this.aces = Collections.unmodifiableList(aces);
+    }
+
+    /**
+     * Compile the ACL.
+     * @param acl ACL
+     * @return compiled ACL
+     */
+    public static CompiledAcl compile(Acl acl) {
+        List<CompiledAce> ret = new ArrayList<CompiledAce>();
+        if (acl.getAceList() != null) {
+            for (Ace ace : acl.getAceList()) {
+                ret.add(new CompiledAce(acl.getBase(), ace));
+            }
+        }
+        return new CompiledAcl(ret);
+    }
+
+    /**
+     * Returns whether the ACL gives the privilege to the roles.
+     * @param roles roles of the access. null if no role is associated.
+     * @param resourcePrivilege Privilege required to access the resource
+     * @param cellUrl Cell URL
+     * @return true: accessible
+     */
+    boolean allows(List<Role> roles, Privilege resourcePrivilege, String cellUrl) {
+        Set<String> roleUrls = null;
+        for (CompiledAce ace : aces) {
+            //When an empty ace is set, it continues because there is no need for checking
+            if (ace.empty) {
+                continue;
+            }
+            //Accessible when Principal is all
+            if (ace.all) {
+                if (ace.grants(resourcePrivilege)) {
+                    return true;
+                }
+                continue;
+            }
+            //If a Role associated with Account does not exist, it is not accessible
+            if (roles == null) {
+                return false;
+            }
+            if (roles.isEmpty()) {
+                continue;
+            }
+            if (ace.principalUrl == null) {
+                return false;
+            }
+            if (roleUrls == null) {
+                roleUrls = new HashSet<String>();
+                for (Role role : roles) {
+                    roleUrls.add(role.localCreateUrl(cellUrl));
+                }
+            }
+            if (roleUrls.contains(ace.principalUrl) && (ace.root || ace.grants(resourcePrivilege))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Relative path resolution of configuration role URL.
+     * @param base The value of the xml:base attribute of the ACL
+     * @param principalHref principal-Href of ACL
+     * @return role URL. null if not resolved.
+     */
+    static String resolvePrincipalUrl(String base, String principalHref) {
+        if (base == null || "".equals(base)) {
+            //If xml: base is not set, treat it as full path setting to href
+            return principalHref;
+        }
+        if (principalHref == null) {
+            return null;
+        }
+        try {
+            return new URI(base).resolve(principalHref).toString();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * ACE compiled for access checks.
+     */
+    private static final class CompiledAce {
+        private final boolean empty;
+        private final boolean all;
+        private final boolean root;
+        private final String principalUrl;
+        /** Bits of the granted privileges looked up as cell level privileges. */
+        private final long cellBits;
+        /** Bits of the granted privileges looked up as box level privileges. */
+        private final long boxBits;
+
+        CompiledAce(String base, Ace ace) {
+            List<String> granted = ace.getGrantedPrivilegeList();
+            if (granted == null) {
+                granted = Collections.emptyList();
+            }
+            this.empty = granted.isEmpty() && ace.getPrincipalHref() == null;
+            this.all = ace.getPrincipalAll() != null;
+            this.root = granted.contains(CellPrivilege.ROOT.getName());
+            this.principalUrl = resolvePrincipalUrl(base, ace.getPrincipalHref());
+            long cell = 0;
+            long box = 0;
+            for (String name : granted) {
+                CellPrivilege cellPrivilege = Privilege.get(CellPrivilege.class, name);
+                if (cellPrivilege != null) {
+                    cell |= cellPrivilege.getBit();
+                }
+                BoxPrivilege boxPrivilege = Privilege.get(BoxPrivilege.class, name);
+                if (boxPrivilege != null) {
+                    box |= boxPrivilege.getBit();
+                }
+            }
+            this.cellBits = cell;
+            this.boxBits = box;
+        }
+
+        boolean grants(Privilege resourcePrivilege) {
+            long bits = resourcePrivilege.getClass() == CellPrivilege.class ? cellBits : boxBits;
+            return (bits & resourcePrivilege.getLineageBits()) != 0;
+        }
+    }
+}
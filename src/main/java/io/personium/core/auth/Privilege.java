@@ -16,6 +16,7 @@
  */
 package io.personium.core.auth;
 
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Privilege of WebDAV ACL.
@@ -40,6 +41,13 @@ public abstract class Privilege {
     /** Parent privilege. */
     private Privilege parent;
 
+    /** Number of Privileges created, used to assign a bit to each Privilege. */
+    private static final AtomicInteger COUNT = new AtomicInteger();
+    /** Bit of this Privilege. */
+    private final long bit;
+    /** Bits of this Privilege and its ancestors. */
+    private final long lineageBits;
+
     /**
      * Constructor.
      * @param name Name
@@ -50,6 +58,12 @@ public abstract class Privilege {
         this.name = name;
         this.accessType = accessType;
         this.parent = parent;
+        int index = COUNT.getAndIncrement();
+        if (index >= Long.SIZE) {
+            throw new IllegalStateException("Too many privileges: " + name);
+        }
+        this.bit = 1L << index;
+        this.lineageBits = parent == null ? bit : bit | parent.lineageBits;
     }
 
     /**
@@ -82,13 +96,24 @@ public abstract class Privilege {
      * True if it contains the Privilege specified by the @return argument
      */
     public boolean includes(final Privilege priv) {
-        if (this == priv) {
-            return true;
-        }
-        if (priv.parent == null) {
-            return false;
-        }
-        return this.includes(priv.parent);
+        return (priv.lineageBits & this.bit) != 0;
+    }
+
+    /**
+     * Get the bit of this Privilege.
+     * @return bit
+     */
+    long getBit() {
+        return bit;
+    }
+
+    /**
+     * Get the bits of this Privilege and its ancestors.
+     * A Privilege whose bit is included in them includes this Privilege.
+     * @return bits
+     */
+    long getLineageBits() {
+        return lineageBits;
     }
 
     /**
@@ -50,7 +50,7 @@ public class BarFile implements Closeable {
     public static final String CONTENT_TYPE = PersoniumCoreUtils.ContentType.CONTENT_TYPE_BAR;
 
     /** Directory name : meta. */
-    private static final String META_DIR = "00_meta";
+    public static final String META_DIR = "00_meta";
     /** File name : manifest. */
     public static final String MANIFEST_JSON = "00_manifest.json";
     /** File name : relations. */
@@ -19,12 +19,12 @@ package io.personium.core.bar;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.StringWriter;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.HttpHeaders;
@@ -43,6 +43,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import io.personium.core.PersoniumCoreException;
 import io.personium.core.PersoniumUnitConfig;
@@ -71,8 +72,6 @@ public class BarFileExporter {
     /** Logger. */
     private static Logger log = LoggerFactory.getLogger(BarFileExporter.class);
 
-    /** Extension of the bar file to be created. */
-    private static final String BAR_FILE_EXTENSION = ".bar";
     /** BarVersion. */
     private static final String BAR_VERSION = "2";
     /** BoxVersion. */
@@ -80,6 +79,9 @@ public class BarFileExporter {
     /** Limit when retrieving OData. */
     private static final int SEARCH_LIMIT = 1000;
 
+    /** Executor compressing files on export. Shared by all exports. */
+    private static volatile ExecutorService compressor;
+
     /** Target box rscmp. */
     private BoxRsCmp boxRsCmp;
 
@@ -93,147 +95,143 @@ public class BarFileExporter {
 
     /**
      * Export bar file.
+     * <p>
+     * The bar file is written directly to the response without a temporary file.
+     * Cell control objects are read before the response starts so that errors can still be returned as a status.
      * @return JAX-RS response
      */
     public Response export() {
-        // Start export.
-        log.info(String.format("Start export. BoxName:%s", boxRsCmp.getBox().getName()));
-        Cell cell = boxRsCmp.getCell();
-        Path barDirPath = Paths.get(PersoniumUnitConfig.getBarExportTempDir(), cell.getDataBundleName());
-        if (!Files.exists(barDirPath)) {
-            // Create temp directory.
-            try {
-                Files.createDirectories(barDirPath);
-            } catch (IOException e) {
-                throw PersoniumCoreException.Common.FILE_IO_ERROR.params("create bar export temp directory").reason(e);
-            }
-        }
-
-        String barFileName = boxRsCmp.getBox().getName() + UUID.randomUUID().toString() + BAR_FILE_EXTENSION;
-        Path barFilePath = barDirPath.resolve(barFileName);
-        try (BarFile barFile = BarFile.newInstance(barFilePath)) {
-            // init
-            barFile.initDirCreating();
-            // Make the contents of the zip file.
-            makeBarFile(barFile);
-        } catch (IOException e) {
-            throw PersoniumCoreException.Common.FILE_IO_ERROR.params("create bar file").reason(e);
-        }
-        log.info(String.format("End export. BoxName:%s", boxRsCmp.getBox().getName()));
+        final String boxName = boxRsCmp.getBox().getName();
+        log.info(String.format("Start export. BoxName:%s", boxName));
+        final String manifest = createManifestJson();
+        final String relations = createRelationsJson();
+        final String roles = createRolesJson();
+        final String rules = createRulesJson();
+        final Multistatus rootProps = boxRsCmp.getRootProps();
 
         // Create response.
         StreamingOutput streaming = new StreamingOutput() {
             @Override
             public void write(OutputStream output) throws IOException, WebApplicationException {
-                try {
-                    Files.copy(barFilePath, output);
-                } finally {
-                    Files.delete(barFilePath);
+                try (BarFileStreamWriter barFile = new BarFileStreamWriter(output, getCompressor(),
+                        PersoniumUnitConfig.getBarExportCompressBufferSize())) {
+                    barFile.initDirCreating();
+                    barFile.writeManifestJson(manifest);
+                    if (relations != null) {
+                        barFile.writeRelationsJson(relations);
+                    }
+                    if (roles != null) {
+                        barFile.writeRolesJson(roles);
+                    }
+                    if (rules != null) {
+                        barFile.writeRulesJson(rules);
+                    }
+                    barFile.writeRootPropsXml(rootProps);
+                    addContents(barFile);
+                    barFile.finish();
+                } catch (PersoniumCoreException e) {
+                    // The status is already sent, so the client only sees a truncated zip.
+                    log.warn(String.format("Export aborted. BoxName:%s", boxName), e);
+                    throw e;
                 }
+                log.info(String.format("End export. BoxName:%s", boxName));
             }
         };
-        Long fileSize;
-        try {
-            fileSize = Files.size(barFilePath);
-        } catch (IOException e) {
-            throw PersoniumCoreException.Common.FILE_IO_ERROR.params("read bar file").reason(e);
-        }
         return Response.ok(streaming)
-                .header(HttpHeaders.CONTENT_LENGTH, fileSize)
                 .header(HttpHeaders.CONTENT_TYPE, BarFile.CONTENT_TYPE)
                 .build();
     }
 
     /**
-     * Make the contents of the zip file.
-     * @param barFile bar file
+     * Get the executor compressing files on export.
+     * @return executor
      */
-    private void makeBarFile(BarFile barFile) {
-        addManifestToZip(barFile);
-        log.info(String.format("Added manifest json."));
-        addRelationsToZip(barFile);
-        log.info(String.format("Added relations json."));
-        addRolesToZip(barFile);
-        log.info(String.format("Added roles json."));
-        addRulesToZip(barFile);
-        log.info(String.format("Added rules json."));
-        addRootPropsToZip(barFile);
-        log.info(String.format("Added rootprops xml."));
-        addContents(barFile);
-        log.info(String.format("Added contents."));
+    private static ExecutorService getCompressor() {
+        if (compressor == null) {
+            synchronized (BarFileExporter.class) {
+                if (compressor == null) {
+                    ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+                    builder.setNameFormat("bar-export-compressor-%d");
+                    builder.setDaemon(true);
+                    compressor = Executors.newFixedThreadPool(
+                            PersoniumUnitConfig.getBarExportCompressThreadNum(), builder.build());
+                }
+            }
+        }
+        return compressor;
     }
 
     /**
-     * Generate manifest and add it to the zip file.
-     * @param barFile bar file
+     * Generate manifest json.
+     * @return manifest json
      */
-    private void addManifestToZip(BarFile barFile) {
+    private String createManifestJson() {
         String defaultPath = boxRsCmp.getBox().getName();
         String schema = boxRsCmp.getBox().getSchema();
         JSONManifest manifest = new JSONManifest(BAR_VERSION, BOX_VERSION, defaultPath, schema);
         ObjectMapper mapper = new ObjectMapper();
         try {
-            barFile.writeManifestJson(mapper.writeValueAsString(manifest));
+            return mapper.writeValueAsString(manifest);
         } catch (IOException e) {
             throw PersoniumCoreException.Common.FILE_IO_ERROR.params("create manifest json").reason(e);
         }
     }
 
     /**
-     * Get relations data and add it to the zip file.
-     * @param barFile bar file
+     * Get relations data and generate json.
+     * @return relations json. null if no relation is linked to the box.
      */
-    private void addRelationsToZip(BarFile barFile) {
+    private String createRelationsJson() {
         List<OrderByExpression> orderBy = QueryParser.parseOderByQuery(Relation.P_NAME.getName());
         JSONRelations relations = searchCellCtlObjectsLinkedToBox(Relation.EDM_TYPE_NAME, orderBy, JSONRelations.class);
 
         if (relations.getRelations().isEmpty()) {
-            return;
+            return null;
         }
 
         ObjectMapper mapper = new ObjectMapper();
         try {
-            barFile.writeRelationsJson(mapper.writeValueAsString(relations));
+            return mapper.writeValueAsString(relations);
         } catch (IOException e) {
             throw PersoniumCoreException.Common.FILE_IO_ERROR.params("create relations json").reason(e);
         }
     }
 
     /**
-     * Get roles data and add it to the zip file.
-     * @param barFile bar file
+     * Get roles data and generate json.
+     * @return roles json. null if no role is linked to the box.
      */
-    private void addRolesToZip(BarFile barFile) {
+    private String createRolesJson() {
         List<OrderByExpression> orderBy = QueryParser.parseOderByQuery(Common.P_NAME.getName());
         JSONRoles roles = searchCellCtlObjectsLinkedToBox(Role.EDM_TYPE_NAME, orderBy, JSONRoles.class);
 
         if (roles.getRoles().isEmpty()) {
-            return;
+            return null;
         }
 
         ObjectMapper mapper = new ObjectMapper();
         try {
-            barFile.writeRolesJson(mapper.writeValueAsString(roles));
+            return mapper.writeValueAsString(roles);
         } catch (IOException e) {
             throw PersoniumCoreException.Common.FILE_IO_ERROR.params("create roles json").reason(e);
         }
     }
 
     /**
-     * Get rules data and add it to the zip file.
-     * @param barFile bar file
+     * Get rules data and generate json.
+     * @return rules json. null if no rule is linked to the box.
      */
-    private void addRulesToZip(BarFile barFile) {
+    private String createRulesJson() {
         List<OrderByExpression> orderBy = QueryParser.parseOderByQuery(Rule.P_NAME.getName());
         JSONRules rules = searchCellCtlObjectsLinkedToBox(Rule.EDM_TYPE_NAME, orderBy, JSONRules.class);
 
         if (rules.getRules().isEmpty()) {
-            return;
+            return null;
         }
 
         ObjectMapper mapper = new ObjectMapper();
         try {
-            barFile.writeRulesJson(mapper.writeValueAsString(rules));
+            return mapper.writeValueAsString(rules);
         } catch (IOException e) {
             throw PersoniumCoreException.Common.FILE_IO_ERROR.params("create rules json").reason(e);
         }
@@ -270,7 +268,7 @@ public class BarFileExporter {
             EntitiesResponse response = (EntitiesResponse) producer.getNavProperty(
                     Box.EDM_TYPE_NAME, entityKey, "_" + edmTypeName, queryInfo);
             jsonObjects.addObjects(response.getEntities());
-            if (SEARCH_LIMIT > response.getInlineCount()) {
+            if (skip + SEARCH_LIMIT >= response.getInlineCount()) {
                 break;
             }
             // If the data still exists, continue to acquire the data.
@@ -280,20 +278,11 @@ public class BarFileExporter {
         return clazz.cast(jsonObjects);
     }
 
-    /**
-     * Get rootprops data and add it to the zip file.
-     * @param barFile bar file
-     */
-    private void addRootPropsToZip(BarFile barFile) {
-        Multistatus multistatus = boxRsCmp.getRootProps();
-        barFile.writeRootPropsXml(multistatus);
-    }
-
     /**
      * Create contents file and add it to zip file.
      * @param barFile bar file
      */
-    private void addContents(BarFile barFile) {
+    private void addContents(BarFileStreamWriter barFile) {
         Map<String, DavCmp> childrenMap = boxRsCmp.getDavCmp().getChildren();
         for (String childName : childrenMap.keySet()) {
             Path path = Paths.get(childName);
@@ -309,7 +298,7 @@ public class BarFileExporter {
      * @param path Relative path under the contents dir
      * @param davCmp Target contents
      */
-    private void addContentsRecurcive(BarFile barFile, Path path, DavCmp davCmp) {
+    private void addContentsRecurcive(BarFileStreamWriter barFile, Path path, DavCmp davCmp) {
         String type = davCmp.getType();
         if (DavCmp.TYPE_COL_WEBDAV.equals(type)
                 || DavCmp.TYPE_COL_SVC.equals(type)) {
@@ -336,7 +325,7 @@ public class BarFileExporter {
             Response response = davCmp.get(null).build();
             StreamingOutput stream = (StreamingOutput) response.getEntity();
             // Create file in zip.
-            barFile.createFileInContentsDir(path, stream);
+            barFile.createFileInContentsDir(path, stream, davCmp.getContentLength());
         }
     }
 }
@@ -27,6 +27,7 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -34,6 +35,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -42,6 +49,7 @@ import javax.ws.rs.ext.RuntimeDelegate;
 
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.CloseShieldInputStream;
 import org.apache.wink.webdav.model.Getcontenttype;
@@ -80,6 +88,7 @@ import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import io.personium.common.es.util.PersoniumUUID;
 import io.personium.common.utils.PersoniumCoreUtils;
@@ -154,6 +163,9 @@ public class BarFileReadRunner implements Runnable {
     private static final int TYPE_SVC_FILE = 4;
     private static final int TYPE_MISMATCH = -1;
 
+    /** Executor installing the contents. Shared by all installations. */
+    private static volatile ExecutorService contentsExecutor;
+
     private Map<String, Boolean> barFileOrder;
     private File barFile;
     private ZipArchiveInputStream zipArchiveInputStream;
@@ -272,7 +284,7 @@ public class BarFileReadRunner implements Runnable {
                     log.debug("Entry Size: " + zae.getSize());
                     log.debug("Entry Compressed Size: " + zae.getCompressedSize());
                     if (!zae.isDirectory()) {
-                        this.progressInfo.addDelta(1L);
+                        addProgressDelta();
                     }
 
                     //Analysis & data registration of entry in bar file
@@ -484,158 +496,297 @@ public class BarFileReadRunner implements Runnable {
     }
 
     /**
-     * Read one content data (bar/90_contents) in the bar file and register it.
+     * Read the contents data (bar/90_contents) in the bar file and register it.
+     * <p>
+     * Entries are read from the central directory and grouped into units which do not depend on each other,
+     * that is the files of one WebDAV or service collection, or one OData collection.
+     * Units are installed concurrently, and the entries of a unit are installed in the order of the bar file.
      * @return boolean Processing result true:success false:failure
      */
     protected boolean createContents() {
-        boolean isSuccess = true;
         // Create a map for each collection type.
-        Map<String, DavCmp> odataCols = getCollections(DavCmp.TYPE_COL_ODATA);
-        Map<String, DavCmp> webdavCols = getCollections(DavCmp.TYPE_COL_WEBDAV);
+        final Map<String, DavCmp> odataCols = getCollections(DavCmp.TYPE_COL_ODATA);
+        final Map<String, DavCmp> webdavCols = getCollections(DavCmp.TYPE_COL_WEBDAV);
         // Since it may be referred to as parent, Box must be registered.
         webdavCols.putAll(getCollections(DavCmp.TYPE_COL_BOX));
-        Map<String, DavCmp> serviceCols = getCollections(DavCmp.TYPE_COL_SVC);
+        final Map<String, DavCmp> serviceCols = getCollections(DavCmp.TYPE_COL_SVC);
 
-        DavCmp davCmp = null;
+        boolean isSuccess = true;
         List<String> doneKeys = new ArrayList<String>();
-        try {
-            ZipArchiveEntry zae = null;
-            String currentPath = null;
-            int userDataCount = 0;
-            List<IJSONMappedObject> userDataLinks = new ArrayList<IJSONMappedObject>();
-            LinkedHashMap<String, BulkRequest> bulkRequests = new LinkedHashMap<String, BulkRequest>();
-            Map<String, String> fileNameMap = new HashMap<String, String>();
-            PersoniumODataProducer producer = null;
-
-            while ((zae = this.zipArchiveInputStream.getNextZipEntry()) != null) {
+        try (final ZipFile zipFile = new ZipFile(this.barFile)) {
+            Map<String, List<ZipArchiveEntry>> units = new LinkedHashMap<String, List<ZipArchiveEntry>>();
+            boolean isContents = false;
+            Enumeration<ZipArchiveEntry> entries = zipFile.getEntriesInPhysicalOrder();
+            while (entries.hasMoreElements()) {
+                ZipArchiveEntry zae = entries.nextElement();
                 String entryName = zae.getName();
-                log.debug("Entry Name: " + entryName);
-                log.debug("Entry Size: " + zae.getSize());
-                log.debug("Entry Compressed Size: " + zae.getCompressedSize());
-                if (!zae.isDirectory()) {
-                    this.progressInfo.addDelta(1L);
+                if (!isContents) {
+                    // Entries up to 90_contents are already processed as metadata.
+                    isContents = CONTENTS_DIR.equals(entryName);
+                    continue;
                 }
-                writeOutputStream(false, CODE_BAR_INSTALL_STARTED, entryName);
-
-                //When processing changes from ODataCollection to Dav / ServiceCollection / another ODataCollection resource
-                //If it is necessary to register the user data or link, the process is executed
-                if (currentPath != null && !entryName.startsWith(currentPath)) {
-                    if (!execBulkRequest(davCmp.getCell().getId(), bulkRequests, fileNameMap, producer)) {
-                        return false;
+                int entryType = getEntryType(entryName, odataCols, webdavCols, serviceCols, this.davFileContentTypeMap);
+                if (entryType == TYPE_MISMATCH) {
+                    //Entries not under the OData collection and not defined in rootprops
+                    String message = PersoniumCoreMessageUtils.getMessage("PL-BI-2006");
+                    log.info(message + " [" + entryName + "]");
+                    writeOutputStream(true, "PL-BI-1004", entryName, message);
+                    return false;
+                }
+                String unitKey = getContentsUnitKey(entryName, entryType, odataCols, serviceCols);
+                List<ZipArchiveEntry> unit = units.get(unitKey);
+                if (unit == null) {
+                    unit = new ArrayList<ZipArchiveEntry>();
+                    units.put(unitKey, unit);
+                }
+                unit.add(zae);
+            }
+
+            final AtomicBoolean aborted = new AtomicBoolean(false);
+            List<Future<List<String>>> futures = new ArrayList<Future<List<String>>>();
+            for (final List<ZipArchiveEntry> unit : units.values()) {
+                futures.add(getContentsExecutor().submit(new Callable<List<String>>() {
+                    @Override
+                    public List<String> call() throws IOException {
+                        List<String> unitDoneKeys = new ArrayList<String>();
+                        if (!createContentsUnit(zipFile, unit, odataCols, webdavCols, serviceCols,
+                                unitDoneKeys, aborted)) {
+                            aborted.set(true);
+                        }
+                        return unitDoneKeys;
                     }
-                    if (!createUserdataLinks(producer, userDataLinks)) {
-                        return false;
+                }));
+            }
+
+            // Wait for all the units so that the bar file is not deleted while being read.
+            RuntimeException unexpected = null;
+            for (Future<List<String>> future : futures) {
+                try {
+                    doneKeys.addAll(future.get());
+                } catch (ExecutionException e) {
+                    aborted.set(true);
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        unexpected = (RuntimeException) cause;
+                    } else {
+                        unexpected = new RuntimeException(cause);
                     }
-                    userDataLinks = new ArrayList<IJSONMappedObject>();
-                    currentPath = null;
                 }
-                int entryType = getEntryType(entryName, odataCols, webdavCols, serviceCols, this.davFileContentTypeMap);
+            }
+            if (unexpected != null) {
+                throw unexpected;
+            }
+            isSuccess = !aborted.get();
+        } catch (IOException ex) {
+            isSuccess = false;
+            log.info("IOException: " + ex.getMessage(), ex.fillInStackTrace());
+            String message = PersoniumCoreMessageUtils.getMessage("PL-BI-2000");
+            writeOutputStream(true, CODE_BAR_INSTALL_FAILED, "", message);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            isSuccess = false;
+            log.info("Interrupted: " + ex.getMessage(), ex.fillInStackTrace());
+            String message = PersoniumCoreMessageUtils.getMessage("PL-BI-2000");
+            writeOutputStream(true, CODE_BAR_INSTALL_FAILED, "", message);
+        }
+        //Confirm mandatory data (bar / 90_contents / {odatacol_name} / 00 _ $ metadata.xml)
+        isSuccess = checkNecessaryFile(isSuccess, odataCols, doneKeys);
+        return isSuccess;
+    }
+
+    /**
+     * Get the key of the unit installed sequentially which the entry belongs to.
+     * @param entryName bar File entry name
+     * @param entryType entry type
+     * @param odataCols List of OData collections
+     * @param serviceCols List of service collections
+     * @return unit key
+     */
+    protected String getContentsUnitKey(String entryName, int entryType,
+            Map<String, DavCmp> odataCols, Map<String, DavCmp> serviceCols) {
+        switch (entryType) {
+        case TYPE_ODATA_COLLECTION:
+            return getParentCollectionPath(entryName, odataCols);
+        case TYPE_SVC_FILE:
+            return getParentCollectionPath(entryName, serviceCols);
+        case TYPE_DAV_FILE:
+            // Files in the same collection share the children count limit.
+            return entryName.substring(0, entryName.lastIndexOf("/") + 1);
+        default:
+            return entryName;
+        }
+    }
+
+    private String getParentCollectionPath(String entryName, Map<String, DavCmp> collections) {
+        String colPath = entryName;
+        int length = 0;
+        for (String path : collections.keySet()) {
+            if (entryName.startsWith(path) && path.length() > length) {
+                colPath = path;
+                length = path.length();
+            }
+        }
+        return colPath;
+    }
+
+    /**
+     * Register the entries of a unit in order.
+     * @param zipFile bar file
+     * @param unit entries of the unit
+     * @param odataCols List of OData collections
+     * @param webdavCols List of WebDAV collections
+     * @param serviceCols List of service collections
+     * @param doneKeys List to add the processed entries
+     * @param aborted flag set when another unit failed
+     * @return boolean Processing result true:success false:failure
+     * @throws IOException bar file read error
+     */
+    private boolean createContentsUnit(ZipFile zipFile, List<ZipArchiveEntry> unit,
+            Map<String, DavCmp> odataCols, Map<String, DavCmp> webdavCols, Map<String, DavCmp> serviceCols,
+            List<String> doneKeys, AtomicBoolean aborted) throws IOException {
+        DavCmp davCmp = null;
+        String currentPath = null;
+        int userDataCount = 0;
+        List<IJSONMappedObject> userDataLinks = new ArrayList<IJSONMappedObject>();
+        LinkedHashMap<String, BulkRequest> bulkRequests = new LinkedHashMap<String, BulkRequest>();
+        Map<String, String> fileNameMap = new HashMap<String, String>();
+        PersoniumODataProducer producer = null;
+
+        for (ZipArchiveEntry zae : unit) {
+            if (aborted.get()) {
+                return false;
+            }
+            String entryName = zae.getName();
+            log.debug("Entry Name: " + entryName);
+            log.debug("Entry Size: " + zae.getSize());
+            log.debug("Entry Compressed Size: " + zae.getCompressedSize());
+            if (!zae.isDirectory()) {
+                addProgressDelta();
+            }
+            writeOutputStream(false, CODE_BAR_INSTALL_STARTED, entryName);
+
+            //When processing changes from ODataCollection to another resource
+            //If it is necessary to register the user data or link, the process is executed
+            if (currentPath != null && !entryName.startsWith(currentPath)) {
+                if (!execBulkRequest(davCmp.getCell().getId(), bulkRequests, fileNameMap, producer)) {
+                    return false;
+                }
+                if (!createUserdataLinks(producer, userDataLinks)) {
+                    return false;
+                }
+                userDataLinks = new ArrayList<IJSONMappedObject>();
+                currentPath = null;
+            }
+            int entryType = getEntryType(entryName, odataCols, webdavCols, serviceCols, this.davFileContentTypeMap);
+            try (InputStream inputStream = zipFile.getInputStream(zae)) {
                 switch (entryType) {
                 case TYPE_ODATA_COLLECTION:
                     //Register OData Collection
-                    if (!odataCols.isEmpty()) {
-                        if (!isValidODataContents(entryName, odataCols, doneKeys)) {
+                    if (!isValidODataContents(entryName, odataCols, doneKeys)) {
+                        return false;
+                    }
+                    Pattern formatPattern = Pattern.compile(CONTENTS_DIR + ".+/90_data/");
+                    Matcher formatMatcher = formatPattern.matcher(entryName);
+                    if (formatMatcher.matches()) {
+                        currentPath = entryName;
+                    }
+                    Pattern userodataDirPattern = Pattern.compile(CONTENTS_DIR + ".+/90_data/.+");
+                    Matcher userodataDirMatcher = userodataDirPattern.matcher(entryName);
+
+                    if (getFileExtension(entryName).equals(".xml")) {
+                        //Analysis of 00_ $ metadata.xml · User schema registration
+                        davCmp = getCollection(entryName, odataCols);
+                        //Update Producer if OData's collection switches
+                        producer = davCmp.getODataProducer();
+                        boolean registered = registUserSchema(entryName, inputStream, davCmp);
+                        doneKeys.add(entryName);
+                        if (!registered) {
                             return false;
                         }
-                        Pattern formatPattern = Pattern.compile(CONTENTS_DIR + ".+/90_data/");
-                        Matcher formatMatcher = formatPattern.matcher(entryName);
-                        if (formatMatcher.matches()) {
-                            currentPath = entryName;
+                        writeOutputStream(false, "PL-BI-1003", entryName);
+                        continue;
+                    } else if (entryName.endsWith(USERDATA_LINKS_JSON)) {
+                        userDataLinks = registJsonLinksUserdata(entryName, inputStream);
+                        doneKeys.add(entryName);
+                        if (userDataLinks == null) {
+                            return false;
                         }
-                        Pattern userodataDirPattern = Pattern.compile(CONTENTS_DIR + ".+/90_data/.+");
-                        Matcher userodataDirMatcher = userodataDirPattern.matcher(entryName);
-
-                        if (getFileExtension(entryName).equals(".xml")) {
-                            //Analysis of 00_ $ metadata.xml · User schema registration
-                            davCmp = getCollection(entryName, odataCols);
-                            //Update Producer if OData's collection switches
-                            producer = davCmp.getODataProducer();
-                            if (!registUserSchema(entryName, this.zipArchiveInputStream, davCmp)) {
-                                doneKeys.add(entryName);
-                                return false;
-                            }
-                            writeOutputStream(false, "PL-BI-1003", entryName);
-                            doneKeys.add(entryName);
-                            continue;
-                        } else if (entryName.endsWith(USERDATA_LINKS_JSON)) {
-                            userDataLinks = registJsonLinksUserdata(entryName, this.zipArchiveInputStream);
-                            if (userDataLinks == null) {
-                                doneKeys.add(entryName);
-                                return false;
-                            }
-                            writeOutputStream(false, "PL-BI-1003", entryName);
-                            doneKeys.add(entryName);
-                            continue;
-                        } else if (userodataDirMatcher.matches() && getFileExtension(entryName).equals(".json")) {
-                            userDataCount++;
-                            if (!setBulkRequests(entryName, producer, bulkRequests, fileNameMap)) {
-                                return false;
-                            }
-                            doneKeys.add(entryName);
+                        writeOutputStream(false, "PL-BI-1003", entryName);
+                        continue;
+                    } else if (userodataDirMatcher.matches() && getFileExtension(entryName).equals(".json")) {
+                        userDataCount++;
+                        if (!setBulkRequests(entryName, inputStream, producer, bulkRequests, fileNameMap)) {
+                            return false;
+                        }
+                        doneKeys.add(entryName);
 
-                            if ((userDataCount % bulkSize) == 0
-                                    && !execBulkRequest(davCmp.getCell().getId(),
-                                            bulkRequests, fileNameMap, producer)) {
-                                return false;
-                            }
-                            continue;
-                        } else if (!entryName.endsWith("/")) {
-                            //If there are files other than xml and json files, return error
-                            String message = PersoniumCoreMessageUtils.getMessage("PL-BI-2001");
-                            log.info(message + " [" + entryName + "]");
-                            writeOutputStream(true, "PL-BI-1004", entryName, message);
+                        if ((userDataCount % bulkSize) == 0
+                                && !execBulkRequest(davCmp.getCell().getId(),
+                                        bulkRequests, fileNameMap, producer)) {
                             return false;
                         }
+                        continue;
+                    } else if (!entryName.endsWith("/")) {
+                        //If there are files other than xml and json files, return error
+                        String message = PersoniumCoreMessageUtils.getMessage("PL-BI-2001");
+                        log.info(message + " [" + entryName + "]");
+                        writeOutputStream(true, "PL-BI-1004", entryName, message);
+                        return false;
                     }
                     break;
 
                 case TYPE_DAV_FILE:
-                    //Create a WebDAV collection
                     //Register entries under bar / 90_contents / {davcol_name} one by one
-                    if (!registWebDavFile(entryName, this.zipArchiveInputStream, webdavCols)) {
+                    if (!registWebDavFile(entryName, inputStream, webdavCols)) {
                         return false;
                     }
                     break;
 
                 case TYPE_SVC_FILE:
                     //Creating a Service collection
-                    if (!installSvcCollection(webdavCols, entryName)) {
+                    if (!installSvcCollection(webdavCols, entryName, inputStream)) {
                         return false;
                     }
                     break;
 
-                case TYPE_MISMATCH:
-                    //Entries not under the OData collection and not defined in rootprops
-                    String message = PersoniumCoreMessageUtils.getMessage("PL-BI-2006");
-                    log.info(message + " [" + entryName + "]");
-                    writeOutputStream(true, "PL-BI-1004", entryName, message);
-                    return false;
-
                 default:
                     break;
                 }
-                writeOutputStream(false, "PL-BI-1003", entryName);
-                doneKeys.add(entryName);
             }
-            //When processing on resources of ODataCollection is finished, if registration of user data and link registration is necessary, it is executed
-            if (currentPath != null) {
-                if (!execBulkRequest(davCmp.getCell().getId(), bulkRequests, fileNameMap, producer)) {
-                    return false;
-                }
-                if (!createUserdataLinks(producer, userDataLinks)) {
-                    return false;
+            writeOutputStream(false, "PL-BI-1003", entryName);
+            doneKeys.add(entryName);
+        }
+        //When processing on resources of ODataCollection is finished, if registration of user data and link registration is necessary, it is executed
+        if (currentPath != null) {
+            if (!execBulkRequest(davCmp.getCell().getId(), bulkRequests, fileNameMap, producer)) {
+                return false;
+            }
+            if (!createUserdataLinks(producer, userDataLinks)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the executor installing the contents.
+     * @return executor
+     */
+    private static ExecutorService getContentsExecutor() {
+        if (contentsExecutor == null) {
+            synchronized (BarFileReadRunner.class) {
+                if (contentsExecutor == null) {
+                    ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+                    builder.setNameFormat("bar-install-contents-%d");
+                    builder.setDaemon(true);
+                    contentsExecutor = Executors.newFixedThreadPool(
+                            PersoniumUnitConfig.getBarInstallContentsThreadNum(), builder.build());
                 }
-                userDataLinks = null;
             }
-        } catch (IOException ex) {
-            isSuccess = false;
-            log.info("IOException: " + ex.getMessage(), ex.fillInStackTrace());
-            String message = PersoniumCoreMessageUtils.getMessage("PL-BI-2000");
-            writeOutputStream(true, CODE_BAR_INSTALL_FAILED, "", message);
         }
-        //Confirm mandatory data (bar / 90_contents / {odatacol_name} / 00 _ $ metadata.xml)
-        isSuccess = checkNecessaryFile(isSuccess, odataCols, doneKeys);
-        return isSuccess;
+        return contentsExecutor;
     }
 
     private boolean checkNecessaryFile(boolean isSuccess, Map<String, DavCmp> odataCols, List<String> doneKeys) {
@@ -651,7 +802,8 @@ public class BarFileReadRunner implements Runnable {
         return isSuccess;
     }
 
-    private boolean installSvcCollection(Map<String, DavCmp> webdavCols, String entryName) {
+    private boolean installSvcCollection(Map<String, DavCmp> webdavCols, String entryName,
+            InputStream inputStream) {
         //Register entries under the bar / 90_contents / {svccol_name} one by one as WebDAV / service
         //Convert {serviceCollection} / {scriptName} to {serviceCollection} / __ src / {scriptName}
         int lastSlashIndex = entryName.lastIndexOf("/");
@@ -660,13 +812,14 @@ public class BarFileReadRunner implements Runnable {
         serviceSrcName.append("/__src");
         serviceSrcName.append(entryName.substring(lastSlashIndex));
 
-        if (!registWebDavFile(serviceSrcName.toString(), this.zipArchiveInputStream, webdavCols)) {
+        if (!registWebDavFile(serviceSrcName.toString(), inputStream, webdavCols)) {
             return false;
         }
         return true;
     }
 
     private boolean setBulkRequests(String entryName,
+            InputStream inputStream,
             PersoniumODataProducer producer,
             LinkedHashMap<String, BulkRequest> bulkRequests,
             Map<String, String> fileNameMap) {
@@ -680,7 +833,7 @@ public class BarFileReadRunner implements Runnable {
             }
 
             //Get JSON of user data in StringReader format from ZipArchiveImputStream
-            StringReader stringReader = getStringReaderFromZais();
+            StringReader stringReader = getStringReader(inputStream);
 
             //Generate request body
             ODataResource odataResource = odataEntityResource.getOdataResource();
@@ -693,8 +846,6 @@ public class BarFileReadRunner implements Runnable {
             docHandler.setType(docType);
             docHandler.setEntityTypeId(userDataProducer.getEntityTypeId(oEntity.getEntitySetName()));
 
-            odataEntityResource.setOdataProducer(userDataProducer);
-
             //ID conflict check in data
             //TODO compound primary key correspondence, unique key check, NTKP compliant
             key = oEntity.getEntitySetName() + ":" + (String) docHandler.getStaticFields().get("__id");
@@ -720,9 +871,9 @@ public class BarFileReadRunner implements Runnable {
         return true;
     }
 
-    private StringReader getStringReaderFromZais() throws IOException {
+    private StringReader getStringReader(InputStream inputStream) throws IOException {
         BufferedReader bufferedReader = new BufferedReader(
-                new InputStreamReader(this.zipArchiveInputStream, "UTF-8"));
+                new InputStreamReader(inputStream, "UTF-8"));
         StringBuffer buf = new StringBuffer();
         String str = null;
         while ((str = bufferedReader.readLine()) != null) {
@@ -1685,7 +1836,7 @@ public class BarFileReadRunner implements Runnable {
      * @param detail
      * Detailed information on processing failure (PL-BI-2xxx)
      */
-    private void writeOutputStream(boolean isError, String code, String path, String detail) {
+    private synchronized void writeOutputStream(boolean isError, String code, String path, String detail) {
         String message = PersoniumCoreMessageUtils.getMessage(code);
         if (detail == null) {
             message = message.replace("{0}", "");
@@ -1698,6 +1849,13 @@ public class BarFileReadRunner implements Runnable {
         log.info(output);
     }
 
+    /**
+     * Count up the processed entries.
+     */
+    private synchronized void addProgressDelta() {
+        this.progressInfo.addDelta(1L);
+    }
+
     /**
      * Output the installation processing status to EventBus as an internal event.
      * @param isError Specify true on error, false otherwise.
@@ -2259,12 +2417,10 @@ public class BarFileReadRunner implements Runnable {
                 userMetadata = CtlSchema.getEdmDataServicesForODataSvcSchema().build();
             }
             Map<String, String> entityTypeIds = producer.getEntityTypeIds();
-            odataEntityResource.setEntitySetName(EntityType.EDM_TYPE_NAME);
             JSONObject json = new JSONObject();
             json.put("Name", entity.getName());
             StringReader stringReader = new StringReader(json.toJSONString());
-            OEntityWrapper oew = odataEntityResource.getOEntityWrapper(stringReader,
-                    odataEntityResource.getOdataResource(), userMetadata);
+            OEntityWrapper oew = getUserSchemaOEntityWrapper(EntityType.EDM_TYPE_NAME, stringReader, userMetadata);
             //Register EntityType
             String path = String.format("/%s/%s/%s/EntityType('%s')",
                     this.cell.getName(), this.boxName, davCmp.getName(), entity.getName());
@@ -2301,7 +2457,6 @@ public class BarFileReadRunner implements Runnable {
             }
             if (userMetadata == null) {
                 userMetadata = CtlSchema.getEdmDataServicesForODataSvcSchema().build();
-                odataEntityResource.setEntitySetName(edmTypeName);
             }
             CollectionKind kind = property.getCollectionKind();
             if (kind != null && !kind.equals(CollectionKind.NONE) && !kind.equals(CollectionKind.List)) {
@@ -2325,8 +2480,7 @@ public class BarFileReadRunner implements Runnable {
             json.put("DefaultValue", property.getDefaultValue());
             json.put("CollectionKind", property.getCollectionKind().toString());
             StringReader stringReader = new StringReader(json.toJSONString());
-            OEntityWrapper oew = odataEntityResource.getOEntityWrapper(stringReader,
-                    odataEntityResource.getOdataResource(), userMetadata);
+            OEntityWrapper oew = getUserSchemaOEntityWrapper(edmTypeName, stringReader, userMetadata);
             //Register ComplexTypeProperty
             producer.createEntity(edmTypeName, oew);
         }
@@ -2348,7 +2502,6 @@ public class BarFileReadRunner implements Runnable {
             if (producer == null) {
                 producer = davCmp.getSchemaODataProducer(this.cell);
                 userMetadata = CtlSchema.getEdmDataServicesForODataSvcSchema().build();
-                odataEntityResource.setEntitySetName(AssociationEnd.EDM_TYPE_NAME);
             }
             String path = String.format("/%s/%s/%s/Association('%s','%s')",
                     this.cell.getName(), this.boxName, davCmp.getName(),
@@ -2409,8 +2562,7 @@ public class BarFileReadRunner implements Runnable {
         json.put(AssociationEnd.P_ENTITYTYPE_NAME.getName(), entityTypeName);
         json.put(AssociationEnd.P_MULTIPLICITY.getName(), associationEnd.getMultiplicity().getSymbolString());
         StringReader stringReader = new StringReader(json.toJSONString());
-        OEntityWrapper oew = odataEntityResource.getOEntityWrapper(stringReader,
-                odataEntityResource.getOdataResource(), userMetadata);
+        OEntityWrapper oew = getUserSchemaOEntityWrapper(AssociationEnd.EDM_TYPE_NAME, stringReader, userMetadata);
         producer.createEntity(AssociationEnd.EDM_TYPE_NAME, oew);
     }
 
@@ -2431,12 +2583,10 @@ public class BarFileReadRunner implements Runnable {
                 producer = davCmp.getSchemaODataProducer(this.cell);
                 userMetadata = CtlSchema.getEdmDataServicesForODataSvcSchema().build();
             }
-            odataEntityResource.setEntitySetName(ComplexType.EDM_TYPE_NAME);
             JSONObject json = new JSONObject();
             json.put("Name", complexType.getName());
             StringReader stringReader = new StringReader(json.toJSONString());
-            OEntityWrapper oew = odataEntityResource.getOEntityWrapper(stringReader,
-                    odataEntityResource.getOdataResource(), userMetadata);
+            OEntityWrapper oew = getUserSchemaOEntityWrapper(ComplexType.EDM_TYPE_NAME, stringReader, userMetadata);
             //Register ComplexType
             String path = String.format("/%s/%s/%s/ComplexType('%s')",
                     this.cell.getName(), this.boxName, davCmp.getName(), complexType.getName());
@@ -2450,6 +2600,22 @@ public class BarFileReadRunner implements Runnable {
         }
     }
 
+    /**
+     * Get the OEntityWrapper of the user schema entity to register.
+     * A resource is created for each entity, so that the units installed in parallel
+     * do not share the entity set name of odataEntityResource.
+     * @param edmTypeName entity set name of the user schema
+     * @param reader JSON of the entity
+     * @param userMetadata user schema metadata
+     * @return OEntityWrapper
+     */
+    private OEntityWrapper getUserSchemaOEntityWrapper(String edmTypeName, Reader reader,
+            EdmDataServices userMetadata) {
+        ODataResource odataResource = odataEntityResource.getOdataResource();
+        ODataEntitiesResource resource = new ODataEntitiesResource(odataResource, edmTypeName);
+        return resource.getOEntityWrapper(reader, odataResource, userMetadata);
+    }
+
     private Reader getProppatchXml(List<Element> propElements) {
         StringBuffer sbPropXml = new StringBuffer();
         sbPropXml.append("<D:propertyupdate xmlns:D=\"DAV:\"");
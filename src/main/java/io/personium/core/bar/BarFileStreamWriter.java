@@ -0,0 +1,409 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.bar;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.io.Charsets;
+import org.apache.wink.webdav.model.Multistatus;
+
+import io.personium.core.PersoniumCoreException;
+
+/**
+ * Class that writes a bar file directly to a stream.
+ * <p>
+ * Entries are emitted in the order they are added.
+ * Files whose size is within the buffer limit are deflated in parallel by the given executor,
+ * and the compressed data waits in memory until all the preceding entries are written.
+ * The total size of such waiting files never exceeds the buffer limit.
+ * Larger files are deflated by the calling thread while being written.
+ */
+public class BarFileStreamWriter implements Closeable {
+
+    /** Zip stream to write to. */
+    private final ZipArchiveOutputStream zipOutput;
+    /** Executor that deflates the files. */
+    private final ExecutorService compressor;
+    /** Upper limit of the total size of the files being deflated or waiting to be written. */
+    private final long bufferLimit;
+    /** Entries not written yet. */
+    private final Deque<PendingEntry> pendingEntries = new ArrayDeque<>();
+    /** Total size of the files in pendingEntries. */
+    private long pendingBytes = 0;
+
+    /**
+     * Constructor.
+     * @param output stream to write the bar file
+     * @param compressor executor that deflates the files
+     * @param bufferLimit upper limit of the total size of the files deflated in parallel (byte)
+     */
+    public BarFileStreamWriter(OutputStream output, ExecutorService compressor, long bufferLimit) {
+        this.zipOutput = new ZipArchiveOutputStream(output);
+        this.zipOutput.setEncoding(Charsets.UTF_8.name());
+        this.compressor = compressor;
+        this.bufferLimit = bufferLimit;
+    }
+
+    /**
+     * Create necessary directory in zip.
+     */
+    public void initDirCreating() {
+        addDirectory(BarFile.META_DIR + "/");
+        addDirectory(BarFile.CONTENTS_DIR + "/");
+    }
+
+    /**
+     * Write to manifest json.
+     * @param data Data to write
+     */
+    public void writeManifestJson(String data) {
+        addMetaEntry(BarFile.MANIFEST_JSON, data);
+    }
+
+    /**
+     * Write to relations json.
+     * @param data Data to write
+     */
+    public void writeRelationsJson(String data) {
+        addMetaEntry(BarFile.RELATIONS_JSON, data);
+    }
+
+    /**
+     * Write to roles json.
+     * @param data Data to write
+     */
+    public void writeRolesJson(String data) {
+        addMetaEntry(BarFile.ROLES_JSON, data);
+    }
+
+    /**
+     * Write to rules json.
+     * @param data Data to write
+     */
+    public void writeRulesJson(String data) {
+        addMetaEntry(BarFile.RULES_JSON, data);
+    }
+
+    /**
+     * Write to rootprops xml.
+     * @param multistatus multistatus xml data
+     */
+    public void writeRootPropsXml(Multistatus multistatus) {
+        StringWriter writer = new StringWriter();
+        try {
+            Multistatus.marshal(multistatus, writer);
+        } catch (WebApplicationException | IOException e) {
+            throw PersoniumCoreException.Common.FILE_IO_ERROR.params("add rootprops xml to bar file").reason(e);
+        }
+        addMetaEntry(BarFile.ROOTPROPS_XML, writer.toString());
+    }
+
+    /**
+     * Create directory in contents dir.
+     * @param relativePath Target dir path under the contents dir
+     */
+    public void createDirectoryInContentsDir(Path relativePath) {
+        addDirectory(toContentsEntryName(relativePath) + "/");
+    }
+
+    /**
+     * Write to metadata xml.
+     * @param relativePath Target dir path under the contents dir
+     * @param data Data to write
+     */
+    public void writeMetadataXml(Path relativePath, String data) {
+        String name = toContentsEntryName(relativePath) + "/" + BarFile.METADATA_XML;
+        byte[] bytes = data.getBytes(Charsets.UTF_8);
+        addDeflatedEntry(name, new DeflateTask(name, bytes), bytes.length);
+    }
+
+    /**
+     * Create file in contents dir.
+     * @param relativePath Target file path under the contents dir
+     * @param dataStream Data stream to write to the file
+     * @param size size of the data
+     */
+    public void createFileInContentsDir(Path relativePath, StreamingOutput dataStream, long size) {
+        String name = toContentsEntryName(relativePath);
+        if (size > bufferLimit) {
+            // Too large to be buffered. Write it directly after the preceding entries.
+            flushPendingEntries();
+            writeStreamingEntry(name, dataStream);
+            return;
+        }
+        addDeflatedEntry(name, new DeflateTask(name, dataStream), size);
+    }
+
+    /**
+     * Write all the entries and the central directory.
+     * The underlying stream is not closed.
+     */
+    public void finish() {
+        flushPendingEntries();
+        try {
+            zipOutput.finish();
+            zipOutput.flush();
+        } catch (IOException e) {
+            throw PersoniumCoreException.Common.FILE_IO_ERROR.params("finish bar file").reason(e);
+        }
+    }
+
+    /**
+     * Discard the entries not written yet.
+     * Tasks already submitted are waited for so that they release the source files.
+     * The underlying stream is closed by the caller.
+     */
+    @Override
+    public void close() {
+        for (PendingEntry entry : pendingEntries) {
+            if (entry.future == null) {
+                continue;
+            }
+            try {
+                entry.future.get();
+            } catch (ExecutionException e) {
+                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        pendingEntries.clear();
+        pendingBytes = 0;
+    }
+
+    private void addMetaEntry(String fileName, String data) {
+        String name = BarFile.META_DIR + "/" + fileName;
+        byte[] bytes = data.getBytes(Charsets.UTF_8);
+        addDeflatedEntry(name, new DeflateTask(name, bytes), bytes.length);
+    }
+
+    /**
+     * Submit the task after writing preceding entries until the buffer has room for it.
+     */
+    private void addDeflatedEntry(String name, DeflateTask task, long size) {
+        while (!pendingEntries.isEmpty() && pendingBytes + size > bufferLimit) {
+            writeHeadEntry();
+        }
+        addPendingEntry(new PendingEntry(name, size, compressor.submit(task)));
+    }
+
+    private void addDirectory(String name) {
+        addPendingEntry(new PendingEntry(name, 0, null));
+    }
+
+    private void addPendingEntry(PendingEntry entry) {
+        pendingEntries.addLast(entry);
+        pendingBytes += entry.size;
+    }
+
+    private void flushPendingEntries() {
+        while (!pendingEntries.isEmpty()) {
+            writeHeadEntry();
+        }
+    }
+
+    /**
+     * Wait for the head entry to be deflated, and write it.
+     */
+    private void writeHeadEntry() {
+        PendingEntry entry = pendingEntries.removeFirst();
+        pendingBytes -= entry.size;
+        try {
+            if (entry.future == null) {
+                zipOutput.putArchiveEntry(new ZipArchiveEntry(entry.name));
+                zipOutput.closeArchiveEntry();
+                return;
+            }
+            DeflatedData data = entry.future.get();
+            ZipArchiveEntry zipEntry = new ZipArchiveEntry(entry.name);
+            zipEntry.setMethod(ZipArchiveEntry.DEFLATED);
+            zipEntry.setSize(data.size);
+            zipEntry.setCrc(data.crc);
+            zipEntry.setCompressedSize(data.compressed.length);
+            zipOutput.addRawArchiveEntry(zipEntry, new ByteArrayInputStream(data.compressed));
+        } catch (IOException e) {
+            throw PersoniumCoreException.Common.FILE_IO_ERROR.params("add file to bar file").reason(e);
+        } catch (ExecutionException e) {
+            throw PersoniumCoreException.Common.FILE_IO_ERROR.params("add file to bar file").reason(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw PersoniumCoreException.Common.FILE_IO_ERROR.params("add file to bar file").reason(e);
+        }
+    }
+
+    private void writeStreamingEntry(String name, StreamingOutput dataStream) {
+        try {
+            zipOutput.putArchiveEntry(new ZipArchiveEntry(name));
+            dataStream.write(new EntryOutputStream(zipOutput));
+            zipOutput.closeArchiveEntry();
+        } catch (IOException e) {
+            throw PersoniumCoreException.Common.FILE_IO_ERROR.params("add file to bar file").reason(e);
+        }
+    }
+
+    private static String toContentsEntryName(Path relativePath) {
+        StringBuilder builder = new StringBuilder(BarFile.CONTENTS_DIR);
+        for (Path name : relativePath) {
+            builder.append("/").append(name.toString());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Entry waiting to be written.
+     */
+    private static class PendingEntry {
+        private final String name;
+        /** Size counted against the buffer limit. */
+        private final long size;
+        /** Deflated data. null for a directory. */
+        private final Future<DeflatedData> future;
+
+        PendingEntry(String name, long size, Future<DeflatedData> future) {
+            this.name = name;
+            this.size = size;
+            this.future = future;
+        }
+    }
+
+    /**
+     * Data deflated without zlib header.
+     */
+    static class DeflatedData {
+        private final byte[] compressed;
+        private final long crc;
+        private final long size;
+
+        DeflatedData(byte[] compressed, long crc, long size) {
+            this.compressed = compressed;
+            this.crc = crc;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Task that deflates an entry into memory.
+     */
+    static class DeflateTask implements Callable<DeflatedData> {
+        private final String name;
+        private final StreamingOutput dataStream;
+
+        DeflateTask(String name, StreamingOutput dataStream) {
+            this.name = name;
+            this.dataStream = dataStream;
+        }
+
+        DeflateTask(String name, final byte[] bytes) {
+            this(name, new StreamingOutput() {
+                @Override
+                public void write(OutputStream output) throws IOException {
+                    output.write(bytes);
+                }
+            });
+        }
+
+        @Override
+        public DeflatedData call() throws IOException {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            CRC32 crc = new CRC32();
+            try {
+                DeflaterOutputStream deflaterOutput = new DeflaterOutputStream(compressed, deflater);
+                CountingOutputStream counter = new CountingOutputStream(
+                        new CheckedOutputStream(deflaterOutput, crc));
+                dataStream.write(counter);
+                deflaterOutput.finish();
+                return new DeflatedData(compressed.toByteArray(), crc.getValue(), counter.count);
+            } catch (WebApplicationException e) {
+                throw new IOException("Failed to read " + name, e);
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * OutputStream that counts written bytes.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // The deflater is finished by the task.
+            flush();
+        }
+    }
+
+    /**
+     * OutputStream of a zip entry which ignores close.
+     */
+    private static class EntryOutputStream extends FilterOutputStream {
+        EntryOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -56,6 +56,7 @@ public final class EventBus {
     }
 
     private static ExecutorService pool;
+    private static EventDispatcher dispatcher;
 
     /**
      * Start EventBus.
@@ -66,15 +67,19 @@ public final class EventBus {
         // RuleManager
         RuleManager.getInstance();
 
-        // create thread pool.
-        int threadNumber = PersoniumUnitConfig.getEventProcThreadNum();
+        // Start lanes processing events, as many as the processors if not specified.
+        int laneNumber = PersoniumUnitConfig.getEventProcThreadNum();
+        if (laneNumber <= 0) {
+            laneNumber = Runtime.getRuntime().availableProcessors();
+        }
+        dispatcher = new EventDispatcher(laneNumber, PersoniumUnitConfig.getEventProcQueueSize());
+        dispatcher.start();
+
+        // Execute receiver dispatching events to the lanes.
         final ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
         builder.setNameFormat("event-receiver-%d");
-        pool = Executors.newFixedThreadPool(threadNumber, builder.build());
-        // Execute receiver for processing rule.
-        for (int i = 0; i < threadNumber; i++) {
-            pool.execute(new EventReceiveRunner());
-        }
+        pool = Executors.newSingleThreadExecutor(builder.build());
+        pool.execute(new EventReceiveRunner(dispatcher));
 
         EventFactory.createEventSender();
     }
@@ -94,6 +99,8 @@ public final class EventBus {
         } catch (InterruptedException e) {
             pool.shutdownNow();
         }
+        // stop lanes after the events received.
+        dispatcher.stop();
 
         // shutdown RuleManager.
         RuleManager rman = RuleManager.getInstance();
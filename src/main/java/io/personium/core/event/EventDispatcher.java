@@ -0,0 +1,257 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.personium.core.rule.RuleManager;
+
+/**
+ * Dispatcher of the received events to the lanes processing them.
+ * <p>
+ * Each lane processes its events one by one on its own thread, in the order they were dispatched.
+ * Events are assigned to the lanes by the ordering key given by the receiver, such as the cell ID or
+ * the partition of the message queue, so that the events of a cell are processed in order
+ * while the events of different cells are processed in parallel.
+ * The queue of each lane is bounded, and dispatch waits while the queue is full.
+ */
+public class EventDispatcher {
+    private static Logger log = LoggerFactory.getLogger(EventDispatcher.class);
+
+    private static final long POLL_TIMEOUT_MILLIS = 100L;
+    private static final long TIMEOUT_SECONDS = 1L;
+
+    /** Dispatcher running. */
+    private static volatile EventDispatcher current;
+
+    private final List<Lane> lanes;
+    private final ExecutorService pool;
+    private volatile boolean stopping = false;
+
+    /**
+     * Constructor.
+     * @param laneNum number of the lanes
+     * @param queueSize size of the queue of each lane
+     */
+    EventDispatcher(int laneNum, int queueSize) {
+        List<Lane> list = new ArrayList<Lane>();
+        for (int i = 0; i < laneNum; i++) {
+            list.add(new Lane(i, queueSize));
+        }
+        this.lanes = Collections.unmodifiableList(list);
+        final ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+        builder.setNameFormat("event-lane-%d");
+        this.pool = Executors.newFixedThreadPool(laneNum, builder.build());
+    }
+
+    /**
+     * Get the lanes of the running dispatcher.
+     * @return lanes. empty if not running.
+     */
+    public static List<Lane> getLanes() {
+        EventDispatcher dispatcher = current;
+        if (dispatcher == null) {
+            return Collections.emptyList();
+        }
+        return dispatcher.lanes;
+    }
+
+    /**
+     * Start processing on the lanes.
+     */
+    void start() {
+        for (final Lane lane : lanes) {
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    lane.run();
+                }
+            });
+        }
+        current = this;
+    }
+
+    /**
+     * Stop processing after the events already dispatched, within a short time.
+     */
+    void stop() {
+        stopping = true;
+        try {
+            pool.shutdown();
+            if (!pool.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+        }
+        if (current == this) {
+            current = null;
+        }
+    }
+
+    /**
+     * Dispatch the event to the lane of the ordering key.
+     * Waits while the queue of the lane is full.
+     * @param key ordering key. Events with the same key are processed in order.
+     * @param event event
+     * @param onProcessed called on the lane after the event is processed. null if not required.
+     * @throws InterruptedException interrupted while waiting
+     */
+    void dispatch(Object key, PersoniumEvent event, Runnable onProcessed) throws InterruptedException {
+        getLane(key).queue.put(new Entry(event, onProcessed));
+    }
+
+    /**
+     * Get the lane of the ordering key.
+     * @param key ordering key
+     * @return lane
+     */
+    Lane getLane(Object key) {
+        int hash = key == null ? 0 : key.hashCode();
+        return lanes.get((hash & Integer.MAX_VALUE) % lanes.size());
+    }
+
+    /**
+     * Process the event.
+     * @param event event
+     */
+    void process(PersoniumEvent event) {
+        log.debug("Received Message with '" + event.getType() + " '.");
+        log.debug("    External: " + event.getExternal());
+        log.debug("    Schema: " + event.getSchema());
+        log.debug("    Subject: " + event.getSubject());
+        log.debug("    Type: " + event.getType());
+        log.debug("    Object: " + event.getObject());
+        log.debug("    Info: " + event.getInfo());
+        log.debug("    RequestKey: " + event.getRequestKey());
+        log.debug("    EventId: " + event.getEventId());
+        log.debug("    RuleChain: " + event.getRuleChain());
+        log.debug("    Via: " + event.getVia());
+        log.debug("    Roles: " + event.getRoles());
+        log.debug("    CellId: " + event.getCellId());
+        log.debug("    Time: " + event.getTime());
+
+        // If the event matches with a rule, execute action of the rule.
+        RuleManager.getInstance().judge(event);
+
+        // publish event
+        EventFactory.getEventPublisher().send(event);
+    }
+
+    /**
+     * Event waiting on a lane.
+     */
+    private static final class Entry {
+        private final PersoniumEvent event;
+        private final Runnable onProcessed;
+        private final long dispatchedAt = System.currentTimeMillis();
+
+        Entry(PersoniumEvent event, Runnable onProcessed) {
+            this.event = event;
+            this.onProcessed = onProcessed;
+        }
+    }
+
+    /**
+     * Lane processing events in order.
+     */
+    public final class Lane {
+        private final int index;
+        private final BlockingQueue<Entry> queue;
+        private final AtomicLong processed = new AtomicLong();
+
+        Lane(int index, int queueSize) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<Entry>(queueSize);
+        }
+
+        /**
+         * @return index of the lane
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return number of the events waiting on the lane
+         */
+        public int getQueueSize() {
+            return queue.size();
+        }
+
+        /**
+         * @return time the oldest waiting event has waited (msec). 0 if no event is waiting.
+         */
+        public long getLagMillis() {
+            Entry head = queue.peek();
+            if (head == null) {
+                return 0;
+            }
+            return Math.max(System.currentTimeMillis() - head.dispatchedAt, 0);
+        }
+
+        /**
+         * @return number of the events processed on the lane
+         */
+        public long getProcessedCount() {
+            return processed.get();
+        }
+
+        private void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                Entry entry;
+                try {
+                    entry = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (entry == null) {
+                    if (stopping) {
+                        break;
+                    }
+                    continue;
+                }
+                try {
+                    process(entry.event);
+                } catch (Exception e) {
+                    log.error("Exception occurred: " + e.getMessage(), e);
+                }
+                processed.incrementAndGet();
+                if (entry.onProcessed != null) {
+                    try {
+                        entry.onProcessed.run();
+                    } catch (Exception e) {
+                        log.error("Exception occurred: " + e.getMessage(), e);
+                    }
+                }
+            }
+        }
+    }
+}
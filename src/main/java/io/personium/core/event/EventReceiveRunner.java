@@ -21,22 +21,27 @@ import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import io.personium.core.rule.RuleManager;
-
 /**
  * Runnable class for receiving PersoniumEvent.
- * The received event is processed on RuleManager.
+ * The received event is dispatched to the lane of EventDispatcher and processed on RuleManager.
  */
 class EventReceiveRunner implements Runnable {
     private static Logger log = LoggerFactory.getLogger(EventReceiveRunner.class);
 
+    private final EventDispatcher dispatcher;
+
+    /**
+     * Constructor.
+     * @param dispatcher dispatcher of the received events
+     */
+    EventReceiveRunner(EventDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
     @Override
     public void run() {
         try {
-            EventReceiver receiver = EventFactory.createEventReceiver();
-
-            // Get RuleManager's instance.
-            RuleManager rman = RuleManager.getInstance();
+            final EventReceiver receiver = EventFactory.createEventReceiver();
 
             while (!Thread.interrupted()) {
                 try {
@@ -45,30 +50,19 @@ class EventReceiveRunner implements Runnable {
                         // if list is null, can't continue.
                         break;
                     }
-                    for (PersoniumEvent event : list) {
+                    for (final PersoniumEvent event : list) {
                         if (event != null) {
-                            log.debug("Received Message with '" + event.getType() + " '.");
-                            log.debug("    External: " + event.getExternal());
-                            log.debug("    Schema: " + event.getSchema());
-                            log.debug("    Subject: " + event.getSubject());
-                            log.debug("    Type: " + event.getType());
-                            log.debug("    Object: " + event.getObject());
-                            log.debug("    Info: " + event.getInfo());
-                            log.debug("    RequestKey: " + event.getRequestKey());
-                            log.debug("    EventId: " + event.getEventId());
-                            log.debug("    RuleChain: " + event.getRuleChain());
-                            log.debug("    Via: " + event.getVia());
-                            log.debug("    Roles: " + event.getRoles());
-                            log.debug("    CellId: " + event.getCellId());
-                            log.debug("    Time: " + event.getTime());
-
-                            // If the event matches with a rule, execute action of the rule.
-                            rman.judge(event);
-
-                            // publish event
-                            EventFactory.getEventPublisher().send(event);
+                            dispatcher.dispatch(receiver.getOrderingKey(event), event, new Runnable() {
+                                @Override
+                                public void run() {
+                                    receiver.processed(event);
+                                }
+                            });
                         }
                     }
+                } catch (InterruptedException e) {
+                    log.debug("Interrupted");
+                    break;
                 } catch (Exception e) {
                     log.error("Exception occurred: " + e.getMessage(), e);
                 }
@@ -80,4 +74,3 @@ class EventReceiveRunner implements Runnable {
     }
 
 }
-
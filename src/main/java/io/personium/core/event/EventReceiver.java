@@ -35,6 +35,21 @@ public interface EventReceiver {
      */
     List<PersoniumEvent> receive();
 
+    /**
+     * Get the ordering key of the received event.
+     * Events with the same key are processed in the order they were received.
+     * @param event event received
+     * @return ordering key
+     */
+    Object getOrderingKey(PersoniumEvent event);
+
+    /**
+     * Notify that the received event has been processed.
+     * May be called on another thread than the one receiving.
+     * @param event event received
+     */
+    void processed(PersoniumEvent event);
+
     /**
      * Unsubscribe.
      */
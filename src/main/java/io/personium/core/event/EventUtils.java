@@ -22,6 +22,7 @@ import java.util.List;
 
 import io.personium.common.es.util.IndexNameEncoder;
 import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.eventlog.EventLogWriter;
 import io.personium.core.model.file.BinaryDataAccessException;
 import io.personium.core.model.file.BinaryDataAccessor;
 import io.personium.core.rs.cell.LogResource;
@@ -84,6 +85,9 @@ public class EventUtils {
      * @throws BinaryDataAccessException Failed to delete event log file
      */
     public static void deleteEventLog(String cellId, String owner) throws BinaryDataAccessException {
+        //Close the current log file kept open
+        EventLogWriter.close(cellId);
+
         //Retrieve log list
         List<String> logFiles = getLogFileList(cellId, owner);
         BinaryDataAccessor accessor = new BinaryDataAccessor("", null,
@@ -100,6 +100,25 @@ public class ActiveMQEventReceiver implements EventReceiver {
         return list;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Events of a cell are processed in order.
+     */
+    @Override
+    public Object getOrderingKey(PersoniumEvent event) {
+        return event.getCellId();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Nothing to do, since the message is acknowledged when received.
+     */
+    @Override
+    public void processed(PersoniumEvent event) {
+    }
+
     @Override
     public void unsubscribe() {
         try {
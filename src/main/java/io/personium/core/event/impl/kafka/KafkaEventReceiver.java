@@ -18,13 +18,23 @@ package io.personium.core.event.impl.kafka;
 
 import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.errors.InterruptException;
 import org.apache.kafka.common.serialization.StringDeserializer;
 
@@ -37,6 +47,10 @@ import io.personium.core.event.PersoniumEvent;
 
 /**
  * EventReceiver for Kafka.
+ * <p>
+ * Events are ordered by the partition, to which the events of a cell are sent.
+ * Offsets are committed after the events are processed, so that the events not processed
+ * are received again after a restart or a rebalance.
  */
 public class KafkaEventReceiver implements EventReceiver {
     private static Logger log = LoggerFactory.getLogger(KafkaEventReceiver.class);
@@ -45,6 +59,14 @@ public class KafkaEventReceiver implements EventReceiver {
 
     private static final long POLL_TIMEOUT = 1000L;
 
+    /** Events received and not processed -> records of them. */
+    private final Map<PersoniumEvent, ConsumerRecord<String, PersoniumEvent>> received =
+            Collections.synchronizedMap(new IdentityHashMap<PersoniumEvent, ConsumerRecord<String, PersoniumEvent>>());
+
+    /** Offsets to commit. Events of a partition are processed in order, so the offset only increases. */
+    private final Map<TopicPartition, OffsetAndMetadata> processedOffsets =
+            new ConcurrentHashMap<TopicPartition, OffsetAndMetadata>();
+
     /**
      * Constructor.
      */
@@ -62,13 +84,22 @@ public class KafkaEventReceiver implements EventReceiver {
         Properties props = new Properties();
         props.put("bootstrap.servers", servers);
         props.put("group.id", "event_receiver");
-        props.put("enable.auto.commit", "true");
-        props.put("auto.commit.intervals.ms", "1000");
+        props.put("enable.auto.commit", "false");
         props.put("key.deserializer", StringDeserializer.class);
         props.put("value.deserializer", PersoniumEventDeserializer.class);
 
         consumer = new KafkaConsumer<>(props);
-        consumer.subscribe(Arrays.asList(topic));
+        consumer.subscribe(Arrays.asList(topic), new ConsumerRebalanceListener() {
+            @Override
+            public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                // Events of the revoked partitions still processing may be received again by other units.
+                commitSync();
+            }
+
+            @Override
+            public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+            }
+        });
     }
 
     /**
@@ -80,8 +111,12 @@ public class KafkaEventReceiver implements EventReceiver {
         List<PersoniumEvent> list = new ArrayList<>();
 
         try {
+            commitAsync();
             ConsumerRecords<String, PersoniumEvent> records = consumer.poll(POLL_TIMEOUT);
             for (ConsumerRecord<String, PersoniumEvent> record : records) {
+                if (record.value() != null) {
+                    received.put(record.value(), record);
+                }
                 list.add(record.value());
             }
         } catch (InterruptException e) {
@@ -95,16 +130,84 @@ public class KafkaEventReceiver implements EventReceiver {
         return list;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Events of a partition are processed in order.
+     */
+    @Override
+    public Object getOrderingKey(PersoniumEvent event) {
+        ConsumerRecord<String, PersoniumEvent> record = received.get(event);
+        if (record == null) {
+            return event.getCellId();
+        }
+        return record.partition();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The offset is committed on the next receive.
+     */
+    @Override
+    public void processed(PersoniumEvent event) {
+        ConsumerRecord<String, PersoniumEvent> record = received.remove(event);
+        if (record == null) {
+            return;
+        }
+        processedOffsets.put(new TopicPartition(record.topic(), record.partition()),
+                new OffsetAndMetadata(record.offset() + 1));
+    }
+
     /**
      * Unsubscribe.
      */
     @Override
     public void unsubscribe() {
         try {
+            commitSync();
             consumer.close();
         } catch (InterruptException e) {
             log.debug("Interrupted");
         }
     }
 
+    private Map<TopicPartition, OffsetAndMetadata> takeProcessedOffsets() {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<TopicPartition, OffsetAndMetadata>();
+        for (TopicPartition partition : processedOffsets.keySet()) {
+            OffsetAndMetadata offset = processedOffsets.get(partition);
+            if (offset != null && processedOffsets.remove(partition, offset)) {
+                offsets.put(partition, offset);
+            }
+        }
+        return offsets;
+    }
+
+    private void commitAsync() {
+        Map<TopicPartition, OffsetAndMetadata> offsets = takeProcessedOffsets();
+        if (offsets.isEmpty()) {
+            return;
+        }
+        consumer.commitAsync(offsets, new OffsetCommitCallback() {
+            @Override
+            public void onComplete(Map<TopicPartition, OffsetAndMetadata> committed, Exception e) {
+                if (e != null) {
+                    // The events are received again, or the later offsets are committed.
+                    log.warn("Failed to commit offsets: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    private void commitSync() {
+        Map<TopicPartition, OffsetAndMetadata> offsets = takeProcessedOffsets();
+        if (offsets.isEmpty()) {
+            return;
+        }
+        try {
+            consumer.commitSync(offsets);
+        } catch (KafkaException e) {
+            log.warn("Failed to commit offsets: " + e.getMessage());
+        }
+    }
 }
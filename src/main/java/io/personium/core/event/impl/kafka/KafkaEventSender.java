@@ -61,11 +61,12 @@ public class KafkaEventSender implements EventSender, EventPublisher {
 
     /**
      * Send event.
+     * The cell ID is the key, so that the events of a cell are sent to the same partition and received in order.
      * @param event event to send
      */
     @Override
     public void send(final PersoniumEvent event) {
-        producer.send(new ProducerRecord<>(topicName, event));
+        producer.send(new ProducerRecord<>(topicName, event.getCellId(), event));
     }
 
     /**
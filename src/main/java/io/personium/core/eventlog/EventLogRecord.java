@@ -0,0 +1,80 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.eventlog;
+
+import java.util.Date;
+
+import io.personium.core.event.PersoniumEvent;
+
+/**
+ * Record of the event log, formatted as a CSV line when written.
+ */
+public class EventLogRecord {
+
+    private final PersoniumEvent event;
+    private final String level;
+    private final String requestKey;
+
+    /**
+     * Constructor.
+     * @param event event
+     * @param level level string such as "[INFO ]"
+     * @param requestKey request key
+     */
+    public EventLogRecord(PersoniumEvent event, String level, String requestKey) {
+        this.event = event;
+        this.level = level;
+        this.requestKey = requestKey;
+    }
+
+    /**
+     * Format the record.
+     * @return CSV line without line separator
+     */
+    public String format() {
+        return new StringBuilder(new Date(event.getTime()).toInstant().toString())
+                .append(",")
+                .append(level)
+                .append(",")
+                .append(makeCsvItem(requestKey))
+                .append(",")
+                .append(makeCsvItem(event.getExternal().toString()))
+                .append(",")
+                .append(makeCsvItem(event.getSchema()))
+                .append(",")
+                .append(makeCsvItem(event.getSubject()))
+                .append(",")
+                .append(makeCsvItem(event.getType()))
+                .append(",")
+                .append(makeCsvItem(event.getObject()))
+                .append(",")
+                .append(makeCsvItem(event.getInfo()))
+                .toString();
+    }
+
+    // convert to CSV format
+    private static String makeCsvItem(String item) {
+        if (null == item) {
+            return item;
+        }
+        String replacedItem = item.replaceAll("\"", "\"\"");
+        return new StringBuilder("\"")
+                .append(replacedItem)
+                .append("\"")
+                .toString();
+    }
+}
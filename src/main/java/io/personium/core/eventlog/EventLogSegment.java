@@ -0,0 +1,186 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.eventlog;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.personium.core.rs.cell.LogResource;
+
+/**
+ * Current event log file of a cell, opened for appending through a buffer.
+ * <p>
+ * A rotated file is renamed to a hidden file in the current collection,
+ * and left there until it is compressed into the archive collection.
+ */
+class EventLogSegment {
+
+    /** Prefix of the rotated files waiting to be archived. */
+    static final String ROTATED_PREFIX = "." + LogResource.DEFAULT_LOG + ".";
+    /** Suffix of the archived files. */
+    static final String ZIP_SUFFIX = ".zip";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final File cellDir;
+    private final File file;
+    private FileOutputStream fos;
+    private OutputStream out;
+    private long size;
+    private long createdAt;
+    private boolean dirty = false;
+
+    /**
+     * Constructor. Opens the current file.
+     * @param cellDir event log directory of the cell
+     * @throws IOException failed to open
+     */
+    EventLogSegment(File cellDir) throws IOException {
+        this.cellDir = cellDir;
+        File currentDir = new File(cellDir, LogResource.CURRENT_COLLECTION);
+        this.file = new File(currentDir, LogResource.DEFAULT_LOG);
+        open();
+    }
+
+    private void open() throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.exists() && !dir.mkdirs() && !dir.exists()) {
+            throw new IOException("Failed to create directory. " + dir.getPath());
+        }
+        fos = new FileOutputStream(file, true);
+        out = new BufferedOutputStream(fos, BUFFER_SIZE);
+        size = file.length();
+        if (size == 0) {
+            createdAt = System.currentTimeMillis();
+        } else {
+            createdAt = Files.readAttributes(file.toPath(), BasicFileAttributes.class).creationTime().toMillis();
+        }
+    }
+
+    /**
+     * @return event log directory of the cell
+     */
+    File getCellDir() {
+        return cellDir;
+    }
+
+    /**
+     * Whether the file should be rotated before writing.
+     * @param now current time (msec)
+     * @param maxFileSize size to rotate (bytes)
+     * @param rotateIntervalMillis age to rotate (msec). 0 if rotated only by size.
+     * @return true if rotate
+     */
+    boolean needsRotation(long now, long maxFileSize, long rotateIntervalMillis) {
+        if (size == 0) {
+            return false;
+        }
+        return size >= maxFileSize || (rotateIntervalMillis > 0 && now - createdAt >= rotateIntervalMillis);
+    }
+
+    /**
+     * Append bytes.
+     * @param bytes bytes
+     * @throws IOException failed to write
+     */
+    void write(byte[] bytes) throws IOException {
+        out.write(bytes);
+        size += bytes.length;
+        dirty = true;
+    }
+
+    /**
+     * Flush the bytes written.
+     * @param fsync true to sync to the disk
+     * @throws IOException failed to write
+     */
+    void flush(boolean fsync) throws IOException {
+        if (!dirty || out == null) {
+            return;
+        }
+        out.flush();
+        if (fsync) {
+            fos.getFD().sync();
+        }
+        dirty = false;
+    }
+
+    /**
+     * Rename the current file to be archived, and open a new one.
+     * @param fsync true to sync to the disk before renaming
+     * @return renamed file
+     * @throws IOException failed to rotate
+     */
+    File rotate(boolean fsync) throws IOException {
+        flush(fsync);
+        close();
+        long time = System.currentTimeMillis();
+        File rotated = new File(file.getParentFile(), ROTATED_PREFIX + time);
+        while (rotated.exists()) {
+            time++;
+            rotated = new File(file.getParentFile(), ROTATED_PREFIX + time);
+        }
+        Files.move(file.toPath(), rotated.toPath());
+        open();
+        return rotated;
+    }
+
+    /**
+     * Close the file.
+     * @throws IOException failed to write
+     */
+    void close() throws IOException {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } finally {
+            out = null;
+            fos = null;
+            dirty = false;
+        }
+    }
+
+    /**
+     * Get the rotated files left not archived, such as by a shutdown during archiving.
+     * @return rotated files, oldest first
+     */
+    List<File> getRotatedFiles() {
+        File[] files = file.getParentFile().listFiles();
+        List<File> ret = new ArrayList<File>();
+        if (files == null) {
+            return ret;
+        }
+        for (File f : files) {
+            String name = f.getName();
+            if (name.startsWith(ROTATED_PREFIX) && !name.endsWith(ZIP_SUFFIX)) {
+                ret.add(f);
+            }
+        }
+        Collections.sort(ret);
+        return ret;
+    }
+}
@@ -0,0 +1,497 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.eventlog;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.event.EventUtils;
+import io.personium.core.model.Cell;
+import io.personium.core.rs.cell.LogResource;
+
+/**
+ * Writer of the event logs of cells.
+ * <p>
+ * Records are queued and written by a writer thread, which appends them to the current file of each cell.
+ * Files are kept open up to a limit, closing the least recently used one first, and the records written
+ * together are flushed together with one fsync per file.
+ * When the current file reaches the size or the age limit, it is rotated and compressed in background into
+ * the archive collection, as default.log.1.zip (newest) to default.log.N.zip.
+ * Until started, and after stopped, records are written on the calling thread.
+ * Records of a cell whose event log is deleted are dropped for a while, so that they do not create its files again.
+ */
+public class EventLogWriter {
+
+    /** Logger. */
+    private static Logger log = LoggerFactory.getLogger(EventLogWriter.class);
+
+    private static final long POLL_TIMEOUT_MILLIS = 100L;
+    private static final long TIMEOUT_SECONDS = 10L;
+    private static final long DELETED_RETENTION_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int MAX_BATCH = 1000;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private static volatile EventLogWriter singleton;
+
+    private final BlockingQueue<Entry> queue;
+    private final long maxFileSize;
+    private final long rotateIntervalMillis;
+    private final int maxArchiveFiles;
+    private final boolean fsync;
+
+    /** Open files. Cell ID -> segment, least recently used first. */
+    private final Map<String, EventLogSegment> segments;
+    /** Rotated files being archived. */
+    private final Set<File> archiving = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+    /** Cells whose event logs are deleted. Cell ID -> time deleted (msec). */
+    private final Map<String, Long> deletedCells = new ConcurrentHashMap<String, Long>();
+
+    private ExecutorService writer;
+    private ExecutorService compressor;
+    private volatile boolean running = false;
+    private volatile boolean stopping = false;
+
+    /**
+     * Constructor.
+     * @param queueSize number of the records waiting to be written
+     * @param maxOpenFiles maximum number of the files kept open
+     * @param maxFileSize size to rotate (bytes)
+     * @param rotateIntervalMillis age to rotate (msec). 0 if rotated only by size.
+     * @param maxArchiveFiles number of the archived files kept
+     * @param fsync true to sync the files to the disk on flush
+     */
+    EventLogWriter(int queueSize, final int maxOpenFiles, long maxFileSize, long rotateIntervalMillis,
+            int maxArchiveFiles, boolean fsync) {
+        this.queue = new ArrayBlockingQueue<Entry>(queueSize);
+        this.maxFileSize = maxFileSize;
+        this.rotateIntervalMillis = rotateIntervalMillis;
+        this.maxArchiveFiles = maxArchiveFiles;
+        this.fsync = fsync;
+        this.segments = new LinkedHashMap<String, EventLogSegment>(maxOpenFiles, LOAD_FACTOR, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, EventLogSegment> eldest) {
+                if (size() <= maxOpenFiles) {
+                    return false;
+                }
+                closeQuietly(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Get the instance.
+     * @return EventLogWriter
+     */
+    static EventLogWriter getInstance() {
+        if (singleton == null) {
+            synchronized (EventLogWriter.class) {
+                if (singleton == null) {
+                    singleton = new EventLogWriter(PersoniumUnitConfig.getEventLogQueueSize(),
+                            PersoniumUnitConfig.getEventLogMaxOpenFiles(),
+                            PersoniumUnitConfig.getEventLogMaxFileSize(),
+                            TimeUnit.SECONDS.toMillis(PersoniumUnitConfig.getEventLogRotateInterval()),
+                            PersoniumUnitConfig.getEventLogMaxArchiveFiles(),
+                            PersoniumUnitConfig.getFsyncEnabled());
+                }
+            }
+        }
+        return singleton;
+    }
+
+    /**
+     * Start the writer.
+     */
+    public static void start() {
+        getInstance().startThreads();
+    }
+
+    /**
+     * Stop the writer.
+     * Records queued are written, and the files are closed before return.
+     */
+    public static void stop() {
+        EventLogWriter instance = singleton;
+        if (instance != null) {
+            instance.stopThreads();
+        }
+    }
+
+    /**
+     * Write the record to the event log of the cell.
+     * Waits while the queue is full.
+     * @param cell cell
+     * @param record record
+     */
+    public static void write(Cell cell, EventLogRecord record) {
+        String dir = EventUtils.getEventLogDir(cell.getId(), cell.getOwner()).toString();
+        getInstance().append(cell.getId(), dir, record);
+    }
+
+    /**
+     * Close the event log of the cell, before deleting its files.
+     * Records of the cell waiting to be written, or written later, are dropped.
+     * @param cellId cell ID
+     */
+    public static void close(String cellId) {
+        EventLogWriter instance = singleton;
+        if (instance != null) {
+            instance.closeDeleted(cellId);
+        }
+    }
+
+    /**
+     * Start the writer thread and the compressor thread.
+     */
+    synchronized void startThreads() {
+        if (running) {
+            return;
+        }
+        final ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+        builder.setNameFormat("eventlog-writer-%d");
+        writer = Executors.newSingleThreadExecutor(builder.build());
+        final ThreadFactoryBuilder compressorBuilder = new ThreadFactoryBuilder();
+        compressorBuilder.setNameFormat("eventlog-compressor-%d");
+        compressor = Executors.newSingleThreadExecutor(compressorBuilder.build());
+        stopping = false;
+        running = true;
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                runWriter();
+            }
+        });
+    }
+
+    /**
+     * Stop the threads after the records queued are written.
+     */
+    synchronized void stopThreads() {
+        if (!running) {
+            return;
+        }
+        stopping = true;
+        awaitTermination(writer);
+        running = false;
+        // Write the records left by a timeout.
+        List<Entry> rest = new ArrayList<Entry>();
+        queue.drainTo(rest);
+        writeBatch(rest);
+        synchronized (segments) {
+            for (Map.Entry<String, EventLogSegment> entry : segments.entrySet()) {
+                closeQuietly(entry.getKey(), entry.getValue());
+            }
+            segments.clear();
+        }
+        // Rotated files not archived yet are archived when the cell is written next time.
+        awaitTermination(compressor);
+        writer = null;
+        compressor = null;
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        try {
+            executor.shutdown();
+            if (!executor.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Queue the record, or write it if not running.
+     * @param cellId cell ID
+     * @param dir event log directory of the cell
+     * @param record record
+     */
+    void append(String cellId, String dir, EventLogRecord record) {
+        Entry entry = new Entry(cellId, dir, record);
+        if (running) {
+            try {
+                queue.put(entry);
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        writeBatch(Collections.singletonList(entry));
+    }
+
+    /**
+     * Close the file of the cell.
+     * @param cellId cell ID
+     */
+    void closeSegment(String cellId) {
+        synchronized (segments) {
+            EventLogSegment segment = segments.remove(cellId);
+            if (segment != null) {
+                closeQuietly(cellId, segment);
+            }
+        }
+    }
+
+    /**
+     * Close the file of the cell whose event log is deleted, and stop writing it.
+     * Records of the cell waiting to be written are dropped, and the files of the cell being archived are waited for.
+     * @param cellId cell ID
+     */
+    void closeDeleted(String cellId) {
+        long now = System.currentTimeMillis();
+        Iterator<Long> deletedTimes = deletedCells.values().iterator();
+        while (deletedTimes.hasNext()) {
+            if (now - deletedTimes.next() > DELETED_RETENTION_MILLIS) {
+                deletedTimes.remove();
+            }
+        }
+        deletedCells.put(cellId, now);
+        // Records already taken from the queue are written under the lock, and dropped after this.
+        synchronized (segments) {
+            Iterator<Entry> queued = queue.iterator();
+            while (queued.hasNext()) {
+                if (cellId.equals(queued.next().cellId)) {
+                    queued.remove();
+                }
+            }
+            closeSegment(cellId);
+        }
+        awaitArchives();
+    }
+
+    /**
+     * Wait until the files submitted before are archived.
+     * Files of deleted cells are not archived.
+     */
+    private void awaitArchives() {
+        ExecutorService executor = compressor;
+        if (!running || executor == null) {
+            return;
+        }
+        Future<?> done;
+        try {
+            done = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    // The compressor runs the tasks in order.
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Stopped. The files are archived before the compressor terminates.
+            return;
+        }
+        try {
+            done.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Failed to wait for archiving event logs.", e);
+        }
+    }
+
+    private void runWriter() {
+        List<Entry> batch = new ArrayList<Entry>();
+        while (!Thread.currentThread().isInterrupted()) {
+            Entry first;
+            try {
+                first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (first == null) {
+                if (stopping) {
+                    break;
+                }
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, MAX_BATCH - 1);
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Write the records, and flush the files written.
+     * @param batch records
+     */
+    void writeBatch(List<Entry> batch) {
+        synchronized (segments) {
+            Map<EventLogSegment, String> written = new IdentityHashMap<EventLogSegment, String>();
+            long now = System.currentTimeMillis();
+            for (Entry entry : batch) {
+                if (deletedCells.containsKey(entry.cellId)) {
+                    continue;
+                }
+                try {
+                    byte[] line = entry.record.format().getBytes(StandardCharsets.UTF_8);
+                    EventLogSegment segment = getSegment(entry.cellId, entry.dir);
+                    if (segment.needsRotation(now, maxFileSize, rotateIntervalMillis)) {
+                        submitArchive(entry.cellId, segment.getCellDir(), segment.rotate(fsync));
+                    }
+                    segment.write(line);
+                    segment.write(LINE_SEPARATOR);
+                    written.put(segment, entry.cellId);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Failed to write event log. CellId:" + entry.cellId, e);
+                    closeSegment(entry.cellId);
+                }
+            }
+            for (Map.Entry<EventLogSegment, String> entry : written.entrySet()) {
+                try {
+                    entry.getKey().flush(fsync);
+                } catch (IOException e) {
+                    log.warn("Failed to write event log. CellId:" + entry.getValue(), e);
+                    closeSegment(entry.getValue());
+                }
+            }
+        }
+    }
+
+    private EventLogSegment getSegment(String cellId, String dir) throws IOException {
+        EventLogSegment segment = segments.get(cellId);
+        if (segment == null) {
+            segment = new EventLogSegment(new File(dir));
+            segments.put(cellId, segment);
+            for (File rotated : segment.getRotatedFiles()) {
+                submitArchive(cellId, segment.getCellDir(), rotated);
+            }
+        }
+        return segment;
+    }
+
+    private void closeQuietly(String cellId, EventLogSegment segment) {
+        try {
+            try {
+                segment.flush(fsync);
+            } finally {
+                segment.close();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to close event log. CellId:" + cellId, e);
+        }
+    }
+
+    private void submitArchive(final String cellId, final File cellDir, final File rotated) {
+        if (!archiving.add(rotated)) {
+            return;
+        }
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (!deletedCells.containsKey(cellId)) {
+                        archive(cellDir, rotated);
+                    }
+                } catch (IOException e) {
+                    log.warn("Failed to archive event log. " + rotated.getPath(), e);
+                } finally {
+                    archiving.remove(rotated);
+                }
+            }
+        };
+        ExecutorService executor = compressor;
+        if (running && executor != null) {
+            executor.execute(task);
+        } else {
+            task.run();
+        }
+    }
+
+    /**
+     * Compress the rotated file into the archive collection as the newest one,
+     * shifting the older ones and deleting the oldest.
+     * @param cellDir event log directory of the cell
+     * @param rotated rotated file
+     * @throws IOException failed to archive
+     */
+    void archive(File cellDir, File rotated) throws IOException {
+        File zip = new File(rotated.getPath() + EventLogSegment.ZIP_SUFFIX);
+        try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zip)))) {
+            out.putNextEntry(new ZipEntry(LogResource.DEFAULT_LOG + ".1"));
+            Files.copy(rotated.toPath(), out);
+            out.closeEntry();
+        }
+        File archiveDir = new File(cellDir, LogResource.ARCHIVE_COLLECTION);
+        if (!archiveDir.exists() && !archiveDir.mkdirs() && !archiveDir.exists()) {
+            throw new IOException("Failed to create directory. " + archiveDir.getPath());
+        }
+        Files.deleteIfExists(getArchiveFile(archiveDir, maxArchiveFiles).toPath());
+        for (int i = maxArchiveFiles - 1; i >= 1; i--) {
+            File file = getArchiveFile(archiveDir, i);
+            if (file.exists()) {
+                Files.move(file.toPath(), getArchiveFile(archiveDir, i + 1).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(zip.toPath(), getArchiveFile(archiveDir, 1).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.delete(rotated.toPath());
+    }
+
+    private static File getArchiveFile(File archiveDir, int index) {
+        return new File(archiveDir, LogResource.DEFAULT_LOG + "." + index + EventLogSegment.ZIP_SUFFIX);
+    }
+
+    /**
+     * Record waiting to be written.
+     */
+    static final class Entry {
+        private final String cellId;
+        private final String dir;
+        private final EventLogRecord record;
+
+        Entry(String cellId, String dir, EventLogRecord record) {
+            this.cellId = cellId;
+            this.dir = dir;
+            this.record = record;
+        }
+    }
+}
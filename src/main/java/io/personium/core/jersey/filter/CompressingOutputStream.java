@@ -0,0 +1,197 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.jersey.filter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+
+/**
+ * OutputStream compressing the response body.
+ * <p>
+ * The body is kept until it reaches the minimum size, so that small bodies are written as they are.
+ * Once it reaches the minimum size, the response headers are changed for the encoding
+ * and the body is compressed as it is written. Flush is passed to the compressor,
+ * so that streamed bodies reach the client without waiting for the end.
+ * The headers must not be committed until the first byte is written to the underlying stream.
+ */
+class CompressingOutputStream extends OutputStream {
+
+    /** Encoding gzip. */
+    static final String GZIP = "gzip";
+    /** Encoding deflate. */
+    static final String DEFLATE = "deflate";
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final OutputStream out;
+    private final MultivaluedMap<String, Object> headers;
+    private final String encoding;
+    private final boolean gzip;
+    private final int level;
+
+    /** Body kept until the minimum size. */
+    private final byte[] pending;
+    private int pendingCount = 0;
+
+    private boolean decided = false;
+    private boolean finished = false;
+    private Deflater deflater;
+    private DeflaterOutputStream deflaterOut;
+    private CRC32 crc;
+
+    /**
+     * Constructor.
+     * @param out stream to write to
+     * @param headers response headers
+     * @param encoding gzip or deflate
+     * @param minSize minimum size of the body to compress
+     * @param level compression level
+     */
+    CompressingOutputStream(OutputStream out, MultivaluedMap<String, Object> headers,
+            String encoding, int minSize, int level) {
+        this.out = out;
+        this.headers = headers;
+        this.encoding = encoding;
+        this.gzip = GZIP.equals(encoding);
+        this.level = level;
+        this.pending = new byte[Math.max(minSize, 0)];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (finished) {
+            throw new IOException("Stream already finished.");
+        }
+        if (!decided) {
+            if (pendingCount + len < pending.length) {
+                System.arraycopy(b, off, pending, pendingCount, len);
+                pendingCount += len;
+                return;
+            }
+            startCompression();
+        }
+        writeBody(b, off, len);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Nothing is flushed while the body is kept, since the encoding is not decided.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (!decided) {
+            return;
+        }
+        if (deflaterOut != null) {
+            deflaterOut.flush();
+        } else {
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+        out.close();
+    }
+
+    /**
+     * Write the rest of the body without closing the underlying stream.
+     * Bodies smaller than the minimum size are written without compression.
+     * @throws IOException IO error
+     */
+    void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        try {
+            if (!decided) {
+                decided = true;
+                out.write(pending, 0, pendingCount);
+                return;
+            }
+            if (deflaterOut != null) {
+                deflaterOut.finish();
+                if (gzip) {
+                    writeInt((int) crc.getValue());
+                    writeInt((int) deflater.getBytesRead());
+                }
+            }
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Return the Deflater to the pool.
+     * Called also when writing the body failed.
+     */
+    void release() {
+        if (deflater != null) {
+            DeflaterPool.release(gzip, deflater);
+            deflater = null;
+        }
+    }
+
+    private void startCompression() throws IOException {
+        decided = true;
+        headers.remove(HttpHeaders.CONTENT_LENGTH);
+        headers.putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+        deflater = DeflaterPool.borrow(gzip, level);
+        if (gzip) {
+            crc = new CRC32();
+            out.write(GZIP_HEADER);
+        }
+        deflaterOut = new DeflaterOutputStream(out, deflater, BUFFER_SIZE, true);
+        writeBody(pending, 0, pendingCount);
+    }
+
+    private void writeBody(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return;
+        }
+        if (deflaterOut == null) {
+            out.write(b, off, len);
+            return;
+        }
+        if (crc != null) {
+            crc.update(b, off, len);
+        }
+        deflaterOut.write(b, off, len);
+    }
+
+    /** Write int in little endian as gzip trailer. */
+    private void writeInt(int value) throws IOException {
+        for (int i = 0; i < Integer.BYTES; i++) {
+            out.write(value >>> (Byte.SIZE * i));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.jersey.filter;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+import io.personium.core.PersoniumUnitConfig;
+
+/**
+ * Pool of Deflaters.
+ * A Deflater holds native memory that is released only by end() or finalization,
+ * so that it is reused instead of being created for every response.
+ */
+final class DeflaterPool {
+
+    /** Deflaters for gzip (raw deflate data). */
+    private static final Queue<Deflater> NOWRAP = new ConcurrentLinkedQueue<Deflater>();
+    private static final AtomicInteger NOWRAP_SIZE = new AtomicInteger();
+
+    /** Deflaters for deflate (zlib format). */
+    private static final Queue<Deflater> ZLIB = new ConcurrentLinkedQueue<Deflater>();
+    private static final AtomicInteger ZLIB_SIZE = new AtomicInteger();
+
+    private DeflaterPool() {
+    }
+
+    /**
+     * Get a Deflater.
+     * @param nowrap true: without zlib header and checksum
+     * @param level compression level
+     * @return Deflater
+     */
+    static Deflater borrow(boolean nowrap, int level) {
+        Deflater deflater = queue(nowrap).poll();
+        if (deflater == null) {
+            return new Deflater(level, nowrap);
+        }
+        size(nowrap).decrementAndGet();
+        deflater.setLevel(level);
+        return deflater;
+    }
+
+    /**
+     * Return the Deflater got by borrow().
+     * @param nowrap nowrap given to borrow()
+     * @param deflater Deflater
+     */
+    static void release(boolean nowrap, Deflater deflater) {
+        deflater.reset();
+        if (size(nowrap).incrementAndGet() > PersoniumUnitConfig.getCompressionPoolSize()) {
+            size(nowrap).decrementAndGet();
+            deflater.end();
+            return;
+        }
+        queue(nowrap).offer(deflater);
+    }
+
+    private static Queue<Deflater> queue(boolean nowrap) {
+        return nowrap ? NOWRAP : ZLIB;
+    }
+
+    private static AtomicInteger size(boolean nowrap) {
+        return nowrap ? NOWRAP_SIZE : ZLIB_SIZE;
+    }
+}
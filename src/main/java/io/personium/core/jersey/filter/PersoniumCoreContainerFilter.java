@@ -35,6 +35,8 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,21 +46,33 @@ import io.personium.common.utils.PersoniumCoreUtils.HttpHeaders;
 import io.personium.core.PersoniumCoreException;
 import io.personium.core.PersoniumReadDeleteModeManager;
 import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.metrics.CoreMetrics;
+import io.personium.core.metrics.RequestTiming;
+import io.personium.core.model.DavCommon;
 import io.personium.core.model.lock.CellLockManager;
 import io.personium.core.utils.ResourceUtils;
 
 /**
  * Filter applied to request and response of this application.
+ * The response is completed after its body has been written.
  */
 @Provider
 @PreMatching
-public final class PersoniumCoreContainerFilter implements ContainerRequestFilter, ContainerResponseFilter {
+public final class PersoniumCoreContainerFilter implements ContainerRequestFilter, ContainerResponseFilter,
+        WriterInterceptor {
 
     static Logger log = LoggerFactory.getLogger(PersoniumCoreContainerFilter.class);
 
     /** 1day. */
     private static final int ONE_DAY_SECONDS = 86400;
 
+    /** Server-Timing header. */
+    static final String SERVER_TIMING = "Server-Timing";
+
+    /** Property key of the response status kept until the body has been written. */
+    private static final String PROP_RESPONSE_STATUS = "responseStatus";
+    private static final String PROP_TIMING = "requestTiming";
+
     //Regular expression of possible values ​​of Accept header
     static Pattern acceptHeaderValueRegex = Pattern.compile("\\A\\p{ASCII}*\\z");
 
@@ -87,6 +101,10 @@ public final class PersoniumCoreContainerFilter implements ContainerRequestFilte
         //Save the time of the request in the session
         long requestTime = System.currentTimeMillis();
         requestContext.setProperty("requestTime", requestTime);
+        if (PersoniumUnitConfig.isMetricsEnabled() || PersoniumUnitConfig.isServerTimingEnabled()) {
+            //Kept also in the request, since the response may be made on another thread
+            requestContext.setProperty(PROP_TIMING, RequestTiming.start());
+        }
 
         overrideMethod(requestContext);
         overrideHeaders(requestContext);
@@ -112,9 +130,50 @@ public final class PersoniumCoreContainerFilter implements ContainerRequestFilte
 
         //Add a header common to all responses
         addResponseHeaders(requestContext.getHeaders(), responseContext);
+
+        RequestTiming timing = (RequestTiming) requestContext.getProperty(PROP_TIMING);
+        if (timing != null && PersoniumUnitConfig.isServerTimingEnabled()) {
+            //Phases after this point (e.g. writing of the body) can not be included
+            responseContext.getHeaders().putSingle(SERVER_TIMING, timing.toServerTiming());
+        }
+
+        if (responseContext.hasEntity()) {
+            //Complete after writing the body
+            requestContext.setProperty(PROP_RESPONSE_STATUS, responseContext.getStatus());
+        } else {
+            complete((Long) requestContext.getProperty("requestTime"), responseContext.getStatus(), timing);
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        RequestTiming.begin(RequestTiming.Phase.WRITE);
+        try {
+            context.proceed();
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.WRITE);
+            Integer status = (Integer) context.getProperty(PROP_RESPONSE_STATUS);
+            if (status != null) {
+                context.removeProperty(PROP_RESPONSE_STATUS);
+                complete((Long) context.getProperty("requestTime"), status,
+                        (RequestTiming) context.getProperty(PROP_TIMING));
+            }
+        }
+    }
+
+    /**
+     * Complete the request.
+     * @param requestTime time of the request
+     * @param responseStatus response status
+     * @param timing timing of the request. null if not measured.
+     */
+    private void complete(Long requestTime, int responseStatus, RequestTiming timing) {
+        RequestTiming.stop();
+        if (timing != null && PersoniumUnitConfig.isMetricsEnabled()) {
+            CoreMetrics.record(timing);
+        }
         //Output response log
-        Long requestTime = (Long) requestContext.getProperty("requestTime");
-        responseLog(requestTime, responseContext.getStatus());
+        responseLog(requestTime, responseStatus);
     }
 
     private void overrideMethod(ContainerRequestContext requestContext) {
@@ -198,6 +257,7 @@ public final class PersoniumCoreContainerFilter implements ContainerRequestFilte
                     io.personium.common.utils.PersoniumCoreUtils.HttpMethod.MERGE,
                     io.personium.common.utils.PersoniumCoreUtils.HttpMethod.MKCOL,
                     io.personium.common.utils.PersoniumCoreUtils.HttpMethod.MOVE,
+                    DavCommon.METHOD_COPY,
                     io.personium.common.utils.PersoniumCoreUtils.HttpMethod.PROPFIND,
                     io.personium.common.utils.PersoniumCoreUtils.HttpMethod.PROPPATCH,
                     io.personium.common.utils.PersoniumCoreUtils.HttpMethod.ACL
@@ -0,0 +1,180 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.jersey.filter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.model.file.StreamingOutputForDavFile;
+
+/**
+ * Interceptor compressing the response body with gzip or deflate.
+ * <p>
+ * Only the bodies of the configured media types such as OData JSON, PROPFIND XML and $metadata are compressed.
+ * The contents of Dav files are not compressed, since they are often compressed already
+ * and their length and range are given by the stored file.
+ */
+@Provider
+public class ResponseCompressionInterceptor implements WriterInterceptor {
+
+    private static final String HEADER_CONTENT_RANGE = "Content-Range";
+    private static final String QVALUE_PARAM = "q=";
+
+    /** Setting value the parsed media types are made from. */
+    private static volatile String mediaTypesValue;
+    /** Media types to compress. */
+    private static volatile List<MediaType> mediaTypes = Collections.emptyList();
+
+    @Context
+    private HttpHeaders requestHeaders;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException {
+        if (!isCompressible(context)) {
+            context.proceed();
+            return;
+        }
+        MultivaluedMap<String, Object> headers = context.getHeaders();
+        addVary(headers);
+        String encoding = negotiate(requestHeaders.getHeaderString(HttpHeaders.ACCEPT_ENCODING));
+        if (encoding == null) {
+            context.proceed();
+            return;
+        }
+        CompressingOutputStream out = new CompressingOutputStream(context.getOutputStream(), headers, encoding,
+                PersoniumUnitConfig.getCompressionMinSize(), PersoniumUnitConfig.getCompressionLevel());
+        context.setOutputStream(out);
+        try {
+            context.proceed();
+            out.finish();
+        } finally {
+            out.release();
+        }
+    }
+
+    private static boolean isCompressible(WriterInterceptorContext context) {
+        if (!PersoniumUnitConfig.isCompressionEnabled()
+                || context.getEntity() instanceof StreamingOutputForDavFile) {
+            return false;
+        }
+        MultivaluedMap<String, Object> headers = context.getHeaders();
+        if (headers.containsKey(HttpHeaders.CONTENT_ENCODING) || headers.containsKey(HEADER_CONTENT_RANGE)) {
+            return false;
+        }
+        MediaType mediaType = context.getMediaType();
+        if (mediaType == null) {
+            return false;
+        }
+        for (MediaType target : getMediaTypes()) {
+            if (target.isCompatible(mediaType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void addVary(MultivaluedMap<String, Object> headers) {
+        List<Object> values = headers.get(HttpHeaders.VARY);
+        if (values != null) {
+            for (Object value : values) {
+                if (value.toString().toLowerCase().contains(HttpHeaders.ACCEPT_ENCODING.toLowerCase())) {
+                    return;
+                }
+            }
+        }
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    }
+
+    /**
+     * Choose the encoding from Accept-Encoding header.
+     * gzip is preferred when the qvalues are the same.
+     * @param acceptEncoding value of Accept-Encoding header
+     * @return gzip, deflate or null if neither is acceptable
+     */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        float gzip = -1;
+        float deflate = -1;
+        float any = -1;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String coding = parts[0].trim().toLowerCase();
+            float q = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim().toLowerCase();
+                if (param.startsWith(QVALUE_PARAM)) {
+                    try {
+                        q = Float.parseFloat(param.substring(QVALUE_PARAM.length()));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (CompressingOutputStream.GZIP.equals(coding) || "x-gzip".equals(coding)) {
+                gzip = q;
+            } else if (CompressingOutputStream.DEFLATE.equals(coding)) {
+                deflate = q;
+            } else if ("*".equals(coding)) {
+                any = q;
+            }
+        }
+        if (gzip < 0) {
+            gzip = any;
+        }
+        if (deflate < 0) {
+            deflate = any;
+        }
+        if (gzip > 0 && gzip >= deflate) {
+            return CompressingOutputStream.GZIP;
+        } else if (deflate > 0) {
+            return CompressingOutputStream.DEFLATE;
+        }
+        return null;
+    }
+
+    private static List<MediaType> getMediaTypes() {
+        String value = PersoniumUnitConfig.getCompressionMediaTypes();
+        if (value != null && !value.equals(mediaTypesValue)) {
+            List<MediaType> list = new ArrayList<MediaType>();
+            for (String type : value.split(",")) {
+                if (!type.trim().isEmpty()) {
+                    list.add(MediaType.valueOf(type.trim()));
+                }
+            }
+            mediaTypes = list;
+            mediaTypesValue = value;
+        }
+        return mediaTypes;
+    }
+}
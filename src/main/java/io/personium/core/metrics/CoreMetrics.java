@@ -0,0 +1,151 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.metrics;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import io.personium.core.event.EventDispatcher;
+import io.personium.core.event.EventDispatcher.Lane;
+import io.personium.core.metrics.RequestTiming.Phase;
+import io.personium.core.model.lock.LockScheduler;
+
+/**
+ * Metrics of this application.
+ * Histograms of the processing time of requests and of each phase are kept since startup.
+ * The state of the lanes processing events and the yields of low priority lock holders are also given.
+ */
+public class CoreMetrics {
+
+    /** Metric name of the request processing time. */
+    static final String REQUEST_DURATION = "personium_request_duration_seconds";
+    /** Metric name of the processing time of each phase. */
+    static final String PHASE_DURATION = "personium_request_phase_duration_seconds";
+    /** Metric name of the number of the events waiting on each lane. */
+    static final String EVENT_LANE_QUEUE = "personium_event_lane_queue_size";
+    /** Metric name of the time the oldest event has waited on each lane. */
+    static final String EVENT_LANE_LAG = "personium_event_lane_lag_seconds";
+    /** Metric name of the number of the events processed on each lane. */
+    static final String EVENT_LANE_PROCESSED = "personium_event_lane_processed_total";
+    /** Metric name of the number of the locks yielded by low priority work. */
+    static final String LOCK_YIELD = "personium_lock_yield_total";
+    /** Metric name of the time low priority work has waited after yielding locks. */
+    static final String LOCK_YIELD_TIME = "personium_lock_yield_seconds_total";
+
+    private static final double MILLIS_PER_SECOND = 1000d;
+
+    private static final LatencyHistogram REQUESTS = new LatencyHistogram();
+    private static final Map<Phase, LatencyHistogram> PHASES = new EnumMap<Phase, LatencyHistogram>(Phase.class);
+
+    static {
+        for (Phase phase : Phase.values()) {
+            PHASES.put(phase, new LatencyHistogram());
+        }
+    }
+
+    private CoreMetrics() {
+    }
+
+    /**
+     * Record the timing of a completed request.
+     * Phases the request did not pass through are not recorded.
+     * @param timing timing of the request
+     */
+    public static void record(RequestTiming timing) {
+        REQUESTS.record(timing.getTotalNanos());
+        for (Phase phase : Phase.values()) {
+            long elapsed = timing.getElapsedNanos(phase);
+            if (elapsed > 0) {
+                PHASES.get(phase).record(elapsed);
+            }
+        }
+    }
+
+    /**
+     * Get the histogram of the request processing time.
+     * @return histogram
+     */
+    public static LatencyHistogram getRequestHistogram() {
+        return REQUESTS;
+    }
+
+    /**
+     * Get the histogram of the processing time of the phase.
+     * @param phase phase
+     * @return histogram
+     */
+    public static LatencyHistogram getPhaseHistogram(Phase phase) {
+        return PHASES.get(phase);
+    }
+
+    /**
+     * Get the metrics in Prometheus text format.
+     * @return metrics
+     */
+    public static String toPrometheusText() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# HELP ").append(REQUEST_DURATION).append(" Time to process the requests.\n");
+        sb.append("# TYPE ").append(REQUEST_DURATION).append(" histogram\n");
+        REQUESTS.writePrometheus(sb, REQUEST_DURATION, "");
+        sb.append("# HELP ").append(PHASE_DURATION).append(" Time spent in each phase by the requests.\n");
+        sb.append("# TYPE ").append(PHASE_DURATION).append(" histogram\n");
+        for (Phase phase : Phase.values()) {
+            PHASES.get(phase).writePrometheus(sb, PHASE_DURATION, "phase=\"" + phase.getMetricName() + "\"");
+        }
+        writeEventLanes(sb);
+        writeLockYields(sb);
+        return sb.toString();
+    }
+
+    private static void writeLockYields(StringBuilder sb) {
+        sb.append("# HELP ").append(LOCK_YIELD).append(" Number of the locks yielded by low priority work.\n");
+        sb.append("# TYPE ").append(LOCK_YIELD).append(" counter\n");
+        sb.append(LOCK_YIELD).append(" ").append(LockScheduler.getYieldCount()).append("\n");
+        sb.append("# HELP ").append(LOCK_YIELD_TIME)
+                .append(" Time low priority work has waited after yielding locks.\n");
+        sb.append("# TYPE ").append(LOCK_YIELD_TIME).append(" counter\n");
+        sb.append(LOCK_YIELD_TIME).append(" ")
+                .append(LockScheduler.getYieldTimeMillis() / MILLIS_PER_SECOND).append("\n");
+    }
+
+    private static void writeEventLanes(StringBuilder sb) {
+        List<Lane> lanes = EventDispatcher.getLanes();
+        if (lanes.isEmpty()) {
+            return;
+        }
+        sb.append("# HELP ").append(EVENT_LANE_QUEUE).append(" Number of the events waiting on each lane.\n");
+        sb.append("# TYPE ").append(EVENT_LANE_QUEUE).append(" gauge\n");
+        for (Lane lane : lanes) {
+            writeLane(sb, EVENT_LANE_QUEUE, lane, Integer.toString(lane.getQueueSize()));
+        }
+        sb.append("# HELP ").append(EVENT_LANE_LAG).append(" Time the oldest event has waited on each lane.\n");
+        sb.append("# TYPE ").append(EVENT_LANE_LAG).append(" gauge\n");
+        for (Lane lane : lanes) {
+            writeLane(sb, EVENT_LANE_LAG, lane, Double.toString(lane.getLagMillis() / MILLIS_PER_SECOND));
+        }
+        sb.append("# HELP ").append(EVENT_LANE_PROCESSED).append(" Number of the events processed on each lane.\n");
+        sb.append("# TYPE ").append(EVENT_LANE_PROCESSED).append(" counter\n");
+        for (Lane lane : lanes) {
+            writeLane(sb, EVENT_LANE_PROCESSED, lane, Long.toString(lane.getProcessedCount()));
+        }
+    }
+
+    private static void writeLane(StringBuilder sb, String name, Lane lane, String value) {
+        sb.append(name).append("{lane=\"").append(lane.getIndex()).append("\"} ").append(value).append("\n");
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.metrics;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latency.
+ * <p>
+ * Values are counted in buckets whose upper bounds are powers of two microseconds,
+ * so that recording is a few atomic additions without locking.
+ * The last bucket counts all the values larger than the others.
+ */
+public class LatencyHistogram {
+
+    /** Number of buckets. Upper bound of the last finite bucket is 2^34 us (about 4.8 hours). */
+    static final int BUCKET_COUNT = 36;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+
+    /**
+     * Record a value.
+     * @param nanos value (ns)
+     */
+    public void record(long nanos) {
+        long micros = nanos / 1000;
+        buckets.incrementAndGet(bucketIndex(micros));
+        count.increment();
+        sumMicros.add(micros);
+    }
+
+    /**
+     * Get the index of the bucket the value belongs to.
+     * @param micros value (us)
+     * @return index
+     */
+    static int bucketIndex(long micros) {
+        if (micros <= 1) {
+            return 0;
+        }
+        return Math.min(64 - Long.numberOfLeadingZeros(micros - 1), BUCKET_COUNT - 1);
+    }
+
+    /**
+     * Get the number of recorded values.
+     * @return number of values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Get the sum of recorded values.
+     * @return sum (us)
+     */
+    public long getSumMicros() {
+        return sumMicros.sum();
+    }
+
+    /**
+     * Get the upper bound of the bucket the percentile of recorded values falls into.
+     * @param percentile percentile (0-100)
+     * @return upper bound (us). -1 if nothing is recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return -1;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += counts[i];
+            if (cumulative >= target) {
+                return i == BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << i;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Write the histogram in Prometheus text format.
+     * The value is written in seconds.
+     * @param sb destination
+     * @param name metric name
+     * @param labels labels other than "le" (e.g. phase="es"). Empty if none.
+     */
+    public void writePrometheus(StringBuilder sb, String name, String labels) {
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += buckets.get(i);
+            String le = i == BUCKET_COUNT - 1 ? "+Inf" : microsToSeconds(1L << i);
+            sb.append(name).append("_bucket{").append(prefix).append("le=\"").append(le).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+        String braces = labels.isEmpty() ? "" : "{" + labels + "}";
+        sb.append(name).append("_sum").append(braces).append(' ').append(microsToSeconds(getSumMicros()))
+                .append('\n');
+        // _count is the same as the +Inf bucket so that they are consistent even while recording.
+        sb.append(name).append("_count").append(braces).append(' ').append(cumulative).append('\n');
+    }
+
+    private static String microsToSeconds(long micros) {
+        return BigDecimal.valueOf(micros).movePointLeft(6).stripTrailingZeros().toPlainString();
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.metrics;
+
+import java.util.Locale;
+
+/**
+ * Time spent in each phase of the request being processed by the current thread.
+ * <p>
+ * Components call {@link #begin(Phase)} and {@link #end(Phase)} around the processing of a phase.
+ * Nothing is measured on threads not processing a request.
+ * A request continued on another thread is handed over with {@link #stop()} and {@link #attach(RequestTiming)}.
+ * Nested calls of the same phase are measured only once, and different phases may overlap
+ * (e.g. ES access during the creation of the access context).
+ */
+public final class RequestTiming {
+
+    /**
+     * Phases of the request.
+     */
+    public enum Phase {
+        /** Creation of the access context (authentication). */
+        ACCESS("access"),
+        /** Acquisition of the lock. */
+        LOCK("lock"),
+        /** Access to the cache. */
+        CACHE("cache"),
+        /** Access to Elasticsearch. */
+        ES("es"),
+        /** Access to the file system. */
+        FS("fs"),
+        /** Writing of the response body. */
+        WRITE("write");
+
+        private final String metricName;
+
+        Phase(String metricName) {
+            this.metricName = metricName;
+        }
+
+        /**
+         * Get the name used in the metrics and Server-Timing header.
+         * @return name
+         */
+        public String getMetricName() {
+            return metricName;
+        }
+    }
+
+    /** Timing of the request processed by the current thread. */
+    private static final ThreadLocal<RequestTiming> CURRENT = new ThreadLocal<RequestTiming>();
+
+    private static final int PHASE_COUNT = Phase.values().length;
+
+    private final long startNanos;
+    private final long[] elapsedNanos = new long[PHASE_COUNT];
+    private final long[] beginNanos = new long[PHASE_COUNT];
+    private final int[] depth = new int[PHASE_COUNT];
+
+    /**
+     * Constructor.
+     * @param startNanos start time of the request (System.nanoTime())
+     */
+    RequestTiming(long startNanos) {
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Start measuring the request processed by the current thread.
+     * @return timing of the request
+     */
+    public static RequestTiming start() {
+        RequestTiming timing = new RequestTiming(System.nanoTime());
+        CURRENT.set(timing);
+        return timing;
+    }
+
+    /**
+     * Get the timing of the request processed by the current thread.
+     * @return timing. null if not measured.
+     */
+    public static RequestTiming current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Stop measuring the request processed by the current thread.
+     * @return timing. null if not measured.
+     */
+    public static RequestTiming stop() {
+        RequestTiming timing = CURRENT.get();
+        CURRENT.remove();
+        return timing;
+    }
+
+    /**
+     * Continue measuring the request on the current thread, handed over by {@link #stop()} on another thread.
+     * @param timing timing of the request. null if not measured.
+     */
+    public static void attach(RequestTiming timing) {
+        if (timing == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(timing);
+        }
+    }
+
+    /**
+     * Begin the phase.
+     * @param phase phase
+     */
+    public static void begin(Phase phase) {
+        RequestTiming timing = CURRENT.get();
+        if (timing != null) {
+            timing.doBegin(phase.ordinal(), System.nanoTime());
+        }
+    }
+
+    /**
+     * End the phase.
+     * @param phase phase
+     */
+    public static void end(Phase phase) {
+        RequestTiming timing = CURRENT.get();
+        if (timing != null) {
+            timing.doEnd(phase.ordinal(), System.nanoTime());
+        }
+    }
+
+    void doBegin(int phase, long now) {
+        if (depth[phase]++ == 0) {
+            beginNanos[phase] = now;
+        }
+    }
+
+    void doEnd(int phase, long now) {
+        if (depth[phase] == 0) {
+            // Begun before the measurement started.
+            return;
+        }
+        if (--depth[phase] == 0) {
+            elapsedNanos[phase] += now - beginNanos[phase];
+        }
+    }
+
+    /**
+     * Get the time spent in the phase.
+     * @param phase phase
+     * @return time (ns)
+     */
+    public long getElapsedNanos(Phase phase) {
+        return elapsedNanos[phase.ordinal()];
+    }
+
+    /**
+     * Get the time since the request started.
+     * @return time (ns)
+     */
+    public long getTotalNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Get the value of Server-Timing header.
+     * Phases not passed through are omitted.
+     * @return value of Server-Timing header
+     */
+    public String toServerTiming() {
+        StringBuilder sb = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            long elapsed = elapsedNanos[phase.ordinal()];
+            if (elapsed > 0) {
+                appendMetric(sb, phase.getMetricName(), elapsed);
+            }
+        }
+        appendMetric(sb, "total", getTotalNanos());
+        return sb.toString();
+    }
+
+    private static void appendMetric(StringBuilder sb, String name, long nanos) {
+        if (sb.length() > 0) {
+            sb.append(", ");
+        }
+        sb.append(name).append(";dur=").append(String.format(Locale.ROOT, "%.3f", nanos / 1000000.0));
+    }
+}
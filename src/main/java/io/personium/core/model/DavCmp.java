@@ -320,6 +320,15 @@ public interface DavCmp {
      */
     ResponseBuilder move(String etag, String overwrite, DavDestination davDestination);
 
+    /**
+     * Copy processing is performed.
+     * @param overwrite Whether to overwrite the destination resource
+     * @param depth Depth header. "0" copies a collection without its members.
+     * @param davDestination Hierarchy information of the destination
+     * @return ResponseBuilder response
+     */
+    ResponseBuilder copy(String overwrite, String depth, DavDestination davDestination);
+
     /**
      * Returns the URL of this DavNode resource.
      * @return URL string
@@ -40,6 +40,9 @@ public class DavCommon {
     /** Overwrite Value when header overwrite is not allowed.*/
     public static final String OVERWRITE_FALSE = "F";
 
+    /** COPY method.*/
+    public static final String METHOD_COPY = "COPY";
+
     /**
      * Invalid name check.
      * @param name Name of the resource to be checked
@@ -0,0 +1,101 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+
+import io.personium.core.PersoniumCoreException;
+import io.personium.core.event.EventBus;
+import io.personium.core.event.PersoniumEvent;
+import io.personium.core.event.PersoniumEventType;
+import io.personium.core.utils.UriUtils;
+
+/**
+ * A class that performs processing relating to Copy of Dav after receiving processing delegation from the JaxRS Resource object.
+ * The destination is checked in the same way as MOVE.
+ */
+public class DavCopyResource extends DavMoveResource {
+
+    /** Depth header value to copy a collection without its members. */
+    private static final String DEPTH_ZERO = "0";
+
+    /**
+     * constructor.
+     * @param parent parent resource
+     * @param davCmp Parts responsible for processing dependent on backend implementation
+     * @param headers Request header information
+     */
+    public DavCopyResource(DavRsCmp parent, DavCmp davCmp, HttpHeaders headers) {
+        super(parent, davCmp, headers);
+    }
+
+    /**
+     * Processing of the COPY method.
+     * @return JAX-RS response object
+     */
+    public Response doCopy() {
+
+        //Request header validation
+        validateHeaders();
+
+        //Generate destination information
+        DavDestination davDestination = createDestination(getBoxRsCmp());
+
+        //Create data
+        ResponseBuilder response = this.davCmp.copy(this.overwrite, this.depth, davDestination);
+        Response res = response.build();
+
+        // post event to EventBus. The destination is written as PUT does.
+        String object = UriUtils.convertSchemeFromHttpToLocalCell(this.getCell().getUrl(),
+                davDestination.getDestinationUri());
+        String info = Integer.toString(res.getStatus());
+        String type = PersoniumEventType.webdav(PersoniumEventType.Operation.UPDATE);
+        PersoniumEvent event = new PersoniumEvent.Builder()
+                .type(type)
+                .object(object)
+                .info(info)
+                .davRsCmp(this)
+                .build();
+        EventBus eventBus = this.getCell().getEventBus();
+        eventBus.post(event);
+
+        return res;
+    }
+
+    @Override
+    void validateHeaders() {
+        super.validateHeaders();
+
+        String url = this.getUrl();
+        if (!url.endsWith("/")) {
+            url += "/";
+        }
+        if (destination.startsWith(url)) {
+            //A collection can not be copied into itself
+            throw PersoniumCoreException.Dav.DESTINATION_UNDER_SOURCE_URL.params(destination);
+        }
+    }
+
+    @Override
+    protected void validateDepthHeader() {
+        if (!DavCommon.DEPTH_INFINITY.equalsIgnoreCase(depth) && !DEPTH_ZERO.equals(depth)) {
+            throw PersoniumCoreException.Dav.INVALID_DEPTH_HEADER.params(depth);
+        }
+    }
+}
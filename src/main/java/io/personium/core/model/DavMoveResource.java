@@ -32,9 +32,12 @@ import io.personium.core.PersoniumUnitConfig;
  */
 public class DavMoveResource extends DavRsCmp {
 
-    private String depth = null;
-    private String overwrite = null;
-    private String destination = null;
+    /** Depth header. */
+    protected String depth = null;
+    /** Overwrite header. */
+    protected String overwrite = null;
+    /** Destination header. */
+    protected String destination = null;
     private String ifMatch = null;
 
     /**
@@ -65,22 +68,34 @@ public class DavMoveResource extends DavRsCmp {
         BoxRsCmp boxRsCmp = getBoxRsCmp();
 
         //Generate destination information
-        DavDestination davDestination;
+        DavDestination davDestination = createDestination(boxRsCmp);
+
+        //Update / delete data
+        ResponseBuilder response = this.davCmp.move(this.ifMatch, this.overwrite, davDestination);
+
+        return response.build();
+    }
+
+    /**
+     * Generate destination information.
+     * @param boxRsCmp Box of the destination
+     * @return destination information
+     */
+    protected DavDestination createDestination(BoxRsCmp boxRsCmp) {
         try {
-            davDestination = new DavDestination(destination, this.getAccessContext().getBaseUri(), boxRsCmp);
+            return new DavDestination(destination, this.getAccessContext().getBaseUri(), boxRsCmp);
         } catch (URISyntaxException e) {
             //Not in URI format
             throw PersoniumCoreException.Dav.INVALID_REQUEST_HEADER.params(org.apache.http.HttpHeaders.DESTINATION,
                     destination);
         }
-
-        //Update / delete data
-        ResponseBuilder response = this.davCmp.move(this.ifMatch, this.overwrite, davDestination);
-
-        return response.build();
     }
 
-    private BoxRsCmp getBoxRsCmp() {
+    /**
+     * Acquire the resource information of the topmost Box.
+     * @return BoxRsCmp
+     */
+    protected BoxRsCmp getBoxRsCmp() {
         //Acquire the resource information of the topmost Box
         DavRsCmp davRsCmp = this;
         for (int i = 0; i <= PersoniumUnitConfig.getMaxCollectionDepth(); i++) {
@@ -107,9 +122,7 @@ public class DavMoveResource extends DavRsCmp {
      */
     void validateHeaders() {
         //Depth header
-        if (!DavCommon.DEPTH_INFINITY.equalsIgnoreCase(depth)) {
-            throw PersoniumCoreException.Dav.INVALID_DEPTH_HEADER.params(depth);
-        }
+        validateDepthHeader();
 
         //Overwrite header
         if (!DavCommon.OVERWRITE_FALSE.equalsIgnoreCase(overwrite)
@@ -144,6 +157,15 @@ public class DavMoveResource extends DavRsCmp {
         }
     }
 
+    /**
+     * Validate the Depth header.
+     */
+    protected void validateDepthHeader() {
+        if (!DavCommon.DEPTH_INFINITY.equalsIgnoreCase(depth)) {
+            throw PersoniumCoreException.Dav.INVALID_DEPTH_HEADER.params(depth);
+        }
+    }
+
     /**
      * Create and return path information of the destination object.
      * @return DavPath Object managing the resource path of the destination
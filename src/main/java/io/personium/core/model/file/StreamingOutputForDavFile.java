@@ -33,33 +33,46 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.metrics.RequestTiming;
 
 /**
- * StreamingOutput class to use when returning the contents of the Dav file to Response Internally create a hard link for reading only and delete it after completion of output.
+ * StreamingOutput class to use when returning the contents of the Dav file to Response.
+ * The file is opened when constructed. Since the content of a Dav file is written into a new file on update,
+ * the opened file keeps the content until the output completes.
  */
 public class StreamingOutputForDavFile implements StreamingOutput {
 
     private static Logger logger = LoggerFactory.getLogger(StreamingOutputForDavFile.class);
 
     /**
-     * Maximum number of retries at the time of reading / writing Dav file, hard link creation / file name modification.
+     * Maximum number of retries at the time of reading Dav file.
      */
-    private static int maxRetryCount = PersoniumUnitConfig.getDavFileOperationRetryCount();
+    private static volatile int maxRetryCount = PersoniumUnitConfig.getDavFileOperationRetryCount();
 
     /**
-     * Retry interval (msec) at the time of reading / writing Dav file, hard link creation / file name modification.
+     * Retry interval (msec) at the time of reading Dav file.
      */
-    private static long retryInterval = PersoniumUnitConfig.getDavFileOperationRetryInterval();
+    private static volatile long retryInterval = PersoniumUnitConfig.getDavFileOperationRetryInterval();
+
+    static {
+        PersoniumUnitConfig.addReloadListener(new Runnable() {
+            @Override
+            public void run() {
+                maxRetryCount = PersoniumUnitConfig.getDavFileOperationRetryCount();
+                retryInterval = PersoniumUnitConfig.getDavFileOperationRetryInterval();
+            }
+        });
+    }
 
     /**
-     * The hard link path for loading.
+     * The path of the file to read.
      */
-    Path hardLinkPath = null;
+    Path filePath = null;
 
     /**
-     * Input stream from the hard link for reading.
+     * Input stream from the file.
      */
-    InputStream hardLinkInput = null;
+    InputStream fileInput = null;
 
     /**
      * Constructor.
@@ -70,30 +83,32 @@ public class StreamingOutputForDavFile implements StreamingOutput {
      */
     public StreamingOutputForDavFile(String fileFullPath, String cellId, String encryptionType)
             throws BinaryDataNotFoundException {
-        if (!Files.exists(Paths.get(fileFullPath))) {
+        filePath = Paths.get(fileFullPath);
+        if (!Files.exists(filePath)) {
             throw new BinaryDataNotFoundException(fileFullPath);
         }
 
-        //Generate a unique name to create a read-only hard link.
-        String hardLinkName = UniqueNameComposer.compose(fileFullPath);
+        RequestTiming.begin(RequestTiming.Phase.FS);
+        try {
+            openFile(cellId, encryptionType);
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.FS);
+        }
+    }
 
+    private void openFile(String cellId, String encryptionType) throws BinaryDataNotFoundException {
         for (int i = 0; i < maxRetryCount; i++) {
             try {
-                synchronized (fileFullPath) {
-                    //Create a hard link.
-                    hardLinkPath = Files.createLink(Paths.get(hardLinkName), Paths.get(fileFullPath));
-                }
-                //Get input stream from hard link
-                InputStream inputStream;
                 // Perform decryption.
                 DataCryptor cryptor = new DataCryptor(cellId);
-                inputStream = cryptor.decode(new FileInputStream(hardLinkPath.toFile()), encryptionType);
-                hardLinkInput = new BufferedInputStream(inputStream);
+                InputStream inputStream = cryptor.decode(new FileInputStream(filePath.toFile()), encryptionType);
+                fileInput = new BufferedInputStream(inputStream);
                 //End if successful
                 return;
             } catch (IOException e) {
                 //Retry until the specified number of times.
-                logger.debug(String.format("Creating hard link %s failed. Will try again.", hardLinkName));
+                //The file with the fixed name of the cell snapshot is replaced in place.
+                logger.debug(String.format("Opening file %s failed. Will try again.", filePath));
                 try {
                     Thread.sleep(retryInterval);
                 } catch (InterruptedException e1) {
@@ -102,7 +117,7 @@ public class StreamingOutputForDavFile implements StreamingOutput {
             }
         }
 
-        throw new BinaryDataNotFoundException("Unable to create hard link for DAV file: " + hardLinkName);
+        throw new BinaryDataNotFoundException("Unable to open DAV file: " + filePath);
     }
 
     /**
@@ -110,15 +125,18 @@ public class StreamingOutputForDavFile implements StreamingOutput {
      */
     @Override
     public void write(OutputStream output) throws IOException, WebApplicationException {
-        if (null == hardLinkInput) {
-            throw new WebApplicationException(new BinaryDataNotFoundException(hardLinkPath.toString()));
+        if (null == fileInput) {
+            throw new WebApplicationException(new BinaryDataNotFoundException(filePath.toString()));
         }
+        RequestTiming.begin(RequestTiming.Phase.FS);
         try {
-            IOUtils.copy(hardLinkInput, output);
+            IOUtils.copy(fileInput, output);
         } finally {
-            IOUtils.closeQuietly(hardLinkInput);
-            //Cleanup. Delete the reading hard link for yourself.
-            Files.delete(hardLinkPath);
+            try {
+                IOUtils.closeQuietly(fileInput);
+            } finally {
+                RequestTiming.end(RequestTiming.Phase.FS);
+            }
         }
     }
 
@@ -18,7 +18,6 @@ package io.personium.core.model.file;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.file.Files;
 import java.util.List;
 
 import javax.ws.rs.WebApplicationException;
@@ -29,9 +28,10 @@ import io.personium.core.PersoniumCoreException;
 import io.personium.core.PersoniumCoreLog;
 import io.personium.core.http.header.ByteRangeSpec;
 import io.personium.core.http.header.RangeHeaderHandler;
+import io.personium.core.metrics.RequestTiming;
 
 /**
- * StreamingOutput class to use when returning the contents of the Dav file to Response Internally create a hard link for reading only and delete it after completion of output.
+ * StreamingOutput class to use when returning the range of the contents of the Dav file to Response.
  */
 public class StreamingOutputForDavFileWithRange extends StreamingOutputForDavFile {
 
@@ -59,6 +59,7 @@ public class StreamingOutputForDavFileWithRange extends StreamingOutputForDavFil
 
     @Override
     public void write(OutputStream output) throws IOException, WebApplicationException {
+        RequestTiming.begin(RequestTiming.Phase.FS);
         try {
             //Because it does not correspond to MultiPart, it processes only the first byte-renge-set.
             int rangeIndex = 0;
@@ -69,14 +70,14 @@ public class StreamingOutputForDavFileWithRange extends StreamingOutputForDavFil
             long first = brs.getFirstBytePos();
             long last = brs.getLastBytePos();
             //Skip to the beginning of Range
-            if (hardLinkInput.skip(first) != first) {
+            if (fileInput.skip(first) != first) {
                 PersoniumCoreLog.Dav.FILE_TOO_SHORT
                         .params("skip failed", fileSize, range.getRangeHeaderField()).writeLog();
                 throw PersoniumCoreException.Dav.FS_INCONSISTENCY_FOUND;
             }
             //Return to the end of Range
             for (long pos = first; pos < last + 1; pos++) {
-                chr = hardLinkInput.read();
+                chr = fileInput.read();
                 if (chr == -1) {
                     PersoniumCoreLog.Dav.FILE_TOO_SHORT
                             .params("too short.size", fileSize, range.getRangeHeaderField()).writeLog();
@@ -85,8 +86,11 @@ public class StreamingOutputForDavFileWithRange extends StreamingOutputForDavFil
                 output.write((char) chr);
             }
         } finally {
-            IOUtils.closeQuietly(hardLinkInput);
-            Files.delete(hardLinkPath);
+            try {
+                IOUtils.closeQuietly(fileInput);
+            } finally {
+                RequestTiming.end(RequestTiming.Phase.FS);
+            }
         }
     }
 
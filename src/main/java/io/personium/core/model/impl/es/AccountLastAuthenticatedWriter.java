@@ -0,0 +1,170 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.es;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.model.Cell;
+import io.personium.core.model.ModelFactory;
+
+/**
+ * Writer of the last login time of Accounts.
+ * The login time is kept on memory and written to ES in background,
+ * so that the authentication does not wait for the update.
+ * Multiple logins of the same Account between writes are coalesced into one update.
+ */
+public class AccountLastAuthenticatedWriter {
+
+    /** Logger. */
+    private static Logger log = LoggerFactory.getLogger(AccountLastAuthenticatedWriter.class);
+
+    private static volatile AccountLastAuthenticatedWriter singleton;
+
+    /** Login time not written yet. Cell ID -> (Account ID -> time). */
+    private Map<String, Map<String, Long>> pending = new HashMap<String, Map<String, Long>>();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Constructor.
+     */
+    AccountLastAuthenticatedWriter() {
+    }
+
+    /**
+     * Get the instance.
+     * @return AccountLastAuthenticatedWriter
+     */
+    static AccountLastAuthenticatedWriter getInstance() {
+        if (singleton == null) {
+            synchronized (AccountLastAuthenticatedWriter.class) {
+                if (singleton == null) {
+                    singleton = new AccountLastAuthenticatedWriter();
+                }
+            }
+        }
+        return singleton;
+    }
+
+    /**
+     * Start the writer.
+     */
+    public static void start() {
+        AccountLastAuthenticatedWriter writer = getInstance();
+        final ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+        builder.setNameFormat("last-authenticated-writer-%d");
+        builder.setDaemon(true);
+        writer.scheduler = Executors.newSingleThreadScheduledExecutor(builder.build());
+        long interval = PersoniumUnitConfig.getAccountLastAuthenticatedFlushInterval();
+        writer.scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    getInstance().flush();
+                } catch (RuntimeException e) {
+                    log.warn("Failed to write last login time.", e);
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the writer.
+     * Login time not written yet is written before return.
+     */
+    public static void stop() {
+        AccountLastAuthenticatedWriter writer = singleton;
+        if (writer == null || writer.scheduler == null) {
+            return;
+        }
+        try {
+            writer.scheduler.shutdown();
+            if (!writer.scheduler.awaitTermination(1, TimeUnit.SECONDS)) {
+                writer.scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            writer.scheduler.shutdownNow();
+        }
+        writer.flush();
+    }
+
+    /**
+     * Record successful login of the Account.
+     * @param cell cell the Account belongs to
+     * @param accountId Account ID
+     */
+    public static void record(Cell cell, String accountId) {
+        getInstance().put(cell.getId(), accountId, System.currentTimeMillis());
+    }
+
+    /**
+     * Keep the login time.
+     * @param cellId cell ID
+     * @param accountId Account ID
+     * @param time login time
+     */
+    synchronized void put(String cellId, String accountId, long time) {
+        Map<String, Long> accounts = pending.get(cellId);
+        if (accounts == null) {
+            accounts = new HashMap<String, Long>();
+            pending.put(cellId, accounts);
+        }
+        Long current = accounts.get(accountId);
+        if (current == null || current < time) {
+            accounts.put(accountId, time);
+        }
+    }
+
+    /**
+     * Take out the login time kept so far.
+     * @return Cell ID -> (Account ID -> time)
+     */
+    synchronized Map<String, Map<String, Long>> drain() {
+        Map<String, Map<String, Long>> ret = pending;
+        pending = new HashMap<String, Map<String, Long>>();
+        return ret;
+    }
+
+    /**
+     * Write the login time kept so far.
+     * One bulk request is issued for each cell.
+     */
+    void flush() {
+        for (Map.Entry<String, Map<String, Long>> entry : drain().entrySet()) {
+            try {
+                Cell cell = ModelFactory.cellFromId(entry.getKey());
+                if (cell == null) {
+                    // The cell has been deleted.
+                    continue;
+                }
+                ModelFactory.ODataCtl.cellCtl(cell).updateLastAuthenticated(entry.getValue());
+            } catch (RuntimeException e) {
+                // Login time is not important enough to retry.
+                log.warn("Failed to write last login time. CellId:" + entry.getKey(), e);
+            }
+        }
+    }
+}
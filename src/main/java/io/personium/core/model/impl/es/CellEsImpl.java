@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -30,8 +31,8 @@ import org.odata4j.core.OEntity;
 import org.odata4j.core.OEntityKey;
 import org.odata4j.core.OProperty;
 import org.odata4j.expression.BoolCommonExpression;
+import org.odata4j.producer.BaseResponse;
 import org.odata4j.producer.EntitiesResponse;
-import org.odata4j.producer.EntityResponse;
 import org.odata4j.producer.InlineCount;
 import org.odata4j.producer.ODataProducer;
 import org.odata4j.producer.QueryInfo;
@@ -52,12 +53,10 @@ import io.personium.core.PersoniumUnitConfig;
 import io.personium.core.auth.AccessContext;
 import io.personium.core.auth.AuthUtils;
 import io.personium.core.event.EventBus;
-import io.personium.core.event.EventUtils;
 import io.personium.core.model.Box;
 import io.personium.core.model.BoxCmp;
 import io.personium.core.model.Cell;
 import io.personium.core.model.CellCmp;
-import io.personium.core.model.CellSnapshotCellCmp;
 import io.personium.core.model.ModelFactory;
 import io.personium.core.model.ctl.Account;
 import io.personium.core.model.ctl.Common;
@@ -67,19 +66,20 @@ import io.personium.core.model.ctl.ReceivedMessage;
 import io.personium.core.model.ctl.Relation;
 import io.personium.core.model.ctl.Rule;
 import io.personium.core.model.ctl.SentMessage;
-import io.personium.core.model.file.BinaryDataAccessException;
 import io.personium.core.model.impl.es.accessor.CellAccessor;
 import io.personium.core.model.impl.es.accessor.CellDataAccessor;
 import io.personium.core.model.impl.es.accessor.EntitySetAccessor;
 import io.personium.core.model.impl.es.accessor.ODataLinkAccessor;
 import io.personium.core.model.impl.es.cache.BoxCache;
 import io.personium.core.model.impl.es.cache.CellCache;
+import io.personium.core.model.impl.es.cache.CellCtlCache;
 import io.personium.core.model.impl.es.doc.CellDocHandler;
 import io.personium.core.model.impl.es.doc.OEntityDocHandler;
 import io.personium.core.model.impl.es.odata.CellCtlODataProducer;
 import io.personium.core.model.impl.fs.DavCmpFsImpl;
 import io.personium.core.model.lock.CellLockManager;
 import io.personium.core.odata.OEntityWrapper;
+import io.personium.core.odata.PersoniumODataProducer;
 import io.personium.core.utils.UriUtils;
 import net.spy.memcached.internal.CheckedOperationTimeoutException;
 
@@ -359,45 +359,21 @@ public class CellEsImpl implements Cell {
         String unitUserNameWithOutPrefix = this.getDataBundleNameWithOutPrefix();
         String cellInfoLog = String.format(" CellId:[%s], CellName:[%s], CellUnitUserName:[%s]", this.getId(),
                 this.getName(), this.getDataBundleName());
-        //--------------------
-        // WebDav file.
-        //--------------------
-        // Delete cell snapshot file.
-        CellSnapshotCellCmp snapshotCmp = ModelFactory.cellSnapshotCellCmp(this);
-        try {
-            snapshotCmp.delete(null, true);
-        } catch (PersoniumCoreException e) {
-            // If the deletion fails, output a log and continue processing.
-            log.warn("Delete CellSnapshot Failed." + cellInfoLog, e);
-        }
-        log.info("CellSnapshotFile Deletion End.");
-
-        // Delete event log file.
-        try {
-            EventUtils.deleteEventLog(this.getId(), this.getOwner());
-        } catch (BinaryDataAccessException e) {
-            // If the deletion fails, output a log and continue processing.
-            log.warn("Delete EventLog Failed." + cellInfoLog, e);
-        }
-        log.info("EventLog Deletion End.");
-
-        // Delete dav file.
+        // Move the WebDav files into the trash.
+        // Cell snapshot files, event log files and entities under the cell
+        // are deleted by the trash reaper in the background.
         CellCmp cellCmp = ModelFactory.cellCmp(this);
         try {
             cellCmp.delete(null, true);
         } catch (PersoniumCoreException e) {
-            // If the deletion fails, output a log and continue processing.
-            log.warn("Delete DavFile Failed." + cellInfoLog, e);
+            // If the move fails, output a log and delete the entities at least.
+            log.warn("Move DavFile to Trash Failed." + cellInfoLog, e);
+            CellDataAccessor cellDataAccessor = EsModel.cellData(unitUserNameWithOutPrefix, this.getId());
+            cellDataAccessor.bulkDeleteCell();
+            log.info("Cell Entity Resource Deletion End.");
+            return;
         }
-        log.info("DavFile Deletion End.");
-
-        //--------------------
-        // OData.
-        //--------------------
-        // Delete all entities under the cell.
-        CellDataAccessor cellDataAccessor = EsModel.cellData(unitUserNameWithOutPrefix, this.getId());
-        cellDataAccessor.bulkDeleteCell();
-        log.info("Cell Entity Resource Deletion End.");
+        log.info("Cell Moved to Trash." + cellInfoLog);
     }
 
     @Override
@@ -420,15 +396,9 @@ public class CellEsImpl implements Cell {
             CellLockManager.setCellStatus(this.getId(), CellLockManager.STATUS.NORMAL);
         }
 
-        // Make this cell empty asynchronously.
-        Thread thread = new Thread(new Runnable() {
-            @Override
-            public void run() {
-                makeEmpty();
-            }
-        });
-        thread.start();
-
+        // Make this cell empty.
+        // Only the rename into the trash is done here, the rest is done by the trash reaper.
+        makeEmpty();
     }
 
     @Override
@@ -449,9 +419,12 @@ public class CellEsImpl implements Cell {
 
         Box loadedBox = null;
         try {
-            ODataProducer op = ModelFactory.ODataCtl.cellCtl(this);
-            EntityResponse er = op.getEntity(Box.EDM_TYPE_NAME, OEntityKey.create(boxName), null);
-            loadedBox = new Box(this, er.getEntity());
+            PersoniumODataProducer op = ModelFactory.ODataCtl.cellCtl(this);
+            Optional<OEntityWrapper> entity = op.findEntity(Box.EDM_TYPE_NAME, OEntityKey.create(boxName), null);
+            if (!entity.isPresent()) {
+                return null;
+            }
+            loadedBox = new Box(this, entity.get());
             BoxCache.cache(loadedBox);
             return loadedBox;
         } catch (RuntimeException e) {
@@ -468,6 +441,14 @@ public class CellEsImpl implements Cell {
         //Retrieving the schema name list (including aliases)
         List<String> boxSchemas = UriUtils.getUrlVariations(this.getUnitUrl(), boxSchema);
 
+        //Boxes found are cached in CellCtlCache by the schema
+        String cacheKey = CellCtlCache.keyForSchema(boxSchema);
+        OEntityWrapper cached = CellCtlCache.get(this.id, cacheKey);
+        if (cached != null) {
+            return new Box(this, cached);
+        }
+        long version = CellCtlCache.getVersion(this.id);
+
         ODataProducer op = ModelFactory.ODataCtl.cellCtl(this);
         for (int i = 0; i < boxSchemas.size(); i++) {
             BoolCommonExpression filter = OptionsQueryParser.parseFilter("Schema eq '" + boxSchemas.get(i) + "'");
@@ -476,6 +457,9 @@ public class CellEsImpl implements Cell {
                 EntitiesResponse er = op.getEntities(Box.EDM_TYPE_NAME, qi);
                 List<OEntity> entList = er.getEntities();
                 if (entList.size() == 1) {
+                    if (entList.get(0) instanceof OEntityWrapper) {
+                        CellCtlCache.put(this.id, cacheKey, (OEntityWrapper) entList.get(0), version);
+                    }
                     return new Box(this, entList.get(0));
                 }
                 continue;
@@ -488,12 +472,11 @@ public class CellEsImpl implements Cell {
 
     @Override
     public OEntityWrapper getAccount(final String username) {
-        ODataProducer op = ModelFactory.ODataCtl.cellCtl(this);
+        PersoniumODataProducer op = ModelFactory.ODataCtl.cellCtl(this);
         OEntityKey key = OEntityKey.create(username);
         OEntityWrapper oew = null;
         try {
-            EntityResponse resp = op.getEntity("Account", key, null);
-            oew = (OEntityWrapper) resp.getEntity();
+            oew = op.findEntity(Account.EDM_TYPE_NAME, key, null).orElse(null);
         } catch (PersoniumCoreException dce) {
             log.debug(dce.getMessage());
         }
@@ -515,7 +498,6 @@ public class CellEsImpl implements Cell {
         return false;
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public List<Role> getRoleListForAccount(final String username) {
         //Acquire Account
@@ -568,36 +550,17 @@ public class CellEsImpl implements Cell {
         if (res == null) {
             return ret;
         }
+        //Roles and their Boxes are read through CellCtlCache
+        CellCtlODataProducer ccop = new CellCtlODataProducer(this);
         PersoniumSearchHit[] hits2 = res.getHits().getHits();
         for (PersoniumSearchHit hit2 : hits2) {
             Map<String, Object> row = hit2.getSource();
             String role = (String) row.get("k2");
             log.debug(this.id);
-            EntitySetAccessor roleDao = EsModel.cellCtl(this, Role.EDM_TYPE_NAME);
-            PersoniumGetResponse gRes = roleDao.get(role);
-            if (gRes == null) {
+            Role roleObj = roleIdToRole(ccop, role);
+            if (roleObj == null) {
                 continue;
             }
-            Map<String, Object> src = gRes.getSource();
-            Map<String, Object> s = (Map<String, Object>) src.get("s");
-            Map<String, Object> l = (Map<String, Object>) src.get("l");
-            String roleName = (String) s.get(Common.P_NAME.getName());
-            String boxId = (String) l.get(Box.EDM_TYPE_NAME);
-            String boxName = null;
-            String schema = null;
-            if (boxId != null) {
-                //Search Box
-                EntitySetAccessor box = EsModel.box(this);
-                PersoniumGetResponse getRes = box.get(boxId);
-                if (getRes == null || !getRes.isExists()) {
-                    continue;
-                }
-                Map<String, Object> boxsrc = getRes.getSource();
-                Map<String, Object> boxs = (Map<String, Object>) boxsrc.get("s");
-                boxName = (String) boxs.get(Common.P_NAME.getName());
-                schema = (String) boxs.get(Box.P_SCHEMA.getName());
-            }
-            Role roleObj = new Role(roleName, boxName, schema, this.getUrl());
 
             ret.add(roleObj);
         }
@@ -621,22 +584,39 @@ public class CellEsImpl implements Cell {
 
     @Override
     public String roleIdToRoleResourceUrl(String roleId) {
-        CellCtlODataProducer ccop = new CellCtlODataProducer(this);
+        Role roleObj = roleIdToRole(new CellCtlODataProducer(this), roleId);
+        if (roleObj == null) {
+            //If the role does not exist, it returns null.
+            return null;
+        }
+        return roleObj.createUrl();
+    }
+
+    /**
+     * Get the role of the ID.
+     * @param ccop producer of the cell control objects
+     * @param roleId role ID
+     * @return role. null if the role or the Box it belongs to does not exist.
+     */
+    private Role roleIdToRole(CellCtlODataProducer ccop, String roleId) {
         OEntity oe = ccop.getEntityByInternalId(Role.EDM_TYPE_NAME, roleId);
         if (oe == null) {
-            //If the role does not exist, it returns null.
             return null;
         }
 
         String boxName = (String) oe.getProperty("_Box.Name").getValue();
+        if (boxName == null && oe instanceof OEntityWrapper
+                && ((OEntityWrapper) oe).getLinkUuid(Box.EDM_TYPE_NAME) != null) {
+            //The Box has been deleted
+            return null;
+        }
         OProperty<?> schemaProp = oe.getProperty("_Box.Schema");
         String schema = null;
         if (schemaProp != null) {
             schema = (String) schemaProp.getValue();
         }
         String roleName = (String) oe.getProperty("Name").getValue();
-        Role roleObj = new Role(roleName, boxName, schema, this.getUrl());
-        return roleObj.createUrl();
+        return new Role(roleName, boxName, schema, this.getUrl());
     }
 
     @Override
@@ -778,7 +758,7 @@ public class CellEsImpl implements Cell {
 
         //If the access subject is different from ExtCell (two or more levels of transcell token authentication), do not allow.
         if (extCell.equals(principalCell)) {
-            ODataProducer op = ModelFactory.ODataCtl.cellCtl(this);
+            PersoniumODataProducer op = ModelFactory.ODataCtl.cellCtl(this);
             EntitiesResponse response = null;
             //Number of search result output setting
             QueryInfo qi = QueryInfo.newBuilder().setTop(TOP_NUM).setInlineCount(InlineCount.NONE).build();
@@ -786,17 +766,12 @@ public class CellEsImpl implements Cell {
             List<String> list = UriUtils.getUrlVariations(this.getUnitUrl(), extCell);
             for (int i = 0; i < list.size(); i++) {
                 String extCellUrl = list.get(i);
-                try {
-                    //Acquire link information of ExtCell-Role
-                    response = (EntitiesResponse) op.getNavProperty(ExtCell.EDM_TYPE_NAME,
-                            OEntityKey.create(extCellUrl),
-                            "_" + Role.EDM_TYPE_NAME, qi);
-                } catch (PersoniumCoreException dce) {
-                    if (PersoniumCoreException.OData.NO_SUCH_ENTITY != dce) {
-                        throw dce;
-                    }
-                }
-                if (response != null) {
+                //Acquire link information of ExtCell-Role
+                Optional<BaseResponse> found = op.findNavProperty(ExtCell.EDM_TYPE_NAME,
+                        OEntityKey.create(extCellUrl),
+                        "_" + Role.EDM_TYPE_NAME, qi);
+                if (found.isPresent()) {
+                    response = (EntitiesResponse) found.get();
                     break;
                 }
             }
@@ -826,24 +801,19 @@ public class CellEsImpl implements Cell {
         String extCell = token.getExtCellUrl();
 
         //Acquisition of Role corresponding to ExtCell-Role binding
-        ODataProducer op = ModelFactory.ODataCtl.cellCtl(this);
+        PersoniumODataProducer op = ModelFactory.ODataCtl.cellCtl(this);
         EntitiesResponse response = null;
         //Number of search result output setting
         QueryInfo qi = QueryInfo.newBuilder().setTop(TOP_NUM).setInlineCount(InlineCount.NONE).build();
         List<String> list = UriUtils.getUrlVariations(this.getUnitUrl(), extCell);
         for (int i = 0; i < list.size(); i++) {
-            try {
-                String extCellUrl = list.get(i);
-                //Acquire link information of ExtCell-Relation
-                response = (EntitiesResponse) op.getNavProperty(ExtCell.EDM_TYPE_NAME,
-                        OEntityKey.create(extCellUrl),
-                        "_" + Relation.EDM_TYPE_NAME, qi);
-            } catch (PersoniumCoreException dce) {
-                if (PersoniumCoreException.OData.NO_SUCH_ENTITY != dce) {
-                    throw dce;
-                }
-            }
-            if (response != null) {
+            String extCellUrl = list.get(i);
+            //Acquire link information of ExtCell-Relation
+            Optional<BaseResponse> found = op.findNavProperty(ExtCell.EDM_TYPE_NAME,
+                    OEntityKey.create(extCellUrl),
+                    "_" + Relation.EDM_TYPE_NAME, qi);
+            if (found.isPresent()) {
+                response = (EntitiesResponse) found.get();
                 break;
             }
         }
@@ -0,0 +1,217 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.es;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.personium.core.PersoniumCoreLog;
+import io.personium.core.PersoniumUnitConfig;
+
+/**
+ * Writer of the logs of ES requests.
+ * <p>
+ * Nothing is done on the request thread when the log level is disabled.
+ * Otherwise the log is queued and its parameters are formatted and written by a background thread,
+ * with each parameter truncated to the maximum length.
+ * When the queue is full the log is dropped rather than delaying the request,
+ * and the number of dropped logs is reported afterwards.
+ */
+class EsAuditLog {
+
+    /** Logger. */
+    private static Logger log = LoggerFactory.getLogger(EsAuditLog.class);
+
+    private static volatile EsAuditLog singleton;
+
+    /**
+     * Log built on the writer thread.
+     */
+    interface Record {
+        /**
+         * Build the parameters of the log.
+         * @return parameters
+         */
+        Object[] params();
+
+        /**
+         * @return log to write
+         */
+        PersoniumCoreLog getLog();
+    }
+
+    private final BlockingQueue<Record> queue;
+    private final int maxLength;
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Constructor.
+     * @param queueSize number of logs waiting to be written. 0 writes them on the calling thread.
+     * @param maxLength maximum length of each parameter
+     */
+    EsAuditLog(int queueSize, int maxLength) {
+        this.queue = queueSize > 0 ? new ArrayBlockingQueue<Record>(queueSize) : null;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Get the instance, starting the writer thread on first use.
+     * @return EsAuditLog
+     */
+    static EsAuditLog getInstance() {
+        if (singleton == null) {
+            synchronized (EsAuditLog.class) {
+                if (singleton == null) {
+                    EsAuditLog auditLog = new EsAuditLog(PersoniumUnitConfig.getEsAuditLogQueueSize(),
+                            PersoniumUnitConfig.getEsAuditLogMaxLength());
+                    auditLog.start();
+                    singleton = auditLog;
+                }
+            }
+        }
+        return singleton;
+    }
+
+    /**
+     * Write the log if its level is enabled.
+     * @param coreLog log
+     * @param params parameters of the log. Formatted on the writer thread.
+     */
+    static void write(final PersoniumCoreLog coreLog, final Object... params) {
+        if (!coreLog.isEnabled()) {
+            return;
+        }
+        getInstance().submit(new Record() {
+            @Override
+            public Object[] params() {
+                return params;
+            }
+
+            @Override
+            public PersoniumCoreLog getLog() {
+                return coreLog;
+            }
+        });
+    }
+
+    /**
+     * Write the log built by the record if its level is enabled.
+     * @param record log
+     */
+    static void write(Record record) {
+        if (!record.getLog().isEnabled()) {
+            return;
+        }
+        getInstance().submit(record);
+    }
+
+    /**
+     * Start the writer thread.
+     */
+    void start() {
+        if (queue == null) {
+            return;
+        }
+        final ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+        builder.setNameFormat("es-audit-log-%d");
+        builder.setDaemon(true);
+        builder.build().newThread(new Runnable() {
+            @Override
+            public void run() {
+                while (!Thread.currentThread().isInterrupted()) {
+                    try {
+                        writeRecord(queue.take());
+                        drain();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }).start();
+    }
+
+    /**
+     * Queue the log.
+     * @param record log
+     */
+    void submit(Record record) {
+        if (queue == null) {
+            writeRecord(record);
+        } else if (!queue.offer(record)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Write the logs queued.
+     */
+    void drain() {
+        List<Record> records = new ArrayList<Record>();
+        queue.drainTo(records);
+        for (Record record : records) {
+            writeRecord(record);
+        }
+        long count = dropped.getAndSet(0);
+        if (count > 0) {
+            log.warn(count + " ES request logs were dropped because the queue was full.");
+        }
+    }
+
+    /**
+     * @return number of logs dropped and not reported yet
+     */
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private void writeRecord(Record record) {
+        try {
+            record.getLog().params(truncate(record.params(), maxLength)).writeLog();
+        } catch (RuntimeException e) {
+            log.info("Failed to write ES request log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Convert the parameters into strings of the maximum length.
+     * @param params parameters
+     * @param maxLength maximum length
+     * @return parameters
+     */
+    static Object[] truncate(Object[] params, int maxLength) {
+        if (params == null) {
+            return null;
+        }
+        Object[] ret = new Object[params.length];
+        for (int i = 0; i < params.length; i++) {
+            String value = String.valueOf(params[i]);
+            if (value.length() > maxLength) {
+                value = value.substring(0, maxLength) + "...(" + value.length() + " chars)";
+            }
+            ret[i] = value;
+        }
+        return ret;
+    }
+}
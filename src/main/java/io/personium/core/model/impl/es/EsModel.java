@@ -54,7 +54,7 @@ public class EsModel {
         EsClient.setEventHandler(Event.afterRequest, new EsClient.EventHandler() {
             @Override
             public void handleEvent(EsRequestLogInfo logInfo, Object... params) {
-                PersoniumCoreLog.Es.AFTER_REQUEST.params(params).writeLog();
+                EsAuditLog.write(PersoniumCoreLog.Es.AFTER_REQUEST, params);
             }
         });
         //Set handler to output log before creating index to ES
@@ -65,28 +65,49 @@ public class EsModel {
             }
         });
         //Set handler to output log after ES registration request
+        //The body is serialized on the writer thread only when the log is output
         EsClient.setEventHandler(Event.afterCreate, new EsClient.EventHandler() {
-            @SuppressWarnings("unchecked")
             @Override
-            public void handleEvent(EsRequestLogInfo logInfo, Object... params) {
+            public void handleEvent(final EsRequestLogInfo logInfo, Object... params) {
                 if (logInfo == null) {
                     return; //Since there is no output information, log is not output and it ends
                 } else if (UserDataODataProducer.USER_ODATA_NAMESPACE.equals(logInfo.getType())) {
-                    String uuid = "";
-                    Map<String, Object> body = logInfo.getData();
-                    if (body != null && body.containsKey("s")) {
-                        Map<String, Object> staticFields = (Map<String, Object>) body.get("s");
-                        if (staticFields != null && staticFields.containsKey("__id")) {
-                            uuid = (String) staticFields.get("__id");
+                    EsAuditLog.write(new EsAuditLog.Record() {
+                        @Override
+                        public Object[] params() {
+                            return new Object[] {logInfo.getIndex(), logInfo.getType(), logInfo.getId(),
+                                    logInfo.getOpType(), getUserDataId(logInfo.getData())};
+                        }
+
+                        @Override
+                        public PersoniumCoreLog getLog() {
+                            return PersoniumCoreLog.Es.AFTER_CREATE;
+                        }
+                    });
+                    EsAuditLog.write(new EsAuditLog.Record() {
+                        @Override
+                        public Object[] params() {
+                            return new Object[] {logInfo.getDataAsString()};
                         }
-                    }
-                    PersoniumCoreLog.Es.AFTER_CREATE.params(logInfo.getIndex(),
-                            logInfo.getType(), logInfo.getId(), logInfo.getOpType(), uuid).writeLog();
-                    PersoniumCoreLog.Es.AFTER_CREATE_BODY.params(logInfo.getDataAsString()).writeLog();
 
+                        @Override
+                        public PersoniumCoreLog getLog() {
+                            return PersoniumCoreLog.Es.AFTER_CREATE_BODY;
+                        }
+                    });
                 } else {
-                    PersoniumCoreLog.Es.AFTER_CREATE.params(logInfo.getIndex(), logInfo.getType(),
-                            logInfo.getId(), logInfo.getOpType(), logInfo.getDataAsString()).writeLog();
+                    EsAuditLog.write(new EsAuditLog.Record() {
+                        @Override
+                        public Object[] params() {
+                            return new Object[] {logInfo.getIndex(), logInfo.getType(), logInfo.getId(),
+                                    logInfo.getOpType(), logInfo.getDataAsString()};
+                        }
+
+                        @Override
+                        public PersoniumCoreLog getLog() {
+                            return PersoniumCoreLog.Es.AFTER_CREATE;
+                        }
+                    });
                 }
             }
         });
@@ -97,6 +118,22 @@ public class EsModel {
     private EsModel() {
     }
 
+    /**
+     * Get __id of the user data from the document.
+     * @param body document
+     * @return __id. Empty string if not found.
+     */
+    @SuppressWarnings("unchecked")
+    static String getUserDataId(Map<String, Object> body) {
+        if (body != null && body.containsKey("s")) {
+            Map<String, Object> staticFields = (Map<String, Object>) body.get("s");
+            if (staticFields != null && staticFields.containsKey("__id")) {
+                return (String) staticFields.get("__id");
+            }
+        }
+        return "";
+    }
+
     /**
      * Returns the ES client object.
      * @return client object
@@ -16,7 +16,9 @@
  */
 package io.personium.core.model.impl.es.accessor;
 
+import io.personium.common.es.EsBulkRequest;
 import io.personium.common.es.EsIndex;
+import io.personium.common.es.response.PersoniumBulkItemResponse;
 import io.personium.common.es.response.PersoniumDeleteResponse;
 import io.personium.common.es.response.PersoniumIndexResponse;
 import io.personium.common.es.util.PersoniumUUID;
@@ -88,6 +90,17 @@ public abstract class AbstractEntitySetAccessor extends DataSourceAccessor imple
         return response;
     }
 
+    /**
+     * Perform data update of ODataEntity together with the concurrent writes to the same index.
+     * @param id ID of update data
+     * @param docHandler registration data
+     * @return Update result
+     */
+    @Override
+    public PersoniumBulkItemResponse updateInGroup(String id, EntitySetDocHandler docHandler) {
+        return writeInGroup(EsBulkRequest.BulkRequestType.INDEX, id, docHandler.getSource());
+    }
+
     /**
      * Delete data of ODataEntity.
      * @param docHandler delete data
@@ -28,6 +28,7 @@ import io.personium.common.es.EsIndex;
 import io.personium.common.es.EsType;
 import io.personium.common.es.response.EsClientException;
 import io.personium.common.es.response.PersoniumActionResponse;
+import io.personium.common.es.response.PersoniumBulkItemResponse;
 import io.personium.common.es.response.PersoniumBulkResponse;
 import io.personium.common.es.response.PersoniumDeleteResponse;
 import io.personium.common.es.response.PersoniumGetResponse;
@@ -38,8 +39,10 @@ import io.personium.common.es.util.PersoniumUUID;
 import io.personium.core.PersoniumCoreException;
 import io.personium.core.PersoniumCoreLog;
 import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.metrics.RequestTiming;
 import io.personium.core.model.impl.es.EsModel;
 import io.personium.core.model.impl.es.doc.EntitySetDocHandler;
+import io.personium.core.rs.odata.MapBulkRequest;
 
 /**
  * Base class that implements basic processing of the data store layer.
@@ -104,10 +107,13 @@ public class DataSourceAccessor {
      * @return response
      */
     public PersoniumGetResponse get(final String id) {
+        RequestTiming.begin(RequestTiming.Phase.ES);
         try {
             return this.type.get(id);
         } catch (EsClientException.EsNoResponseException e) {
             throw PersoniumCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.ES);
         }
     }
 
@@ -142,6 +148,7 @@ public class DataSourceAccessor {
      */
     @SuppressWarnings({"rawtypes" })
     public PersoniumIndexResponse create(final String id, final Map data) {
+        RequestTiming.begin(RequestTiming.Phase.ES);
         try {
             return this.type.create(id, data);
         } catch (EsClientException.EsSchemaMismatchException e) {
@@ -156,6 +163,8 @@ public class DataSourceAccessor {
             }
         } catch (EsClientException.EsNoResponseException e) {
             throw PersoniumCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.ES);
         }
     }
 
@@ -168,6 +177,7 @@ public class DataSourceAccessor {
      */
     @SuppressWarnings({"rawtypes" })
     public PersoniumIndexResponse create(final String id, final Map data, final EntitySetDocHandler docHandler) {
+        RequestTiming.begin(RequestTiming.Phase.ES);
         try {
             return this.type.create(id, data);
         } catch (EsClientException.EsSchemaMismatchException e) {
@@ -182,6 +192,8 @@ public class DataSourceAccessor {
             }
         } catch (EsClientException.EsNoResponseException e) {
             throw PersoniumCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.ES);
         }
     }
 
@@ -194,6 +206,7 @@ public class DataSourceAccessor {
      */
     @SuppressWarnings({"rawtypes" })
     public PersoniumIndexResponse update(final String id, final Map data, final long version) {
+        RequestTiming.begin(RequestTiming.Phase.ES);
         try {
             return this.type.update(id, data, version);
         } catch (EsClientException.EsSchemaMismatchException e) {
@@ -208,6 +221,8 @@ public class DataSourceAccessor {
             }
         } catch (EsClientException.EsNoResponseException e) {
             throw PersoniumCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.ES);
         }
     }
 
@@ -235,11 +250,14 @@ public class DataSourceAccessor {
             requestQuery = new HashMap<String, Object>();
         }
         requestQuery.put("size", 0);
+        RequestTiming.begin(RequestTiming.Phase.ES);
         try {
             PersoniumSearchResponse hit = this.type.search(requestQuery);
             return hit.getHits().getAllPages();
         } catch (EsClientException.EsNoResponseException e) {
             throw PersoniumCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.ES);
         }
     }
 
@@ -259,13 +277,31 @@ public class DataSourceAccessor {
         if (!requestQuery.containsKey("size")) {
             requestQuery.put("size", this.count(query));
         }
+        RequestTiming.begin(RequestTiming.Phase.ES);
         try {
             return this.type.search(requestQuery);
         } catch (EsClientException.EsNoResponseException e) {
             throw PersoniumCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.ES);
         }
     }
 
+    /**
+     * Scan all the documents matching the query.
+     * Use this instead of paging with from/size for internal full scans.
+     * @param query Query information. sort, from and size are ignored.
+     * @return iterator of search hits
+     */
+    public SearchHitIterator scan(final Map<String, Object> query) {
+        return new SearchHitIterator(new SearchHitIterator.Searcher() {
+            @Override
+            public PersoniumSearchResponse search(Map<String, Object> pageQuery) {
+                return DataSourceAccessor.this.search(pageQuery);
+            }
+        }, query, PersoniumUnitConfig.getEsScanBatchSize(), PersoniumUnitConfig.isEsScanPrefetchEnabled());
+    }
+
     /**
      * Multi-search documents.
      * When using this method, call number by specifying the number of acquisitions (size) in the query
@@ -273,10 +309,13 @@ public class DataSourceAccessor {
      * @return ES response
      */
     public PersoniumMultiSearchResponse multiSearch(final List<Map<String, Object>> queryList) {
+        RequestTiming.begin(RequestTiming.Phase.ES);
         try {
             return this.type.multiSearch(queryList);
         } catch (EsClientException.EsNoResponseException e) {
             throw PersoniumCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.ES);
         }
 
     }
@@ -297,10 +336,13 @@ public class DataSourceAccessor {
         if (!requestQuery.containsKey("size")) {
             requestQuery.put("size", this.count(query));
         }
+        RequestTiming.begin(RequestTiming.Phase.ES);
         try {
             return this.index.search(null, requestQuery);
         } catch (EsClientException.EsNoResponseException e) {
             throw PersoniumCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.ES);
         }
     }
 
@@ -311,6 +353,7 @@ public class DataSourceAccessor {
      * @return response
      */
     public PersoniumDeleteResponse delete(final String docId, final long version) {
+        RequestTiming.begin(RequestTiming.Phase.ES);
         try {
             return this.type.delete(docId, version);
         } catch (EsClientException.EsIndexMissingException e) {
@@ -318,6 +361,8 @@ public class DataSourceAccessor {
             return null;
         } catch (EsClientException.EsNoResponseException e) {
             throw PersoniumCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.ES);
         }
     }
 
@@ -332,10 +377,13 @@ public class DataSourceAccessor {
             String routingId) {
 
         PersoniumBulkResponse response = null;
+        RequestTiming.begin(RequestTiming.Phase.ES);
         try {
             response = this.index.bulkRequest(routingId, esBulkRequest, false);
         } catch (EsClientException.EsNoResponseException e) {
             throw PersoniumCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.ES);
         }
         return response;
     }
@@ -350,21 +398,67 @@ public class DataSourceAccessor {
     public PersoniumBulkResponse bulkUpdate(List<EsBulkRequest> esBulkRequest, String routingId) {
 
         PersoniumBulkResponse response = null;
+        RequestTiming.begin(RequestTiming.Phase.ES);
         try {
             response = this.index.bulkRequest(routingId, esBulkRequest, false);
         } catch (EsClientException.EsNoResponseException e) {
             throw PersoniumCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.ES);
         }
         return response;
     }
 
+    /**
+     * Write a document together with the concurrent writes to the same index and routing.
+     * The writes are sent in one bulk request, so the version of the document is not checked.
+     * @param requestType request type
+     * @param id ID
+     * @param data document
+     * @return result of the document
+     */
+    public PersoniumBulkItemResponse writeInGroup(EsBulkRequest.BulkRequestType requestType,
+            final String id, final Map<String, Object> data) {
+        final String routingId = getRoutingId();
+        EsBulkRequest request = new MapBulkRequest(requestType, getType(), id, data);
+        RequestTiming.begin(RequestTiming.Phase.ES);
+        try {
+            return EsGroupCommitter.getInstance().write(this.index.getName() + "/" + routingId, request,
+                    new EsGroupCommitter.BulkWriter() {
+                        @Override
+                        public PersoniumBulkResponse write(List<EsBulkRequest> requests) {
+                            try {
+                                return index.bulkRequest(routingId, requests, false);
+                            } catch (EsClientException.EsIndexMissingException e) {
+                                PersoniumCoreLog.Server.ES_INDEX_NOT_EXIST.params(index.getName()).writeLog();
+                                try {
+                                    index.create();
+                                    return index.bulkRequest(routingId, requests, false);
+                                } catch (EsClientException.EsNoResponseException esRetry) {
+                                    throw PersoniumCoreException.Server.ES_RETRY_OVER.params(esRetry.getMessage());
+                                }
+                            } catch (EsClientException.EsNoResponseException e) {
+                                throw PersoniumCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+                            }
+                        }
+                    });
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.ES);
+        }
+    }
+
     /**
      * Use queries to delete data.
      * @param routingId routingId
      * @param deleteQuery query
      */
     protected void deleteByQuery(String routingId, Map<String, Object> deleteQuery) {
-        this.index.deleteByQuery(routingId, deleteQuery);
+        RequestTiming.begin(RequestTiming.Phase.ES);
+        try {
+            this.index.deleteByQuery(routingId, deleteQuery);
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.ES);
+        }
     }
 
     /**
@@ -381,11 +475,14 @@ public class DataSourceAccessor {
             requestQuery = new HashMap<String, Object>();
         }
         requestQuery.put("size", 0);
+        RequestTiming.begin(RequestTiming.Phase.ES);
         try {
             PersoniumSearchResponse hit = this.index.search(routingId, requestQuery);
             return hit.getHits().getAllPages();
         } catch (EsClientException.EsNoResponseException e) {
             throw PersoniumCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.ES);
         }
     }
 
@@ -396,6 +493,7 @@ public class DataSourceAccessor {
      * @return Search results
      */
     public PersoniumSearchResponse searchForIndex(String routingId, Map<String, Object> query) {
+        RequestTiming.begin(RequestTiming.Phase.ES);
         try {
             if (!query.containsKey("size")) {
                 try {
@@ -410,9 +508,27 @@ public class DataSourceAccessor {
             return this.index.search(routingId, query);
         } catch (EsClientException.EsNoResponseException e) {
             throw PersoniumCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.ES);
         }
     }
 
+    /**
+     * Scan all the documents matching the query against the index of ES.
+     * Use this instead of paging with from/size for internal full scans.
+     * @param routingId routingId
+     * @param query Query information. sort, from and size are ignored.
+     * @return iterator of search hits
+     */
+    public SearchHitIterator scanForIndex(final String routingId, final Map<String, Object> query) {
+        return new SearchHitIterator(new SearchHitIterator.Searcher() {
+            @Override
+            public PersoniumSearchResponse search(Map<String, Object> pageQuery) {
+                return searchForIndex(routingId, pageQuery);
+            }
+        }, query, PersoniumUnitConfig.getEsScanBatchSize(), PersoniumUnitConfig.isEsScanPrefetchEnabled());
+    }
+
     /**
      * Execute multi search request for index.
      * @param routingId routingId
@@ -420,10 +536,13 @@ public class DataSourceAccessor {
      * @return Search results
      */
     public PersoniumMultiSearchResponse multiSearchForIndex(String routingId, List<Map<String, Object>> queryList) {
+        RequestTiming.begin(RequestTiming.Phase.ES);
         try {
             return this.index.multiSearch(routingId, queryList);
         } catch (EsClientException.EsNoResponseException e) {
             throw PersoniumCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.ES);
         }
     }
 
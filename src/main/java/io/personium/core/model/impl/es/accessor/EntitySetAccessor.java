@@ -16,8 +16,12 @@
  */
 package io.personium.core.model.impl.es.accessor;
 
+import java.util.List;
 import java.util.Map;
 
+import io.personium.common.es.EsBulkRequest;
+import io.personium.common.es.response.PersoniumBulkItemResponse;
+import io.personium.common.es.response.PersoniumBulkResponse;
 import io.personium.common.es.response.PersoniumDeleteResponse;
 import io.personium.common.es.response.PersoniumGetResponse;
 import io.personium.common.es.response.PersoniumIndexResponse;
@@ -51,6 +55,14 @@ public interface EntitySetAccessor {
      */
     PersoniumIndexResponse create(String id, EntitySetDocHandler docHandler);
 
+    /**
+     * Register data in bulk.
+     * @param esBulkRequest Bulk registration document list for ES
+     * @param routingId routingId
+     * @return bulk response
+     */
+    PersoniumBulkResponse bulkCreate(List<EsBulkRequest> esBulkRequest, String routingId);
+
     /**
      * Perform data update with version specification.
      * @param id ID of update data
@@ -68,6 +80,14 @@ public interface EntitySetAccessor {
      */
     PersoniumIndexResponse update(String id, EntitySetDocHandler docHandler);
 
+    /**
+     * Perform data update together with the concurrent writes to the same index.
+     * @param id ID of update data
+     * @param docHandler registration data
+     * @return Update result
+     */
+    PersoniumBulkItemResponse updateInGroup(String id, EntitySetDocHandler docHandler);
+
     /**
      * Perform data deletion.
      * @param docHandler delete data
@@ -89,6 +109,13 @@ public interface EntitySetAccessor {
      */
     PersoniumSearchResponse search(Map<String, Object> query);
 
+    /**
+     * Scan all the documents matching the query.
+     * @param query Query information
+     * @return iterator of search hits
+     */
+    SearchHitIterator scan(Map<String, Object> query);
+
     /**
      * Perform data deletion.
      * @param docHandler delete data
@@ -0,0 +1,220 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.es.accessor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.personium.common.es.EsBulkRequest;
+import io.personium.common.es.response.PersoniumBulkItemResponse;
+import io.personium.common.es.response.PersoniumBulkResponse;
+import io.personium.core.PersoniumCoreException;
+import io.personium.core.PersoniumUnitConfig;
+
+/**
+ * Group commit of single document writes.
+ * <p>
+ * Writes to the same index and routing are sent to ES one bulk request at a time.
+ * A write issued while the bulk request of the key is in flight joins the next group,
+ * which is sent by its first writer as soon as the bulk request in flight completes,
+ * and each writer receives the result of its own document.
+ * The writers hold the OData lock of their collection, so no writer waits for a timer,
+ * only for the bulk request in flight.
+ * The failure of a document is thrown as the single document write throws it.
+ */
+class EsGroupCommitter {
+
+    static Logger log = LoggerFactory.getLogger(EsGroupCommitter.class);
+
+    private static volatile EsGroupCommitter singleton;
+
+    /** Failures of ES parsing the document with the mapping, thrown as EsSchemaMismatchException on single writes. */
+    private static final String[] SCHEMA_MISMATCH_FAILURES = {"MapperParsingException", "mapper_parsing_exception"};
+
+    /**
+     * Bulk request executed for each group.
+     */
+    interface BulkWriter {
+        /**
+         * Write documents in bulk.
+         * @param requests documents
+         * @return ES response
+         */
+        PersoniumBulkResponse write(List<EsBulkRequest> requests);
+    }
+
+    /** Latest group of each key, not completed yet. Key -> group. */
+    private final Map<String, Group> groups = new HashMap<String, Group>();
+    private final int maxSize;
+
+    /**
+     * Constructor.
+     * @param maxSize maximum number of writes in a group
+     */
+    EsGroupCommitter(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the instance.
+     * @return EsGroupCommitter
+     */
+    static EsGroupCommitter getInstance() {
+        if (singleton == null) {
+            synchronized (EsGroupCommitter.class) {
+                if (singleton == null) {
+                    singleton = new EsGroupCommitter(PersoniumUnitConfig.getEsGroupCommitMaxSize());
+                }
+            }
+        }
+        return singleton;
+    }
+
+    /**
+     * Write a document together with the concurrent writes of the same key.
+     * @param key key of the group. Index name and routing.
+     * @param request document
+     * @param writer bulk request. Only the one of the first writer in the group is used.
+     * @return result of the document
+     */
+    PersoniumBulkItemResponse write(String key, EsBulkRequest request, BulkWriter writer) {
+        Group group;
+        int position;
+        boolean leader = false;
+        synchronized (groups) {
+            Group latest = groups.get(key);
+            if (latest != null && !latest.sent && latest.requests.size() < maxSize) {
+                group = latest;
+            } else {
+                group = new Group(latest);
+                groups.put(key, group);
+                leader = true;
+            }
+            position = group.requests.size();
+            group.requests.add(request);
+        }
+        if (leader) {
+            commit(key, group, writer);
+        }
+        PersoniumBulkItemResponse item = await(group.result).items()[position];
+        if (item.isFailed()) {
+            throw toException(item);
+        }
+        return item;
+    }
+
+    /**
+     * Convert the failure of a document into the exception thrown by the single document write.
+     * @param item failed result of the document
+     * @return exception
+     */
+    static PersoniumCoreException toException(PersoniumBulkItemResponse item) {
+        String message = item.getFailureMessage();
+        if (message != null) {
+            for (String failure : SCHEMA_MISMATCH_FAILURES) {
+                if (message.contains(failure)) {
+                    return PersoniumCoreException.OData.SCHEMA_MISMATCH;
+                }
+            }
+        }
+        return PersoniumCoreException.Server.DATA_STORE_UNKNOWN_ERROR.reason(new IllegalStateException(message));
+    }
+
+    /**
+     * Wait for the bulk request in flight and send the group.
+     * @param key key of the group
+     * @param group group
+     * @param writer bulk request
+     */
+    private void commit(String key, Group group, BulkWriter writer) {
+        Group previous;
+        synchronized (groups) {
+            previous = group.previous;
+            group.previous = null;
+        }
+        if (previous != null) {
+            // The writes joining meanwhile are sent together.
+            try {
+                await(previous.result);
+            } catch (RuntimeException e) {
+                // Thrown to the writers of the previous group.
+                log.debug("previous group failed: " + e.getMessage());
+            }
+        }
+        synchronized (groups) {
+            group.sent = true;
+        }
+        // No more writes are added to the group from here.
+        try {
+            group.result.complete(writer.write(group.requests));
+        } catch (RuntimeException e) {
+            group.result.completeExceptionally(e);
+        } finally {
+            synchronized (groups) {
+                if (groups.get(key) == group) {
+                    groups.remove(key);
+                }
+            }
+        }
+    }
+
+    private PersoniumBulkResponse await(CompletableFuture<PersoniumBulkResponse> result) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return result.get();
+                } catch (InterruptedException e) {
+                    // The write is in progress and its result must be received.
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw PersoniumCoreException.Server.UNKNOWN_ERROR.reason(e.getCause());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Writes sent in one bulk request.
+     */
+    private static class Group {
+        /** Group sent before this group. null if none is in flight. Guarded by groups. */
+        private Group previous;
+        private final List<EsBulkRequest> requests = new ArrayList<EsBulkRequest>();
+        private final CompletableFuture<PersoniumBulkResponse> result = new CompletableFuture<PersoniumBulkResponse>();
+        /** Whether the group is being sent. Guarded by groups. */
+        private boolean sent;
+
+        Group(Group previous) {
+            this.previous = previous;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.es.accessor;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.personium.common.es.response.PersoniumSearchHit;
+import io.personium.common.es.response.PersoniumSearchResponse;
+import io.personium.core.PersoniumCoreException;
+import io.personium.core.model.impl.es.QueryMapFactory;
+import io.personium.core.model.impl.es.odata.EsQueryHandler;
+
+/**
+ * Iterator that scans all the documents matching a query.
+ * <p>
+ * Pages are read with search_after on _uid instead of from/size,
+ * so each page costs the same however deep the scan goes,
+ * and documents deleted behind the cursor do not shift the following pages.
+ * The next page can be read on a background thread while the current one is consumed.
+ * Sort and paging parameters of the given query are ignored.
+ */
+public class SearchHitIterator implements Iterator<PersoniumSearchHit>, Closeable {
+
+    /** Sort key of the scan. Unique in an index. */
+    static final String SORT_KEY = "_uid";
+
+    /** Executor reading the next pages. */
+    private static volatile ExecutorService prefetcher;
+
+    /**
+     * Search executed for each page.
+     */
+    interface Searcher {
+        /**
+         * Search documents.
+         * @param query query of the page
+         * @return ES response. null if the index does not exist.
+         */
+        PersoniumSearchResponse search(Map<String, Object> query);
+    }
+
+    private final Searcher searcher;
+    private final Map<String, Object> query;
+    private final int batchSize;
+    private final boolean prefetch;
+
+    /** Hits of the current page. */
+    private PersoniumSearchHit[] hits = new PersoniumSearchHit[0];
+    /** Position in hits. */
+    private int position = 0;
+    /** Next page being read. */
+    private Future<PersoniumSearchHit[]> nextPage;
+
+    /**
+     * Constructor.
+     * @param searcher search executed for each page
+     * @param query query
+     * @param batchSize number of documents in a page
+     * @param prefetch true: read the next page on a background thread
+     */
+    SearchHitIterator(Searcher searcher, Map<String, Object> query, int batchSize, boolean prefetch) {
+        this.searcher = searcher;
+        this.query = new HashMap<String, Object>();
+        if (query != null) {
+            this.query.putAll(query);
+        }
+        this.query.remove("from");
+        List<Map<String, Object>> sort = new ArrayList<Map<String, Object>>();
+        sort.add(QueryMapFactory.sortQuery(SORT_KEY, EsQueryHandler.SORT_ASC));
+        this.query.put("sort", sort);
+        this.query.put("size", batchSize);
+        this.batchSize = batchSize;
+        this.prefetch = prefetch;
+        this.nextPage = submit(null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() {
+        while (position >= hits.length) {
+            if (nextPage == null) {
+                return false;
+            }
+            hits = await(nextPage);
+            position = 0;
+            if (hits.length < batchSize) {
+                nextPage = null;
+            } else {
+                nextPage = submit(hits[hits.length - 1]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PersoniumSearchHit next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return hits[position++];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Stop reading the following pages.
+     */
+    @Override
+    public void close() {
+        if (nextPage != null) {
+            nextPage.cancel(false);
+            nextPage = null;
+        }
+        hits = new PersoniumSearchHit[0];
+    }
+
+    /**
+     * Start reading the page following the hit.
+     * @param after last hit of the previous page. null for the first page.
+     * @return next page
+     */
+    private Future<PersoniumSearchHit[]> submit(PersoniumSearchHit after) {
+        final Map<String, Object> pageQuery = new HashMap<String, Object>(query);
+        if (after != null) {
+            List<Object> searchAfter = new ArrayList<Object>();
+            searchAfter.add(after.getType() + "#" + after.getId());
+            pageQuery.put("search_after", searchAfter);
+        }
+        Callable<PersoniumSearchHit[]> task = new Callable<PersoniumSearchHit[]>() {
+            @Override
+            public PersoniumSearchHit[] call() {
+                PersoniumSearchResponse response = searcher.search(pageQuery);
+                if (response == null) {
+                    return new PersoniumSearchHit[0];
+                }
+                return response.getHits().getHits();
+            }
+        };
+        if (prefetch) {
+            return getPrefetcher().submit(task);
+        }
+        // Read lazily on the calling thread.
+        return new DirectFuture(task);
+    }
+
+    private PersoniumSearchHit[] await(Future<PersoniumSearchHit[]> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw PersoniumCoreException.Server.UNKNOWN_ERROR.reason(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw PersoniumCoreException.Server.UNKNOWN_ERROR.reason(e);
+        }
+    }
+
+    private static ExecutorService getPrefetcher() {
+        if (prefetcher == null) {
+            synchronized (SearchHitIterator.class) {
+                if (prefetcher == null) {
+                    ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+                    builder.setNameFormat("es-scan-prefetch-%d");
+                    builder.setDaemon(true);
+                    prefetcher = Executors.newCachedThreadPool(builder.build());
+                }
+            }
+        }
+        return prefetcher;
+    }
+
+    /**
+     * Future which runs the task when the result is requested.
+     */
+    private static class DirectFuture implements Future<PersoniumSearchHit[]> {
+        private final Callable<PersoniumSearchHit[]> task;
+        private boolean cancelled = false;
+
+        DirectFuture(Callable<PersoniumSearchHit[]> task) {
+            this.task = task;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            cancelled = true;
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return cancelled;
+        }
+
+        @Override
+        public PersoniumSearchHit[] get() throws ExecutionException {
+            try {
+                return task.call();
+            } catch (Exception e) {
+                throw new ExecutionException(e);
+            }
+        }
+
+        @Override
+        public PersoniumSearchHit[] get(long timeout, TimeUnit unit) throws ExecutionException {
+            return get();
+        }
+    }
+}
@@ -0,0 +1,432 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.es.cache;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.auth.BasicAuthCache;
+import io.personium.core.event.EventFactory;
+import io.personium.core.event.EventPublisher;
+import io.personium.core.event.EventSubscriber;
+import io.personium.core.event.PersoniumEvent;
+import io.personium.core.model.Box;
+import io.personium.core.model.ctl.Account;
+import io.personium.core.model.ctl.ExtCell;
+import io.personium.core.model.ctl.ExtRole;
+import io.personium.core.model.ctl.Relation;
+import io.personium.core.model.ctl.Role;
+import io.personium.core.odata.OEntityWrapper;
+
+/**
+ * Read-through cache of cell control objects on memory of this unit.
+ * <p>
+ * Holds Box, Role, Relation, ExtCell and ExtRole entities of each cell, looked up by ID, key or Box schema.
+ * Accounts are not cached. Each cell has a version, which changes when the cell control objects of the cell
+ * are written in this unit, or another unit notifies it via EventBus. An entity read from ES is cached only if
+ * the version has not changed since before the read, so that an entity read during a write is not kept.
+ * Entities also expire within a short time in case a notification is lost.
+ * The cached entities are shared, and copies are returned.
+ * The notifications also discard RoleUrlCache and BasicAuthCache of the cell,
+ * which depend on Roles, Boxes and Accounts.
+ */
+public class CellCtlCache {
+
+    /** Logger. */
+    private static Logger log = LoggerFactory.getLogger(CellCtlCache.class);
+
+    /** Event type of the changes notified to the other units. */
+    static final String EVENT_TYPE_CELLCTL_CHANGE = "cellctlchange";
+
+    private static final long MILLIS = 1000L;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /** Entity types cached. */
+    private static final Set<String> TYPES = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            Box.EDM_TYPE_NAME, Role.EDM_TYPE_NAME, Relation.EDM_TYPE_NAME,
+            ExtCell.EDM_TYPE_NAME, ExtRole.EDM_TYPE_NAME)));
+
+    /** Entity types not cached, whose changes are notified for BasicAuthCache. */
+    private static final Set<String> NOTIFIED_TYPES = Collections.unmodifiableSet(new HashSet<String>(
+            Arrays.asList(Account.EDM_TYPE_NAME)));
+
+    /** Source of the versions, so that a version is never used again for a cell. */
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    /** Cell ID -> cached entities. */
+    private static Map<String, CellEntities> cells;
+
+    private static ExecutorService publisherPool;
+    private static ExecutorService subscriberPool;
+    private static EventPublisher publisher;
+
+    private CellCtlCache() {
+    }
+
+    /**
+     * Whether the entities of the entity set are cached.
+     * @param entitySetName entity set name
+     * @return true if cached
+     */
+    public static boolean isCacheable(String entitySetName) {
+        return PersoniumUnitConfig.isCellCtlCacheEnabled() && TYPES.contains(entitySetName);
+    }
+
+    /**
+     * Whether the entities of any of the entity sets are cached, regardless of the cache being enabled.
+     * @param entitySetNames entity set names
+     * @return true if any of them is cached
+     */
+    public static boolean containsCached(Collection<String> entitySetNames) {
+        for (String entitySetName : entitySetNames) {
+            if (TYPES.contains(entitySetName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Key of the entity looked up by ID.
+     * @param entitySetName entity set name
+     * @param id internal ID
+     * @return cache key
+     */
+    public static String keyForId(String entitySetName, String id) {
+        return "id:" + entitySetName + ":" + id;
+    }
+
+    /**
+     * Key of the entity looked up by entity key.
+     * @param entitySetName entity set name
+     * @param keyString entity key string
+     * @return cache key
+     */
+    public static String keyForKey(String entitySetName, String keyString) {
+        return "key:" + entitySetName + ":" + keyString;
+    }
+
+    /**
+     * Key of the Box looked up by schema.
+     * @param schema Box schema
+     * @return cache key
+     */
+    public static String keyForSchema(String schema) {
+        return "schema:" + schema;
+    }
+
+    /**
+     * Get the current version of the cell, to be passed to put after reading the entity from ES.
+     * @param cellId cell ID
+     * @return version
+     */
+    public static long getVersion(String cellId) {
+        return getCellEntities(cellId, true).getVersion();
+    }
+
+    /**
+     * Get the cached entity.
+     * @param cellId cell ID
+     * @param key cache key
+     * @return copy of the entity. null if not cached or expired.
+     */
+    public static OEntityWrapper get(String cellId, String key) {
+        if (!PersoniumUnitConfig.isCellCtlCacheEnabled()) {
+            return null;
+        }
+        CellEntities entities = getCellEntities(cellId, false);
+        if (entities == null) {
+            return null;
+        }
+        return entities.get(key, System.currentTimeMillis());
+    }
+
+    /**
+     * Cache the entity read from ES, unless the version of the cell has changed.
+     * @param cellId cell ID
+     * @param key cache key
+     * @param entity entity. a copy is cached.
+     * @param version version of the cell got before reading the entity
+     */
+    public static void put(String cellId, String key, OEntityWrapper entity, long version) {
+        if (!PersoniumUnitConfig.isCellCtlCacheEnabled() || entity == null) {
+            return;
+        }
+        CellEntities entities = getCellEntities(cellId, false);
+        if (entities == null) {
+            return;
+        }
+        long expiresAt = System.currentTimeMillis() + PersoniumUnitConfig.getCellCtlCacheExpiresIn() * MILLIS;
+        entities.put(key, entity.copy(), version, expiresAt);
+    }
+
+    /**
+     * Discard the entities of the cell written in this unit, and notify the other units.
+     * @param cellId cell ID
+     */
+    public static void invalidate(String cellId) {
+        discard(cellId);
+        publish(cellId);
+    }
+
+    /**
+     * Discard the entities of the cell if the entity sets written are cached, and notify the other units
+     * if the entity sets written are cached by this cache or the caches depending on the cell control objects.
+     * @param cellId cell ID
+     * @param entitySetNames entity sets written
+     */
+    public static void invalidate(String cellId, Collection<String> entitySetNames) {
+        if (containsCached(entitySetNames)) {
+            invalidate(cellId);
+        } else if (!Collections.disjoint(NOTIFIED_TYPES, entitySetNames)) {
+            publish(cellId);
+        }
+    }
+
+    /**
+     * Discard the entities of the cell.
+     * @param cellId cell ID
+     */
+    static void discard(String cellId) {
+        CellEntities entities = getCellEntities(cellId, false);
+        if (entities != null) {
+            entities.clear();
+        }
+    }
+
+    private static CellEntities getCellEntities(String cellId, boolean create) {
+        Map<String, CellEntities> map = getCells();
+        synchronized (map) {
+            CellEntities entities = map.get(cellId);
+            if (entities == null && create) {
+                entities = new CellEntities(PersoniumUnitConfig.getCellCtlCacheMaxSize());
+                map.put(cellId, entities);
+            }
+            return entities;
+        }
+    }
+
+    private static synchronized Map<String, CellEntities> getCells() {
+        if (cells == null) {
+            final int maxCells = PersoniumUnitConfig.getCellCtlCacheMaxCells();
+            cells = new LinkedHashMap<String, CellEntities>(INITIAL_CAPACITY, LOAD_FACTOR, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CellEntities> eldest) {
+                    return size() > maxCells;
+                }
+            };
+        }
+        return cells;
+    }
+
+    /**
+     * Start notifying the changes to the other units.
+     * Changes are only applied in this unit until started.
+     */
+    public static synchronized void start() {
+        if (!PersoniumUnitConfig.isCellCtlCacheEnabled() && !PersoniumUnitConfig.isAclCacheEnabled()
+                && !PersoniumUnitConfig.isBasicAuthCacheEnabled()) {
+            return;
+        }
+        final ThreadFactoryBuilder publisherBuilder = new ThreadFactoryBuilder();
+        publisherBuilder.setNameFormat("cellctl-publisher-%d");
+        publisherBuilder.setDaemon(true);
+        publisherPool = Executors.newSingleThreadExecutor(publisherBuilder.build());
+        publisher = EventFactory.createEventPublisher(PersoniumUnitConfig.getEventBusCellCtlTopicName());
+
+        final ThreadFactoryBuilder subscriberBuilder = new ThreadFactoryBuilder();
+        subscriberBuilder.setNameFormat("cellctl-subscriber-%d");
+        subscriberBuilder.setDaemon(true);
+        subscriberPool = Executors.newSingleThreadExecutor(subscriberBuilder.build());
+        subscriberPool.execute(new Runnable() {
+            @Override
+            public void run() {
+                subscribe();
+            }
+        });
+    }
+
+    /**
+     * Stop notifying.
+     */
+    public static synchronized void stop() {
+        if (subscriberPool != null) {
+            subscriberPool.shutdownNow();
+            subscriberPool = null;
+        }
+        if (publisherPool != null) {
+            try {
+                publisherPool.shutdown();
+                if (!publisherPool.awaitTermination(1, TimeUnit.SECONDS)) {
+                    publisherPool.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                publisherPool.shutdownNow();
+            }
+            publisherPool = null;
+            publisher.close();
+            publisher = null;
+        }
+    }
+
+    /**
+     * Notify the change to the other units in background.
+     * @param cellId cell ID
+     */
+    private static void publish(final String cellId) {
+        final ExecutorService pool = publisherPool;
+        if (pool == null) {
+            return;
+        }
+        final EventPublisher eventPublisher = publisher;
+        try {
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    PersoniumEvent event = new PersoniumEvent.Builder()
+                            .type(EVENT_TYPE_CELLCTL_CHANGE)
+                            .object(cellId)
+                            .build();
+                    eventPublisher.send(event);
+                }
+            });
+        } catch (RuntimeException e) {
+            // Stopping. The entities of the other units expire.
+            log.info("Failed to notify change of cell control objects: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Receive the changes of the other units until interrupted.
+     */
+    private static void subscribe() {
+        EventSubscriber subscriber = null;
+        try {
+            subscriber = EventFactory.createEventSubscriber(PersoniumUnitConfig.getEventBusCellCtlTopicName());
+            while (!Thread.currentThread().isInterrupted()) {
+                List<PersoniumEvent> list = subscriber.receive();
+                if (list == null) {
+                    break;
+                }
+                for (PersoniumEvent event : list) {
+                    receive(event);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Exception occurred: " + e.getMessage(), e);
+        } finally {
+            if (subscriber != null) {
+                subscriber.unsubscribe();
+            }
+        }
+    }
+
+    /**
+     * Apply the change notified by another unit.
+     * The change notified by this unit discards the entities again.
+     * @param event event of the change
+     */
+    static void receive(PersoniumEvent event) {
+        if (event == null || !EVENT_TYPE_CELLCTL_CHANGE.equals(event.getType()) || event.getObject() == null) {
+            return;
+        }
+        String cellId = event.getObject();
+        discard(cellId);
+        RoleUrlCache.clear(cellId);
+        BasicAuthCache.clear(cellId);
+    }
+
+    /**
+     * Cached entities of a cell.
+     */
+    private static final class CellEntities {
+        private long version = VERSIONS.incrementAndGet();
+        private final Map<String, Entry> entries;
+
+        CellEntities(final int maxSize) {
+            this.entries = new LinkedHashMap<String, Entry>(INITIAL_CAPACITY, LOAD_FACTOR, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        synchronized long getVersion() {
+            return version;
+        }
+
+        synchronized OEntityWrapper get(String key, long now) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt <= now) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.entity.copy();
+        }
+
+        synchronized void put(String key, OEntityWrapper entity, long readVersion, long expiresAt) {
+            if (readVersion != version) {
+                // Written while reading.
+                return;
+            }
+            entries.put(key, new Entry(entity, expiresAt));
+        }
+
+        synchronized void clear() {
+            version = VERSIONS.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+    /**
+     * Cached entity.
+     */
+    private static final class Entry {
+        private final OEntityWrapper entity;
+        private final long expiresAt;
+
+        Entry(OEntityWrapper entity, long expiresAt) {
+            this.entity = entity;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.es.cache;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.model.Box;
+import io.personium.core.model.Cell;
+import io.personium.core.model.ctl.Role;
+
+/**
+ * Class handling caching of role resource URLs on memory of this unit.
+ * <p>
+ * Role IDs written in ACLs are converted into role resource URLs each time a DAV resource is loaded.
+ * The URLs are kept per cell, so that the conversion does not search ES for every ACE.
+ * The URLs of a cell are discarded after the roles or the Boxes of the cell are written in this unit,
+ * and expire within a short time to follow the changes made in other units.
+ * <p>
+ * The roles themselves are read through CellCtlCache, but this layer is kept on top of it because
+ * it also caches role IDs that do not exist, which CellCtlCache does not, and the URLs built from them.
+ * Moreover the CellRoles object identifies the generation of the role URLs of the cell,
+ * and DavAclCache reuses the translated ACLs only while it is the same object.
+ */
+public class RoleUrlCache {
+
+    private static final long MILLIS = 1000L;
+
+    /** Entity sets the role URLs depend on. */
+    private static final Set<String> DEPENDENCIES = Collections.unmodifiableSet(new HashSet<String>(
+            Arrays.asList(Role.EDM_TYPE_NAME, Box.EDM_TYPE_NAME)));
+
+    /** Cell ID -> role URLs. */
+    private static Map<String, CellRoles> cells;
+
+    private RoleUrlCache() {
+    }
+
+    /**
+     * Get the role URLs of the cell.
+     * The returned object is replaced by another one when discarded or expired.
+     * @param cell Cell object
+     * @return role URLs. null if the cache is disabled.
+     */
+    public static CellRoles get(Cell cell) {
+        if (!PersoniumUnitConfig.isAclCacheEnabled()) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        Map<String, CellRoles> map = getCells();
+        synchronized (map) {
+            CellRoles roles = map.get(cell.getId());
+            if (roles == null || roles.expiresAt <= now) {
+                roles = new CellRoles(now + PersoniumUnitConfig.getAclCacheRoleExpiresIn() * MILLIS);
+                map.put(cell.getId(), roles);
+            }
+            return roles;
+        }
+    }
+
+    /**
+     * Discard the role URLs of the cell, if the entity sets the URLs depend on are written.
+     * Must be called after the write, so that the URLs resolved meanwhile are discarded with the old object.
+     * @param cellId cell ID
+     * @param entitySetNames entity sets written, including both ends of the links written
+     */
+    public static void clear(String cellId, Collection<String> entitySetNames) {
+        if (!Collections.disjoint(DEPENDENCIES, entitySetNames)) {
+            clear(cellId);
+        }
+    }
+
+    /**
+     * Discard the role URLs of the cell.
+     * @param cellId cell ID
+     */
+    public static void clear(String cellId) {
+        Map<String, CellRoles> map = getCells();
+        synchronized (map) {
+            map.remove(cellId);
+        }
+    }
+
+    private static synchronized Map<String, CellRoles> getCells() {
+        if (cells == null) {
+            final int maxCells = PersoniumUnitConfig.getAclCacheMaxCells();
+            cells = new LinkedHashMap<String, CellRoles>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CellRoles> eldest) {
+                    return size() > maxCells;
+                }
+            };
+        }
+        return cells;
+    }
+
+    /**
+     * Role URLs of a cell.
+     */
+    public static final class CellRoles {
+        /** Cached value for role IDs that do not exist. */
+        private static final String NOT_FOUND = "";
+
+        private final long expiresAt;
+        /** Role ID -> role resource URL. */
+        private final ConcurrentHashMap<String, String> urls = new ConcurrentHashMap<String, String>();
+
+        CellRoles(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * Get the role resource URL from the role ID.
+         * @param cell Cell object to search the role not cached
+         * @param roleId role ID
+         * @return role resource URL. null if the role does not exist.
+         */
+        public String getRoleResourceUrl(Cell cell, String roleId) {
+            String url = urls.get(roleId);
+            if (url == null) {
+                url = cell.roleIdToRoleResourceUrl(roleId);
+                if (url == null) {
+                    url = NOT_FOUND;
+                }
+                urls.put(roleId, url);
+            }
+            return NOT_FOUND.equals(url) ? null : url;
+        }
+    }
+}
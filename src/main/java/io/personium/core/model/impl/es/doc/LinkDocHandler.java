@@ -531,8 +531,9 @@ public class LinkDocHandler implements EsDocHandler {
 
         /**
          * Get the key name (k1, k2) of the target side.
+         * @return key name
          */
-        String getTargetKey() {
+        public String getTargetKey() {
             if (this.k1.length() == 0) {
                 return KEY_ENT1_ID;
             } else {
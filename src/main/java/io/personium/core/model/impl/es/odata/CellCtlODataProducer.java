@@ -16,6 +16,9 @@
  */
 package io.personium.core.model.impl.es.odata;
 
+import java.util.Optional;
+import java.util.Set;
+
 import org.odata4j.core.OEntity;
 import org.odata4j.core.OEntityKey;
 import org.odata4j.edm.EdmDataServices;
@@ -25,6 +28,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.personium.core.PersoniumCoreException;
+import io.personium.core.auth.BasicAuthCache;
 import io.personium.core.model.Box;
 import io.personium.core.model.BoxCmp;
 import io.personium.core.model.Cell;
@@ -35,6 +39,8 @@ import io.personium.core.model.impl.es.accessor.DataSourceAccessor;
 import io.personium.core.model.impl.es.accessor.EntitySetAccessor;
 import io.personium.core.model.impl.es.accessor.ODataLinkAccessor;
 import io.personium.core.model.impl.es.cache.BoxCache;
+import io.personium.core.model.impl.es.cache.CellCtlCache;
+import io.personium.core.model.impl.es.cache.RoleUrlCache;
 import io.personium.core.model.impl.es.doc.EntitySetDocHandler;
 import io.personium.core.odata.OEntityWrapper;
 
@@ -159,4 +165,79 @@ public class CellCtlODataProducer extends EsODataProducer {
     @Override
     public void onChange(String entitySetName) {
     }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Cell control objects cached in CellCtlCache are discarded on this unit and the other units,
+     * only if the entities or the links of the cached entity sets are written.
+     * Basic authentication verified with the Accounts and the roles is discarded after they are written,
+     * so that the authentication verified with the data before the write is not cached.
+     * Role URLs are discarded likewise after the roles or the Boxes are written.
+     * The other units are notified of the writes of the Accounts as well, to discard their authentication.
+     */
+    @Override
+    protected void afterWrite(Set<String> entitySetNames) {
+        BasicAuthCache.clear(this.cell.getId(), entitySetNames);
+        RoleUrlCache.clear(this.cell.getId(), entitySetNames);
+        CellCtlCache.invalidate(this.cell.getId(), entitySetNames);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Box, Role, Relation, ExtCell and ExtRole are read through CellCtlCache unless $expand or $select is given.
+     */
+    @Override
+    public Optional<OEntityWrapper> findEntity(final String entitySetName,
+            final OEntityKey entityKey,
+            final EntityQueryInfo queryInfo) {
+        if (!CellCtlCache.isCacheable(entitySetName) || hasExpandOrSelect(queryInfo)) {
+            return super.findEntity(entitySetName, entityKey, queryInfo);
+        }
+        String cellId = this.cell.getId();
+        String key = CellCtlCache.keyForKey(entitySetName, entityKey.toKeyString());
+        OEntityWrapper cached = CellCtlCache.get(cellId, key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        long version = CellCtlCache.getVersion(cellId);
+        Optional<OEntityWrapper> entity = super.findEntity(entitySetName, entityKey, queryInfo);
+        if (entity.isPresent()) {
+            CellCtlCache.put(cellId, key, entity.get(), version);
+        }
+        return entity;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Box, Role, Relation, ExtCell and ExtRole are read through CellCtlCache.
+     */
+    @Override
+    public OEntity getEntityByInternalId(final String entitySetName, final String internalId) {
+        if (!CellCtlCache.isCacheable(entitySetName)) {
+            return super.getEntityByInternalId(entitySetName, internalId);
+        }
+        String cellId = this.cell.getId();
+        String key = CellCtlCache.keyForId(entitySetName, internalId);
+        OEntityWrapper cached = CellCtlCache.get(cellId, key);
+        if (cached != null) {
+            return cached;
+        }
+        long version = CellCtlCache.getVersion(cellId);
+        OEntity entity = super.getEntityByInternalId(entitySetName, internalId);
+        if (entity instanceof OEntityWrapper) {
+            CellCtlCache.put(cellId, key, (OEntityWrapper) entity, version);
+        }
+        return entity;
+    }
+
+    private static boolean hasExpandOrSelect(EntityQueryInfo queryInfo) {
+        if (queryInfo == null) {
+            return false;
+        }
+        return (queryInfo.expand != null && !queryInfo.expand.isEmpty())
+                || (queryInfo.select != null && !queryInfo.select.isEmpty());
+    }
 }
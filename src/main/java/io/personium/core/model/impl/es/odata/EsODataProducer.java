@@ -17,12 +17,14 @@
 package io.personium.core.model.impl.es.odata;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Optional;
 import java.util.Set;
 
 import org.core4j.Enumerable;
@@ -72,6 +74,7 @@ import io.personium.common.es.response.PersoniumSearchResponse;
 import io.personium.core.PersoniumCoreException;
 import io.personium.core.PersoniumCoreLog;
 import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.model.ctl.Account;
 import io.personium.core.model.ctl.AssociationEnd;
 import io.personium.core.model.ctl.ComplexType;
 import io.personium.core.model.ctl.ComplexTypeProperty;
@@ -85,17 +88,20 @@ import io.personium.core.model.impl.es.QueryMapFactory;
 import io.personium.core.model.impl.es.accessor.DataSourceAccessor;
 import io.personium.core.model.impl.es.accessor.EntitySetAccessor;
 import io.personium.core.model.impl.es.accessor.ODataLinkAccessor;
+import io.personium.core.model.impl.es.accessor.SearchHitIterator;
 import io.personium.core.model.impl.es.doc.EntitySetDocHandler;
 import io.personium.core.model.impl.es.doc.LinkDocHandler;
 import io.personium.core.model.impl.es.doc.LinkDocHandlerForBulkRequest;
 import io.personium.core.model.impl.es.doc.OEntityDocHandler;
 import io.personium.core.model.impl.es.odata.EsNavigationTargetKeyProperty.NTKPNotFoundException;
 import io.personium.core.model.lock.Lock;
+import io.personium.core.model.lock.LockKeyComposer;
 import io.personium.core.model.lock.LockManager;
 import io.personium.core.odata.OEntityWrapper;
 import io.personium.core.odata.PersoniumODataProducer;
 import io.personium.core.rs.odata.AbstractODataResource;
 import io.personium.core.rs.odata.BulkRequest;
+import io.personium.core.rs.odata.MapBulkRequest;
 import io.personium.core.rs.odata.ODataBatchResource.NavigationPropertyBulkContext;
 import io.personium.core.rs.odata.ODataBatchResource.NavigationPropertyLinkType;
 import io.personium.core.utils.ODataUtils;
@@ -248,6 +254,15 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
         this.propertyAliasMap = map;
     }
 
+    /**
+     * Whether single entity updates are sent to ES together with the concurrent writes to the same index.
+     * Implementation subclass If you want to write in bulk, implement override this and return true.
+     * @return true: written in bulk
+     */
+    protected boolean isGroupCommitEnabled() {
+        return false;
+    }
+
     /**
      * Implementation subclass If you want to perform Producer registration processing, implement override this place and return the result.
      * @param entitySetName Entity set name
@@ -334,6 +349,44 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
         return LockManager.getLock(Lock.CATEGORY_ODATA, this.getCellId(), null, this.getNodeId());
     }
 
+    /**
+     * Release the lock of OData space taken to write, after the data is written.
+     * @param lock lock
+     * @param entitySetNames entity sets written, including both ends of the links written
+     */
+    void unlock(Lock lock, String... entitySetNames) {
+        unlock(lock, new HashSet<String>(Arrays.asList(entitySetNames)));
+    }
+
+    /**
+     * Release the lock of OData space taken to write, after the data is written.
+     * @param lock lock
+     * @param entitySetNames entity sets written, including both ends of the links written
+     */
+    void unlock(Lock lock, Set<String> entitySetNames) {
+        try {
+            afterWrite(entitySetNames);
+        } finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * Called after the data is written under the lock of OData space, whether the write succeeded or not.
+     * Override to discard the data cached by the subclass.
+     * @param entitySetNames entity sets written, including both ends of the links written
+     */
+    protected void afterWrite(Set<String> entitySetNames) {
+    }
+
+    /**
+     * Get the key of the lock of OData space.
+     * @return lock key
+     */
+    public String getLockKey() {
+        return LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA, this.getCellId(), null, this.getNodeId());
+    }
+
     @Override
     public final BaseResponse callFunction(final EdmFunctionImport arg0,
             final Map<String, OFunctionParameter> arg1,
@@ -361,6 +414,23 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
     public EntityResponse getEntity(final String entitySetName,
             final OEntityKey entityKey,
             final EntityQueryInfo queryInfo) {
+        Optional<OEntityWrapper> entity = this.findEntity(entitySetName, entityKey, queryInfo);
+        if (!entity.isPresent()) {
+            throw PersoniumCoreException.OData.NO_SUCH_ENTITY;
+        }
+        //Create an Entity Response for OData.
+        return Responses.entity(entity.get());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Honors $select and $expand in queryInfo as getEntity does.
+     */
+    @Override
+    public Optional<OEntityWrapper> findEntity(final String entitySetName,
+            final OEntityKey entityKey,
+            final EntityQueryInfo queryInfo) {
         final int expandMaxNum = PersoniumUnitConfig.getMaxExpandSizeForRetrive();
 
         //Note) Since the existence guarantee of EntitySet is done on the calling side beforehand, it is not checked here.
@@ -368,7 +438,7 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
         EntitySetDocHandler oedh = this.retrieveWithKey(eSet, entityKey, queryInfo);
 
         if (oedh == null) {
-            throw PersoniumCoreException.OData.NO_SUCH_ENTITY;
+            return Optional.empty();
         }
 
         ExpandEntitiesMapCreator creator = new ExpandEntitiesMapCreator(queryInfo, eSet.getType(), expandMaxNum);
@@ -385,9 +455,7 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
             selectQuery = queryInfo.select;
         }
         OEntityWrapper entity = oedh.createOEntity(eSet, this.getMetadata(), expandEntitiesMap, selectQuery);
-        //Create an Entity Response for OData.
-        EntityResponse res = Responses.entity(entity);
-        return res;
+        return Optional.of(entity);
     }
 
     /**
@@ -979,7 +1047,7 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
             deleteEntity(entitySetName, entityKey, etag, eSet, esType);
         } finally {
             log.debug("unlock");
-            lock.release();
+            unlock(lock, entitySetName);
         }
     }
 
@@ -1116,7 +1184,7 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
         } finally {
             //Unlock
             log.debug("unlock");
-            lock.release();
+            unlock(lock, entitySetName);
         }
     }
 
@@ -1163,6 +1231,7 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
         this.beforeCreate(entitySetName, entity, oedh);
 
         //If data does not exist, save esJson in ES
+        //Not written in bulk, since the bulk request indexes the document without checking that it does not exist
         PersoniumIndexResponse idxRs = null;
         idxRs = esType.create(oedh.getId(), oedh);
 
@@ -1268,7 +1337,7 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
             return null;
         } finally {
             log.debug("unlock");
-            lock.release();
+            unlock(lock, entitySetName);
         }
     }
 
@@ -1297,7 +1366,7 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
             createLink(sourceEntity, targetEntity, srcNavProp, assoc);
         } finally {
             log.debug("unlock");
-            lock.release();
+            unlock(lock, srcSetName, targetEntity.getEntitySetName());
         }
     }
 
@@ -1528,7 +1597,7 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
 
         } finally {
             log.debug("unlock");
-            lock.release();
+            unlock(lock, sourceOEntity.getEntitySetName(), targetEntitySetName);
         }
         return res;
     }
@@ -2019,7 +2088,7 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
             deleteLink(sourceEntityId, targetEntityKey, srcSet, tgtSet, assoc);
         } finally {
             log.debug("unlock");
-            lock.release();
+            unlock(lock, srcSetName, tgtSet.getName());
         }
     }
 
@@ -2122,22 +2191,46 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
             if (UserDataODataProducer.USER_ODATA_NAMESPACE.equals(fromDocHandler.getType())) {
                 toEntityTypeId = getEntityTypeId(toTypeName);
             }
-            // Get links up to the registered number limit.
+            // Scan all the links, since the links may exceed the default top.
             EntitySetAccessor toEsType = getAccessorForEntitySet(toTypeName);
-            QueryInfo queryInfo = QueryInfo.newBuilder().setTop(PersoniumUnitConfig.getLinksNtoNMaxSize())
-                    .setInlineCount(InlineCount.NONE).build();
-            List<String> idvals = LinkDocHandler.query(this.getAccessorForLink(),
-                    fromDocHandler, toEsType.getType(), toEntityTypeId, queryInfo);
-
-            PersoniumSearchHits searchHits = ODataProducerUtils.searchLinksNN(idvals, toEsType, null);
-            if (searchHits == null || searchHits.getCount() == 0) {
-                return;
-            }
-            // Delete links.
-            for (PersoniumSearchHit hit : searchHits.getHits()) {
-                EntitySetDocHandler toDocHandler = getDocHandler(hit, toTypeName);
-                deleteLinkEntity(fromDocHandler, toDocHandler);
+            LinkDocHandler.NtoNQueryParameter parameter = new LinkDocHandler.NtoNQueryParameter(
+                    fromDocHandler, toEsType.getType(), toEntityTypeId);
+            List<String> idvals = new ArrayList<String>();
+            try (SearchHitIterator links = this.getAccessorForLink().scan(parameter.getSource(null, null))) {
+                while (links.hasNext()) {
+                    idvals.add((String) links.next().getSource().get(parameter.getTargetKey()));
+                    if (idvals.size() >= PersoniumUnitConfig.getEsScanBatchSize()) {
+                        deleteLinkEntities(fromDocHandler, idvals, toEsType, toTypeName);
+                        idvals.clear();
+                    }
+                }
             }
+            deleteLinkEntities(fromDocHandler, idvals, toEsType, toTypeName);
+        }
+    }
+
+    /**
+     * Delete N:N links to the specified entities.
+     * @param fromDocHandler dochandler
+     * @param idvals ids of target entities
+     * @param toEsType accessor of target entity set
+     * @param toTypeName target entity set name
+     */
+    private void deleteLinkEntities(EntitySetDocHandler fromDocHandler, List<String> idvals,
+            EntitySetAccessor toEsType, String toTypeName) {
+        if (idvals.isEmpty()) {
+            return;
+        }
+        QueryInfo queryInfo = QueryInfo.newBuilder().setTop(idvals.size())
+                .setInlineCount(InlineCount.NONE).build();
+        PersoniumSearchHits searchHits = ODataProducerUtils.searchLinksNN(idvals, toEsType, queryInfo);
+        if (searchHits == null || searchHits.getCount() == 0) {
+            return;
+        }
+        // Delete links.
+        for (PersoniumSearchHit hit : searchHits.getHits()) {
+            EntitySetDocHandler toDocHandler = getDocHandler(hit, toTypeName);
+            deleteLinkEntity(fromDocHandler, toDocHandler);
         }
     }
 
@@ -2538,6 +2631,23 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
             final OEntityKey entityKey,
             final String navPropStr,
             final QueryInfo queryInfo) {
+        Optional<BaseResponse> response = this.findNavProperty(entitySetName, entityKey, navPropStr, queryInfo);
+        if (!response.isPresent()) {
+            throw PersoniumCoreException.OData.NO_SUCH_ENTITY;
+        }
+        return response.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If there is no specification in the query information, the default number of cases (return up to 25 items)
+     */
+    @Override
+    public Optional<BaseResponse> findNavProperty(final String entitySetName,
+            final OEntityKey entityKey,
+            final String navPropStr,
+            final QueryInfo queryInfo) {
         //Note) Since the existence guarantee of the origin EntitySet is done in advance on the caller side, it is not checked here.
         //Note) Premise that illegal NavigationProperty specification is confirmed / eliminated beforehand on caller side.
 
@@ -2555,7 +2665,7 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
         //Get EntitySet
         EntitySetDocHandler source = this.retrieveWithKey(sourceSet, entityKey);
         if (source == null) {
-            throw PersoniumCoreException.OData.NO_SUCH_ENTITY;
+            return Optional.empty();
         }
 
         //In case of acquiring $ links of user data, acquire _id of EntityType of target
@@ -2581,7 +2691,7 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
 
             //If id is empty, return empty search result
             if (value.isEmpty()) {
-                return emptyResult(queryInfo, targetSet);
+                return Optional.<BaseResponse>of(emptyResult(queryInfo, targetSet));
             }
 
             //And sets the acquired ID list as a search condition
@@ -2599,7 +2709,7 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
             String linkId = (String) source.getManyToOnelinkId().get(getLinkskey(targetSetName));
             //If the link is not set, return empty search results
             if (linkId == null) {
-                return emptyResult(queryInfo, targetSet);
+                return Optional.<BaseResponse>of(emptyResult(queryInfo, targetSet));
             }
             Map<String, Object> idsQuery = new HashMap<String, Object>();
             List<String> value = new ArrayList<String>();
@@ -2617,7 +2727,7 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
         implicitFilters.add(linkQuery);
 
         //Pass implicitFIlters and perform a search
-        return execEntitiesRequest(queryInfo, targetSet, esType, implicitFilters);
+        return Optional.<BaseResponse>of(execEntitiesRequest(queryInfo, targetSet, esType, implicitFilters));
     }
 
     /**
@@ -2672,7 +2782,7 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
             updateAndMergeEntity(entitySetName, originalKey, oEntityWrapper, true);
         } finally {
             log.debug("unlock");
-            lock.release();
+            unlock(lock, entitySetName);
         }
     }
 
@@ -2689,7 +2799,7 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
             updateAndMergeEntity(entitySetName, originalKey, oEntityWrapper, false);
         } finally {
             log.debug("unlock");
-            lock.release();
+            unlock(lock, entitySetName);
         }
     }
 
@@ -2792,20 +2902,25 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
         }
 
         //Save esJson in ES
-        PersoniumIndexResponse idxRes = null;
+        long newVersion;
         //Retrieve verification version from Etag specification of request (null if there is no Etag specification)
         Long version = oedhNew.getVersion();
         if (version == null || version < 0) {
-            idxRes = esType.update(oedhNew.getId(), oedhNew);
+            if (isGroupCommitEnabled()) {
+                newVersion = esType.updateInGroup(oedhNew.getId(), oedhNew).version();
+            } else {
+                newVersion = esType.update(oedhNew.getId(), oedhNew).version();
+            }
         } else {
-            idxRes = esType.update(oedhNew.getId(), oedhNew, version);
+            //Bulk requests do not check the version, so it is written alone
+            newVersion = esType.update(oedhNew.getId(), oedhNew, version).version();
         }
 
         //Processing after updating
         this.afterUpdate();
 
         //Set Version information obtained from response destructively to argument OEntityWrapper so that ETag can be returned by Resource layer
-        oedhNew.setVersion(idxRes.version());
+        oedhNew.setVersion(newVersion);
         oEntityWrapper.setEtag(oedhNew.createEtag());
     }
 
@@ -2834,43 +2949,56 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
             esType.update(oedhNew.getId(), oedhNew, version);
         } finally {
             log.debug("unlock");
-            lock.release();
+            unlock(lock, entitySet.getName());
         }
     }
 
     /**
-     * Update last login time of Account.
-     * @param entitySet entitySetName
-     * @param originalKey Key to be updated
-     * @param accountId Account ID
+     * Update last login time of Accounts in bulk.
+     * @param lastAuthenticated last login time per Account ID
      */
-    public void updateLastAuthenticated(final EdmEntitySet entitySet, final OEntityKey originalKey, String accountId) {
+    @Override
+    public void updateLastAuthenticated(Map<String, Long> lastAuthenticated) {
+        if (lastAuthenticated.isEmpty()) {
+            return;
+        }
         Lock lock = lock();
         try {
-            //Get current time
-            long nowTimeMillis = System.currentTimeMillis();
-
             //Acquire Account information to be changed from ES
-            EntitySetAccessor esType = this.getAccessorForEntitySet(entitySet.getName());
-            PersoniumGetResponse personiumGetResponseNew = esType.get(accountId);
-            if (personiumGetResponseNew == null) {
-                //When the Account is deleted from the authentication until the last login time update, since there is no update object, the process ends normally.
-                PersoniumCoreLog.Auth.ACCOUNT_ALREADY_DELETED.params(originalKey.toKeyString()).writeLog();
+            Map<String, Object> source = new HashMap<String, Object>();
+            Map<String, Object> filter = new HashMap<String, Object>();
+            Map<String, Object> ids = new HashMap<String, Object>();
+            source.put("filter", filter);
+            source.put("size", lastAuthenticated.size());
+            filter.put("ids", ids);
+            ids.put("values", new ArrayList<String>(lastAuthenticated.keySet()));
+            EntitySetAccessor esType = this.getAccessorForEntitySet(Account.EDM_TYPE_NAME);
+            PersoniumSearchResponse response = esType.search(source);
+            if (response == null) {
                 return;
             }
-            EntitySetDocHandler oedhNew = new OEntityDocHandler(personiumGetResponseNew);
-            //Overwrite the last login date and time of the acquired Account
-            Map<String, Object> staticFields = oedhNew.getStaticFields();
-            staticFields.put("LastAuthenticated", nowTimeMillis);
-            oedhNew.setStaticFields(staticFields);
-            //Since this method is called at the time of authentication success, it is regarded as not updating the Account.
-            //For this reason, Account's __updated has not been overwritten.
-            //Also, when updating the Elasticsearch data, ETag is replaced, but here it is acceptable to replace it.
 
-            //Save esJson in ES
-            //Retrieve version information of Account
-            Long version = oedhNew.getVersion();
-            esType.update(oedhNew.getId(), oedhNew, version);
+            //Accounts deleted after the authentication are not found, and they are skipped.
+            List<EsBulkRequest> bulkRequests = new ArrayList<EsBulkRequest>();
+            for (PersoniumSearchHit hit : response.getHits().getHits()) {
+                EntitySetDocHandler docHandler = new OEntityDocHandler(hit);
+                //Overwrite the last login date and time of the acquired Account
+                //__updated is not overwritten, since it is regarded as not updating the Account.
+                Map<String, Object> staticFields = docHandler.getStaticFields();
+                Long time = lastAuthenticated.get(hit.getId());
+                Object current = staticFields.get(Account.P_LAST_AUTHENTICATED.getName());
+                if (current instanceof Long && (Long) current >= time) {
+                    //Already updated by another node.
+                    continue;
+                }
+                staticFields.put(Account.P_LAST_AUTHENTICATED.getName(), time);
+                docHandler.setStaticFields(staticFields);
+                bulkRequests.add(new MapBulkRequest(EsBulkRequest.BulkRequestType.INDEX,
+                        hit.getType(), hit.getId(), docHandler.getSource()));
+            }
+            if (!bulkRequests.isEmpty()) {
+                getAccessorForBatch().bulkUpdate(bulkRequests, getCellId());
+            }
         } finally {
             log.debug("unlock");
             lock.release();
@@ -3035,7 +3163,7 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
             //Register link information
             bulkCreateLinks(npBulkContexts, getCellId());
         } finally {
-            lock.release();
+            unlock(lock, getEntitySetNames(npBulkContexts, npBulkRequests));
             log.debug("bulkCreateEntityViaNavigationProperty release lock");
         }
     }
@@ -3104,6 +3232,35 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
         return true;
     }
 
+    /**
+     * Get the entity sets written by the bulk registration.
+     * @param bulkRequests requests of the bulk registration
+     * @return entity set names
+     */
+    private static Set<String> getEntitySetNames(LinkedHashMap<String, BulkRequest> bulkRequests) {
+        Set<String> entitySetNames = new HashSet<String>();
+        for (BulkRequest bulkRequest : bulkRequests.values()) {
+            entitySetNames.add(bulkRequest.getEntitySetName());
+        }
+        return entitySetNames;
+    }
+
+    /**
+     * Get the entity sets written by the bulk registration via NavigationProperty.
+     * @param npBulkContexts contexts of the bulk registration
+     * @param npBulkRequests requests of the bulk registration
+     * @return entity set names of the sources and the targets
+     */
+    private static Set<String> getEntitySetNames(List<NavigationPropertyBulkContext> npBulkContexts,
+            LinkedHashMap<String, BulkRequest> npBulkRequests) {
+        Set<String> entitySetNames = getEntitySetNames(npBulkRequests);
+        for (NavigationPropertyBulkContext npBulkContext : npBulkContexts) {
+            entitySetNames.add(npBulkContext.getBodyPart().getEntitySetName());
+            entitySetNames.add(npBulkContext.getBodyPart().getTargetEntitySetName());
+        }
+        return entitySetNames;
+    }
+
     /**
      * Perform bulk registration.
      * @param metadata schema information
@@ -3122,7 +3279,7 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
             return bulkCreateEntityWithoutLock(metadata, bulkRequests, cellId);
         } finally {
             log.debug("unlock");
-            lock.release();
+            unlock(lock, getEntitySetNames(bulkRequests));
         }
     }
 
@@ -17,10 +17,13 @@
 package io.personium.core.model.impl.es.odata;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -129,6 +132,9 @@ public class MessageODataProducer extends CellCtlODataProducer {
     @SuppressWarnings("unchecked")
     public String changeStatusAndUpdateRelation(final EdmEntitySet entitySet,
             final OEntityKey originalKey, final String status) {
+        //Entity sets written, to notify after the write
+        Set<String> written = new HashSet<String>();
+        written.add(entitySet.getName());
         Lock lock = lock();
         try {
             //Acquire received message information to be changed from ES
@@ -169,6 +175,7 @@ public class MessageODataProducer extends CellCtlODataProducer {
                                 // create or delete Relation
                                 String messageId = (String) staticFields.get(ReceivedMessage.P_ID.getName());
                                 String boxName = (String) staticFields.get(Common.P_BOX_NAME.getName());
+                                written.addAll(Arrays.asList(Relation.EDM_TYPE_NAME, ExtCell.EDM_TYPE_NAME));
                                 updateRelation(messageId, boxName, requestObject);
                             } else if (!ReceivedMessage.STATUS_REJECTED.equals(status)) {
                                 throw PersoniumCoreException.OData.REQUEST_FIELD_FORMAT_ERROR.params(
@@ -188,6 +195,7 @@ public class MessageODataProducer extends CellCtlODataProducer {
                                 // create or delete Role
                                 String messageId = (String) staticFields.get(ReceivedMessage.P_ID.getName());
                                 String boxName = (String) staticFields.get(Common.P_BOX_NAME.getName());
+                                written.addAll(Arrays.asList(Role.EDM_TYPE_NAME, ExtCell.EDM_TYPE_NAME));
                                 updateRole(messageId, boxName, requestObject);
                             } else if (!ReceivedMessage.STATUS_REJECTED.equals(status)) {
                                 throw PersoniumCoreException.OData.REQUEST_FIELD_FORMAT_ERROR.params(
@@ -207,6 +215,7 @@ public class MessageODataProducer extends CellCtlODataProducer {
                                 // register or unregister rule
                                 String messageId = (String) staticFields.get(ReceivedMessage.P_ID.getName());
                                 String boxName = (String) staticFields.get(Common.P_BOX_NAME.getName());
+                                written.add(Rule.EDM_TYPE_NAME);
                                 updateRule(messageId, boxName, requestObject);
                             } else if (!ReceivedMessage.STATUS_REJECTED.equals(status)) {
                                 throw PersoniumCoreException.OData.REQUEST_FIELD_FORMAT_ERROR.params(
@@ -239,7 +248,7 @@ public class MessageODataProducer extends CellCtlODataProducer {
             return entitySetDocHandler.createEtag();
         } finally {
             log.debug("unlock");
-            lock.release();
+            unlock(lock, written);
         }
     }
 
@@ -30,6 +30,9 @@ import org.odata4j.core.OEntityKey;
 import org.odata4j.edm.EdmDataServices;
 import org.odata4j.edm.EdmEntitySet;
 import org.odata4j.edm.EdmEntityType;
+import org.odata4j.edm.EdmProperty;
+import org.odata4j.edm.EdmProperty.CollectionKind;
+import org.odata4j.edm.EdmSchema;
 import org.odata4j.edm.EdmSimpleType;
 import org.odata4j.expression.OrderByExpression;
 import org.odata4j.format.xml.EdmxFormatWriter;
@@ -44,8 +47,12 @@ import org.odata4j.stax2.staximpl.StaxXMLFactoryProvider2;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.personium.common.es.EsBulkRequest;
+import io.personium.common.es.response.PersoniumBulkItemResponse;
+import io.personium.common.es.response.PersoniumBulkResponse;
 import io.personium.common.es.response.PersoniumGetResponse;
 import io.personium.common.es.response.PersoniumSearchHit;
+import io.personium.common.es.util.PersoniumUUID;
 import io.personium.core.PersoniumCoreException;
 import io.personium.core.PersoniumUnitConfig;
 import io.personium.core.model.Cell;
@@ -71,6 +78,7 @@ import io.personium.core.model.impl.es.doc.UserDataLinkDocHandler;
 import io.personium.core.odata.OEntityWrapper;
 import io.personium.core.odata.PersoniumEdmxFormatParser;
 import io.personium.core.rs.odata.BulkRequest;
+import io.personium.core.rs.odata.MapBulkRequest;
 import io.personium.core.rs.odata.ODataBatchResource.NavigationPropertyBulkContext;
 import io.personium.core.rs.odata.ODataBatchResource.NavigationPropertyLinkType;
 import io.personium.core.utils.EscapeControlCode;
@@ -203,70 +211,74 @@ public class UserDataODataProducer extends EsODataProducer {
         return this.metadata;
     }
 
-    @SuppressWarnings("unchecked")
     private void reloadMetadata() {
         Map<String, Object> cache = UserDataSchemaCache.get(this.getNodeId());
-        if (cache == null) {
+        if (cache == null || UserDataSchemaCache.isDisabled(cache)) {
             this.metadata = getMetadataFromDataSource();
             Map<String, Object> cacheSchema = createUserDataSchemaCache();
-
             if (cacheSchema != null) {
-                //Because there is a possibility that the cache is created by another request while acquiring metadata
-                //Only when the cache information is again acquired and does not exist, it is registered in the cache
-                Map<String, Object> latestCache = UserDataSchemaCache.get(this.getNodeId());
-                if (latestCache == null) {
-                    try {
-                        UserDataSchemaCache.cache(this.getNodeId(), cacheSchema);
-                    } catch (RuntimeException e) {
-                        if (e.getCause() instanceof CheckedOperationTimeoutException) {
-                            log.info("Failed to cache UserDataSchema info.");
-                        }
-                    }
-                }
-
+                cacheSchemaIfUnchanged(cache, cacheSchema);
             }
+        } else {
+            loadMetadataFromCache(cache);
+        }
+    }
 
-        } else if (UserDataSchemaCache.isDisabled(cache)) {
-            this.metadata = getMetadataFromDataSource();
-            Map<String, Object> cacheSchema = createUserDataSchemaCache();
-
+    /**
+     * Register the schema information in the cache unless another request changed the cache.
+     * @param cache cache information read before the schema was built. null if there was none
+     * @param cacheSchema schema information to register
+     * @return true if registered
+     */
+    private boolean cacheSchemaIfUnchanged(Map<String, Object> cache, Map<String, Object> cacheSchema) {
+        if (cache == null) {
+            //Because there is a possibility that the cache is created by another request while acquiring metadata
+            //Only when the cache information is again acquired and does not exist, it is registered in the cache
+            Map<String, Object> latestCache = UserDataSchemaCache.get(this.getNodeId());
+            if (latestCache != null) {
+                return false;
+            }
+        } else if (UserDataSchemaCache.isChanged(this.getNodeId(), cache)) {
             //Since there is a possibility that the cache has been changed by another request during metadata acquisition,
             //Only when the cache information has not been changed is registered in the cache
-            if (cacheSchema != null && !UserDataSchemaCache.isChanged(this.getNodeId(), cache)) {
-                try {
-                    UserDataSchemaCache.cache(this.getNodeId(), cacheSchema);
-                } catch (RuntimeException e) {
-                    if (e.getCause() instanceof CheckedOperationTimeoutException) {
-                        log.info("Failed to cache UserDataSchema info.(CacheOFF)");
-                    }
-                }
+            return false;
+        }
+        try {
+            UserDataSchemaCache.cache(this.getNodeId(), cacheSchema);
+            return true;
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof CheckedOperationTimeoutException) {
+                log.info("Failed to cache UserDataSchema info.");
             }
+            return false;
+        }
+    }
 
-        } else {
-            this.entityTypeIds = (Map<String, String>) cache.get("entityTypeIds");
-            setPropertyAliasMap((Map<String, PropertyAlias>) cache.get("propertyAliasMap"));
-            setEntityTypeMap((Map<String, String>) cache.get("entityTypeMap"));
-            //Set acquired information
-            //If you pass InputStream to the XML parser (StAX, SAX, DOM) as is, the file list acquisition processing
-            //Because it will be interrupted, store it as a provisional countermeasure and then parse it
-            EdmDataServices metacache = null;
-            try {
-                StringReader sr = new StringReader((String) cache.get("edmx"));
-                XMLFactoryProvider2 provider = StaxXMLFactoryProvider2.getInstance();
-                XMLInputFactory2 factory = provider.newXMLInputFactory2();
-                XMLEventReader2 reader = factory.createXMLEventReader(sr);
-                PersoniumEdmxFormatParser parser = new PersoniumEdmxFormatParser();
-                metacache = parser.parseMetadata(reader);
-            } catch (RuntimeException ex) {
-                log.info("XMLParseException: " + ex.getMessage(), ex.fillInStackTrace());
-                throw ex;
-            } catch (StackOverflowError tw) {
-                //StackOverFlowError occurs when circular reference of ComplexType is made
-                log.info("XMLParseException: " + tw.getMessage(), tw.fillInStackTrace());
-                throw tw;
-            }
-            this.metadata = metacache;
+    @SuppressWarnings("unchecked")
+    private void loadMetadataFromCache(Map<String, Object> cache) {
+        this.entityTypeIds = (Map<String, String>) cache.get("entityTypeIds");
+        setPropertyAliasMap((Map<String, PropertyAlias>) cache.get("propertyAliasMap"));
+        setEntityTypeMap((Map<String, String>) cache.get("entityTypeMap"));
+        //Set acquired information
+        //If you pass InputStream to the XML parser (StAX, SAX, DOM) as is, the file list acquisition processing
+        //Because it will be interrupted, store it as a provisional countermeasure and then parse it
+        EdmDataServices metacache = null;
+        try {
+            StringReader sr = new StringReader((String) cache.get("edmx"));
+            XMLFactoryProvider2 provider = StaxXMLFactoryProvider2.getInstance();
+            XMLInputFactory2 factory = provider.newXMLInputFactory2();
+            XMLEventReader2 reader = factory.createXMLEventReader(sr);
+            PersoniumEdmxFormatParser parser = new PersoniumEdmxFormatParser();
+            metacache = parser.parseMetadata(reader);
+        } catch (RuntimeException ex) {
+            log.info("XMLParseException: " + ex.getMessage(), ex.fillInStackTrace());
+            throw ex;
+        } catch (StackOverflowError tw) {
+            //StackOverFlowError occurs when circular reference of ComplexType is made
+            log.info("XMLParseException: " + tw.getMessage(), tw.fillInStackTrace());
+            throw tw;
         }
+        this.metadata = metacache;
     }
 
     private Map<String, Object> createUserDataSchemaCache() {
@@ -386,6 +398,11 @@ public class UserDataODataProducer extends EsODataProducer {
         return new UserDataLinkDocHandler(searchHit);
     }
 
+    @Override
+    protected boolean isGroupCommitEnabled() {
+        return PersoniumUnitConfig.isEsGroupCommitEnabled();
+    }
+
     @Override
     public void beforeCreate(final String entitySetName, final OEntity oEntity, final EntitySetDocHandler docHandler) {
         createDynamicPropertyEntity(docHandler);
@@ -496,13 +513,98 @@ public class UserDataODataProducer extends EsODataProducer {
                 throw PersoniumCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS;
             }
 
+            //Register all the Property in one bulk request
+            List<EsBulkRequest> bulkRequests = new ArrayList<EsBulkRequest>();
             for (PropertyDocHandler propertyDocHandler : propertyDocHandlerList) {
-                accessor.create(propertyDocHandler);
+                String id = PersoniumUUID.randomUUID();
+                propertyDocHandler.setId(id);
+                bulkRequests.add(new MapBulkRequest(EsBulkRequest.BulkRequestType.INDEX,
+                        accessor.getType(), id, propertyDocHandler.getSource()));
             }
+            PersoniumBulkResponse bulkResponse = accessor.bulkCreate(bulkRequests, getCellId());
+            for (PersoniumBulkItemResponse itemResponse : bulkResponse.items()) {
+                if (itemResponse.isFailed()) {
+                    UserDataSchemaCache.clear(this.davCmp.getId());
+                    throw PersoniumCoreException.Server.DATA_STORE_UNKNOWN_ERROR;
+                }
+            }
+
+            addDynamicPropertiesToMetadata(propertyDocHandlerList);
+        }
+    }
 
+    /**
+     * Add the registered dynamic properties to the schema of this producer and publish it to the cache.
+     * The schema is not read again from the data source.
+     * If the schema can not be patched, it is read again.
+     * @param propertyDocHandlerList registered dynamic properties
+     */
+    void addDynamicPropertiesToMetadata(List<PropertyDocHandler> propertyDocHandlerList) {
+        //Keep the cache information to detect a change by another request while patching
+        Map<String, Object> cache = UserDataSchemaCache.get(this.getNodeId());
+        try {
+            EdmDataServices.Builder builder = EdmDataServices.newBuilder(getMetadata());
+            for (PropertyDocHandler propertyDocHandler : propertyDocHandlerList) {
+                EdmEntityType.Builder entityType = findEntityType(builder, propertyDocHandler.getEntityTypeName());
+                if (entityType == null) {
+                    throw new IllegalStateException("EntityType not found in schema.");
+                }
+                List<EdmProperty.Builder> properties = new ArrayList<EdmProperty.Builder>();
+                properties.add(createDynamicProperty(propertyDocHandler.getStaticFields()));
+                entityType.addProperties(properties);
+            }
+            this.metadata = builder.build();
+        } catch (RuntimeException e) {
+            log.info("Failed to patch UserDataSchema. Reloading it.", e);
             UserDataSchemaCache.clear(this.davCmp.getId());
             reloadMetadata();
+            return;
+        }
+
+        //Publish the new schema so that other requests do not read it again from the data source
+        Map<String, Object> cacheSchema = createUserDataSchemaCache();
+        if (cacheSchema == null) {
+            UserDataSchemaCache.clear(this.davCmp.getId());
+            return;
         }
+        if (!cacheSchemaIfUnchanged(cache, cacheSchema)) {
+            //Do not leave the schema without the new properties in the cache
+            UserDataSchemaCache.clear(this.davCmp.getId());
+        }
+    }
+
+    /**
+     * Create the EdmProperty of a dynamic property in the same way as a Property read from the data source.
+     * @param staticFields static fields of the Property
+     * @return EdmProperty builder
+     */
+    private EdmProperty.Builder createDynamicProperty(Map<String, Object> staticFields) {
+        EdmProperty.Builder property = EdmProperty.newBuilder((String) staticFields.get(Property.P_NAME.getName()));
+        property.setType(EdmSimpleType.getSimple((String) staticFields.get(Property.P_TYPE.getName())));
+        property.setNullable((Boolean) staticFields.get(Property.P_NULLABLE.getName()));
+        Object isDeclared = staticFields.get(Property.P_IS_DECLARED.getName());
+        if (!(Boolean) isDeclared) {
+            property.setAnnotations(CtlSchema.createIsDecleardAnnotation(isDeclared.toString()));
+        }
+        property.setDefaultValue((String) staticFields.get(Property.P_DEFAULT_VALUE.getName()));
+        Object collectionKind = staticFields.get(Property.P_COLLECTION_KIND.getName());
+        if (collectionKind == null || Property.COLLECTION_KIND_NONE.equals(collectionKind)) {
+            property.setCollectionKind(CollectionKind.NONE);
+        } else {
+            property.setCollectionKind(CollectionKind.valueOf((String) collectionKind));
+        }
+        return property;
+    }
+
+    private EdmEntityType.Builder findEntityType(EdmDataServices.Builder builder, String entityTypeName) {
+        for (EdmSchema.Builder schema : builder.getSchemas()) {
+            for (EdmEntityType.Builder entityType : schema.getEntityTypes()) {
+                if (entityType.getName().equals(entityTypeName)) {
+                    return entityType;
+                }
+            }
+        }
+        return null;
     }
 
     /**
@@ -24,6 +24,7 @@ import org.slf4j.LoggerFactory;
 
 import io.personium.core.PersoniumCoreException;
 import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.auth.BasicAuthCache;
 import io.personium.core.model.Box;
 import io.personium.core.model.BoxCmp;
 import io.personium.core.model.DavCmp;
@@ -31,6 +32,8 @@ import io.personium.core.model.impl.es.EsModel;
 import io.personium.core.model.impl.es.accessor.CellDataAccessor;
 import io.personium.core.model.impl.es.accessor.ODataEntityAccessor;
 import io.personium.core.model.impl.es.cache.BoxCache;
+import io.personium.core.model.impl.es.cache.CellCtlCache;
+import io.personium.core.model.impl.es.cache.RoleUrlCache;
 import io.personium.core.model.lock.Lock;
 
 /**
@@ -83,8 +86,6 @@ public class BoxCmpFsImpl extends DavCmpFsImpl implements BoxCmp {
         Lock lock = lockOData(getCellId(), getId(), null);
         try {
             CellDataAccessor cellDataAccessor = EsModel.cellData(cell.getDataBundleNameWithOutPrefix(), getCellId());
-            // Delete all data in box.
-            cellDataAccessor.bulkDeleteBox(getId());
             // Delete data linked to Box.
             cellDataAccessor.deleteBoxLinkData(getId());
             ODataEntityAccessor boxAccessor = (ODataEntityAccessor) EsModel.box(cell);
@@ -93,8 +94,22 @@ public class BoxCmpFsImpl extends DavCmpFsImpl implements BoxCmp {
         } finally {
             lock.release();
         }
-        doDelete();
+        // The box and its links are deleted without the producer. Discard the cell control objects cached
+        // in this unit and notify the other units, so that the deleted box is not found and created again.
+        BasicAuthCache.clear(getCellId());
+        RoleUrlCache.clear(getCellId());
+        CellCtlCache.invalidate(getCellId());
         BoxCache.clear(getBox().getName(), getCell());
+        // All data in box is deleted by the trash reaper.
+        doDelete();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected DavTrashItem createTrashItem() {
+        return DavTrashItem.forBox(cell.getDataBundleNameWithOutPrefix(), getCellId(), getId());
     }
 
     @Override
@@ -137,6 +137,15 @@ public class CellCmpFsImpl extends DavCmpFsImpl implements CellCmp {
         doDelete();
     }
 
+    /**
+     * {@inheritDoc}
+     * Cell snapshots, event logs and all the entities of the cell are deleted by the trash reaper.
+     */
+    @Override
+    protected DavTrashItem createTrashItem() {
+        return DavTrashItem.forCell(cell.getDataBundleNameWithOutPrefix(), cell.getId(), cell.getOwner());
+    }
+
     @Override
     public PersoniumCoreException getNotFoundException() {
         return PersoniumCoreException.Dav.CELL_NOT_FOUND;
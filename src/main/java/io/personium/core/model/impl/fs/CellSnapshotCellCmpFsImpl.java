@@ -73,4 +73,13 @@ public class CellSnapshotCellCmpFsImpl extends CellCmpFsImpl implements CellSnap
         return CellSnapshotDavCmpFsImpl.create(childName, this);
     }
 
+    /**
+     * {@inheritDoc}
+     * Only the snapshot files are deleted.
+     */
+    @Override
+    protected DavTrashItem createTrashItem() {
+        return DavTrashItem.forFile();
+    }
+
 }
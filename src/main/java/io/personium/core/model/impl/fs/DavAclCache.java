@@ -0,0 +1,120 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.fs;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.model.impl.es.cache.RoleUrlCache.CellRoles;
+import io.personium.core.model.jaxb.Acl;
+
+/**
+ * Cache of the ACLs of DAV resources on memory of this unit.
+ * <p>
+ * Holds the ACL translated from the metadata file, with role IDs converted into role resource URLs.
+ * The ACL is used while the ACL in the metadata file, xml:base and the role URLs of the cell
+ * it was translated with are unchanged. The cached ACL is shared and must not be modified.
+ */
+class DavAclCache {
+
+    private static volatile DavAclCache singleton;
+
+    private final Map<String, Entry> entries;
+
+    /**
+     * Constructor.
+     * @param maxSize maximum number of entries
+     */
+    DavAclCache(final int maxSize) {
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get the instance.
+     * @return DavAclCache
+     */
+    static DavAclCache getInstance() {
+        if (singleton == null) {
+            synchronized (DavAclCache.class) {
+                if (singleton == null) {
+                    singleton = new DavAclCache(PersoniumUnitConfig.getAclCacheMaxSize());
+                }
+            }
+        }
+        return singleton;
+    }
+
+    /**
+     * Get the translated ACL.
+     * @param fsPath path of the DAV resource
+     * @param source ACL in the metadata file
+     * @param baseUrl xml:base
+     * @param roles role URLs of the cell used for the translation
+     * @return ACL. null if not cached or changed.
+     */
+    Acl get(String fsPath, String source, String baseUrl, CellRoles roles) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(fsPath);
+        }
+        if (entry == null || entry.roles != roles
+                || !entry.source.equals(source) || !entry.baseUrl.equals(baseUrl)) {
+            return null;
+        }
+        return entry.acl;
+    }
+
+    /**
+     * Cache the translated ACL.
+     * @param fsPath path of the DAV resource
+     * @param source ACL in the metadata file
+     * @param baseUrl xml:base
+     * @param roles role URLs of the cell used for the translation
+     * @param acl ACL
+     */
+    void put(String fsPath, String source, String baseUrl, CellRoles roles, Acl acl) {
+        Entry entry = new Entry(source, baseUrl, roles, acl);
+        synchronized (entries) {
+            entries.put(fsPath, entry);
+        }
+    }
+
+    /**
+     * Translated ACL.
+     */
+    private static final class Entry {
+        private final String source;
+        private final String baseUrl;
+        private final CellRoles roles;
+        private final Acl acl;
+
+        Entry(String source, String baseUrl, CellRoles roles, Acl acl) {
+            this.source = source;
+            this.baseUrl = baseUrl;
+            this.roles = roles;
+            this.acl = acl;
+        }
+    }
+}
@@ -27,6 +27,7 @@ import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
@@ -63,6 +64,7 @@ import org.xml.sax.SAXException;
 import io.personium.common.auth.token.Role;
 import io.personium.common.es.response.PersoniumGetResponse;
 import io.personium.common.es.util.IndexNameEncoder;
+import io.personium.common.es.util.PersoniumUUID;
 import io.personium.common.utils.PersoniumCoreUtils;
 import io.personium.core.PersoniumCoreException;
 import io.personium.core.PersoniumCoreLog;
@@ -74,6 +76,7 @@ import io.personium.core.http.header.RangeHeaderHandler;
 import io.personium.core.model.Box;
 import io.personium.core.model.Cell;
 import io.personium.core.model.DavCmp;
+import io.personium.core.model.DavCommon;
 import io.personium.core.model.DavDestination;
 import io.personium.core.model.ModelFactory;
 import io.personium.core.model.ctl.ComplexType;
@@ -85,8 +88,9 @@ import io.personium.core.model.file.DataCryptor;
 import io.personium.core.model.file.StreamingOutputForDavFile;
 import io.personium.core.model.file.StreamingOutputForDavFileWithRange;
 import io.personium.core.model.impl.es.EsModel;
-import io.personium.core.model.impl.es.accessor.CellDataAccessor;
 import io.personium.core.model.impl.es.accessor.EntitySetAccessor;
+import io.personium.core.model.impl.es.cache.RoleUrlCache;
+import io.personium.core.model.impl.es.cache.RoleUrlCache.CellRoles;
 import io.personium.core.model.impl.es.odata.UserSchemaODataProducer;
 import io.personium.core.model.jaxb.Ace;
 import io.personium.core.model.jaxb.Acl;
@@ -122,6 +126,8 @@ public class DavCmpFsImpl implements DavCmp {
      */
     public static final String CONTENT_FILE_NAME = "content";
     private static final String TEMP_FILE_NAME = "tmp";
+    /** Name of the directory to prepare the copy in the working directory. */
+    private static final String COPY_DIR_NAME = "copy";
 
     /*
      * logger.
@@ -637,13 +643,24 @@ public class DavCmpFsImpl implements DavCmp {
             DataCryptor cryptor = new DataCryptor(getCellId());
             input = cryptor.encode(inputStream, PersoniumUnitConfig.isDavEncryptEnabled());
             BufferedInputStream bufferedInput = new BufferedInputStream(input);
-            File tmpFile = new File(getTempContentFilePath());
-            File contentFile = new File(getContentFilePath());
-            Files.copy(bufferedInput, tmpFile.toPath());
-            Files.delete(contentFile.toPath());
-            Files.move(tmpFile.toPath(), contentFile.toPath());
+            // The content is written into a new version and never overwritten.
+            File oldVersion = new File(getCurrentContentFilePath());
+            File newVersion = new File(getNewContentFilePath());
+            Files.copy(bufferedInput, newVersion.toPath());
+            try {
+                // The file with the fixed name is switched to the new version for the readers outside of this class.
+                File tmpFile = new File(getTempContentFilePath());
+                File contentFile = new File(getContentFilePath());
+                Files.deleteIfExists(tmpFile.toPath());
+                Files.createLink(tmpFile.toPath(), newVersion.toPath());
+                Files.move(tmpFile.toPath(), contentFile.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                Files.deleteIfExists(newVersion.toPath());
+                throw e;
+            }
 
-            long writtenBytes = contentFile.length();
+            long writtenBytes = newVersion.length();
             String encryptionType = DataCryptor.ENCRYPTION_TYPE_NONE;
             if (PersoniumUnitConfig.isDavEncryptEnabled()) {
                 writtenBytes = ((CipherInputStream) input).getReadLengthBeforEncryption();
@@ -655,7 +672,14 @@ public class DavCmpFsImpl implements DavCmp {
             this.metaFile.setContentType(contentType);
             this.metaFile.setContentLength(writtenBytes);
             this.metaFile.setEncryptionType(encryptionType);
+            this.metaFile.setContentFileName(newVersion.getName());
             this.metaFile.save();
+
+            // The content with the fixed name is not a version and has been replaced already.
+            if (!CONTENT_FILE_NAME.equals(oldVersion.getName())) {
+                DavContentSweeper.retire(oldVersion);
+            }
+            DavContentSweeper.sweep(newVersion.getParentFile(), newVersion.getName());
         } catch (IOException ex) {
             throw PersoniumCoreException.Dav.FS_INCONSISTENCY_FOUND.reason(ex);
         }
@@ -673,7 +697,7 @@ public class DavCmpFsImpl implements DavCmp {
         String contentType = getContentType();
 
         ResponseBuilder res = null;
-        String fileFullPath = this.fsPath + File.separator + CONTENT_FILE_NAME;
+        String fileFullPath = getCurrentContentFilePath();
         long fileSize = getContentLength();
         String encryptionType = getEncryptionType();
 
@@ -898,12 +922,13 @@ public class DavCmpFsImpl implements DavCmp {
             //2. When performing access control of the move destination before locking, it is necessary to acquire the information of the move destination, and a request to the ES occurs.
             davDestination.getDestinationRsCmp().getParent().checkAccessContext(ac, BoxPrivilege.WRITE);
 
-            File destDir = ((DavCmpFsImpl) davDestination.getDestinationCmp()).fsDir;
-            if (!davDestination.getDestinationCmp().exists()) {
+            DavCmpFsImpl destCmp = (DavCmpFsImpl) davDestination.getDestinationCmp();
+            File destDir = destCmp.fsDir;
+            if (!destCmp.exists()) {
                 Files.move(this.fsDir.toPath(), destDir.toPath());
                 res = javax.ws.rs.core.Response.status(HttpStatus.SC_CREATED);
             } else {
-                FileUtils.deleteDirectory(destDir);
+                DavTrashManager.moveToTrash(destDir, destCmp.createTrashItem());
                 Files.move(this.fsDir.toPath(), destDir.toPath(), StandardCopyOption.REPLACE_EXISTING);
                 res = javax.ws.rs.core.Response.status(HttpStatus.SC_NO_CONTENT);
             }
@@ -921,6 +946,155 @@ public class DavCmpFsImpl implements DavCmp {
         return res;
     }
 
+    /**
+     * process COPY operation.
+     * The copy is prepared in the working directory and moved into place with a single rename.
+     * The content of files is shared with the source by hard links, since the versions of the content are never
+     * overwritten.
+     * @param overwrite
+     *            whether or not overwrite the target resource
+     * @param depth
+     *            Depth header
+     * @param davDestination
+     *            Destination information.
+     * @return ResponseBuilder Response Object
+     */
+    @Override
+    public ResponseBuilder copy(String overwrite, String depth, DavDestination davDestination) {
+        ResponseBuilder res = null;
+
+        //Lock
+        Lock lock = this.lock();
+        try {
+            //Existence check of source resource
+            this.load();
+            if (!this.exists()) {
+                throw getNotFoundException().params(this.getUrl());
+            }
+
+            //Destination load
+            davDestination.loadDestinationHierarchy();
+            //Validate of destination
+            davDestination.validateDestinationResource(overwrite, this);
+
+            //Access control to the destination
+            AccessContext ac = davDestination.getDestinationRsCmp().getAccessContext();
+            davDestination.getDestinationRsCmp().getParent().checkAccessContext(ac, BoxPrivilege.WRITE);
+
+            DavCmpFsImpl destCmp = (DavCmpFsImpl) davDestination.getDestinationCmp();
+            if (!destCmp.exists()) {
+                //Check number of collection files in destination parent collection
+                destCmp.checkChildResourceCount();
+            }
+            File destDir = destCmp.fsDir;
+            File workDir = DavTrashManager.createWorkDir();
+            try {
+                File copyDir = new File(workDir, COPY_DIR_NAME);
+                copyTree(this.fsDir, copyDir, this.getUrl(), destCmp.getCollectionDepth(),
+                        DavCommon.DEPTH_INFINITY.equalsIgnoreCase(depth));
+                if (!destCmp.exists()) {
+                    Files.move(copyDir.toPath(), destDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                    res = javax.ws.rs.core.Response.status(HttpStatus.SC_CREATED);
+                } else {
+                    DavTrashManager.moveToTrash(destDir, destCmp.createTrashItem());
+                    Files.move(copyDir.toPath(), destDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                    res = javax.ws.rs.core.Response.status(HttpStatus.SC_NO_CONTENT);
+                }
+            } finally {
+                FileUtils.deleteQuietly(workDir);
+            }
+            destCmp.load();
+            res.header(HttpHeaders.ETAG, destCmp.getEtag());
+        } catch (IOException e) {
+            throw PersoniumCoreException.Dav.FS_INCONSISTENCY_FOUND.reason(e);
+        } finally {
+            // UNLOCK
+            lock.release();
+            log.debug("unlock");
+        }
+
+        res.header(HttpHeaders.LOCATION, davDestination.getDestinationUri());
+        return res;
+    }
+
+    /**
+     * Copy the resource directory.
+     * Properties are copied, and the copy gets a new ID and the default ACL.
+     * The limits of the collection depth and the number of members apply as on creating the resources.
+     * @param srcDir directory of the source resource
+     * @param destDir directory to create
+     * @param srcUrl URL of the source resource
+     * @param depth depth of the collection to create
+     * @param recursive whether to copy the members of the collection
+     * @throws IOException failed to copy
+     */
+    private void copyTree(File srcDir, File destDir, String srcUrl, int depth, boolean recursive)
+            throws IOException {
+        DavMetadataFile srcMeta = DavMetadataFile.newInstance(srcDir.getPath());
+        srcMeta.load();
+        String type = srcMeta.getNodeType();
+        if (!TYPE_DAV_FILE.equals(type) && !TYPE_COL_WEBDAV.equals(type)) {
+            //OData and Service collections have data other than files
+            throw PersoniumCoreException.Dav.RESOURCE_PROHIBITED_TO_COPY.params(srcUrl);
+        }
+        if (TYPE_COL_WEBDAV.equals(type) && depth > PersoniumUnitConfig.getMaxCollectionDepth()) {
+            throw PersoniumCoreException.Dav.COLLECTION_DEPTH_ERROR;
+        }
+
+        Files.createDirectories(destDir.toPath());
+        DavMetadataFile destMeta = DavMetadataFile.prepareNewFile(
+                new File(destDir, DavMetadataFile.DAV_META_FILE_NAME), type);
+        if (srcMeta.getProperties() != null) {
+            destMeta.setProperties(srcMeta.getProperties());
+        }
+        if (TYPE_DAV_FILE.equals(type)) {
+            Path srcContent = new File(srcDir, srcMeta.getContentFileName()).toPath();
+            Path destContent = new File(destDir, CONTENT_FILE_NAME).toPath();
+            try {
+                Files.createLink(destContent, srcContent);
+            } catch (IOException | UnsupportedOperationException e) {
+                //Hard links are not available on the file system
+                Files.copy(srcContent, destContent);
+            }
+            destMeta.setContentType(srcMeta.getContentType());
+            destMeta.setContentLength(srcMeta.getContentLength());
+            destMeta.setEncryptionType(srcMeta.getEncryptionType());
+        }
+        destMeta.save();
+
+        if (TYPE_COL_WEBDAV.equals(type) && recursive) {
+            File[] children = srcDir.listFiles(new FileFilter() {
+                @Override
+                public boolean accept(File child) {
+                    return child.isDirectory();
+                }
+            });
+            if (children != null) {
+                if (children.length > PersoniumUnitConfig.getMaxChildResourceCount()) {
+                    throw PersoniumCoreException.Dav.COLLECTION_CHILDRESOURCE_ERROR;
+                }
+                for (File child : children) {
+                    copyTree(child, new File(destDir, child.getName()),
+                            srcUrl + "/" + child.getName(), depth + 1, true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the depth of this resource counted from the box.
+     * @return depth
+     */
+    private int getCollectionDepth() {
+        DavCmpFsImpl current = this;
+        int depth = 0;
+        while (null != current.parent) {
+            current = current.parent;
+            depth++;
+        }
+        return depth;
+    }
+
     /**
      * Check number of collection/file in parent collection.
      */
@@ -983,13 +1157,32 @@ public class DavCmpFsImpl implements DavCmp {
 
     /**
      * Exec delete.
+     * A file is deleted at once. The directory of a collection is moved into the trash area,
+     * and the files in it are deleted by the trash reaper.
      */
     protected void doDelete() {
-        try {
-            FileUtils.deleteDirectory(this.fsDir);
-        } catch (IOException e) {
-            throw PersoniumCoreException.Dav.FS_INCONSISTENCY_FOUND.reason(e);
+        if (TYPE_DAV_FILE.equals(getType())) {
+            try {
+                FileUtils.deleteDirectory(this.fsDir);
+            } catch (IOException e) {
+                throw PersoniumCoreException.Dav.FS_INCONSISTENCY_FOUND.reason(e);
+            }
+            return;
         }
+        DavTrashManager.moveToTrash(this.fsDir, createTrashItem());
+    }
+
+    /**
+     * Create the work item of the trash reaper for this resource.
+     * @return DavTrashItem
+     */
+    protected DavTrashItem createTrashItem() {
+        String type = getType();
+        if (TYPE_COL_WEBDAV.equals(type) || TYPE_COL_ODATA.equals(type)) {
+            // OData collections under this resource are found and deleted by the trash reaper.
+            return DavTrashItem.forCollection(cell.getDataBundleNameWithOutPrefix(), getCellId(), box.getId());
+        }
+        return DavTrashItem.forFile();
     }
 
     /**
@@ -997,22 +1190,9 @@ public class DavCmpFsImpl implements DavCmp {
      */
     @Override
     public void makeEmpty() {
-        if (TYPE_COL_ODATA.equals(getType())) {
-            // Deal with OData for recursive deletion.
-            // In fact, OData's processing should not be done with DavCmp.
-            // Should be implemented in **ODataProducer class.
-            Lock lock = lockOData(getCellId(), getBox().getId(), getId());
-            try {
-                CellDataAccessor accessor = EsModel.cellData(cell.getDataBundleNameWithOutPrefix(), getCellId());
-                accessor.bulkDeleteODataCollection(getBox().getId(), getId());
-            } finally {
-                lock.release();
-            }
-        } else if (TYPE_COL_WEBDAV.equals(getType())) {
-            for (DavCmp child : getChildren().values()) {
-                child.makeEmpty();
-            }
-        }
+        // Deal with OData for recursive deletion.
+        // The whole tree is moved at once, and the entities of OData collections in it
+        // are deleted by the trash reaper together with the files.
         doDelete();
     }
 
@@ -1085,9 +1265,19 @@ public class DavCmpFsImpl implements DavCmp {
         //base: setting xml value
         String baseUrlStr = createBaseUrlStr();
 
-        //TODO This is a heavy process that ES search runs many times, so you should do it when you need it
-        //From here, once should be removed.
-        return this.roleIdToName(aclObj, baseUrlStr);
+        //Role URLs and translated ACLs are cached so that ES is not searched for every ACE on every load.
+        CellRoles roles = RoleUrlCache.get(this.cell);
+        if (roles == null) {
+            return this.roleIdToName(aclObj, baseUrlStr, null);
+        }
+        String source = aclObj.toJSONString();
+        DavAclCache cache = DavAclCache.getInstance();
+        Acl ret = cache.get(this.fsPath, source, baseUrlStr, roles);
+        if (ret == null) {
+            ret = this.roleIdToName(aclObj, baseUrlStr, roles);
+            cache.put(this.fsPath, source, baseUrlStr, roles, ret);
+        }
+        return ret;
     }
 
     /**
@@ -1097,8 +1287,10 @@ public class DavCmpFsImpl implements DavCmp {
      * JSON after ID replacement
      * @param baseUrlStr
      * xml: base value
+     * @param roles
+     * cached role URLs of the cell. null if not cached.
      */
-    private Acl roleIdToName(Object jsonObj, String baseUrlStr) {
+    private Acl roleIdToName(Object jsonObj, String baseUrlStr, CellRoles roles) {
         Acl ret = Acl.fromJson(((JSONObject) jsonObj).toJSONString());
         List<Ace> aceList = ret.getAceList();
         if (aceList == null) {
@@ -1110,7 +1302,12 @@ public class DavCmpFsImpl implements DavCmp {
             String pHref = ace.getPrincipalHref();
             if (pHref != null) {
                 //When there is no role name corresponding to the role ID, it is determined that the role has been deleted and it is ignored.
-                String roloResourceUrl = this.cell.roleIdToRoleResourceUrl(pHref);
+                String roloResourceUrl;
+                if (roles != null) {
+                    roloResourceUrl = roles.getRoleResourceUrl(this.cell, pHref);
+                } else {
+                    roloResourceUrl = this.cell.roleIdToRoleResourceUrl(pHref);
+                }
                 log.debug("###" + pHref + ":" + roloResourceUrl);
                 if (roloResourceUrl == null) {
                     eraseList.add(ace);
@@ -1217,12 +1414,30 @@ public class DavCmpFsImpl implements DavCmp {
 
     /**
      * Get content file path.
+     * The file with the fixed name holds the current content, but may be replaced while being read.
      * @return content file path
      */
     protected String getContentFilePath() {
         return this.fsPath + File.separator + CONTENT_FILE_NAME;
     }
 
+    /**
+     * Get the path of the content version referred to by the loaded metadata.
+     * The version is never overwritten.
+     * @return content file path
+     */
+    protected String getCurrentContentFilePath() {
+        return this.fsPath + File.separator + this.metaFile.getContentFileName();
+    }
+
+    /**
+     * Get the path to write a new version of the content.
+     * @return content file path
+     */
+    protected String getNewContentFilePath() {
+        return this.fsPath + File.separator + DavContentSweeper.VERSION_PREFIX + PersoniumUUID.randomUUID();
+    }
+
     /**
      * Get temp content file path.
      * @return temp content file path
@@ -0,0 +1,130 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.fs;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.personium.core.PersoniumUnitConfig;
+
+/**
+ * Sweeper of the versions of Dav file content.
+ * <p>
+ * The content of a Dav file is never overwritten. Each update writes a new version
+ * and the metadata file is switched to it, so that readers open the version the metadata they loaded refers to.
+ * The replaced version is kept for the grace period for the readers that have not opened it yet, then deleted.
+ * Versions whose deletion was lost by a restart are deleted on the next update of the same file.
+ */
+public class DavContentSweeper {
+
+    /** Logger. */
+    private static Logger log = LoggerFactory.getLogger(DavContentSweeper.class);
+
+    /** Prefix of the names of the content versions. */
+    static final String VERSION_PREFIX = DavCmpFsImpl.CONTENT_FILE_NAME + ".";
+
+    private static ScheduledThreadPoolExecutor scheduler;
+
+    private DavContentSweeper() {
+    }
+
+    /**
+     * Start the sweeper.
+     */
+    public static synchronized void start() {
+        final ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+        builder.setNameFormat("dav-content-sweeper-%d");
+        builder.setDaemon(true);
+        scheduler = (ScheduledThreadPoolExecutor) Executors.newScheduledThreadPool(1, builder.build());
+        // Deletions not run are taken over by sweep().
+        scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Stop the sweeper.
+     */
+    public static synchronized void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        try {
+            scheduler.shutdown();
+            if (!scheduler.awaitTermination(1, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+        }
+        scheduler = null;
+    }
+
+    /**
+     * Delete the replaced version after the grace period.
+     * @param version file of the replaced version
+     */
+    static synchronized void retire(final File version) {
+        long gracePeriod = PersoniumUnitConfig.getDavVersionGracePeriod();
+        if (scheduler == null || gracePeriod <= 0) {
+            delete(version);
+            return;
+        }
+        // The grace period of the versions left by a restart is counted from here.
+        version.setLastModified(System.currentTimeMillis());
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                delete(version);
+            }
+        }, gracePeriod, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Delete the versions in the directory other than the current one, that passed the grace period.
+     * @param dir directory of the Dav file
+     * @param current name of the current version
+     */
+    static void sweep(File dir, final String current) {
+        final long limit = System.currentTimeMillis() - PersoniumUnitConfig.getDavVersionGracePeriod();
+        File[] versions = dir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.getName().startsWith(VERSION_PREFIX) && !file.getName().equals(current)
+                        && file.lastModified() <= limit;
+            }
+        });
+        if (versions == null) {
+            return;
+        }
+        for (File version : versions) {
+            delete(version);
+        }
+    }
+
+    private static void delete(File version) {
+        if (!version.delete() && version.exists()) {
+            log.warn("Failed to delete the replaced version of Dav file. " + version.getPath());
+        }
+    }
+}
@@ -19,7 +19,9 @@ package io.personium.core.model.impl.fs;
 import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Date;
 
 import org.apache.commons.io.Charsets;
@@ -85,6 +87,9 @@ public class DavMetadataFile {
     /** JSON Key for Cell Status. */
     private static final String KEY_CELL_STATUS = "cs";
 
+    /** JSON Key for the name of the current content file. */
+    private static final String KEY_CONTENT_FILE = "cf";
+
     /**
      * constructor.
      */
@@ -202,13 +207,22 @@ public class DavMetadataFile {
 
     /**
      * save to the file.
+     * The file is replaced with a single rename, so that readers see either the old or the new content.
      */
     public void save() {
         this.incrementVersion();
         String jsonStr = JSONObject.toJSONString(this.getJSON());
+        File tmpFile = new File(this.file.getParentFile(), this.file.getName() + "." + PersoniumUUID.randomUUID());
         try {
-            Files.write(this.file.toPath(), jsonStr.getBytes(Charsets.UTF_8));
+            Files.write(tmpFile.toPath(), jsonStr.getBytes(Charsets.UTF_8));
+            try {
+                Files.move(tmpFile.toPath(), this.file.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
         } catch (IOException e) {
+            tmpFile.delete();
             throw new RuntimeException(e);
         }
     }
@@ -399,6 +413,31 @@ public class DavMetadataFile {
         this.json.put(KEY_CELL_STATUS, cellStatus);
     }
 
+    /**
+     * Get the name of the file holding the current content.
+     * Files written before the content was versioned have no name in the metadata and use the fixed name.
+     * @return content file name
+     */
+    public String getContentFileName() {
+        String name = (String) this.json.get(KEY_CONTENT_FILE);
+        if (name == null) {
+            return DavCmpFsImpl.CONTENT_FILE_NAME;
+        }
+        return name;
+    }
+
+    /**
+     * @param contentFileName name of the file holding the current content. null to use the fixed name.
+     */
+    @SuppressWarnings("unchecked")
+    public void setContentFileName(String contentFileName) {
+        if (contentFileName == null) {
+            this.json.remove(KEY_CONTENT_FILE);
+        } else {
+            this.json.put(KEY_CONTENT_FILE, contentFileName);
+        }
+    }
+
     /**
      * @return long value of the resource version
      */
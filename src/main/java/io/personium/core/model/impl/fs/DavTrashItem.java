@@ -0,0 +1,264 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.fs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.Charsets;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import io.personium.common.es.util.PersoniumUUID;
+
+/**
+ * Work item of a deletion moved into the trash area.
+ * The item is stored as a json file beside the trashed data so that the reaper can resume it after a restart.
+ */
+public class DavTrashItem {
+
+    /** Work item file name. */
+    static final String ITEM_FILE_NAME = "item.json";
+    /** Directory name of the trashed data. */
+    static final String DATA_DIR_NAME = "data";
+
+    /** Only the files are deleted. */
+    public static final String SCOPE_FILE = "file";
+    /** Files and OData collections contained in the files are deleted. */
+    public static final String SCOPE_COLLECTION = "collection";
+    /** Files and all the entities of the box are deleted. */
+    public static final String SCOPE_BOX = "box";
+    /** Files, all the entities, event logs and snapshots of the cell are deleted. */
+    public static final String SCOPE_CELL = "cell";
+
+    /** Phase deleting data on elasticsearch. */
+    static final String PHASE_ES = "es";
+    /** Phase deleting files. */
+    static final String PHASE_FS = "fs";
+
+    private static final String KEY_ID = "id";
+    private static final String KEY_SCOPE = "scope";
+    private static final String KEY_PHASE = "phase";
+    private static final String KEY_UNIT_USER_NAME = "unitUserName";
+    private static final String KEY_OWNER = "owner";
+    private static final String KEY_CELL_ID = "cellId";
+    private static final String KEY_BOX_ID = "boxId";
+    private static final String KEY_ODATA_NODE_IDS = "odataNodeIds";
+    private static final String KEY_ES_DONE = "esDone";
+    private static final String KEY_PURGED = "purged";
+    private static final String KEY_RETRIES = "retries";
+    private static final String KEY_CREATED_AT = "createdAt";
+
+    String id;
+    String scope;
+    String phase;
+    String unitUserName;
+    String owner;
+    String cellId;
+    String boxId;
+    /** Node ids of OData collections found in the trashed data. null : not searched yet. */
+    List<String> odataNodeIds;
+    /** Number of odataNodeIds whose entities are already deleted. */
+    int esDone;
+    /** Number of deleted files and directories. */
+    long purged;
+    /** Number of failed runs. */
+    int retries;
+    long createdAt;
+
+    /** Directory of this item. */
+    File itemDir;
+
+    private DavTrashItem(String scope) {
+        this.id = PersoniumUUID.randomUUID();
+        this.scope = scope;
+        if (SCOPE_FILE.equals(scope)) {
+            this.phase = PHASE_FS;
+        } else {
+            this.phase = PHASE_ES;
+        }
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Create an item which deletes only the files.
+     * @return DavTrashItem
+     */
+    public static DavTrashItem forFile() {
+        return new DavTrashItem(SCOPE_FILE);
+    }
+
+    /**
+     * Create an item which deletes the WebDAV collection and the OData collections under it.
+     * @param unitUserName unit user name without prefix
+     * @param cellId cell id
+     * @param boxId box id
+     * @return DavTrashItem
+     */
+    public static DavTrashItem forCollection(String unitUserName, String cellId, String boxId) {
+        DavTrashItem item = new DavTrashItem(SCOPE_COLLECTION);
+        item.unitUserName = unitUserName;
+        item.cellId = cellId;
+        item.boxId = boxId;
+        return item;
+    }
+
+    /**
+     * Create an item which deletes the box contents.
+     * @param unitUserName unit user name without prefix
+     * @param cellId cell id
+     * @param boxId box id
+     * @return DavTrashItem
+     */
+    public static DavTrashItem forBox(String unitUserName, String cellId, String boxId) {
+        DavTrashItem item = new DavTrashItem(SCOPE_BOX);
+        item.unitUserName = unitUserName;
+        item.cellId = cellId;
+        item.boxId = boxId;
+        return item;
+    }
+
+    /**
+     * Create an item which deletes the cell contents.
+     * @param unitUserName unit user name without prefix
+     * @param cellId cell id
+     * @param owner cell owner
+     * @return DavTrashItem
+     */
+    public static DavTrashItem forCell(String unitUserName, String cellId, String owner) {
+        DavTrashItem item = new DavTrashItem(SCOPE_CELL);
+        item.unitUserName = unitUserName;
+        item.cellId = cellId;
+        item.owner = owner;
+        return item;
+    }
+
+    /**
+     * Load the item stored in the directory.
+     * @param itemDir item directory
+     * @return DavTrashItem. null if the item file does not exist.
+     */
+    static DavTrashItem load(File itemDir) {
+        File file = new File(itemDir, ITEM_FILE_NAME);
+        if (!file.exists()) {
+            return null;
+        }
+        JSONObject json;
+        try (Reader reader = Files.newBufferedReader(file.toPath(), Charsets.UTF_8)) {
+            json = (JSONObject) new JSONParser().parse(reader);
+        } catch (IOException | ParseException e) {
+            return null;
+        }
+        DavTrashItem item = new DavTrashItem((String) json.get(KEY_SCOPE));
+        item.id = (String) json.get(KEY_ID);
+        item.phase = (String) json.get(KEY_PHASE);
+        item.unitUserName = (String) json.get(KEY_UNIT_USER_NAME);
+        item.owner = (String) json.get(KEY_OWNER);
+        item.cellId = (String) json.get(KEY_CELL_ID);
+        item.boxId = (String) json.get(KEY_BOX_ID);
+        JSONArray nodeIds = (JSONArray) json.get(KEY_ODATA_NODE_IDS);
+        if (nodeIds != null) {
+            item.odataNodeIds = new ArrayList<>();
+            for (Object nodeId : nodeIds) {
+                item.odataNodeIds.add((String) nodeId);
+            }
+        }
+        item.esDone = toLong(json.get(KEY_ES_DONE)).intValue();
+        item.purged = toLong(json.get(KEY_PURGED));
+        item.retries = toLong(json.get(KEY_RETRIES)).intValue();
+        item.createdAt = toLong(json.get(KEY_CREATED_AT));
+        item.itemDir = itemDir;
+        return item;
+    }
+
+    private static Long toLong(Object value) {
+        if (value == null) {
+            return 0L;
+        }
+        return ((Number) value).longValue();
+    }
+
+    /**
+     * Save the item into its directory.
+     */
+    @SuppressWarnings("unchecked")
+    void save() {
+        JSONObject json = new JSONObject();
+        json.put(KEY_ID, id);
+        json.put(KEY_SCOPE, scope);
+        json.put(KEY_PHASE, phase);
+        json.put(KEY_UNIT_USER_NAME, unitUserName);
+        json.put(KEY_OWNER, owner);
+        json.put(KEY_CELL_ID, cellId);
+        json.put(KEY_BOX_ID, boxId);
+        if (odataNodeIds != null) {
+            JSONArray nodeIds = new JSONArray();
+            nodeIds.addAll(odataNodeIds);
+            json.put(KEY_ODATA_NODE_IDS, nodeIds);
+        }
+        json.put(KEY_ES_DONE, esDone);
+        json.put(KEY_PURGED, purged);
+        json.put(KEY_RETRIES, retries);
+        json.put(KEY_CREATED_AT, createdAt);
+
+        // Write to a temporary file and rename it so that a crash never leaves a broken item.
+        File file = new File(itemDir, ITEM_FILE_NAME);
+        File tmpFile = new File(itemDir, ITEM_FILE_NAME + ".tmp");
+        try {
+            Files.write(tmpFile.toPath(), json.toJSONString().getBytes(Charsets.UTF_8));
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return directory of the trashed data
+     */
+    File getDataDir() {
+        return new File(itemDir, DATA_DIR_NAME);
+    }
+
+    /**
+     * @return item id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return scope
+     */
+    public String getScope() {
+        return scope;
+    }
+
+    /**
+     * @return number of deleted files and directories
+     */
+    public long getPurged() {
+        return purged;
+    }
+}
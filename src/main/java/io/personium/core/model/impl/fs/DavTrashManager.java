@@ -0,0 +1,485 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.fs;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.json.simple.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.personium.common.es.util.PersoniumUUID;
+import io.personium.core.PersoniumCoreException;
+import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.event.EventUtils;
+import io.personium.core.model.DavCmp;
+import io.personium.core.model.file.BinaryDataAccessException;
+import io.personium.core.model.impl.es.EsModel;
+import io.personium.core.model.impl.es.accessor.CellDataAccessor;
+import io.personium.core.model.lock.Lock;
+import io.personium.core.model.lock.LockManager;
+import io.personium.core.model.progress.Progress;
+import io.personium.core.model.progress.ProgressManager;
+
+/**
+ * Manager of the trash area.
+ * Deleted resources are moved into the trash area with a single rename,
+ * and the reaper deletes the files and the entities in the background little by little.
+ */
+public class DavTrashManager {
+
+    /** Logger. */
+    private static Logger log = LoggerFactory.getLogger(DavTrashManager.class);
+
+    /** Name of the trash directory placed under the blob store root. */
+    public static final String TRASH_DIR_NAME = ".trash";
+    /** Suffix of the item directory under preparation. */
+    static final String PREPARING_SUFFIX = ".prep";
+    /** Cache key prefix of the progress. */
+    private static final String CACHE_KEY_CATEGORY = "trash-";
+
+    private static volatile DavTrashManager singleton;
+
+    private final File trashRoot;
+    private final int batchSize;
+    private ScheduledExecutorService scheduler;
+    /** Whether the preparing items left by a crash are already recovered. */
+    private boolean recovered = false;
+
+    /**
+     * Constructor.
+     * @param trashRoot root directory of the trash area
+     * @param batchSize maximum number of files deleted in one run
+     */
+    DavTrashManager(File trashRoot, int batchSize) {
+        this.trashRoot = trashRoot;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Get the instance.
+     * @return DavTrashManager
+     */
+    static DavTrashManager getInstance() {
+        if (singleton == null) {
+            synchronized (DavTrashManager.class) {
+                if (singleton == null) {
+                    File root = new File(PersoniumUnitConfig.getBlobStoreRoot(), TRASH_DIR_NAME);
+                    singleton = new DavTrashManager(root, PersoniumUnitConfig.getTrashReaperBatchSize());
+                }
+            }
+        }
+        return singleton;
+    }
+
+    /**
+     * Start the reaper.
+     */
+    public static void start() {
+        DavTrashManager manager = getInstance();
+        final ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+        builder.setNameFormat("trash-reaper-%d");
+        builder.setDaemon(true);
+        manager.scheduler = Executors.newSingleThreadScheduledExecutor(builder.build());
+        long interval = PersoniumUnitConfig.getTrashReaperInterval();
+        manager.scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    getInstance().reap();
+                } catch (RuntimeException e) {
+                    log.warn("Trash reaper failed.", e);
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the reaper.
+     * Items not finished are resumed after the next start.
+     */
+    public static void stop() {
+        DavTrashManager manager = singleton;
+        if (manager == null || manager.scheduler == null) {
+            return;
+        }
+        try {
+            manager.scheduler.shutdown();
+            if (!manager.scheduler.awaitTermination(1, TimeUnit.SECONDS)) {
+                manager.scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            manager.scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Create a working directory in the trash area.
+     * Being on the same file system as the resources, the files prepared in it can be moved into place
+     * with a single rename. Working directories left by a crash are deleted when the reaper starts.
+     * @return working directory
+     * @throws IOException failed to create the directory
+     */
+    static File createWorkDir() throws IOException {
+        File dir = new File(getInstance().trashRoot, PersoniumUUID.randomUUID() + PREPARING_SUFFIX);
+        Files.createDirectories(dir.toPath());
+        return dir;
+    }
+
+    /**
+     * Move the directory into the trash area.
+     * @param dir directory to delete
+     * @param item work item describing what the reaper has to delete
+     */
+    public static void moveToTrash(File dir, DavTrashItem item) {
+        getInstance().doMoveToTrash(dir, item);
+    }
+
+    /**
+     * Get processing cache key.
+     * @param itemId item id
+     * @return Cache key
+     */
+    public static String getKey(String itemId) {
+        return CACHE_KEY_CATEGORY + itemId;
+    }
+
+    /**
+     * Move the directory into the trash area.
+     * The item is saved before the rename, so the reaper never loses track of the trashed data.
+     * @param dir directory to delete
+     * @param item work item
+     */
+    void doMoveToTrash(File dir, DavTrashItem item) {
+        File preparingDir = new File(trashRoot, item.id + PREPARING_SUFFIX);
+        try {
+            Files.createDirectories(preparingDir.toPath());
+            item.itemDir = preparingDir;
+            item.save();
+            try {
+                Files.move(dir.toPath(), item.getDataDir().toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (NoSuchFileException e) {
+                // Nothing to move. Entities may still have to be deleted.
+                log.debug("Directory to trash does not exist. " + dir.getPath());
+            } catch (AtomicMoveNotSupportedException e) {
+                // The directory is not on the same file system as the trash area.
+                FileUtils.deleteDirectory(dir);
+            }
+            File itemDir = new File(trashRoot, item.id);
+            Files.move(preparingDir.toPath(), itemDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            item.itemDir = itemDir;
+        } catch (IOException e) {
+            try {
+                if (!item.getDataDir().exists()) {
+                    FileUtils.deleteDirectory(preparingDir);
+                }
+            } catch (IOException ie) {
+                log.warn("Failed to clean up trash item. " + preparingDir.getPath(), ie);
+            }
+            throw PersoniumCoreException.Dav.FS_INCONSISTENCY_FOUND.reason(e);
+        }
+        log.info(String.format("Moved to trash. ItemId:[%s], Scope:[%s], Path:[%s]",
+                item.id, item.scope, dir.getPath()));
+    }
+
+    /**
+     * Run the reaper once.
+     * Deletes at most batchSize files, oldest item first.
+     */
+    void reap() {
+        if (!trashRoot.exists()) {
+            return;
+        }
+        if (!recovered) {
+            recoverPreparingItems();
+            recovered = true;
+        }
+        File[] itemDirs = trashRoot.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isDirectory() && !file.getName().endsWith(PREPARING_SUFFIX);
+            }
+        });
+        if (itemDirs == null) {
+            return;
+        }
+        List<DavTrashItem> items = new ArrayList<>();
+        for (File itemDir : itemDirs) {
+            DavTrashItem item = DavTrashItem.load(itemDir);
+            if (item == null) {
+                // Item file is broken. The files can still be deleted, but not the entities.
+                log.warn("Trash item without work item found. " + itemDir.getPath());
+                item = DavTrashItem.forFile();
+                item.id = itemDir.getName();
+                item.itemDir = itemDir;
+            }
+            items.add(item);
+        }
+        items.sort((a, b) -> Long.compare(a.createdAt, b.createdAt));
+
+        int budget = batchSize;
+        for (DavTrashItem item : items) {
+            try {
+                budget = process(item, budget);
+            } catch (RuntimeException e) {
+                // Retried at the next run.
+                item.retries++;
+                saveQuietly(item);
+                log.warn(String.format("Failed to reap trash item. ItemId:[%s], Retries:[%d]",
+                        item.id, item.retries), e);
+            }
+            if (budget <= 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Process the item.
+     * @param item work item
+     * @param budget remaining number of files that can be deleted in this run
+     * @return remaining budget
+     */
+    int process(DavTrashItem item, int budget) {
+        if (DavTrashItem.PHASE_ES.equals(item.phase)) {
+            budget = deleteEntities(item, budget);
+            if (DavTrashItem.PHASE_ES.equals(item.phase)) {
+                writeProgress(item);
+                return budget;
+            }
+        }
+
+        File dataDir = item.getDataDir();
+        if (dataDir.exists()) {
+            budget = purge(dataDir, budget, item);
+        }
+        if (dataDir.exists()) {
+            item.save();
+            writeProgress(item);
+            return budget;
+        }
+
+        // Completed.
+        try {
+            FileUtils.deleteDirectory(item.itemDir);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        ProgressManager.deleteProgress(getKey(item.id));
+        log.info(String.format("Trash item reaped. ItemId:[%s], Scope:[%s], Purged:[%d]",
+                item.id, item.scope, item.purged));
+        return budget;
+    }
+
+    /**
+     * Delete the entities of the item.
+     * @param item work item
+     * @param budget remaining budget
+     * @return remaining budget
+     */
+    private int deleteEntities(DavTrashItem item, int budget) {
+        if (DavTrashItem.SCOPE_CELL.equals(item.scope)) {
+            deleteCellContents(item);
+            budget--;
+        } else if (DavTrashItem.SCOPE_BOX.equals(item.scope)) {
+            CellDataAccessor accessor = EsModel.cellData(item.unitUserName, item.cellId);
+            accessor.bulkDeleteBox(item.boxId);
+            budget--;
+        } else if (DavTrashItem.SCOPE_COLLECTION.equals(item.scope)) {
+            if (item.odataNodeIds == null) {
+                item.odataNodeIds = new ArrayList<>();
+                collectODataNodeIds(item.getDataDir(), item.odataNodeIds);
+                item.save();
+            }
+            CellDataAccessor accessor = EsModel.cellData(item.unitUserName, item.cellId);
+            while (item.esDone < item.odataNodeIds.size() && budget > 0) {
+                String nodeId = item.odataNodeIds.get(item.esDone);
+                Lock lock = LockManager.getLock(Lock.CATEGORY_ODATA, item.cellId, item.boxId, nodeId);
+                try {
+                    accessor.bulkDeleteODataCollection(item.boxId, nodeId);
+                } finally {
+                    lock.release();
+                }
+                item.esDone++;
+                budget--;
+                // Checkpoint.
+                item.save();
+            }
+            if (item.esDone < item.odataNodeIds.size()) {
+                return budget;
+            }
+        }
+        item.phase = DavTrashItem.PHASE_FS;
+        item.save();
+        return budget;
+    }
+
+    /**
+     * Delete the cell contents other than WebDAV files.
+     * @param item work item
+     */
+    private void deleteCellContents(DavTrashItem item) {
+        String cellInfoLog = String.format(" CellId:[%s], CellUnitUserName:[%s]", item.cellId, item.unitUserName);
+        // Delete cell snapshot file.
+        try {
+            FileUtils.deleteDirectory(new File(PersoniumUnitConfig.getCellSnapshotRoot(), item.cellId));
+        } catch (IOException e) {
+            // If the deletion fails, output a log and continue processing.
+            log.warn("Delete CellSnapshot Failed." + cellInfoLog, e);
+        }
+        // Delete event log file.
+        try {
+            EventUtils.deleteEventLog(item.cellId, item.owner);
+        } catch (BinaryDataAccessException e) {
+            // If the deletion fails, output a log and continue processing.
+            log.warn("Delete EventLog Failed." + cellInfoLog, e);
+        }
+        // Delete all entities under the cell.
+        CellDataAccessor cellDataAccessor = EsModel.cellData(item.unitUserName, item.cellId);
+        cellDataAccessor.bulkDeleteCell();
+        log.info("Cell Entity Resource Deletion End." + cellInfoLog);
+    }
+
+    /**
+     * Collect node ids of OData collections under the directory.
+     * @param dir directory
+     * @param nodeIds list to add node ids
+     */
+    private void collectODataNodeIds(File dir, List<String> nodeIds) {
+        if (!dir.isDirectory()) {
+            return;
+        }
+        DavMetadataFile metaFile = DavMetadataFile.newInstance(dir.getPath());
+        if (metaFile.exists()) {
+            metaFile.load();
+            if (DavCmp.TYPE_COL_ODATA.equals(metaFile.getNodeType())) {
+                nodeIds.add(metaFile.getNodeId());
+                // OData collection has no child collection.
+                return;
+            }
+        }
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            collectODataNodeIds(child, nodeIds);
+        }
+    }
+
+    /**
+     * Delete files depth first within the budget.
+     * @param file file or directory
+     * @param budget remaining budget
+     * @param item work item
+     * @return remaining budget
+     */
+    private int purge(File file, int budget, DavTrashItem item) {
+        if (budget <= 0) {
+            return budget;
+        }
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    budget = purge(child, budget, item);
+                    if (budget <= 0) {
+                        return budget;
+                    }
+                }
+            }
+        }
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        item.purged++;
+        return budget - 1;
+    }
+
+    /**
+     * Recover the items left under preparation by a crash.
+     */
+    private void recoverPreparingItems() {
+        File[] preparingDirs = trashRoot.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isDirectory() && file.getName().endsWith(PREPARING_SUFFIX);
+            }
+        });
+        if (preparingDirs == null) {
+            return;
+        }
+        Arrays.sort(preparingDirs);
+        for (File preparingDir : preparingDirs) {
+            String id = preparingDir.getName().substring(0,
+                    preparingDir.getName().length() - PREPARING_SUFFIX.length());
+            try {
+                if (new File(preparingDir, DavTrashItem.DATA_DIR_NAME).exists()) {
+                    // Moved into the trash but not yet handed over to the reaper.
+                    Files.move(preparingDir.toPath(), new File(trashRoot, id).toPath(),
+                            StandardCopyOption.ATOMIC_MOVE);
+                } else {
+                    // The resource was never moved, so the deletion did not happen.
+                    FileUtils.deleteDirectory(preparingDir);
+                }
+            } catch (IOException e) {
+                log.warn("Failed to recover trash item. " + preparingDir.getPath(), e);
+            }
+        }
+    }
+
+    /**
+     * Write progress into the cache.
+     * @param item work item
+     */
+    @SuppressWarnings("unchecked")
+    private void writeProgress(DavTrashItem item) {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("status", "deletion in progress");
+        jsonObject.put("scope", item.scope);
+        jsonObject.put("phase", item.phase);
+        jsonObject.put("purged", item.purged);
+        jsonObject.put("retries", item.retries);
+        String key = getKey(item.id);
+        ProgressManager.putProgress(key, new Progress(key, jsonObject.toJSONString()));
+    }
+
+    private void saveQuietly(DavTrashItem item) {
+        try {
+            item.save();
+        } catch (RuntimeException e) {
+            log.warn("Failed to save trash item. ItemId:" + item.id, e);
+        }
+    }
+}
@@ -30,6 +30,7 @@ import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElements;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
 
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
@@ -41,6 +42,7 @@ import io.personium.core.PersoniumCoreException;
 import io.personium.core.auth.AccessContext;
 import io.personium.core.auth.BoxPrivilege;
 import io.personium.core.auth.CellPrivilege;
+import io.personium.core.auth.CompiledAcl;
 import io.personium.core.auth.OAuth2Helper;
 import io.personium.core.auth.Privilege;
 
@@ -72,6 +74,24 @@ public final class Acl {
     @XmlElements({ @XmlElement(namespace = "DAV:", name = "ace", type = Ace.class) })
     List<Ace> aces = new ArrayList<Ace>();
 
+    /** ACL compiled for access checks. */
+    @XmlTransient
+    private volatile CompiledAcl compiled;
+
+    /**
+     * Get the ACL compiled for access checks.
+     * It is compiled on first use, so the ACL must not be modified after that.
+     * @return compiled ACL
+     */
+    public CompiledAcl getCompiled() {
+        CompiledAcl ret = compiled;
+        if (ret == null) {
+            ret = CompiledAcl.compile(this);
+            compiled = ret;
+        }
+        return ret;
+    }
+
     /**
      * p:requireSchemaAuthz setter.
      * @param requireSchemaAuthz requireSchemaAuthz
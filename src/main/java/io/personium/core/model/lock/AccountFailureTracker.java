@@ -0,0 +1,247 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.lock;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter of authentication failures per account on memory.
+ * <p>
+ * Failures are counted in a sliding window divided into time buckets,
+ * and the account is locked when the failures within the window reach the threshold.
+ * Each lock while the previous one is still remembered doubles the lock time up to the maximum.
+ * The counters are updated without locks, and accounts without recent failures are swept
+ * so that the number of accounts kept stays within the limit.
+ */
+class AccountFailureTracker {
+
+    /** Number of buckets in the window. */
+    static final int BUCKETS = 10;
+    /** Bits of a bucket slot used for the count. The rest holds the bucket number. */
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    /** Maximum shift of the lock time. */
+    private static final int MAX_BACKOFF_SHIFT = 30;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final int threshold;
+    private final long windowMillis;
+    private final long bucketMillis;
+    private final long lockMillis;
+    private final long maxLockMillis;
+    private final int maxAccounts;
+
+    /**
+     * Constructor.
+     * @param threshold number of failures within the window that locks the account
+     * @param windowMillis window to count failures (ms)
+     * @param lockMillis lock time (ms)
+     * @param maxLockMillis maximum lock time reached by back-off (ms)
+     * @param maxAccounts maximum number of accounts kept
+     */
+    AccountFailureTracker(int threshold, long windowMillis, long lockMillis, long maxLockMillis, int maxAccounts) {
+        this.threshold = Math.max(1, threshold);
+        this.windowMillis = Math.max(BUCKETS, windowMillis);
+        this.bucketMillis = this.windowMillis / BUCKETS;
+        this.lockMillis = lockMillis;
+        this.maxLockMillis = Math.max(lockMillis, maxLockMillis);
+        this.maxAccounts = Math.max(1, maxAccounts);
+    }
+
+    /**
+     * Returns whether the account is locked.
+     * @param accountId account ID
+     * @param now current time (ms)
+     * @return true: locked
+     */
+    boolean isLocked(String accountId, long now) {
+        Entry entry = entries.get(accountId);
+        return entry != null && entry.lockedUntil.get() > now;
+    }
+
+    /**
+     * Record an authentication failure.
+     * @param accountId account ID
+     * @param now current time (ms)
+     * @return lock time (ms) if the failure locked the account, 0 otherwise
+     */
+    long recordFailure(String accountId, long now) {
+        Entry entry = getEntry(accountId, now);
+        long bucket = now / bucketMillis;
+        entry.add(bucket);
+        entry.lastUpdated = now;
+        if (entry.count(bucket) < threshold) {
+            return 0;
+        }
+        // Back-off is reset once the previous lock is forgotten.
+        long previous = entry.lockedUntil.get();
+        if (previous != 0 && now - previous > windowMillis) {
+            entry.strikes.set(0);
+        }
+        long duration = lockDuration(entry.strikes.getAndIncrement());
+        raise(entry.lockedUntil, now + duration);
+        return duration;
+    }
+
+    /**
+     * Lock the account as decided elsewhere.
+     * @param accountId account ID
+     * @param duration lock time (ms)
+     * @param now current time (ms)
+     */
+    void lock(String accountId, long duration, long now) {
+        Entry entry = getEntry(accountId, now);
+        entry.lastUpdated = now;
+        raise(entry.lockedUntil, now + duration);
+    }
+
+    /**
+     * Forget the accounts without failures or locks within the window.
+     * @param now current time (ms)
+     */
+    void sweep(long now) {
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+            if (isExpired(it.next(), now)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Forget all the accounts.
+     */
+    void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return number of accounts kept
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Lock time of the given number of previous locks.
+     * @param strikes number of previous locks
+     * @return lock time (ms)
+     */
+    long lockDuration(int strikes) {
+        int shift = Math.min(strikes, MAX_BACKOFF_SHIFT);
+        long duration = lockMillis << shift;
+        if (duration < lockMillis || duration > maxLockMillis) {
+            return maxLockMillis;
+        }
+        return duration;
+    }
+
+    private Entry getEntry(String accountId, long now) {
+        Entry entry = entries.get(accountId);
+        if (entry != null) {
+            return entry;
+        }
+        if (entries.size() >= maxAccounts) {
+            sweep(now);
+            evict(now);
+        }
+        entry = new Entry();
+        Entry current = entries.putIfAbsent(accountId, entry);
+        return current != null ? current : entry;
+    }
+
+    /**
+     * Make room for an account, preferring the accounts not locked.
+     * @param now current time (ms)
+     */
+    private void evict(long now) {
+        String victim = null;
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            if (entries.size() < maxAccounts) {
+                return;
+            }
+            if (e.getValue().lockedUntil.get() <= now) {
+                entries.remove(e.getKey());
+            } else if (victim == null) {
+                victim = e.getKey();
+            }
+        }
+        if (victim != null && entries.size() >= maxAccounts) {
+            entries.remove(victim);
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        long last = Math.max(entry.lastUpdated, entry.lockedUntil.get());
+        return now - last > windowMillis;
+    }
+
+    private static void raise(AtomicLong value, long newValue) {
+        long current = value.get();
+        while (current < newValue && !value.compareAndSet(current, newValue)) {
+            current = value.get();
+        }
+    }
+
+    /**
+     * Failures and lock of an account.
+     */
+    private static final class Entry {
+        /** Failures of each bucket. (bucket number << COUNT_BITS) | count. */
+        private final AtomicLongArray slots = new AtomicLongArray(BUCKETS);
+        private final AtomicLong lockedUntil = new AtomicLong();
+        private final AtomicInteger strikes = new AtomicInteger();
+        private volatile long lastUpdated;
+
+        void add(long bucket) {
+            int index = (int) (bucket % BUCKETS);
+            while (true) {
+                long current = slots.get(index);
+                long slotBucket = current >>> COUNT_BITS;
+                long next;
+                if (slotBucket >= bucket) {
+                    if ((current & COUNT_MASK) == COUNT_MASK) {
+                        return;
+                    }
+                    next = current + 1;
+                } else {
+                    // The slot holds an old bucket. Start a new one.
+                    next = (bucket << COUNT_BITS) | 1;
+                }
+                if (slots.compareAndSet(index, current, next)) {
+                    return;
+                }
+            }
+        }
+
+        int count(long bucket) {
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                long slot = slots.get(i);
+                long slotBucket = slot >>> COUNT_BITS;
+                if (slotBucket > bucket - BUCKETS && slotBucket <= bucket) {
+                    count += slot & COUNT_MASK;
+                }
+            }
+            return (int) Math.min(count, Integer.MAX_VALUE);
+        }
+    }
+}
@@ -16,15 +16,35 @@
  */
 package io.personium.core.model.lock;
 
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
-import io.personium.core.PersoniumCoreException;
-import io.personium.core.utils.MemcachedClient.MemcachedClientException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.event.EventFactory;
+import io.personium.core.event.EventPublisher;
+import io.personium.core.event.EventSubscriber;
+import io.personium.core.event.PersoniumEvent;
 
 /**
  * Utility to manage Lock.
+ * <p>
+ * Authentication failures are counted on memory of each unit, so that checking the lock
+ * needs no access to memcached. Locks are notified to the other units via EventBus in background.
+ * Failures themselves are not shared, so each unit counts the failures it received.
  */
 public abstract class AccountLockManager extends LockManager {
 
+    /** Logger. */
+    private static Logger log = LoggerFactory.getLogger(AccountLockManager.class);
+
     abstract Lock getLock(String fullKey);
     abstract Boolean putLock(String fullKey, Lock lock);
 
@@ -33,15 +53,114 @@ public abstract class AccountLockManager extends LockManager {
      */
     public static final String CATEGORY_ACCOUNT_LOCK = "AccountLock_";
 
+    /** Event type of the account lock notified to the other units. */
+    static final String EVENT_TYPE_ACCOUNT_LOCK = "accountlock";
+
+    private static final long MILLIS = 1000L;
+    /** Interval to forget accounts without recent failures (ms). */
+    private static final long SWEEP_INTERVAL = 60 * MILLIS;
+
+    private static volatile AccountFailureTracker tracker;
+    private static ScheduledExecutorService sweeper;
+    private static ExecutorService publisherPool;
+    private static ExecutorService subscriberPool;
+    private static EventPublisher publisher;
+
+    /**
+     * Get the failure counter, creating it on first use.
+     * @return failure counter
+     */
+    static AccountFailureTracker getTracker() {
+        if (tracker == null) {
+            synchronized (AccountLockManager.class) {
+                if (tracker == null) {
+                    tracker = new AccountFailureTracker(
+                            PersoniumUnitConfig.getAccountLockFailureCount(),
+                            PersoniumUnitConfig.getAccountLockFailureWindow() * MILLIS,
+                            accountLockLifeTime * MILLIS,
+                            PersoniumUnitConfig.getAccountLockMaxLifetime() * MILLIS,
+                            PersoniumUnitConfig.getAccountLockMaxAccounts());
+                }
+            }
+        }
+        return tracker;
+    }
+
+    /**
+     * Start sweeping the failure counter and notifying the locks to the other units.
+     * Locks are only kept in this unit until started.
+     */
+    public static synchronized void start() {
+        getTracker();
+        final ThreadFactoryBuilder sweeperBuilder = new ThreadFactoryBuilder();
+        sweeperBuilder.setNameFormat("accountlock-sweeper-%d");
+        sweeperBuilder.setDaemon(true);
+        sweeper = Executors.newSingleThreadScheduledExecutor(sweeperBuilder.build());
+        sweeper.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                getTracker().sweep(System.currentTimeMillis());
+            }
+        }, SWEEP_INTERVAL, SWEEP_INTERVAL, TimeUnit.MILLISECONDS);
+
+        if (!PersoniumUnitConfig.isAccountLockReplicationEnabled()) {
+            return;
+        }
+        final ThreadFactoryBuilder publisherBuilder = new ThreadFactoryBuilder();
+        publisherBuilder.setNameFormat("accountlock-publisher-%d");
+        publisherBuilder.setDaemon(true);
+        publisherPool = Executors.newSingleThreadExecutor(publisherBuilder.build());
+        publisher = EventFactory.createEventPublisher(PersoniumUnitConfig.getEventBusAccountLockTopicName());
+
+        final ThreadFactoryBuilder subscriberBuilder = new ThreadFactoryBuilder();
+        subscriberBuilder.setNameFormat("accountlock-subscriber-%d");
+        subscriberBuilder.setDaemon(true);
+        subscriberPool = Executors.newSingleThreadExecutor(subscriberBuilder.build());
+        subscriberPool.execute(new Runnable() {
+            @Override
+            public void run() {
+                subscribe();
+            }
+        });
+    }
+
+    /**
+     * Stop sweeping and notifying.
+     */
+    public static synchronized void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+        if (subscriberPool != null) {
+            subscriberPool.shutdownNow();
+            subscriberPool = null;
+        }
+        if (publisherPool != null) {
+            try {
+                publisherPool.shutdown();
+                if (!publisherPool.awaitTermination(1, TimeUnit.SECONDS)) {
+                    publisherPool.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                publisherPool.shutdownNow();
+            }
+            publisherPool = null;
+            publisher.close();
+            publisher = null;
+        }
+    }
+
     /**
-     * Write AccountLock to memcached.
+     * Record the authentication failure of the Account.
+     * The Account is locked when the failures reach the threshold.
      * Lock time follows properties.
      * @param accountId Account ID that failed authentication
      */
     public static void registAccountLockObjct(final String accountId) {
-        String key =  CATEGORY_ACCOUNT_LOCK + accountId;
-        if (!singleton.doPutAccountLock(key, "", accountLockLifeTime)) {
-            throw PersoniumCoreException.Server.SERVER_CONNECTION_ERROR;
+        long duration = getTracker().recordFailure(accountId, System.currentTimeMillis());
+        if (duration > 0) {
+            publish(accountId, duration);
         }
     }
 
@@ -51,13 +170,87 @@ public abstract class AccountLockManager extends LockManager {
      * @return TRUE: Lock / FALSE: Unlock
      */
     public static boolean hasLockObject(final String accountId) {
+        return getTracker().isLocked(accountId, System.currentTimeMillis());
+    }
+
+    /**
+     * Forget all the failures and locks of this unit.
+     */
+    static void clearAccountLocks() {
+        if (tracker != null) {
+            tracker.clear();
+        }
+    }
+
+    /**
+     * Notify the lock to the other units in background.
+     * @param accountId account ID
+     * @param duration lock time (ms)
+     */
+    private static void publish(final String accountId, final long duration) {
+        final ExecutorService pool = publisherPool;
+        if (pool == null) {
+            return;
+        }
+        final EventPublisher eventPublisher = publisher;
+        try {
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    PersoniumEvent event = new PersoniumEvent.Builder()
+                            .type(EVENT_TYPE_ACCOUNT_LOCK)
+                            .object(accountId)
+                            .info(String.valueOf(duration))
+                            .build();
+                    eventPublisher.send(event);
+                }
+            });
+        } catch (RuntimeException e) {
+            // Stopping. The lock stays in this unit.
+            log.info("Failed to notify account lock: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Receive the locks of the other units until interrupted.
+     */
+    private static void subscribe() {
+        EventSubscriber subscriber = null;
+        try {
+            subscriber = EventFactory.createEventSubscriber(PersoniumUnitConfig.getEventBusAccountLockTopicName());
+            while (!Thread.currentThread().isInterrupted()) {
+                List<PersoniumEvent> list = subscriber.receive();
+                if (list == null) {
+                    break;
+                }
+                for (PersoniumEvent event : list) {
+                    receive(event);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Exception occurred: " + e.getMessage(), e);
+        } finally {
+            if (subscriber != null) {
+                subscriber.unsubscribe();
+            }
+        }
+    }
+
+    /**
+     * Apply the lock notified by another unit.
+     * The lock notified by this unit is applied again without effect.
+     * @param event event of the lock
+     */
+    static void receive(PersoniumEvent event) {
+        if (event == null || !EVENT_TYPE_ACCOUNT_LOCK.equals(event.getType())
+                || event.getObject() == null || event.getInfo() == null) {
+            return;
+        }
         try {
-            String key =  CATEGORY_ACCOUNT_LOCK + accountId;
-            //Confirm Lock of target account
-            String lockPublic = singleton.doGetAccountLock(key);
-            return lockPublic != null;
-        } catch (MemcachedClientException e) {
-            throw PersoniumCoreException.Server.SERVER_CONNECTION_ERROR;
+            long duration = Long.parseLong(event.getInfo());
+            getTracker().lock(event.getObject(), duration, System.currentTimeMillis());
+        } catch (NumberFormatException e) {
+            log.info("Invalid account lock event: " + event.getInfo());
         }
     }
 }
@@ -24,7 +24,6 @@ import java.util.Map;
  */
 class InProcessLockManager extends LockManager {
     Map<String, Object> inProcessLock = new HashMap<String, Object>();
-    Map<String, AccountLock> inProcessAccountLock = new HashMap<String, AccountLock>();
 
     @Override
     synchronized Lock doGetLock(String fullKey) {
@@ -66,21 +65,6 @@ class InProcessLockManager extends LockManager {
         }
     }
 
-    @Override
-    synchronized String doGetAccountLock(String fullKey) {
-        AccountLock lock = inProcessAccountLock.get(fullKey);
-        if (lock == null) {
-            return null;
-        }
-        return lock.value();
-    }
-
-    @Override
-    synchronized Boolean doPutAccountLock(String fullKey, String value, int expired) {
-        inProcessAccountLock.put(fullKey, new AccountLock(value, expired));
-        return Boolean.TRUE;
-    }
-
     @Override
     synchronized String doGetUnituserLock(String fullKey) {
         return (String) inProcessLock.get(fullKey);
@@ -158,42 +142,4 @@ class InProcessLockManager extends LockManager {
         }
         return value;
     }
-
-    /**
-     * A class that holds information for AccountLock in InProcess.
-     */
-    static class AccountLock {
-
-        private static final int TIME_MILLIS = 1000;
-        private String value;
-        private int expiredInSeconds;
-        private long createdAt;
-
-        /**
-         * constructor.
-         * @param value value
-         * @param expired Lock retention period (seconds)
-         */
-        AccountLock(String value, int expired) {
-            this.value = value;
-            this.expiredInSeconds = expired;
-            this.createdAt = System.currentTimeMillis();
-        }
-
-        /**
-         * Return specified AccountLock <br />
-         * If expired is exceeded, return null.
-         * @return The value corresponding to the specified key (or null if it does not exist, if it exceeds expired)
-         */
-        public String value() {
-            long now = System.currentTimeMillis();
-
-            //If expired is exceeded, return null
-            if (now > this.createdAt + expiredInSeconds * TIME_MILLIS) {
-                return null;
-
-            }
-            return this.value;
-        }
-    }
 }
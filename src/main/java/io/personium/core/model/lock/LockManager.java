@@ -20,6 +20,7 @@ import java.util.Date;
 
 import io.personium.core.PersoniumCoreException;
 import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.metrics.RequestTiming;
 import io.personium.core.utils.MemcachedClient;
 import io.personium.core.utils.MemcachedClient.MemcachedClientException;
 
@@ -57,10 +58,6 @@ public abstract class LockManager {
 
     abstract Boolean doPutReferenceOnlyLock(String fullKey, String value);
 
-    abstract String doGetAccountLock(String fullKey);
-
-    abstract Boolean doPutAccountLock(String fullKey, String value, int expired);
-
     abstract String doGetUnituserLock(String fullKey);
 
     abstract Boolean doPutUnituserLock(String fullKey, String value, int expired);
@@ -85,6 +82,15 @@ public abstract class LockManager {
         } else if (TYPE_IN_PROCESS.equals(lockType)) {
             singleton = new InProcessLockManager();
         }
+        // Lock type and memcached server are not changed until restart.
+        PersoniumUnitConfig.addReloadListener(new Runnable() {
+            @Override
+            public void run() {
+                lockRetryInterval = Long.valueOf(PersoniumUnitConfig.getLockRetryInterval());
+                lockRetryTimes = Integer.valueOf(PersoniumUnitConfig.getLockRetryTimes());
+                accountLockLifeTime = Integer.valueOf(PersoniumUnitConfig.getAccountLockLifetime());
+            }
+        });
     }
 
     /**
@@ -101,28 +107,41 @@ public abstract class LockManager {
         //If not, I will write to memcached
         //If you do, try retrying.
         int timesRetry = 0;
-        while (timesRetry <= lockRetryTimes) {
-            String fullKey = LockKeyComposer.fullKeyFromCategoryAndKey(category, cellId, boxId, nodeId);
-            Lock lock = null;
-            try {
-                lock = singleton.doGetLock(fullKey);
-            } catch (MemcachedClientException e) {
-                MemcachedClient.reportError();
-                throw PersoniumCoreException.Server.GET_LOCK_STATE_ERROR;
-            }
-            if (lock == null) {
-                lock = new Lock(fullKey, createdAt);
-                Boolean success = singleton.doPutLock(fullKey, lock);
-                if (success) {
-                    return lock;
+        String fullKey = LockKeyComposer.fullKeyFromCategoryAndKey(category, cellId, boxId, nodeId);
+        boolean waiting = false;
+        RequestTiming.begin(RequestTiming.Phase.LOCK);
+        try {
+            while (timesRetry <= lockRetryTimes) {
+                Lock lock = null;
+                try {
+                    lock = singleton.doGetLock(fullKey);
+                } catch (MemcachedClientException e) {
+                    MemcachedClient.reportError();
+                    throw PersoniumCoreException.Server.GET_LOCK_STATE_ERROR;
+                }
+                if (lock == null) {
+                    lock = new Lock(fullKey, createdAt);
+                    Boolean success = singleton.doPutLock(fullKey, lock);
+                    if (success) {
+                        return lock;
+                    }
+                }
+                //Let low priority holders of the lock know that someone is waiting
+                if (!waiting) {
+                    waiting = LockScheduler.startWaiting(fullKey);
+                }
+                try {
+                    Thread.sleep(lockRetryInterval);
+                } catch (InterruptedException e) {
+                    throw PersoniumCoreException.Server.DATA_STORE_UNKNOWN_ERROR.reason(e);
                 }
+                timesRetry++;
             }
-            try {
-                Thread.sleep(lockRetryInterval);
-            } catch (InterruptedException e) {
-                throw PersoniumCoreException.Server.DATA_STORE_UNKNOWN_ERROR.reason(e);
+        } finally {
+            if (waiting) {
+                LockScheduler.endWaiting(fullKey);
             }
-            timesRetry++;
+            RequestTiming.end(RequestTiming.Phase.LOCK);
         }
         throw PersoniumCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS;
     }
@@ -140,6 +159,7 @@ public abstract class LockManager {
      */
     public static void deleteAllLocks() {
         singleton.doDeleteAllLocks();
+        AccountLockManager.clearAccountLocks();
     }
 
     /**
@@ -0,0 +1,147 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.lock;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Priority of the lock acquisition.
+ * <p>
+ * Threads waiting for a lock are counted per lock key, unless the thread runs with low priority.
+ * Low priority work holding the lock repeatedly (e.g. $batch) yields the lock
+ * only while higher priority threads are actually waiting for it.
+ * Only the threads of this process are counted.
+ */
+public class LockScheduler {
+
+    /** Whether the current thread runs with low priority. */
+    private static final ThreadLocal<Boolean> LOW_PRIORITY = new ThreadLocal<Boolean>() {
+        @Override
+        protected Boolean initialValue() {
+            return Boolean.FALSE;
+        }
+    };
+
+    /** Number of higher priority threads waiting. Lock key -> number. */
+    private static final Map<String, Integer> WAITERS = new HashMap<String, Integer>();
+
+    /** Number of yields. */
+    private static final AtomicLong YIELD_COUNT = new AtomicLong();
+    /** Total time of yields (ms). */
+    private static final AtomicLong YIELD_TIME = new AtomicLong();
+
+    private LockScheduler() {
+    }
+
+    /**
+     * Set whether the current thread runs with low priority.
+     * @param lowPriority true: low priority
+     */
+    public static void setLowPriority(boolean lowPriority) {
+        if (lowPriority) {
+            LOW_PRIORITY.set(Boolean.TRUE);
+        } else {
+            LOW_PRIORITY.remove();
+        }
+    }
+
+    /**
+     * Start waiting for the lock.
+     * @param fullKey lock key
+     * @return true: counted as a waiter. false: not counted because of low priority.
+     */
+    static boolean startWaiting(String fullKey) {
+        if (LOW_PRIORITY.get()) {
+            return false;
+        }
+        synchronized (WAITERS) {
+            Integer count = WAITERS.get(fullKey);
+            WAITERS.put(fullKey, count == null ? 1 : count + 1);
+        }
+        return true;
+    }
+
+    /**
+     * End waiting for the lock.
+     * @param fullKey lock key
+     */
+    static void endWaiting(String fullKey) {
+        synchronized (WAITERS) {
+            Integer count = WAITERS.get(fullKey);
+            if (count == null || count <= 1) {
+                WAITERS.remove(fullKey);
+                WAITERS.notifyAll();
+            } else {
+                WAITERS.put(fullKey, count - 1);
+            }
+        }
+    }
+
+    /**
+     * Returns whether higher priority threads are waiting for the lock.
+     * @param fullKey lock key
+     * @return true: waiting
+     */
+    public static boolean hasWaiters(String fullKey) {
+        synchronized (WAITERS) {
+            return WAITERS.containsKey(fullKey);
+        }
+    }
+
+    /**
+     * Wait until the higher priority threads waiting for the lock have acquired it.
+     * Returns immediately if no thread is waiting.
+     * @param fullKey lock key
+     * @param maxWaitMillis maximum time to wait (ms)
+     * @return true: yielded. false: no thread was waiting.
+     * @throws InterruptedException interrupted
+     */
+    public static boolean yieldTo(String fullKey, long maxWaitMillis) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        synchronized (WAITERS) {
+            if (!WAITERS.containsKey(fullKey)) {
+                return false;
+            }
+            long remaining = maxWaitMillis;
+            while (WAITERS.containsKey(fullKey) && remaining > 0) {
+                WAITERS.wait(remaining);
+                remaining = maxWaitMillis - (System.currentTimeMillis() - start);
+            }
+        }
+        YIELD_COUNT.incrementAndGet();
+        YIELD_TIME.addAndGet(System.currentTimeMillis() - start);
+        return true;
+    }
+
+    /**
+     * Get the number of yields since startup.
+     * @return number of yields
+     */
+    public static long getYieldCount() {
+        return YIELD_COUNT.get();
+    }
+
+    /**
+     * Get the total time of yields since startup.
+     * @return time (ms)
+     */
+    public static long getYieldTimeMillis() {
+        return YIELD_TIME.get();
+    }
+}
@@ -52,16 +52,6 @@ class MemcachedLockManager extends LockManager {
         return MemcachedClient.getLockClient().add(fullKey, value);
     }
 
-    @Override
-    String doGetAccountLock(String fullKey) {
-        return MemcachedClient.getLockClient().get(fullKey, String.class);
-    }
-
-    @Override
-    Boolean doPutAccountLock(String fullKey, String value, int expired) {
-        return MemcachedClient.getLockClient().put(fullKey, expired, value);
-    }
-
     @Override
     String doGetUnituserLock(String fullKey) {
         return MemcachedClient.getLockClient().get(fullKey, String.class);
@@ -55,6 +55,15 @@ public abstract class ProgressManager {
         } else if (ProgressManager.TYPE_IN_PROCESS.equals(storeType)) {
             singleton = new InProcessProgressManager();
         }
+        // Store type and memcached server are not changed until restart.
+        PersoniumUnitConfig.addReloadListener(new Runnable() {
+            @Override
+            public void run() {
+                retryInterval = Long.valueOf(PersoniumUnitConfig.getLockRetryInterval());
+                retryTimes = Integer.valueOf(PersoniumUnitConfig.getLockRetryTimes());
+                lifeTime = Integer.valueOf(PersoniumUnitConfig.getBarInstallProgressLifeTimeExpireInSec());
+            }
+        });
     }
 
 
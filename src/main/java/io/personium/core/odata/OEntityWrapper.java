@@ -174,4 +174,17 @@ public final class OEntityWrapper implements OEntity {
     public String getLinkUuid(String key) {
         return (String) this.manyToOneLinks.get(key);
     }
+
+    /**
+     * Copy this object. The OEntity is shared, and the metadata and the links are copied.
+     * @return copy
+     */
+    public OEntityWrapper copy() {
+        OEntityWrapper ret = new OEntityWrapper(this.uuid, this.core, this.etag);
+        ret.metadata.putAll(this.metadata);
+        if (this.manyToOneLinks != null) {
+            ret.manyToOneLinks.putAll(this.manyToOneLinks);
+        }
+        return ret;
+    }
 }
@@ -38,14 +38,19 @@ package io.personium.core.odata;
 
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import org.odata4j.core.OEntity;
 import org.odata4j.core.OEntityId;
 import org.odata4j.core.OEntityKey;
 import org.odata4j.edm.EdmDataServices;
 import org.odata4j.edm.EdmEntitySet;
+import org.odata4j.producer.BaseResponse;
+import org.odata4j.producer.EntityQueryInfo;
 import org.odata4j.producer.EntityResponse;
 import org.odata4j.producer.ODataProducer;
+import org.odata4j.producer.QueryInfo;
 
 import io.personium.core.model.impl.es.doc.EntitySetDocHandler;
 import io.personium.core.rs.odata.BulkRequest;
@@ -55,6 +60,27 @@ import io.personium.core.rs.odata.ODataBatchResource.NavigationPropertyBulkConte
  * ETag · ODataProducer corresponding to change of primary key.
  */
 public interface PersoniumODataProducer extends ODataProducer {
+    /**
+     * Get an entity without throwing when it does not exist, for internal lookups.
+     * @param entitySetName entitySetName
+     * @param entityKey entityKey
+     * @param queryInfo the additional constraints to apply to the entity
+     * @return the entity. empty if it does not exist.
+     */
+    Optional<OEntityWrapper> findEntity(String entitySetName, OEntityKey entityKey, EntityQueryInfo queryInfo);
+
+    /**
+     * Get the entities via NavigationProperty without throwing when the source entity does not exist,
+     * for internal lookups.
+     * @param entitySetName entitySetName of the source
+     * @param entityKey entityKey of the source
+     * @param navProp navigation property
+     * @param queryInfo query information
+     * @return search results. empty if the source entity does not exist.
+     */
+    Optional<BaseResponse> findNavProperty(String entitySetName, OEntityKey entityKey, String navProp,
+            QueryInfo queryInfo);
+
     /**
      * ETag · Entity update corresponding to primary key change.
      * @param entitySetName entitySetName
@@ -72,12 +98,10 @@ public interface PersoniumODataProducer extends ODataProducer {
     void updatePassword(EdmEntitySet entitySetName, OEntityKey originalKey, String pCredHeader);
 
     /**
-     * Change last login time of Account.
-     * @param entitySetName entitySetName
-     * @param originalKey Key to be updated
-     * @param accountId Account ID
+     * Change last login time of Accounts in bulk.
+     * @param lastAuthenticated last login time per Account ID
      */
-    void updateLastAuthenticated(EdmEntitySet entitySetName, OEntityKey originalKey, String accountId);
+    void updateLastAuthenticated(Map<String, Long> lastAuthenticated);
 
     /**
      * ETag · Entity MERGE for primary key change.
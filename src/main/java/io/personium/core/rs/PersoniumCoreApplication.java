@@ -27,6 +27,7 @@ import io.personium.common.utils.PersoniumThread;
 import io.personium.core.PersoniumCoreLog;
 import io.personium.core.PersoniumUnitConfig;
 import io.personium.core.jersey.filter.PersoniumCoreContainerFilter;
+import io.personium.core.jersey.filter.ResponseCompressionInterceptor;
 import io.personium.core.jersey.filter.WriteMethodFilter;
 import io.personium.core.model.file.DataCryptor;
 import io.personium.core.plugin.PluginManager;
@@ -76,6 +77,7 @@ public class PersoniumCoreApplication extends Application {
         classes.add(PersoniumCoreExceptionMapper.class);
         classes.add(PersoniumCoreContainerFilter.class);
         classes.add(WriteMethodFilter.class);
+        classes.add(ResponseCompressionInterceptor.class);
         classes.add(FacadeResource.class);
         return classes;
     }
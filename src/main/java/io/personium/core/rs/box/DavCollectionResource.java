@@ -35,6 +35,7 @@ import org.apache.http.HttpStatus;
 import io.personium.common.utils.PersoniumCoreUtils;
 import io.personium.core.PersoniumCoreException;
 import io.personium.core.annotations.ACL;
+import io.personium.core.annotations.COPY;
 import io.personium.core.annotations.MKCOL;
 import io.personium.core.annotations.MOVE;
 import io.personium.core.annotations.PROPFIND;
@@ -42,6 +43,8 @@ import io.personium.core.annotations.PROPPATCH;
 import io.personium.core.annotations.WriteAPI;
 import io.personium.core.auth.BoxPrivilege;
 import io.personium.core.model.DavCmp;
+import io.personium.core.model.DavCommon;
+import io.personium.core.model.DavCopyResource;
 import io.personium.core.model.DavMoveResource;
 import io.personium.core.model.DavRsCmp;
 import io.personium.core.utils.ResourceUtils;
@@ -187,6 +190,7 @@ public class DavCollectionResource {
                 HttpMethod.DELETE,
                 io.personium.common.utils.PersoniumCoreUtils.HttpMethod.MKCOL,
                 io.personium.common.utils.PersoniumCoreUtils.HttpMethod.MOVE,
+                DavCommon.METHOD_COPY,
                 io.personium.common.utils.PersoniumCoreUtils.HttpMethod.PROPFIND,
                 io.personium.common.utils.PersoniumCoreUtils.HttpMethod.PROPPATCH,
                 io.personium.common.utils.PersoniumCoreUtils.HttpMethod.ACL
@@ -207,4 +211,18 @@ public class DavCollectionResource {
         this.davRsCmp.getParent().checkAccessContext(this.davRsCmp.getAccessContext(), BoxPrivilege.WRITE);
         return new DavMoveResource(this.davRsCmp.getParent(), this.davRsCmp.getDavCmp(), headers).doMove();
     }
+
+    /**
+     * Processing of the COPY method.
+     * @param headers header information
+     * @return JAX-RS response object
+     */
+    @WriteAPI
+    @COPY
+    public Response copy(
+            @Context HttpHeaders headers) {
+        //Access control to copy source
+        this.davRsCmp.checkAccessContext(this.davRsCmp.getAccessContext(), BoxPrivilege.READ);
+        return new DavCopyResource(this.davRsCmp.getParent(), this.davRsCmp.getDavCmp(), headers).doCopy();
+    }
 }
@@ -32,6 +32,7 @@ import javax.ws.rs.core.Response.ResponseBuilder;
 
 import io.personium.common.utils.PersoniumCoreUtils;
 import io.personium.core.annotations.ACL;
+import io.personium.core.annotations.COPY;
 import io.personium.core.annotations.MOVE;
 import io.personium.core.annotations.PROPFIND;
 import io.personium.core.annotations.PROPPATCH;
@@ -41,6 +42,8 @@ import io.personium.core.event.EventBus;
 import io.personium.core.event.PersoniumEvent;
 import io.personium.core.event.PersoniumEventType;
 import io.personium.core.model.DavCmp;
+import io.personium.core.model.DavCommon;
+import io.personium.core.model.DavCopyResource;
 import io.personium.core.model.DavMoveResource;
 import io.personium.core.model.DavRsCmp;
 import io.personium.core.utils.ResourceUtils;
@@ -224,6 +227,20 @@ public class DavFileResource {
         return new DavMoveResource(this.davRsCmp.getParent(), this.davRsCmp.getDavCmp(), headers).doMove();
     }
 
+    /**
+     * process COPY Method.
+     * @param headers Http headers
+     * @return JAX-RS response object
+     */
+    @WriteAPI
+    @COPY
+    public Response copy(
+            @Context HttpHeaders headers) {
+        // Access Control against the copy source
+        this.davRsCmp.checkAccessContext(this.davRsCmp.getAccessContext(), BoxPrivilege.READ);
+        return new DavCopyResource(this.davRsCmp.getParent(), this.davRsCmp.getDavCmp(), headers).doCopy();
+    }
+
     /**
      * process OPTIONS Method.
      * @return JAX-RS response object
@@ -237,6 +254,7 @@ public class DavFileResource {
                 HttpMethod.PUT,
                 HttpMethod.DELETE,
                 io.personium.common.utils.PersoniumCoreUtils.HttpMethod.MOVE,
+                DavCommon.METHOD_COPY,
                 io.personium.common.utils.PersoniumCoreUtils.HttpMethod.PROPFIND,
                 io.personium.common.utils.PersoniumCoreUtils.HttpMethod.PROPPATCH,
                 io.personium.common.utils.PersoniumCoreUtils.HttpMethod.ACL
@@ -0,0 +1,153 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.rs.box;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.personium.core.PersoniumCoreException;
+import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.metrics.RequestTiming;
+
+/**
+ * Executor of the relays to Engine.
+ * <p>
+ * The relays run on the threads of this executor instead of the threads of the servlet container,
+ * so that long-running services do not use up the container threads and stall other requests.
+ * The number of the relays running at the same time is limited for each service,
+ * so that a slow service does not use up the threads of this executor.
+ * The relays waiting for the threads are also limited, and the relays over the limit are rejected.
+ * The timing of the request is handed over to the thread of the relay.
+ */
+public class EngineRelayExecutor {
+
+    private static final long KEEP_ALIVE_SECONDS = 60L;
+    private static final long TIMEOUT_SECONDS = 10L;
+
+    private static ThreadPoolExecutor executor;
+
+    /** Route -> number of the running relays. */
+    private static final Map<String, Integer> RUNNING = new HashMap<String, Integer>();
+
+    private EngineRelayExecutor() {
+    }
+
+    /**
+     * Start the executor.
+     */
+    public static synchronized void start() {
+        final ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+        builder.setNameFormat("engine-relay-%d");
+        builder.setDaemon(true);
+        int threadNum = PersoniumUnitConfig.getEngineRelayThreadNum();
+        executor = new ThreadPoolExecutor(threadNum, threadNum, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(PersoniumUnitConfig.getEngineRelayQueueSize()), builder.build());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Stop the executor.
+     */
+    public static synchronized void stop() {
+        if (executor == null) {
+            return;
+        }
+        try {
+            executor.shutdown();
+            if (!executor.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+        }
+        executor = null;
+    }
+
+    /**
+     * Run the relay.
+     * The relay runs on the calling thread if the executor is not started.
+     * @param route key of the service collection, to limit the number of the relays running at the same time
+     * @param relay relay
+     * @throws PersoniumCoreException too many relays of the route are running, or too many relays are waiting
+     */
+    static void execute(final String route, final Runnable relay) {
+        acquire(route);
+        ThreadPoolExecutor current = getExecutor();
+        if (current == null) {
+            try {
+                relay.run();
+            } finally {
+                release(route);
+            }
+            return;
+        }
+        // The response is made on the thread of the relay.
+        final RequestTiming timing = RequestTiming.stop();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                RequestTiming.attach(timing);
+                try {
+                    relay.run();
+                } finally {
+                    RequestTiming.stop();
+                    release(route);
+                }
+            }
+        };
+        try {
+            current.execute(task);
+        } catch (RejectedExecutionException e) {
+            RequestTiming.attach(timing);
+            release(route);
+            throw PersoniumCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS;
+        }
+    }
+
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        return executor;
+    }
+
+    private static void acquire(String route) {
+        int max = PersoniumUnitConfig.getEngineRelayMaxConcurrency();
+        synchronized (RUNNING) {
+            Integer running = RUNNING.get(route);
+            int count = running == null ? 0 : running;
+            if (max > 0 && count >= max) {
+                throw PersoniumCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS;
+            }
+            RUNNING.put(route, count + 1);
+        }
+    }
+
+    private static void release(String route) {
+        synchronized (RUNNING) {
+            Integer running = RUNNING.get(route);
+            if (running == null || running <= 1) {
+                RUNNING.remove(route);
+            } else {
+                RUNNING.put(route, running - 1);
+            }
+        }
+    }
+}
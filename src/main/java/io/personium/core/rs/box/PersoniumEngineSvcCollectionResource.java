@@ -25,6 +25,7 @@ import java.net.URISyntaxException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
 
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -35,6 +36,10 @@ import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.ConnectionCallback;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.container.TimeoutHandler;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MultivaluedMap;
@@ -85,6 +90,9 @@ import io.personium.core.utils.UriUtils;
 public class PersoniumEngineSvcCollectionResource {
     private static Logger log = LoggerFactory.getLogger(PersoniumEngineSvcCollectionResource.class);
 
+    /** Size of the buffer relaying the response body of Engine. */
+    private static final int RELAY_BUFFER_SIZE = 8192;
+
     DavCmp davCmp = null;
     DavCollectionResource dcr = null;
     DavRsCmp davRsCmp;
@@ -211,16 +219,17 @@ public class PersoniumEngineSvcCollectionResource {
      * @param path Path name
      * @param uriInfo URI
      * @param headers header
-     * @return JAX-RS Response
+     * @param asyncResponse response resumed when Engine returns
      */
     @Path("{path}")
     @GET
-    public Response relayget(@PathParam("path") String path,
+    public void relayget(@PathParam("path") String path,
             @Context final UriInfo uriInfo,
-            @Context HttpHeaders headers) {
+            @Context HttpHeaders headers,
+            @Suspended final AsyncResponse asyncResponse) {
         //Access control
         this.davRsCmp.checkAccessContext(this.davRsCmp.getAccessContext(), BoxPrivilege.EXEC);
-        return relaycommon(HttpMethod.GET, uriInfo, path, headers, null);
+        relaycommon(HttpMethod.GET, uriInfo, path, headers, null, asyncResponse);
     }
 
     /**
@@ -229,18 +238,19 @@ public class PersoniumEngineSvcCollectionResource {
      * @param uriInfo URI
      * @param headers header
      * @param is Request body
-     * @return JAX-RS Response
+     * @param asyncResponse response resumed when Engine returns
      */
     @WriteAPI
     @Path("{path}")
     @POST
-    public Response relaypost(@PathParam("path") String path,
+    public void relaypost(@PathParam("path") String path,
             @Context final UriInfo uriInfo,
             @Context HttpHeaders headers,
-            final InputStream is) {
+            final InputStream is,
+            @Suspended final AsyncResponse asyncResponse) {
         //Access control
         this.davRsCmp.checkAccessContext(this.davRsCmp.getAccessContext(), BoxPrivilege.EXEC);
-        return relaycommon(HttpMethod.POST, uriInfo, path, headers, is);
+        relaycommon(HttpMethod.POST, uriInfo, path, headers, is, asyncResponse);
     }
 
     /**
@@ -249,18 +259,19 @@ public class PersoniumEngineSvcCollectionResource {
      * @param uriInfo URI
      * @param headers header
      * @param is Request body
-     * @return JAX-RS Response
+     * @param asyncResponse response resumed when Engine returns
      */
     @WriteAPI
     @Path("{path}")
     @PUT
-    public Response relayput(@PathParam("path") String path,
+    public void relayput(@PathParam("path") String path,
             @Context final UriInfo uriInfo,
             @Context HttpHeaders headers,
-            final InputStream is) {
+            final InputStream is,
+            @Suspended final AsyncResponse asyncResponse) {
         //Access control
         this.davRsCmp.checkAccessContext(this.davRsCmp.getAccessContext(), BoxPrivilege.EXEC);
-        return relaycommon(HttpMethod.PUT, uriInfo, path, headers, is);
+        relaycommon(HttpMethod.PUT, uriInfo, path, headers, is, asyncResponse);
     }
 
     /**
@@ -268,17 +279,18 @@ public class PersoniumEngineSvcCollectionResource {
      * @param path Path name
      * @param uriInfo URI
      * @param headers header
-     * @return JAX-RS Response
+     * @param asyncResponse response resumed when Engine returns
      */
     @WriteAPI
     @Path("{path}")
     @DELETE
-    public Response relaydelete(@PathParam("path") String path,
+    public void relaydelete(@PathParam("path") String path,
             @Context final UriInfo uriInfo,
-            @Context HttpHeaders headers) {
+            @Context HttpHeaders headers,
+            @Suspended final AsyncResponse asyncResponse) {
         //Access control
         this.davRsCmp.checkAccessContext(this.davRsCmp.getAccessContext(), BoxPrivilege.EXEC);
-        return relaycommon(HttpMethod.DELETE, uriInfo, path, headers, null);
+        relaycommon(HttpMethod.DELETE, uriInfo, path, headers, null, asyncResponse);
     }
 
     /**
@@ -330,19 +342,21 @@ public class PersoniumEngineSvcCollectionResource {
 
     /**
      * relay Common processing method.
+     * The request is made on the calling thread, and sent to Engine on the thread of EngineRelayExecutor.
      * @param method method
      * @param uriInfo URI
      * @param path Path name
      * @param headers header
      * @param is Request body
-     * @return JAX-RS Response
+     * @param asyncResponse response resumed when Engine returns
      */
-    private Response relaycommon(
+    private void relaycommon(
             String method,
             UriInfo uriInfo,
             String path,
             HttpHeaders headers,
-            InputStream is) {
+            InputStream is,
+            final AsyncResponse asyncResponse) {
 
         // url to request to engine
         URI requestUrl = createRequestUrl(path);
@@ -408,9 +422,64 @@ public class PersoniumEngineSvcCollectionResource {
         }
 
         // prepare event
-        PersoniumEvent event = createEvent(path);
-        EventBus eventBus = this.davRsCmp.getAccessContext().getCell().getEventBus();
+        final PersoniumEvent event = createEvent(path);
+        final EventBus eventBus = this.davRsCmp.getAccessContext().getCell().getEventBus();
+
+        final HttpClient httpClient = client;
+        final HttpUriRequest request = req;
+        // Stop waiting for Engine when the client has gone, or Engine does not respond in time.
+        asyncResponse.register(new ConnectionCallback() {
+            @Override
+            public void onDisconnect(AsyncResponse disconnected) {
+                request.abort();
+            }
+        });
+        long timeout = PersoniumUnitConfig.getEngineRelayTimeout();
+        if (timeout > 0) {
+            asyncResponse.setTimeoutHandler(new TimeoutHandler() {
+                @Override
+                public void handleTimeout(AsyncResponse timedOut) {
+                    timedOut.resume(PersoniumCoreException.ServiceCollection.SC_ENGINE_TIMEOUT);
+                    request.abort();
+                }
+            });
+            asyncResponse.setTimeout(timeout, TimeUnit.SECONDS);
+        }
+        // Limited per service collection, whatever script path the request is made to.
+        String route = new StringBuilder()
+                .append(davCmp.getCell().getId()).append("/")
+                .append(this.davRsCmp.getBox().getId()).append("/")
+                .append(davCmp.getId())
+                .toString();
+        try {
+            EngineRelayExecutor.execute(route, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (!asyncResponse.resume(relay(httpClient, request, event, eventBus))) {
+                            // Timed out or disconnected meanwhile.
+                            closeHttpClient(httpClient, null);
+                        }
+                    } catch (RuntimeException e) {
+                        asyncResponse.resume(e);
+                    }
+                }
+            });
+        } catch (PersoniumCoreException e) {
+            closeHttpClient(client, null);
+            throw e;
+        }
+    }
 
+    /**
+     * Send the request to Engine and make the response relaying the response of Engine.
+     * @param client HttpClient
+     * @param req request to Engine
+     * @param event event posted with the status of Engine
+     * @param eventBus EventBus
+     * @return JAX-RS Response
+     */
+    private Response relay(HttpClient client, HttpUriRequest req, PersoniumEvent event, EventBus eventBus) {
         //Throw a request to the Engine
         HttpResponse objResponse = null;
         try {
@@ -468,21 +537,26 @@ public class PersoniumEngineSvcCollectionResource {
                 throw PersoniumCoreException.ServiceCollection.SC_ENGINE_CONNECTION_ERROR.reason(e);
             }
             final InputStream isInvariable = isResBody;
-            final HttpClient httpClient = client;
+            final HttpClient relayClient = client;
             final HttpResponse httpResponse = objResponse;
             //Output processing result
             StreamingOutput strOutput = new StreamingOutput() {
                 @Override
                 public void write(final OutputStream os) throws IOException {
-                    int chr;
+                    byte[] buffer = new byte[RELAY_BUFFER_SIZE];
+                    int length;
                     try {
-                        while ((chr = isInvariable.read()) != -1) {
-                            os.write(chr);
+                        while ((length = isInvariable.read(buffer)) != -1) {
+                            os.write(buffer, 0, length);
+                            // Pass the body to the client as Engine returns it.
+                            if (isInvariable.available() == 0) {
+                                os.flush();
+                            }
                         }
                     } finally {
                         isInvariable.close();
                         HttpClientUtils.closeQuietly(httpResponse);
-                        HttpClientUtils.closeQuietly(httpClient);
+                        HttpClientUtils.closeQuietly(relayClient);
                     }
                 }
             };
@@ -56,8 +56,6 @@ import javax.ws.rs.core.UriInfo;
 import org.apache.commons.lang.CharEncoding;
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.HttpResponse;
-import org.odata4j.core.OEntityKey;
-import org.odata4j.edm.EdmEntitySet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -87,14 +85,12 @@ import io.personium.core.auth.OAuth2Helper.Key;
 import io.personium.core.model.Box;
 import io.personium.core.model.Cell;
 import io.personium.core.model.CellRsCmp;
-import io.personium.core.model.ModelFactory;
-import io.personium.core.model.ctl.Account;
+import io.personium.core.model.impl.es.AccountLastAuthenticatedWriter;
 import io.personium.core.model.impl.es.EsModel;
 import io.personium.core.model.impl.es.QueryMapFactory;
 import io.personium.core.model.impl.es.accessor.EntitySetAccessor;
 import io.personium.core.model.impl.es.doc.OEntityDocHandler;
 import io.personium.core.odata.OEntityWrapper;
-import io.personium.core.odata.PersoniumODataProducer;
 import io.personium.core.rs.FacadeResource;
 import io.personium.core.utils.ResourceUtils;
 
@@ -367,12 +363,8 @@ public class AuthzEndPointResource {
 
             if (PersoniumUnitConfig.getAccountLastAuthenticatedEnable()
                     && isSuccessAuthorization(response)) {
-                //Obtain schema information of Account
-                PersoniumODataProducer producer = ModelFactory.ODataCtl.cellCtl(cell);
-                EdmEntitySet esetAccount = producer.getMetadata().getEdmEntitySet(Account.EDM_TYPE_NAME);
-                OEntityKey originalKey = OEntityKey.parse("('" + username + "')");
-                //Ask Producer to change the last login time (Get / release lock within this method)
-                producer.updateLastAuthenticated(esetAccount, originalKey, accountId);
+                //The last login time is written in background
+                AccountLastAuthenticatedWriter.record(cell, accountId);
             }
             return response;
         } else if (assertion != null && !"".equals(assertion)) {
@@ -729,7 +721,7 @@ public class AuthzEndPointResource {
         try {
             isLock = AuthResourceUtils.isLockedAccount(accountId);
             if (isLock) {
-                //Update lock time of memcached
+                //Count the failure, which extends the lock
                 AuthResourceUtils.registAccountLock(accountId);
                 String resCode = "PS-AU-0006";
                 String accountLockMsg = PersoniumCoreMessageUtils.getMessage(resCode);
@@ -743,7 +735,7 @@ public class AuthzEndPointResource {
             //Check user ID and password
             passCheck = cell.authenticateAccount(oew, password);
             if (!passCheck) {
-                //Make lock on memcached
+                //Count the failure for the account lock
                 AuthResourceUtils.registAccountLock(accountId);
                 String resCode = "PS-AU-0004";
                 String missIdPassMsg = PersoniumCoreMessageUtils.getMessage(resCode);
@@ -1037,7 +1029,7 @@ public class AuthzEndPointResource {
         try {
             isLock = AuthResourceUtils.isLockedAccount(accountId);
             if (isLock) {
-                //Update lock time of memcached
+                //Count the failure, which extends the lock
                 AuthResourceUtils.registAccountLock(accountId);
                 // Message is the same as ID / PASS error. intentional?
                 log.info("responseMessage : " + MSG_ACCOUNT_LOCK);
@@ -1049,7 +1041,7 @@ public class AuthzEndPointResource {
             //Check user ID and password
             passCheck = cell.authenticateAccount(oew, password);
             if (!passCheck) {
-                //Make lock on memcached
+                //Count the failure for the account lock
                 AuthResourceUtils.registAccountLock(accountId);
                 log.info("responseMessage : " + MSG_INCORRECT_ID_PASS);
                 ResponseBuilder rb = Response.ok().type("text/html; charset=UTF-8");
@@ -80,7 +80,8 @@ public class LogResource {
     /** current Collection name.*/
     public static final String CURRENT_COLLECTION = "current";
 
-    private static final String DEFAULT_LOG = "default.log";
+    /** File name of the current event log.*/
+    public static final String DEFAULT_LOG = "default.log";
 
     Cell cell;
     AccessContext accessContext;
@@ -93,6 +93,7 @@ public class PasswordResource {
         EdmEntitySet esetAccount = producer.getMetadata().getEdmEntitySet(Account.EDM_TYPE_NAME);
 
         //Ask Producer to change password
+        //Basic authentication cached with the old password is discarded by the producer
         producer.updatePassword(esetAccount, this.oEntityKey, this.pCredHeader);
 
         //Response return
@@ -43,8 +43,6 @@ import javax.ws.rs.core.UriInfo;
 
 import org.apache.commons.lang.StringUtils;
 import org.json.simple.JSONObject;
-import org.odata4j.core.OEntityKey;
-import org.odata4j.edm.EdmEntitySet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -75,10 +73,9 @@ import io.personium.core.auth.OAuth2Helper.Key;
 import io.personium.core.model.Box;
 import io.personium.core.model.Cell;
 import io.personium.core.model.DavRsCmp;
-import io.personium.core.model.ModelFactory;
 import io.personium.core.model.ctl.Account;
+import io.personium.core.model.impl.es.AccountLastAuthenticatedWriter;
 import io.personium.core.odata.OEntityWrapper;
-import io.personium.core.odata.PersoniumODataProducer;
 import io.personium.core.plugin.PluginInfo;
 import io.personium.core.plugin.PluginManager;
 import io.personium.core.rs.PersoniumCoreApplication;
@@ -173,16 +170,8 @@ public class TokenEndPointResource {
             //When the password authentication succeeds, the last login time of the account is updated
             //It passes only here if password authentication succeeds (exceptions will be thrown if an error occurs in handlePassword)
             if (PersoniumUnitConfig.getAccountLastAuthenticatedEnable()) {
-                //Obtain schema information of Account
-                PersoniumODataProducer producer = ModelFactory.ODataCtl
-                        .cellCtl(cell);
-                EdmEntitySet esetAccount = producer.getMetadata()
-                        .getEdmEntitySet(Account.EDM_TYPE_NAME);
-                OEntityKey originalKey = OEntityKey.parse("('" + username
-                        + "')");
-                //Ask Producer to change the last login time (Get / release lock within this method)
-                producer.updateLastAuthenticated(esetAccount, originalKey,
-                        accountId);
+                //The last login time is written in background
+                AccountLastAuthenticatedWriter.record(cell, accountId);
             }
             return response;
         } else if (OAuth2Helper.GrantType.SAML2_BEARER.equals(grantType)) {
@@ -712,7 +701,7 @@ public class TokenEndPointResource {
         //Check lock
         Boolean isLock = AuthResourceUtils.isLockedAccount(accountId);
         if (isLock) {
-            //Update lock time of memcached
+            //Count the failure, which extends the lock
             AuthResourceUtils.registAccountLock(accountId);
             throw PersoniumCoreAuthnException.ACCOUNT_LOCK_ERROR.realm(this.cell.getUrl());
         }
@@ -720,7 +709,7 @@ public class TokenEndPointResource {
         boolean authSuccess = cell.authenticateAccount(oew, password);
 
         if (!authSuccess) {
-            //Make lock on memcached
+            //Count the failure for the account lock
             AuthResourceUtils.registAccountLock(accountId);
             throw PersoniumCoreAuthnException.AUTHN_FAILED.realm(this.cell.getUrl());
         }
@@ -21,6 +21,7 @@ import org.slf4j.LoggerFactory;
 
 import io.personium.core.PersoniumUnitConfig;
 import io.personium.core.PersoniumCoreException;
+import io.personium.core.model.lock.LockScheduler;
 import io.personium.core.rs.odata.ODataBatchResource.BatchPriority;
 
 /**
@@ -31,19 +32,20 @@ public class BatchElapsedTimer {
 
     private long breakTimeInMillis = 0;
     private long elapseTimeToBreak = 0;
-    private long lastSleepTimeStamp;
+    private long lastYieldTimeStamp;
     private BatchPriority priority = BatchPriority.LOW;
+    private String lockKey;
 
     private long sleep = PersoniumUnitConfig.getOdataBatchSleepInMillis();
     private long sleepInterval = PersoniumUnitConfig.getOdataBatchSleepIntervalInMillis();
 
     /**
-     * An enumeration type for specifying whether to sleep or not to give Lock to another process.
+     * An enumeration type for specifying whether to give Lock to another process.
      */
     public enum Lock {
-        /** Sleep to give Lock to another process.*/
+        /** Give Lock to another process waiting for it.*/
         YIELD,
-        /** Attempt to acquire Lock without sleeping.*/
+        /** Attempt to acquire Lock without yielding.*/
         HOLD
     }
 
@@ -51,33 +53,39 @@ public class BatchElapsedTimer {
      * constructor.
      * @param startTimeInMillis Process start time.
      * @param elapseTimeToBreakInMillis Elapsed time to timeout.
-     * @param priority Whether to sleep to give Lock to another process
+     * @param priority Whether to give Lock to another process
+     * @param lockKey key of the Lock used by the batch
      */
-    public BatchElapsedTimer(long startTimeInMillis, long elapseTimeToBreakInMillis, BatchPriority priority) {
+    public BatchElapsedTimer(long startTimeInMillis, long elapseTimeToBreakInMillis, BatchPriority priority,
+            String lockKey) {
         breakTimeInMillis = startTimeInMillis + elapseTimeToBreakInMillis;
         elapseTimeToBreak = elapseTimeToBreakInMillis;
-        lastSleepTimeStamp = startTimeInMillis;
+        lastYieldTimeStamp = startTimeInMillis;
         this.priority = priority;
+        this.lockKey = lockKey;
     }
 
     /**
      * At the time of calling, it returns whether it is timeout or not.
-     * @param mode Whether to sleep to give Lock to another process
+     * @param mode Whether to give Lock to another process
      * @return true: timeout time has passed. false: not timeout.
      */
     public boolean shouldBreak(Lock mode) {
         long current = System.currentTimeMillis();
         if (BatchPriority.LOW == priority && Lock.YIELD.equals(mode)
-                && lastSleepTimeStamp + sleepInterval < current) {
-            //If the specified time has elapsed since sleeping last time, sleep to Lock to give it to another process
+                && lastYieldTimeStamp + sleepInterval < current) {
+            //If the specified time has elapsed since yielding last time,
+            //wait until other processes waiting for Lock have acquired it
             try {
-                Thread.sleep(sleep);
+                if (LockScheduler.yieldTo(lockKey, sleep)) {
+                    current = System.currentTimeMillis();
+                    lastYieldTimeStamp = current;
+                    log.debug("Batch request yielded lock. Total yields: " + LockScheduler.getYieldCount());
+                }
             } catch (InterruptedException e) {
                 log.warn("Batch request interrupted.", e);
                 throw PersoniumCoreException.Server.UNKNOWN_ERROR;
             }
-            current = System.currentTimeMillis();
-            lastSleepTimeStamp = current;
         }
 
         //Determine whether the timeout time has elapsed
@@ -67,6 +67,7 @@ import io.personium.core.exceptions.ODataErrorMessage;
 import io.personium.core.model.impl.es.doc.EntitySetDocHandler;
 import io.personium.core.model.impl.es.doc.LinkDocHandler;
 import io.personium.core.model.impl.es.odata.UserDataODataProducer;
+import io.personium.core.model.lock.LockScheduler;
 import io.personium.core.odata.OEntityWrapper;
 import io.personium.core.odata.PersoniumFormatWriterFactory;
 import io.personium.core.rs.PersoniumCoreExceptionMapper;
@@ -159,7 +160,8 @@ public class ODataBatchResource extends AbstractODataResource {
             priority = BatchPriority.fromString(priorityHeaders.get(0));
         }
 
-        timer = new BatchElapsedTimer(startTime, batchTimeoutInSec, priority);
+        UserDataODataProducer producer = (UserDataODataProducer) this.odataResource.getODataProducer();
+        timer = new BatchElapsedTimer(startTime, batchTimeoutInSec, priority, producer.getLockKey());
 
         checkAccessContext(this.odataResource.getAccessContext());
 
@@ -178,20 +180,25 @@ public class ODataBatchResource extends AbstractODataResource {
             throw PersoniumCoreException.OData.TOO_MANY_REQUESTS.params(bodyParts.size());
         }
 
-        UserDataODataProducer producer = (UserDataODataProducer) this.odataResource.getODataProducer();
         entityTypeIds = producer.getEntityTypeIds();
 
         List<NavigationPropertyBulkContext> npBulkContexts = new ArrayList<NavigationPropertyBulkContext>();
 
         StringBuilder responseBody = new StringBuilder();
 
-        //Execute request one by one
-        for (BatchBodyPart bodyPart : bodyParts) {
-            executePartRequest(responseBody, uriInfo, boundary, npBulkContexts, bodyPart);
-        }
+        //Waiting for Lock, low priority batch does not make other processes yield
+        LockScheduler.setLowPriority(BatchPriority.LOW == priority);
+        try {
+            //Execute request one by one
+            for (BatchBodyPart bodyPart : bodyParts) {
+                executePartRequest(responseBody, uriInfo, boundary, npBulkContexts, bodyPart);
+            }
 
-        //Bulk execution of POST
-        checkAndExecBulk(responseBody, uriInfo, boundary, npBulkContexts);
+            //Bulk execution of POST
+            checkAndExecBulk(responseBody, uriInfo, boundary, npBulkContexts);
+        } finally {
+            LockScheduler.setLowPriority(false);
+        }
 
         //Boundary termination string
         responseBody.append("--" + boundary + "--");
@@ -0,0 +1,76 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.rs.unit;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+
+import org.apache.http.HttpStatus;
+
+import io.personium.core.PersoniumCoreAuthzException;
+import io.personium.core.PersoniumCoreException;
+import io.personium.core.auth.AccessContext;
+import io.personium.core.auth.OAuth2Helper.AcceptableAuthScheme;
+import io.personium.core.metrics.CoreMetrics;
+
+/**
+ * JAX-RS Resource returning the metrics of this unit in Prometheus text format.
+ * Only unit master and unit admin can access.
+ */
+public class MetricsResource {
+
+    /** Content-Type of Prometheus text format. */
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final AccessContext accessContext;
+
+    /**
+     * Constructor.
+     * @param accessContext AccessContext
+     */
+    public MetricsResource(AccessContext accessContext) {
+        this.accessContext = accessContext;
+    }
+
+    /**
+     * Processing on the GET method.
+     * @return JAX-RS Response
+     */
+    @GET
+    @Produces(CONTENT_TYPE)
+    public Response get() {
+        checkAccessContext();
+        return Response.status(HttpStatus.SC_OK)
+                .type(CONTENT_TYPE)
+                .entity(CoreMetrics.toPrometheusText())
+                .build();
+    }
+
+    private void checkAccessContext() {
+        String type = accessContext.getType();
+        if (AccessContext.TYPE_UNIT_MASTER.equals(type) || AccessContext.TYPE_UNIT_ADMIN.equals(type)) {
+            return;
+        } else if (AccessContext.TYPE_INVALID.equals(type)) {
+            accessContext.throwInvalidTokenException(AcceptableAuthScheme.BEARER);
+        } else if (AccessContext.TYPE_ANONYMOUS.equals(type)) {
+            throw PersoniumCoreAuthzException.AUTHORIZATION_REQUIRED.realm(
+                    accessContext.getRealm(), AcceptableAuthScheme.BEARER);
+        }
+        throw PersoniumCoreException.Auth.NECESSARY_PRIVILEGE_LACKING;
+    }
+}
@@ -151,6 +151,17 @@ public class UnitResource {
         return new UnitCtlResource(ac);
     }
 
+    /**
+     * @return MetricsResource
+     */
+    @Path("__metrics")
+    public final MetricsResource metrics() {
+        AccessContext ac = AccessContext.create(headerAuthz,
+                uriInfo, cookiePeer, cookieAuthValue, null, requestBaseUri,
+                headerHost, headerPersoniumUnitUser);
+        return new MetricsResource(ac);
+    }
+
     /**
      * @return UnitCtlResource
      */
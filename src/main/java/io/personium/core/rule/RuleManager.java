@@ -17,10 +17,13 @@
 package io.personium.core.rule;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -31,15 +34,17 @@ import org.odata4j.core.NamedValue;
 import org.odata4j.core.OEntity;
 import org.odata4j.core.OEntityKey;
 import org.odata4j.core.OEntityKey.KeyType;
-import org.odata4j.core.OProperty;
-import org.odata4j.edm.EdmEntitySet;
+import org.odata4j.expression.BoolCommonExpression;
 import org.odata4j.producer.EntitiesResponse;
 import org.odata4j.producer.EntityResponse;
+import org.odata4j.producer.InlineCount;
+import org.odata4j.producer.QueryInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import io.personium.common.es.response.PersoniumSearchHit;
 import io.personium.common.es.util.PersoniumUUID;
 import io.personium.common.utils.PersoniumThread;
 import io.personium.core.PersoniumUnitConfig;
@@ -52,11 +57,11 @@ import io.personium.core.model.Cell;
 import io.personium.core.model.ModelFactory;
 import io.personium.core.model.ctl.Common;
 import io.personium.core.model.ctl.Rule;
-import io.personium.core.model.impl.es.accessor.EntitySetAccessor;
+import io.personium.core.model.impl.es.EsModel;
+import io.personium.core.model.impl.es.accessor.SearchHitIterator;
 import io.personium.core.model.impl.es.odata.CellCtlODataProducer;
-import io.personium.core.model.impl.es.odata.UnitCtlODataProducer;
 import io.personium.core.model.lock.CellLockManager;
-import io.personium.core.odata.OEntityWrapper;
+import io.personium.core.odata.PersoniumOptionsQueryParser;
 import io.personium.core.rs.odata.AbstractODataResource;
 import io.personium.core.utils.UriUtils;
 
@@ -69,8 +74,8 @@ public class RuleManager {
      */
     class BoxInfo {
         String id;
-        String name;
-        String schema;
+        volatile String name;
+        volatile String schema;
         int count;
     }
 
@@ -124,23 +129,40 @@ public class RuleManager {
 
     private static RuleManager instance = null;
     private TimerRuleManager timerRuleManager = null;
+    /**
+     * Cell ID -> rules of the cell.
+     * The rules of a cell are an immutable snapshot replaced holding lockObj, so that they are read without lock.
+     */
     private Map<String, Map<String, RuleInfo>> rules;
+    /** Cell ID -> time the rules of the cell were used last. */
+    private Map<String, Long> lastAccess;
     private Map<String, Map<String, BoxInfo>> boxes;
     private Logger logger;
+    private int cacheSize;
+
+    /** Cell ID -> token of the load of the rules in progress. Removed when the rules change meanwhile. */
+    private Map<String, Object> loading;
 
     private Object lockObj;
     private Object boxLockObj;
 
     private ExecutorService pool;
+    private ExecutorService loader;
 
     private EventPublisher ruleEventPublisher;
 
     /**
      * Constructor.
+     * Package-private so that the rule matching can be measured without initialization.
      */
-    private RuleManager() {
-        rules = new HashMap<>();
+    RuleManager() {
+        // Rules are loaded per cell on demand and the least recently used cells are evicted.
+        // A cell without rules is kept as an empty map so that it is not loaded again.
+        cacheSize = PersoniumUnitConfig.getRuleCacheSize();
+        rules = new ConcurrentHashMap<>();
+        lastAccess = new ConcurrentHashMap<>();
         boxes = new HashMap<>();
+        loading = new HashMap<>();
         logger = LoggerFactory.getLogger(RuleManager.class);
         lockObj = new Object();
         boxLockObj = new Object();
@@ -167,8 +189,22 @@ public class RuleManager {
             timerRuleManager = TimerRuleManager.getInstance();
         }
 
-        // Load rules from DB.
-        load();
+        // Restore timer rules from the timer table so that they fire from startup, and load them
+        // from DB in background to follow the changes made while this unit was down.
+        // Other rules are loaded per cell when the cell receives an event.
+        if (timerRuleManager != null) {
+            timerRuleManager.restore();
+            final ThreadFactoryBuilder loaderBuilder = new ThreadFactoryBuilder();
+            loaderBuilder.setNameFormat("rule-loader-%d");
+            loaderBuilder.setDaemon(true);
+            loader = Executors.newSingleThreadExecutor(loaderBuilder.build());
+            loader.execute(new Runnable() {
+                @Override
+                public void run() {
+                    loadTimerRules();
+                }
+            });
+        }
 
         // Create ThreadPool.
         final ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
@@ -188,6 +224,12 @@ public class RuleManager {
         // close EventPublisher
         ruleEventPublisher.close();
 
+        // Stop loading timer rules.
+        if (loader != null) {
+            loader.shutdownNow();
+            loader = null;
+        }
+
         // Finalize TimerRuleManager.
         if (timerRuleManager != null) {
             timerRuleManager.shutdown();
@@ -257,34 +299,30 @@ public class RuleManager {
             ruleChain = null;
         }
         if (ruleChain != null) {
-            synchronized (lockObj) {
-                Map<String, RuleInfo> map = rules.get(cellId);
-                if (map != null) {
-                    for (Map.Entry<String, RuleInfo> e : map.entrySet()) {
-                        RuleInfo rule = e.getValue();
-                        if (match(rule, event)) {
-                            String service = rule.service;
-                            // replace personium-localcell and personium-localbox
-                            if (service != null) {
-                                if (service.startsWith(LOCALCELL)) {
-                                    service = UriUtils.convertSchemeFromLocalCellToHttp(cell.getUrl(), service);
-                                } else if (service.startsWith(LOCALBOX)) {
-                                    synchronized (boxLockObj) {
-                                        String boxName = getBoxName(rule);
-                                        if (boxName != null) {
-                                            service = service.replace(LOCALBOX, cell.getUrl() + boxName);
-                                        } else {
-                                            logger.error(
-                                                    "ignore the Rule(%s) because _Box.Name is null.",
-                                                    rule.name);
-                                            continue;
-                                        }
-                                    }
+            Map<String, RuleInfo> map = getRuleMap(cell);
+            if (map != null) {
+                for (Map.Entry<String, RuleInfo> e : map.entrySet()) {
+                    RuleInfo rule = e.getValue();
+                    if (match(rule, event)) {
+                        String service = rule.service;
+                        // replace personium-localcell and personium-localbox
+                        if (service != null) {
+                            if (service.startsWith(LOCALCELL)) {
+                                service = UriUtils.convertSchemeFromLocalCellToHttp(cell.getUrl(), service);
+                            } else if (service.startsWith(LOCALBOX)) {
+                                String boxName = getBoxName(rule);
+                                if (boxName != null) {
+                                    service = service.replace(LOCALBOX, cell.getUrl() + boxName);
+                                } else {
+                                    logger.error(
+                                            "ignore the Rule(%s) because _Box.Name is null.",
+                                            rule.name);
+                                    continue;
                                 }
                             }
-                            ActionInfo ai = new ActionInfo(rule.action, service, eventId, ruleChain);
-                            actionList.add(ai);
                         }
+                        ActionInfo ai = new ActionInfo(rule.action, service, eventId, ruleChain);
+                        actionList.add(ai);
                     }
                 }
             }
@@ -351,7 +389,7 @@ public class RuleManager {
         return null;
     }
 
-    private boolean match(RuleInfo rule, PersoniumEvent event) {
+    boolean match(RuleInfo rule, PersoniumEvent event) {
         if (rule == null || event == null) {
             return false;
         }
@@ -374,11 +412,9 @@ public class RuleManager {
         }
 
         // compare schema
-        synchronized (boxLockObj) {
-            String schema = getBoxSchema(rule);
-            if (schema != null && !schema.equals(event.getSchema())) {
-                return false;
-            }
+        String schema = getBoxSchema(rule);
+        if (schema != null && !schema.equals(event.getSchema())) {
+            return false;
         }
 
         // compare subject
@@ -389,13 +425,10 @@ public class RuleManager {
         // compare object
         String object = rule.object;
         if (object != null) {
-            synchronized (boxLockObj) {
-                String boxName = getBoxName(rule);
-                if (object.startsWith(LOCALBOX)) {
-                    // replace personium-localbox to personium-localcell
-                    object = UriUtils.convertSchemeFromLocalBoxToLocalCell(object, boxName);
-                    logger.debug(rule.object + " -> " + object);
-                }
+            if (object.startsWith(LOCALBOX)) {
+                // replace personium-localbox to personium-localcell
+                object = UriUtils.convertSchemeFromLocalBoxToLocalCell(object, getBoxName(rule));
+                logger.debug(rule.object + " -> " + object);
             }
             if (event.getObject() == null) {
                 return false;
@@ -417,47 +450,189 @@ public class RuleManager {
     }
 
     /**
-     * Load all rules from DB.
+     * Get rules of the cell, loading them from DB if they are not on memory.
+     * The rules on memory are read without lock.
+     * The rules are loaded without holding lockObj, so that the events of the other cells are not
+     * blocked by DB, and published unless the rules of the cell have changed meanwhile.
+     * Must be called without holding lockObj.
+     * @param cell cell object
+     * @return immutable rules of the cell. null if loading fails.
      */
-    private void load() {
-        // accesscontext is set as null
-        UnitCtlODataProducer odataProducer = new UnitCtlODataProducer(null);
-        EdmEntitySet eSet = odataProducer.getMetadata().findEdmEntitySet(Cell.EDM_TYPE_NAME);
-        List<Map<String, Object>> implicitFilters = new ArrayList<Map<String, Object>>();
-        EntitySetAccessor esType = odataProducer.getAccessorForEntitySet(Cell.EDM_TYPE_NAME);
-        EntitiesResponse resp = odataProducer.execEntitiesRequest(null, eSet, esType, implicitFilters);
-        List<OEntity> cells = resp.getEntities();
-        for (OEntity entity : cells) {
-            OEntityWrapper oew = (OEntityWrapper) entity;
-            OProperty<?> prop = oew.getProperty(Common.P_NAME.getName());
-            logger.info("Cell=" + prop.getValue());
-            List<OProperty<?>> props = oew.getProperties();
-            for (OProperty<?> op : props) {
-                logger.info("op: " + op.getName() + "=" + op.getValue());
+    private Map<String, RuleInfo> getRuleMap(Cell cell) {
+        String cellId = cell.getId();
+        Map<String, RuleInfo> cached = rules.get(cellId);
+        if (cached != null) {
+            lastAccess.put(cellId, System.nanoTime());
+            return cached;
+        }
+
+        Object token = new Object();
+        synchronized (lockObj) {
+            Map<String, RuleInfo> map = rules.get(cellId);
+            if (map != null) {
+                return map;
+            }
+            loading.put(cellId, token);
+        }
+
+        List<RuleInfo> ruleList;
+        try {
+            ruleList = loadRule(cell);
+        } catch (RuntimeException e) {
+            // Try again at the next event.
+            logger.error("failed to load rules of cell: " + cellId, e);
+            synchronized (lockObj) {
+                loading.remove(cellId, token);
+            }
+            return null;
+        }
+
+        synchronized (lockObj) {
+            Map<String, RuleInfo> map = rules.get(cellId);
+            if (map != null) {
+                // published by another event
+                return map;
             }
-            Map<String, Object> map = oew.getMetadata();
-            for (Map.Entry<String, Object> e : map.entrySet()) {
-                logger.info("meta: " + e.getKey() + "=" + e.getValue());
+            map = new HashMap<String, RuleInfo>();
+            if (loading.get(cellId) != token) {
+                // The rules have changed meanwhile. Use them only for this event and load again at the next.
+                for (RuleInfo rule : ruleList) {
+                    map.put(getRuleKey(rule.name, getBoxId(rule)), rule);
+                }
+                return map;
             }
-            logger.info("id=" + oew.getUuid());
+            loading.remove(cellId);
+            for (RuleInfo rule : ruleList) {
+                putRule(map, cellId, rule);
+            }
+            map = Collections.unmodifiableMap(map);
+            lastAccess.put(cellId, System.nanoTime());
+            rules.put(cellId, map);
+            evictRules();
+            return map;
+        }
+    }
 
-            // Cell object
-            Cell cell = ModelFactory.cellFromId(oew.getUuid());
+    /**
+     * Evict the rules of the least recently used cells over the cache size.
+     * Must be called holding lockObj.
+     */
+    private void evictRules() {
+        while (rules.size() > cacheSize) {
+            String eldest = null;
+            long eldestTime = Long.MAX_VALUE;
+            for (String cellId : rules.keySet()) {
+                Long time = lastAccess.get(cellId);
+                if (time == null) {
+                    eldest = cellId;
+                    break;
+                }
+                if (eldest == null || time - eldestTime < 0) {
+                    eldest = cellId;
+                    eldestTime = time;
+                }
+            }
+            rules.remove(eldest);
+            lastAccess.remove(eldest);
+            synchronized (boxLockObj) {
+                boxes.remove(eldest);
+            }
+        }
+    }
 
-            // load Rules for cell
-            loadRule(cell);
+    /**
+     * Load timer rules of all cells from DB.
+     * Timer rules restored from the timer table are replaced with those on DB,
+     * and those of the cells deleted meanwhile are discarded.
+     */
+    private void loadTimerRules() {
+        Set<String> cellIds = new HashSet<>();
+        // Scan all the cells. An empty query matches all documents.
+        try (SearchHitIterator hits = EsModel.cell().scan(new HashMap<String, Object>())) {
+            while (hits.hasNext() && !Thread.currentThread().isInterrupted()) {
+                PersoniumSearchHit hit = hits.next();
+                Cell cell = ModelFactory.cellFromId(hit.getId());
+                if (cell == null) {
+                    // deleted after scanned
+                    continue;
+                }
+                reloadTimerRule(cell);
+                cellIds.add(cell.getId());
+            }
+        } catch (RuntimeException e) {
+            logger.error("failed to load timer rules: " + e.getMessage(), e);
+            return;
         }
+        if (Thread.currentThread().isInterrupted()) {
+            return;
+        }
+        for (String cellId : timerRuleManager.getCellIds()) {
+            // Cells created after scanned are kept.
+            if (!cellIds.contains(cellId) && ModelFactory.cellFromId(cellId) == null) {
+                timerRuleManager.unregisterCellRules(cellId);
+            }
+        }
+        logger.info("timer rules loaded. cells=" + cellIds.size());
     }
 
     // Load rules that belongs to cell.
-    private void loadRule(Cell cell) {
-        CellCtlODataProducer producer = new CellCtlODataProducer(cell);
-        // query is null
-        EntitiesResponse resp = producer.getEntities(Rule.EDM_TYPE_NAME, null);
-        List<OEntity> ruleList = resp.getEntities();
-        for (OEntity entity : ruleList) {
-            registerRule(entity, cell);
+    private List<RuleInfo> loadRule(Cell cell) {
+        List<RuleInfo> ruleList = new ArrayList<>();
+        for (OEntity entity : getRuleEntities(cell, null)) {
+            RuleInfo rule = toRuleInfo(entity, cell);
+            if (rule != null) {
+                ruleList.add(rule);
+            }
         }
+        return ruleList;
+    }
+
+    // Replace timer rules of cell with those in DB.
+    private void reloadTimerRule(Cell cell) {
+        if (timerRuleManager == null) {
+            return;
+        }
+        String eventType = Rule.P_TYPE.getName();
+        BoolCommonExpression filter = PersoniumOptionsQueryParser.parseFilter(
+                eventType + " eq '" + PersoniumEventType.timerPeriodic() + "' or "
+                + eventType + " eq '" + PersoniumEventType.timerOneshot() + "'");
+        // Read rules and resolve boxes without lock, so that the rules of the other cells are not blocked by DB.
+        List<RuleInfo> ruleList = new ArrayList<>();
+        List<String> boxIdList = new ArrayList<>();
+        for (OEntity entity : getRuleEntities(cell, filter)) {
+            RuleInfo rule = createRuleInfo(entity);
+            rule.subject = UriUtils.convertSchemeFromLocalUnitToHttp(cell.getUnitUrl(), rule.subject);
+            if (rule.action == null) {
+                continue;
+            }
+            String boxId = null;
+            if (rule.boxname != null) {
+                Box box = cell.getBoxForName(rule.boxname);
+                if (box == null) {
+                    continue;
+                }
+                boxId = box.getId();
+            }
+            ruleList.add(rule);
+            boxIdList.add(boxId);
+        }
+        synchronized (lockObj) {
+            timerRuleManager.unregisterCellRules(cell.getId());
+            for (int i = 0; i < ruleList.size(); i++) {
+                RuleInfo rule = ruleList.get(i);
+                timerRuleManager.registerRule(rule.name, rule.subject,
+                        rule.type, rule.object, rule.info, cell.getId(), boxIdList.get(i));
+            }
+        }
+    }
+
+    // Get rule entities of cell.
+    private List<OEntity> getRuleEntities(Cell cell, BoolCommonExpression filter) {
+        CellCtlODataProducer producer = new CellCtlODataProducer(cell);
+        QueryInfo queryInfo = QueryInfo.newBuilder().setFilter(filter)
+                .setTop(PersoniumUnitConfig.getTopQueryMaxSize()).setInlineCount(InlineCount.NONE).build();
+        EntitiesResponse resp = producer.getEntities(Rule.EDM_TYPE_NAME, queryInfo);
+        return resp.getEntities();
     }
 
     // Convert OEntity object to RuleInfo.
@@ -554,7 +729,7 @@ public class RuleManager {
     private boolean registerRuleByOEntityKey(CellCtlODataProducer producer, OEntityKey oEntityKey, Cell cell) {
         EntityResponse entityResp = producer.getEntity(Rule.EDM_TYPE_NAME, oEntityKey, null);
         OEntity oEntity = entityResp.getEntity();
-        return registerRule(oEntity, cell);
+        return registerRule(oEntity, cell, true);
     }
 
     private boolean unregisterRuleByOEntityKey(OEntityKey oEntityKey, Cell cell) {
@@ -595,88 +770,24 @@ public class RuleManager {
         try {
 
             String type = event.getType();
-            if (RULEEVENT_RULE_CREATE.equals(type)) {
-                // register
-                OEntityKey oEntityKey = convertFirst(event.getObject());
-                ret = registerRuleByOEntityKey(producer, oEntityKey, cell);
-            } else if (RULEEVENT_RULE_UPDATE.equals(type) || RULEEVENT_RULE_MERGE.equals(type)) {
-                // unregister
-                OEntityKey oEntityKey = convertFirst(event.getObject());
-                ret = unregisterRuleByOEntityKey(oEntityKey, cell);
-                if (!ret) {
-                    return ret;
-                }
-                // register
-                OEntityKey newOEntityKey = convertFirst(event.getInfo());
-                ret = registerRuleByOEntityKey(producer, newOEntityKey, cell);
-            } else if (RULEEVENT_RULE_DELETE.equals(type)) {
-                // unregister
-                OEntityKey oEntityKey = convertFirst(event.getObject());
-                ret = unregisterRuleByOEntityKey(oEntityKey, cell);
-            } else if (RULEEVENT_RULE_LINK_BOX_CREATE.equals(type)) {
-                // link (unregister & register)
-                OEntityKey ruleKey = convertFirst(event.getObject());
-                ret = unregisterRuleByOEntityKey(ruleKey, cell);
-                // register
-                OEntityKey boxKey = convertSecond(event.getObject());
-                OEntityKey oEntityKey = createOEntityKeyFromBoxAndRule(boxKey, ruleKey);
-                ret = registerRuleByOEntityKey(producer, oEntityKey, cell);
-            } else if (RULEEVENT_RULE_LINK_BOX_DELETE.equals(type)) {
-                // delete link (unregister & register)
-                OEntityKey ruleKey = convertFirst(event.getObject());
-                ret = unregisterRuleByOEntityKey(ruleKey, cell);
-                // register
-                String ruleName = getComplexKeyValue(ruleKey, Rule.P_NAME.getName());
-                Map<String, Object> values = new HashMap<>();
-                values.put(Common.P_BOX_NAME.getName(), AbstractODataResource.DUMMY_KEY);
-                values.put(Rule.P_NAME.getName(), ruleName);
-                OEntityKey oEntityKey = OEntityKey.create(values);
-                ret = registerRuleByOEntityKey(producer, oEntityKey, cell);
-            } else if (RULEEVENT_BOX_LINK_RULE_CREATE.equals(type)) {
-                // link (unregister & register)
-                OEntityKey ruleKey = convertSecond(event.getObject());
-                ret = unregisterRuleByOEntityKey(ruleKey, cell);
-                // register
-                OEntityKey boxKey = convertFirst(event.getObject());
-                OEntityKey oEntityKey = createOEntityKeyFromBoxAndRule(boxKey, ruleKey);
-                ret = registerRuleByOEntityKey(producer, oEntityKey, cell);
-            } else if (RULEEVENT_BOX_LINK_RULE_DELETE.equals(type)) {
-                // link (unregister & register)
-                OEntityKey ruleKey = convertSecond(event.getObject());
-                ret = unregisterRuleByOEntityKey(ruleKey, cell);
-                // register
-                String ruleName = getComplexKeyValue(ruleKey, Rule.P_NAME.getName());
-                Map<String, Object> values = new HashMap<>();
-                values.put(Common.P_BOX_NAME.getName(), AbstractODataResource.DUMMY_KEY);
-                values.put(Rule.P_NAME.getName(), ruleName);
-                OEntityKey oEntityKey = OEntityKey.create(values);
-                ret = registerRuleByOEntityKey(producer, oEntityKey, cell);
-            } else if (RULEEVENT_RULE_NAVPROP_BOX_CREATE.equals(type)) {
-                // link (unregister & register)
-                OEntityKey ruleKey = convertFirst(event.getObject());
-                ret = unregisterRuleByOEntityKey(ruleKey, cell);
-                // register
-                OEntityKey boxKey = convertSecond(event.getObject());
-                OEntityKey oEntityKey = createOEntityKeyFromBoxAndRule(boxKey, ruleKey);
-                ret = registerRuleByOEntityKey(producer, oEntityKey, cell);
-            } else if (RULEEVENT_BOX_NAVPROP_RULE_CREATE.equals(type)) {
-                // register
-                OEntityKey boxKey = convertFirst(event.getObject());
-                OEntityKey ruleKey = convertSecond(event.getObject());
-                OEntityKey oEntityKey = createOEntityKeyFromBoxAndRule(boxKey, ruleKey);
-                ret = registerRuleByOEntityKey(producer, oEntityKey, cell);
-            } else if (RULEEVENT_BOX_UPDATE.equals(type) || RULEEVENT_BOX_MERGE.equals(type)) {
+            if (RULEEVENT_BOX_UPDATE.equals(type) || RULEEVENT_BOX_MERGE.equals(type)) {
                 OEntityKey boxKey = convertFirst(event.getInfo());
                 String boxName = getComplexKeyValue(boxKey, Rule.P_NAME.getName());
                 Box box = cell.getBoxForName(boxName);
+                synchronized (lockObj) {
+                    loading.remove(cell.getId());
+                }
                 if (box != null) {
                     setBoxInfo(cell, box);
                 }
                 ret = true;
             } else if (RULEEVENT_CELL_IMPORT.equals(type)) {
+                // Rules are loaded again when the cell receives an event.
                 deleteRule(cell.getId());
-                loadRule(cell);
+                reloadTimerRule(cell);
                 ret = true;
+            } else {
+                ret = handleRuleChange(type, event, producer, cell);
             }
         } catch (Exception e) {
             logger.error("handleRuleEvent error: " + e.getMessage(), e);
@@ -688,6 +799,115 @@ public class RuleManager {
         return ret;
     }
 
+    /**
+     * Manage rule in accordance with event about change of rule.
+     * Rules and boxes are read from DB without lock, and lockObj is held only to replace the rules of the cell.
+     * Must be called without holding lockObj.
+     * @param type event type
+     * @param event event object
+     * @param producer producer of the cell
+     * @param cell cell object
+     * @return true if processing is success, false if processing fails
+     */
+    private boolean handleRuleChange(String type, PersoniumEvent event, CellCtlODataProducer producer, Cell cell) {
+        if (!rules.containsKey(cell.getId())) {
+            return handleUnloadedRuleChange(cell);
+        }
+
+        boolean ret = false;
+        if (RULEEVENT_RULE_CREATE.equals(type)) {
+            // register
+            OEntityKey oEntityKey = convertFirst(event.getObject());
+            ret = registerRuleByOEntityKey(producer, oEntityKey, cell);
+        } else if (RULEEVENT_RULE_UPDATE.equals(type) || RULEEVENT_RULE_MERGE.equals(type)) {
+            // unregister
+            OEntityKey oEntityKey = convertFirst(event.getObject());
+            ret = unregisterRuleByOEntityKey(oEntityKey, cell);
+            if (!ret) {
+                return ret;
+            }
+            // register
+            OEntityKey newOEntityKey = convertFirst(event.getInfo());
+            ret = registerRuleByOEntityKey(producer, newOEntityKey, cell);
+        } else if (RULEEVENT_RULE_DELETE.equals(type)) {
+            // unregister
+            OEntityKey oEntityKey = convertFirst(event.getObject());
+            ret = unregisterRuleByOEntityKey(oEntityKey, cell);
+        } else if (RULEEVENT_RULE_LINK_BOX_CREATE.equals(type)) {
+            // link (unregister & register)
+            OEntityKey ruleKey = convertFirst(event.getObject());
+            ret = unregisterRuleByOEntityKey(ruleKey, cell);
+            // register
+            OEntityKey boxKey = convertSecond(event.getObject());
+            OEntityKey oEntityKey = createOEntityKeyFromBoxAndRule(boxKey, ruleKey);
+            ret = registerRuleByOEntityKey(producer, oEntityKey, cell);
+        } else if (RULEEVENT_RULE_LINK_BOX_DELETE.equals(type)) {
+            // delete link (unregister & register)
+            OEntityKey ruleKey = convertFirst(event.getObject());
+            ret = unregisterRuleByOEntityKey(ruleKey, cell);
+            // register
+            String ruleName = getComplexKeyValue(ruleKey, Rule.P_NAME.getName());
+            Map<String, Object> values = new HashMap<>();
+            values.put(Common.P_BOX_NAME.getName(), AbstractODataResource.DUMMY_KEY);
+            values.put(Rule.P_NAME.getName(), ruleName);
+            OEntityKey oEntityKey = OEntityKey.create(values);
+            ret = registerRuleByOEntityKey(producer, oEntityKey, cell);
+        } else if (RULEEVENT_BOX_LINK_RULE_CREATE.equals(type)) {
+            // link (unregister & register)
+            OEntityKey ruleKey = convertSecond(event.getObject());
+            ret = unregisterRuleByOEntityKey(ruleKey, cell);
+            // register
+            OEntityKey boxKey = convertFirst(event.getObject());
+            OEntityKey oEntityKey = createOEntityKeyFromBoxAndRule(boxKey, ruleKey);
+            ret = registerRuleByOEntityKey(producer, oEntityKey, cell);
+        } else if (RULEEVENT_BOX_LINK_RULE_DELETE.equals(type)) {
+            // link (unregister & register)
+            OEntityKey ruleKey = convertSecond(event.getObject());
+            ret = unregisterRuleByOEntityKey(ruleKey, cell);
+            // register
+            String ruleName = getComplexKeyValue(ruleKey, Rule.P_NAME.getName());
+            Map<String, Object> values = new HashMap<>();
+            values.put(Common.P_BOX_NAME.getName(), AbstractODataResource.DUMMY_KEY);
+            values.put(Rule.P_NAME.getName(), ruleName);
+            OEntityKey oEntityKey = OEntityKey.create(values);
+            ret = registerRuleByOEntityKey(producer, oEntityKey, cell);
+        } else if (RULEEVENT_RULE_NAVPROP_BOX_CREATE.equals(type)) {
+            // link (unregister & register)
+            OEntityKey ruleKey = convertFirst(event.getObject());
+            ret = unregisterRuleByOEntityKey(ruleKey, cell);
+            // register
+            OEntityKey boxKey = convertSecond(event.getObject());
+            OEntityKey oEntityKey = createOEntityKeyFromBoxAndRule(boxKey, ruleKey);
+            ret = registerRuleByOEntityKey(producer, oEntityKey, cell);
+        } else if (RULEEVENT_BOX_NAVPROP_RULE_CREATE.equals(type)) {
+            // register
+            OEntityKey boxKey = convertFirst(event.getObject());
+            OEntityKey ruleKey = convertSecond(event.getObject());
+            OEntityKey oEntityKey = createOEntityKeyFromBoxAndRule(boxKey, ruleKey);
+            ret = registerRuleByOEntityKey(producer, oEntityKey, cell);
+        }
+        if (!rules.containsKey(cell.getId())) {
+            // Evicted meanwhile.
+            return handleUnloadedRuleChange(cell);
+        }
+        return ret;
+    }
+
+    /**
+     * Manage change of rule of the cell whose rules are not on memory.
+     * They will be loaded from DB when needed. Only timer rules have to follow the change,
+     * and the rules being loaded are not published.
+     * @param cell cell object
+     * @return true
+     */
+    private boolean handleUnloadedRuleChange(Cell cell) {
+        synchronized (lockObj) {
+            loading.remove(cell.getId());
+        }
+        reloadTimerRule(cell);
+        return true;
+    }
+
     private void setBoxInfo(Cell cell, Box box) {
         synchronized (boxLockObj) {
             Map<String, BoxInfo> bmap = boxes.get(cell.getId());
@@ -703,9 +923,9 @@ public class RuleManager {
         }
     }
 
-    String getSchemaForBoxId(String cellId, String boxId) {
+    String getSchemaForBoxId(Cell cell, String boxId) {
         synchronized (boxLockObj) {
-            Map<String, BoxInfo> bmap = boxes.get(cellId);
+            Map<String, BoxInfo> bmap = boxes.get(cell.getId());
             if (bmap != null) {
                 BoxInfo bi = bmap.get(boxId);
                 if (bi != null && bi.schema != null) {
@@ -713,7 +933,13 @@ public class RuleManager {
                 }
             }
         }
-        return null;
+        // Rules of the cell are not on memory. Box is read through CellCtlCache.
+        OEntity box = new CellCtlODataProducer(cell).getEntityByInternalId(Box.EDM_TYPE_NAME, boxId);
+        if (box == null) {
+            return null;
+        }
+        String schema = (String) box.getProperty(Box.P_SCHEMA.getName()).getValue();
+        return UriUtils.convertSchemeFromLocalUnitToHttp(cell.getUnitUrl(), schema);
     }
 
     /**
@@ -738,9 +964,14 @@ public class RuleManager {
     private void deleteRule(String cellId) {
         synchronized (lockObj) {
             rules.remove(cellId);
+            lastAccess.remove(cellId);
+            loading.remove(cellId);
             synchronized (boxLockObj) {
                 boxes.remove(cellId);
             }
+            if (timerRuleManager != null) {
+                timerRuleManager.unregisterCellRules(cellId);
+            }
         }
     }
 
@@ -748,9 +979,47 @@ public class RuleManager {
      * Register rule by OEntity object.
      * @param oEntity OEntity object of Rule
      * @param cell cell object that the rule belongs to
+     * @param withTimer true: register the rule also to TimerRuleManager
      * @return true if registering is success, false if it fails
      */
-    private boolean registerRule(OEntity oEntity, Cell cell) {
+    private boolean registerRule(OEntity oEntity, Cell cell, boolean withTimer) {
+        RuleInfo rule = toRuleInfo(oEntity, cell);
+        if (rule == null) {
+            return false;
+        }
+
+        String cellId = cell.getId();
+
+        // Register rule, replacing the snapshot of the rules of the cell.
+        synchronized (lockObj) {
+            Map<String, RuleInfo> current = rules.get(cellId);
+            if (current == null) {
+                // Evicted. The rules are loaded from DB again when needed.
+                loading.remove(cellId);
+                return false;
+            }
+            Map<String, RuleInfo> rmap = new HashMap<String, RuleInfo>(current);
+            putRule(rmap, cellId, rule);
+            rules.put(cellId, Collections.unmodifiableMap(rmap));
+
+            // TimerRuleManager
+            if (withTimer && timerRuleManager != null) {
+                timerRuleManager.registerRule(rule.name, rule.subject,
+                        rule.type, rule.object, rule.info, cellId, getBoxId(rule));
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Convert OEntity object of Rule to RuleInfo with the box it is related to.
+     * The box is not registered yet.
+     * @param oEntity OEntity object of Rule
+     * @param cell cell object that the rule belongs to
+     * @return RuleInfo. null if the rule has no action or the box does not exist.
+     */
+    private RuleInfo toRuleInfo(OEntity oEntity, Cell cell) {
         // Convert OEntity to RuleInfo.
         RuleInfo rule = createRuleInfo(oEntity);
 
@@ -759,63 +1028,57 @@ public class RuleManager {
         rule.service = UriUtils.convertSchemeFromLocalUnitToHttp(cell.getUnitUrl(), rule.service);
 
         if (rule.action == null) {
-            return false;
+            return null;
         }
 
-        String cellId = cell.getId();
-
-        String boxId = null;
-
-        // Register box as necessary.
         if (rule.boxname != null) {
             Box box = cell.getBoxForName(rule.boxname);
-            if (box != null) {
-                synchronized (boxLockObj) {
-                    Map<String, BoxInfo> bmap = boxes.get(cellId);
-                    BoxInfo bi = null;
-                    if (bmap == null) {
-                        bmap = new HashMap<>();
-                        boxes.put(cellId, bmap);
-                    } else {
-                        bi = bmap.get(box.getId());
-                    }
-                    if (bi == null) {
-                        bi = new BoxInfo();
-                        bi.id = box.getId();
-                        bi.name = box.getName();
-                        String schema = box.getSchema();
-                        bi.schema = UriUtils.convertSchemeFromLocalUnitToHttp(cell.getUnitUrl(), schema);
-                        bi.count = 0;
-                        bmap.put(bi.id, bi);
-                    }
-                    bi.count++;
-                    rule.box = bi;
-                    boxId = bi.id;
-                }
-            } else {
-                return false;
+            if (box == null) {
+                return null;
             }
+            BoxInfo bi = new BoxInfo();
+            bi.id = box.getId();
+            bi.name = box.getName();
+            String schema = box.getSchema();
+            bi.schema = UriUtils.convertSchemeFromLocalUnitToHttp(cell.getUnitUrl(), schema);
+            bi.count = 0;
+            rule.box = bi;
         }
+        return rule;
+    }
 
-        String keyString = getRuleKey(rule.name, boxId);
-
-        // Register rule.
-        synchronized (lockObj) {
-            Map<String, RuleInfo> rmap = rules.get(cellId);
-            if (rmap == null) {
-                rmap = new HashMap<String, RuleInfo>();
-                rules.put(cellId, rmap);
-            }
-            rmap.put(keyString, rule);
-
-            // TimerRuleManager
-            if (timerRuleManager != null) {
-                timerRuleManager.registerRule(rule.name, rule.subject,
-                        rule.type, rule.object, rule.info, cellId, boxId);
+    /**
+     * Put the rule to the rules of the cell, registering the box it is related to.
+     * Must be called holding lockObj.
+     * @param rmap rules of the cell
+     * @param cellId cell id
+     * @param rule rule converted by toRuleInfo
+     */
+    private void putRule(Map<String, RuleInfo> rmap, String cellId, RuleInfo rule) {
+        if (rule.box != null) {
+            synchronized (boxLockObj) {
+                Map<String, BoxInfo> bmap = boxes.get(cellId);
+                if (bmap == null) {
+                    bmap = new HashMap<>();
+                    boxes.put(cellId, bmap);
+                }
+                BoxInfo bi = bmap.get(rule.box.id);
+                if (bi == null) {
+                    bi = rule.box;
+                    bmap.put(bi.id, bi);
+                }
+                bi.count++;
+                rule.box = bi;
             }
         }
+        rmap.put(getRuleKey(rule.name, getBoxId(rule)), rule);
+    }
 
-        return true;
+    private String getBoxId(RuleInfo rule) {
+        if (rule.box != null) {
+            return rule.box.id;
+        }
+        return null;
     }
 
     /**
@@ -840,9 +1103,12 @@ public class RuleManager {
 
         // Remove rule and box as necessary.
         synchronized (lockObj) {
-            Map<String, RuleInfo> map = rules.get(cell.getId());
-            if (map != null) {
+            Map<String, RuleInfo> current = rules.get(cell.getId());
+            if (current != null && current.containsKey(key)) {
+                // Replace the snapshot of the rules of the cell.
+                Map<String, RuleInfo> map = new HashMap<String, RuleInfo>(current);
                 RuleInfo rule = map.remove(key);
+                rules.put(cell.getId(), Collections.unmodifiableMap(map));
                 if (rule != null) {
                     if (rule.box != null) {
                         synchronized (boxLockObj) {
@@ -852,7 +1118,6 @@ public class RuleManager {
                                 bmap.remove(rule.box.id);
                             }
                         }
-                        rule.box = null;
                     }
 
                     // TimerRuleManager
@@ -881,38 +1146,36 @@ public class RuleManager {
         JSONArray jsonBoxArray = new JSONArray();
         String cellId = cell.getId();
         logger.info("cellId is " + cellId);
-        synchronized (lockObj) {
-            Map<String, RuleInfo> mapRule = rules.get(cellId);
-            if (mapRule != null) {
-                logger.info("list is not null");
-                for (RuleInfo ri : mapRule.values()) {
-                    logger.info("rule");
-                    JSONObject json = new JSONObject();
-                    json.put(Rule.P_EXTERNAL.getName(), ri.external);
-                    json.put(Rule.P_SUBJECT.getName(), ri.subject);
-                    json.put(Rule.P_TYPE.getName(), ri.type);
-                    json.put(Rule.P_OBJECT.getName(), ri.object);
-                    json.put(Rule.P_INFO.getName(), ri.info);
-                    json.put(Rule.P_ACTION.getName(), ri.action);
-                    json.put(Rule.P_SERVICE.getName(), ri.service);
-                    if (ri.box != null) {
-                        json.put(Box.P_SCHEMA.getName(), ri.box.schema);
-                        json.put(Common.P_BOX_NAME.getName(), ri.box.name);
-                    }
-                    json.put(Rule.P_NAME.getName(), ri.name);
-                    jsonRuleArray.add(json);
+        Map<String, RuleInfo> mapRule = getRuleMap(cell);
+        if (mapRule != null) {
+            logger.info("list is not null");
+            for (RuleInfo ri : mapRule.values()) {
+                logger.info("rule");
+                JSONObject json = new JSONObject();
+                json.put(Rule.P_EXTERNAL.getName(), ri.external);
+                json.put(Rule.P_SUBJECT.getName(), ri.subject);
+                json.put(Rule.P_TYPE.getName(), ri.type);
+                json.put(Rule.P_OBJECT.getName(), ri.object);
+                json.put(Rule.P_INFO.getName(), ri.info);
+                json.put(Rule.P_ACTION.getName(), ri.action);
+                json.put(Rule.P_SERVICE.getName(), ri.service);
+                if (ri.box != null) {
+                    json.put(Box.P_SCHEMA.getName(), ri.box.schema);
+                    json.put(Common.P_BOX_NAME.getName(), ri.box.name);
                 }
+                json.put(Rule.P_NAME.getName(), ri.name);
+                jsonRuleArray.add(json);
             }
-            synchronized (boxLockObj) {
-                Map<String, BoxInfo> mapBox = boxes.get(cellId);
-                if (mapBox != null) {
-                    for (BoxInfo bi : mapBox.values()) {
-                        JSONObject json = new JSONObject();
-                        json.put(Common.P_NAME.getName(), bi.name);
-                        json.put(Box.P_SCHEMA.getName(), bi.schema);
-                        json.put("id", bi.id);
-                        jsonBoxArray.add(json);
-                    }
+        }
+        synchronized (boxLockObj) {
+            Map<String, BoxInfo> mapBox = boxes.get(cellId);
+            if (mapBox != null) {
+                for (BoxInfo bi : mapBox.values()) {
+                    JSONObject json = new JSONObject();
+                    json.put(Common.P_NAME.getName(), bi.name);
+                    json.put(Box.P_SCHEMA.getName(), bi.schema);
+                    json.put("id", bi.id);
+                    jsonBoxArray.add(json);
                 }
             }
         }
@@ -16,21 +16,27 @@
  */
 package io.personium.core.rule;
 
+import java.io.File;
+import java.io.IOException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
@@ -44,12 +50,27 @@ import io.personium.core.model.ctl.Rule;
 
 /**
  * TimerRuleManager.
+ * <p>
+ * Timers are kept on a hierarchical timing wheel advanced every second, and the timers expired
+ * in a tick are fired together, posting the events of each cell on the thread pool.
+ * Rules of the same interval or the same time share a timer.
+ * The timer rules are saved to the timer table, so that they fire from startup
+ * until RuleManager has loaded them from DB.
  */
 class TimerRuleManager {
+    private static Logger log = LoggerFactory.getLogger(TimerRuleManager.class);
+
+    /** Length of a tick of the timing wheel (msec). */
+    static final long TICK_MILLIS = 1000L;
+    /** Number of the buckets of each level of the timing wheel. */
+    static final int WHEEL_SIZE = 64;
+    /** Number of the levels of the timing wheel, covering about 194 days. */
+    static final int WHEEL_LEVELS = 4;
+
     /**
      * Internal class for managing rule.
      */
-    class TimerRuleInfo {
+    static class TimerRuleInfo {
         String type;
         String object;
         String info;
@@ -62,13 +83,13 @@ class TimerRuleManager {
     /**
      * Internal class for timer list.
      */
-    class TimerInfo {
+    static class TimerInfo {
         Map<String, List<TimerRuleInfo>> ruleMap;
         String mapKey;
         long interval;
         long nextTime;
 
-        ScheduledFuture<?> handle;
+        TimingWheel.Timeout<TimerInfo> handle;
     }
 
     private static TimerRuleManager instance = null;
@@ -78,6 +99,11 @@ class TimerRuleManager {
     private Object lockObj;
 
     private ScheduledExecutorService scheduler = null;
+    private TimingWheel<TimerInfo> wheel;
+    /** Timer table. null if not saved. */
+    private TimerTable table;
+    /** Whether the rules have changed since saved. */
+    private volatile boolean dirty = false;
 
     /**
      * Constructor.
@@ -104,11 +130,32 @@ class TimerRuleManager {
      * Initialize TimerRuleManager.
      */
     private void initialize() {
+        wheel = new TimingWheel<TimerInfo>(TICK_MILLIS, WHEEL_SIZE, WHEEL_LEVELS, System.currentTimeMillis());
         final ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
         builder.setNameFormat("timer-event-sender-%d");
         scheduler = Executors.newScheduledThreadPool(
                 PersoniumUnitConfig.getTimerEventThreadNum(),
                 builder.build());
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                tick();
+            }
+        }, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+
+        String tableFile = PersoniumUnitConfig.getTimerTableFile();
+        if (tableFile != null && !tableFile.isEmpty()) {
+            table = new TimerTable(new File(tableFile));
+            long interval = TimeUnit.SECONDS.toMillis(PersoniumUnitConfig.getTimerTableSaveInterval());
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    if (dirty) {
+                        saveTable();
+                    }
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
     }
 
     /**
@@ -123,57 +170,153 @@ class TimerRuleManager {
         } catch (InterruptedException e) {
             scheduler.shutdownNow();
         }
+        if (dirty) {
+            saveTable();
+        }
     }
 
     /**
-     * Trigger timer.oneshot event.
-     * @param key key string for HashMap
+     * Restore the timer rules from the timer table.
+     * @return true if restored, false if the table is not saved or failed to read
      */
-    void triggerOneshot(final String key) {
-        synchronized (lockObj) {
-            TimerInfo timer = timerMap.get(key);
-            if (timer != null) {
-                send(timer);
-                timerMap.remove(key);
+    boolean restore() {
+        if (table == null) {
+            return false;
+        }
+        List<TimerRuleInfo> saved;
+        try {
+            saved = table.load();
+        } catch (IOException e) {
+            log.warn("Failed to read timer table: " + e.getMessage(), e);
+            return false;
+        }
+        if (saved == null) {
+            return false;
+        }
+        for (TimerRuleInfo rule : saved) {
+            for (long i = 0; i < rule.count; i++) {
+                registerRule(null, rule.subject, rule.type, rule.object, rule.info, rule.cellId, rule.boxId);
             }
         }
+        dirty = false;
+        log.info("timer rules restored. rules=" + saved.size());
+        return true;
     }
 
     /**
-     * Trigger timer.periodic event.
-     * @param key key string for HashMap
+     * Save the timer rules to the timer table.
      */
-    void triggerPeriodic(final String key) {
+    void saveTable() {
+        if (table == null) {
+            return;
+        }
+        List<TimerRuleInfo> list;
         synchronized (lockObj) {
-            TimerInfo timer = timerMap.get(key);
-            if (timer != null && !send(timer)) {
-                timerMap.remove(key);
-                timer.handle.cancel(true);
-            }
+            dirty = false;
+            list = new ArrayList<>(rules.values());
+        }
+        try {
+            table.save(list);
+        } catch (IOException e) {
+            dirty = true;
+            log.warn("Failed to write timer table: " + e.getMessage(), e);
         }
     }
 
-    private boolean send(TimerInfo timer) {
-        boolean validMap = false;
+    /**
+     * Advance the timing wheel and trigger the expired timers.
+     * The rules to fire are collected holding the lock, and the events are built and posted
+     * on the thread pool for each cell, since looking up the cell and the box schema reads DB.
+     */
+    void tick() {
+        List<TimingWheel.Timeout<TimerInfo>> expired = wheel.advance(System.currentTimeMillis());
+        if (expired.isEmpty()) {
+            return;
+        }
+        Map<String, List<TimerRuleInfo>> fired = new HashMap<>();
+        synchronized (lockObj) {
+            for (TimingWheel.Timeout<TimerInfo> timeout : expired) {
+                TimerInfo timer = timeout.getValue();
+                if (timerMap.get(timer.mapKey) != timer) {
+                    // removed
+                    continue;
+                }
+                boolean valid = collect(timer, fired);
+                if (timer.interval > 0 && valid) {
+                    // At fixed rate from the time registered.
+                    timer.nextTime += timer.interval;
+                    timer.handle = wheel.add(timer.nextTime, timer);
+                } else {
+                    timerMap.remove(timer.mapKey);
+                }
+            }
+        }
+        for (final Map.Entry<String, List<TimerRuleInfo>> entry : fired.entrySet()) {
+            try {
+                scheduler.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        send(entry.getKey(), entry.getValue());
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // shutting down
+                return;
+            }
+        }
+    }
 
+    /**
+     * Collect the rules of the timer to fire, per cell.
+     * Call in synchronized (lockObj).
+     * @param timer timer expired
+     * @param fired cell ID -> rules to fire
+     * @return true if the timer has rules left
+     */
+    private boolean collect(TimerInfo timer, Map<String, List<TimerRuleInfo>> fired) {
         for (Iterator<Map.Entry<String, List<TimerRuleInfo>>> iruleMap = timer.ruleMap.entrySet().iterator();
                 iruleMap.hasNext();) {
             Map.Entry<String, List<TimerRuleInfo>> entry = iruleMap.next();
-            String cellId = entry.getKey();
             List<TimerRuleInfo> ruleList = entry.getValue();
-            Cell cell = ModelFactory.cellFromId(cellId);
-            EventBus eventBus = cell.getEventBus();
-            boolean validList = false;
-
             for (Iterator<TimerRuleInfo> i = ruleList.iterator(); i.hasNext();) {
                 TimerRuleInfo rule = i.next();
                 if (rule.count == 0) {
                     i.remove();
                     continue;
                 }
+                List<TimerRuleInfo> cellRules = fired.get(entry.getKey());
+                if (cellRules == null) {
+                    cellRules = new ArrayList<>();
+                    fired.put(entry.getKey(), cellRules);
+                }
+                cellRules.add(rule);
+            }
+            if (ruleList.isEmpty()) {
+                iruleMap.remove();
+            }
+        }
+        return !timer.ruleMap.isEmpty();
+    }
+
+    /**
+     * Post the events of the rules fired.
+     * The rules of a deleted cell are unregistered.
+     * @param cellId cell id
+     * @param ruleList rules fired
+     */
+    void send(String cellId, List<TimerRuleInfo> ruleList) {
+        try {
+            Cell cell = ModelFactory.cellFromId(cellId);
+            if (cell == null) {
+                // the cell has been deleted
+                unregisterCellRules(cellId);
+                return;
+            }
+            EventBus eventBus = cell.getEventBus();
+            for (TimerRuleInfo rule : ruleList) {
                 String schema = null;
                 if (rule.boxId != null) {
-                    schema = RuleManager.getInstance().getSchemaForBoxId(cellId, rule.boxId);
+                    schema = RuleManager.getInstance().getSchemaForBoxId(cell, rule.boxId);
                 }
                 PersoniumEvent event = new PersoniumEvent.Builder()
                         .schema(schema)
@@ -183,16 +326,10 @@ class TimerRuleManager {
                         .info(rule.info)
                         .build();
                 eventBus.post(event);
-                validList = true;
-            }
-
-            if (!validList) {
-                iruleMap.remove();
             }
-            validMap |= validList;
+        } catch (RuntimeException e) {
+            log.warn("Failed to send timer events. CellId:" + cellId, e);
         }
-
-        return validMap;
     }
 
     /**
@@ -225,24 +362,7 @@ class TimerRuleManager {
         if (timer.nextTime == 0) {
             return;
         }
-
-        final String key = timer.mapKey;
-
-        if (timer.interval > 0) {
-            timer.handle = scheduler.scheduleAtFixedRate(new Runnable() {
-                public void run() {
-                    TimerRuleManager man = TimerRuleManager.getInstance();
-                    man.triggerPeriodic(key);
-                }
-            }, timer.interval, timer.interval, TimeUnit.MILLISECONDS);
-        } else {
-            timer.handle = scheduler.schedule(new Runnable() {
-                public void run() {
-                    TimerRuleManager man = TimerRuleManager.getInstance();
-                    man.triggerOneshot(key);
-                }
-            }, timer.nextTime - new Date().getTime(), TimeUnit.MILLISECONDS);
-        }
+        timer.handle = wheel.add(timer.nextTime, timer);
     }
 
     /**
@@ -325,6 +445,7 @@ class TimerRuleManager {
             } else {
                 rule.count++;
             }
+            dirty = true;
         }
 
         return true;
@@ -350,7 +471,9 @@ class TimerRuleManager {
                 rule.count--;
                 if (rule.count == 0) {
                     rules.remove(key, rule);
+                    removeFromTimer(rule);
                 }
+                dirty = true;
 
                 return true;
             }
@@ -358,6 +481,63 @@ class TimerRuleManager {
         return false;
     }
 
+    /**
+     * Unregister all the rules that belong to the cell.
+     * @param cellId cell id
+     */
+    void unregisterCellRules(String cellId) {
+        synchronized (lockObj) {
+            for (Iterator<TimerRuleInfo> i = rules.values().iterator(); i.hasNext();) {
+                TimerRuleInfo rule = i.next();
+                if (cellId.equals(rule.cellId)) {
+                    rule.count = 0;
+                    i.remove();
+                    removeFromTimer(rule);
+                    dirty = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the IDs of the cells that have timer rules.
+     * @return cell IDs
+     */
+    Set<String> getCellIds() {
+        Set<String> cellIds = new HashSet<>();
+        synchronized (lockObj) {
+            for (TimerRuleInfo rule : rules.values()) {
+                cellIds.add(rule.cellId);
+            }
+        }
+        return cellIds;
+    }
+
+    /**
+     * Remove the rule from its timer, and cancel the timer if no rule is left.
+     * Call in synchronized (lockObj).
+     * @param rule rule unregistered
+     */
+    private void removeFromTimer(TimerRuleInfo rule) {
+        for (Iterator<TimerInfo> i = timerMap.values().iterator(); i.hasNext();) {
+            TimerInfo timer = i.next();
+            List<TimerRuleInfo> ruleList = timer.ruleMap.get(rule.cellId);
+            if (ruleList == null || !ruleList.remove(rule)) {
+                continue;
+            }
+            if (ruleList.isEmpty()) {
+                timer.ruleMap.remove(rule.cellId);
+            }
+            if (timer.ruleMap.isEmpty()) {
+                if (timer.handle != null) {
+                    wheel.cancel(timer.handle);
+                }
+                i.remove();
+            }
+            return;
+        }
+    }
+
     /**
      * Get timer list managed on TimerRuleManager.
      * @param cell target cell object
@@ -0,0 +1,141 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.rule;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import io.personium.common.es.util.PersoniumUUID;
+import io.personium.core.rule.TimerRuleManager.TimerRuleInfo;
+
+/**
+ * File keeping the timer rules of this unit, so that the timers are restored on startup
+ * without loading the rules of all cells.
+ * <p>
+ * The rules are written in a compressed binary form, to a temporary file that replaces the table at once.
+ */
+class TimerTable {
+
+    /** Identifies the format of the table. */
+    private static final int MAGIC = 0x50544d31;
+
+    private final File file;
+
+    /**
+     * Constructor.
+     * @param file file of the table
+     */
+    TimerTable(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Write the rules.
+     * @param rules timer rules
+     * @throws IOException failed to write
+     */
+    void save(Collection<TimerRuleInfo> rules) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs() && !dir.exists()) {
+            throw new IOException("Failed to create directory. " + dir.getPath());
+        }
+        File tmp = new File(dir, file.getName() + "." + PersoniumUUID.randomUUID());
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(new FileOutputStream(tmp))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(rules.size());
+                for (TimerRuleInfo rule : rules) {
+                    writeString(out, rule.type);
+                    writeString(out, rule.object);
+                    writeString(out, rule.info);
+                    writeString(out, rule.cellId);
+                    writeString(out, rule.boxId);
+                    writeString(out, rule.subject);
+                    out.writeLong(rule.count);
+                }
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    /**
+     * Read the rules.
+     * @return timer rules. null if the table does not exist.
+     * @throws IOException failed to read, or not a table
+     */
+    List<TimerRuleInfo> load() throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a timer table. " + file.getPath());
+            }
+            int size = in.readInt();
+            List<TimerRuleInfo> rules = new ArrayList<TimerRuleInfo>(size);
+            for (int i = 0; i < size; i++) {
+                TimerRuleInfo rule = new TimerRuleInfo();
+                rule.type = readString(in);
+                rule.object = readString(in);
+                rule.info = readString(in);
+                rule.cellId = readString(in);
+                rule.boxId = readString(in);
+                rule.subject = readString(in);
+                rule.count = in.readLong();
+                rules.add(rule);
+            }
+            return rules;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return in.readUTF();
+    }
+}
@@ -0,0 +1,195 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.rule;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Hashed hierarchical timing wheel.
+ * <p>
+ * Level 0 has buckets of one tick, and each upper level has buckets as long as the whole lower level.
+ * A timeout is put in the bucket of the lowest level that covers its expiration, and moved down
+ * to the lower levels when the time of its bucket comes, until it expires on level 0.
+ * Adding and cancelling take constant time, and the time advances by ticks regardless of the number of timeouts.
+ * Timeouts beyond the top level are put in the top level and moved again when their bucket comes.
+ * @param <T> type of the value of timeouts
+ */
+class TimingWheel<T> {
+
+    /**
+     * Timeout on the wheel.
+     * @param <T> type of the value
+     */
+    static final class Timeout<T> {
+        private final long expiration;
+        private final T value;
+        private Set<Timeout<T>> bucket;
+
+        private Timeout(long expiration, T value) {
+            this.expiration = expiration;
+            this.value = value;
+        }
+
+        /**
+         * @return expiration time (msec)
+         */
+        long getExpiration() {
+            return expiration;
+        }
+
+        /**
+         * @return value
+         */
+        T getValue() {
+            return value;
+        }
+    }
+
+    private final long tickMillis;
+    private final int wheelSize;
+    /** Length of a bucket of each level (msec). */
+    private final long[] spans;
+    /** Buckets of each level. */
+    private final List<List<Set<Timeout<T>>>> levels = new ArrayList<List<Set<Timeout<T>>>>();
+    /** Timeouts expired when added, returned on the next advance. */
+    private final List<Timeout<T>> expired = new ArrayList<Timeout<T>>();
+
+    /** Start of the current tick. */
+    private long currentTime;
+    private int size = 0;
+
+    /**
+     * Constructor.
+     * @param tickMillis length of a tick (msec)
+     * @param wheelSize number of the buckets of each level
+     * @param levelNum number of the levels
+     * @param startTime time to start from (msec)
+     */
+    TimingWheel(long tickMillis, int wheelSize, int levelNum, long startTime) {
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.spans = new long[levelNum];
+        long span = tickMillis;
+        for (int i = 0; i < levelNum; i++) {
+            spans[i] = span;
+            List<Set<Timeout<T>>> buckets = new ArrayList<Set<Timeout<T>>>(wheelSize);
+            for (int j = 0; j < wheelSize; j++) {
+                buckets.add(new HashSet<Timeout<T>>());
+            }
+            levels.add(buckets);
+            span *= wheelSize;
+        }
+        this.currentTime = startTime - startTime % tickMillis;
+    }
+
+    /**
+     * Add a timeout.
+     * @param expiration expiration time (msec)
+     * @param value value
+     * @return timeout to cancel
+     */
+    synchronized Timeout<T> add(long expiration, T value) {
+        Timeout<T> timeout = new Timeout<T>(expiration, value);
+        size++;
+        place(timeout);
+        return timeout;
+    }
+
+    /**
+     * Cancel the timeout.
+     * @param timeout timeout added
+     * @return true if cancelled, false if already expired or cancelled
+     */
+    synchronized boolean cancel(Timeout<T> timeout) {
+        if (timeout.bucket != null) {
+            timeout.bucket.remove(timeout);
+            timeout.bucket = null;
+            size--;
+            return true;
+        }
+        if (expired.remove(timeout)) {
+            size--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Advance the time and take the expired timeouts.
+     * @param now current time (msec)
+     * @return timeouts expired, in no particular order
+     */
+    synchronized List<Timeout<T>> advance(long now) {
+        List<Timeout<T>> ret = new ArrayList<Timeout<T>>(expired);
+        expired.clear();
+        while (currentTime + tickMillis <= now) {
+            currentTime += tickMillis;
+            // Move the timeouts of the buckets that came, from the upper levels.
+            for (int i = spans.length - 1; i >= 0; i--) {
+                if (currentTime % spans[i] != 0) {
+                    continue;
+                }
+                Set<Timeout<T>> bucket = levels.get(i).get(index(currentTime, i));
+                if (bucket.isEmpty()) {
+                    continue;
+                }
+                List<Timeout<T>> timeouts = new ArrayList<Timeout<T>>(bucket);
+                bucket.clear();
+                for (Timeout<T> timeout : timeouts) {
+                    timeout.bucket = null;
+                    place(timeout);
+                }
+            }
+            ret.addAll(expired);
+            expired.clear();
+        }
+        size -= ret.size();
+        return ret;
+    }
+
+    /**
+     * @return number of the timeouts not expired nor cancelled
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    private void place(Timeout<T> timeout) {
+        if (timeout.expiration < currentTime + tickMillis) {
+            expired.add(timeout);
+            return;
+        }
+        int level = spans.length - 1;
+        for (int i = 0; i < spans.length; i++) {
+            long levelStart = currentTime - currentTime % spans[i];
+            if (timeout.expiration < levelStart + spans[i] * wheelSize) {
+                level = i;
+                break;
+            }
+        }
+        Set<Timeout<T>> bucket = levels.get(level).get(index(timeout.expiration, level));
+        bucket.add(timeout);
+        timeout.bucket = bucket;
+    }
+
+    private int index(long time, int level) {
+        return (int) ((time / spans[level]) % wheelSize);
+    }
+}
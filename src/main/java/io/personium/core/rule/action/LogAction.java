@@ -16,19 +16,15 @@
  */
 package io.personium.core.rule.action;
 
-import java.util.Date;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.slf4j.MDC;
-
-import io.personium.common.es.util.IndexNameEncoder;
-import io.personium.core.model.Cell;
 import io.personium.core.event.PersoniumEvent;
+import io.personium.core.eventlog.EventLogRecord;
+import io.personium.core.eventlog.EventLogWriter;
+import io.personium.core.model.Cell;
 import io.personium.core.utils.ResourceUtils;
 
 /**
  * Action for log action.
+ * Events are written to the event log of the cell by EventLogWriter.
  */
 public class LogAction extends Action {
     /**
@@ -40,75 +36,32 @@ public class LogAction extends Action {
         ERROR
     };
 
-    private static final int IDX_1ST_START = 0;
-    private static final int IDX_1ST_END = 2;
-    private static final int IDX_2ND_START = 2;
-    private static final int IDX_2ND_END = 4;
-    private Logger logger;
+    private Cell cell;
     private LEVEL level;
 
-    /**
-     * Constructor.
-     */
-    private LogAction() {
-        // get Logger per instance
-        this.logger = LoggerFactory.getLogger("io.personium.core.rule.action.LogAction");
-    }
-
     /**
      * Constructor.
      * @param cell target cell object
      * @param level log level
      */
     public LogAction(final Cell cell, LEVEL level) {
-        this();
-        String unitUserName = getUnitUserName(cell.getOwner());
-        String prefix1 = cell.getId().substring(IDX_1ST_START, IDX_1ST_END);
-        String prefix2 = cell.getId().substring(IDX_2ND_START, IDX_2ND_END);
-        String path = new StringBuilder(unitUserName)
-                .append("/")
-                .append(prefix1)
-                .append("/")
-                .append(prefix2)
-                .append("/")
-                .append(cell.getId())
-                .toString();
-
-        // set eventlog_path to MDC
-        MDC.put("eventlog_path", path);
-
+        this.cell = cell;
         this.level = level;
     }
 
-    // clear eventlog_path from MDC
-    private void clearEventLogPath() {
-        MDC.remove("eventlog_path");
-    }
-
-    /**
-     * get UnitUserName.
-     * @param owner owner of cell
-     * @return UnitUserName
-     */
-    private String getUnitUserName(final String owner) {
-        String unitUserName = null;
-        if (owner == null) {
-            unitUserName = "anon";
-        } else {
-            unitUserName = IndexNameEncoder.encodeEsIndexName(owner);
-        }
-        return unitUserName;
-    }
-
     // output log in accordance with log level
     private void outputLog(PersoniumEvent event, String requestKey) {
+        String levelString;
         if (level == LEVEL.INFO) {
-            logger.info(createLogContent(event, "[INFO ]", requestKey));
+            levelString = "[INFO ]";
         } else if (level == LEVEL.WARN) {
-            logger.warn(createLogContent(event, "[WARN ]", requestKey));
+            levelString = "[WARN ]";
         } else if (level == LEVEL.ERROR) {
-            logger.error(createLogContent(event, "[ERROR]", requestKey));
+            levelString = "[ERROR]";
+        } else {
+            return;
         }
+        EventLogWriter.write(cell, new EventLogRecord(event, levelString, requestKey));
     }
 
     /**
@@ -123,7 +76,6 @@ public class LogAction extends Action {
             requestKey = ResourceUtils.validateXPersoniumRequestKey(requestKey);
         }
         outputLog(event, requestKey);
-        clearEventLogPath();
         return null;
     }
 
@@ -150,42 +102,7 @@ public class LogAction extends Action {
             }
             outputLog(event, requestKey);
         }
-        clearEventLogPath();
         return null;
     }
 
-    // create log from event
-    private String createLogContent(PersoniumEvent event, String levelString, String requestKey) {
-        return new StringBuilder(new Date(event.getTime()).toInstant().toString())
-                .append(",")
-                .append(levelString)
-                .append(",")
-                .append(makeCsvItem(requestKey))
-                .append(",")
-                .append(makeCsvItem(event.getExternal().toString()))
-                .append(",")
-                .append(makeCsvItem(event.getSchema()))
-                .append(",")
-                .append(makeCsvItem(event.getSubject()))
-                .append(",")
-                .append(makeCsvItem(event.getType()))
-                .append(",")
-                .append(makeCsvItem(event.getObject()))
-                .append(",")
-                .append(makeCsvItem(event.getInfo()))
-                .toString();
-    }
-
-    // convert to CSV format
-    private String makeCsvItem(String item) {
-        if (null == item) {
-            return item;
-        }
-        String replacedItem = item.replaceAll("\"", "\"\"");
-        return new StringBuilder("\"")
-                .append(replacedItem)
-                .append("\"")
-                .toString();
-    }
-
 }
@@ -22,9 +22,7 @@ import java.nio.file.FileVisitor;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.io.Charsets;
@@ -36,7 +34,6 @@ import org.slf4j.LoggerFactory;
 
 import io.personium.common.es.response.PersoniumGetResponse;
 import io.personium.common.es.response.PersoniumSearchHit;
-import io.personium.common.es.response.PersoniumSearchResponse;
 import io.personium.core.PersoniumCoreException;
 import io.personium.core.PersoniumUnitConfig;
 import io.personium.core.event.EventBus;
@@ -49,8 +46,8 @@ import io.personium.core.model.impl.es.EsModel;
 import io.personium.core.model.impl.es.QueryMapFactory;
 import io.personium.core.model.impl.es.accessor.DataSourceAccessor;
 import io.personium.core.model.impl.es.accessor.EntitySetAccessor;
+import io.personium.core.model.impl.es.accessor.SearchHitIterator;
 import io.personium.core.model.impl.es.doc.OEntityDocHandler;
-import io.personium.core.model.impl.es.odata.EsQueryHandler;
 import io.personium.core.model.impl.fs.DavCmpFsImpl;
 import io.personium.core.model.impl.fs.DavMetadataFile;
 import io.personium.core.model.lock.CellLockManager;
@@ -254,20 +251,9 @@ public class SnapshotFileExportRunner implements Runnable {
         Map<String, Object> filtered = new HashMap<String, Object>();
         filtered = QueryMapFactory.filteredQuery(null, filter);
 
-        // Specifying sort
-        List<Map<String, Object>> sortList = new ArrayList<Map<String, Object>>();
-        sortList.add(QueryMapFactory.sortQuery("_type", EsQueryHandler.SORT_ASC));
-        sortList.add(QueryMapFactory.sortQuery(OEntityDocHandler.KEY_BOX_ID, EsQueryHandler.SORT_ASC));
-        sortList.add(QueryMapFactory.sortQuery(OEntityDocHandler.KEY_NODE_ID, EsQueryHandler.SORT_ASC));
-        sortList.add(QueryMapFactory.sortQuery(OEntityDocHandler.KEY_ENTITY_ID, EsQueryHandler.SORT_ASC));
-        sortList.add(QueryMapFactory.sortQuery("_uid", EsQueryHandler.SORT_ASC));
-
         // Generate query
-        long queryFrom = 0L;
+        // The scan reads in _uid order, which keeps the documents of the same type together.
         Map<String, Object> query = QueryMapFactory.query(filtered);
-        query.put("sort", sortList);
-        query.put("from", queryFrom);
-        query.put("size", SEARCH_LIMIT);
 
         // Get index accessor of Es
         String indexName = targetCell.getDataBundleName();
@@ -275,17 +261,12 @@ public class SnapshotFileExportRunner implements Runnable {
 
         // At least create an empty file.
         snapshotFile.createDataPJson();
-        while (true) {
-            // Search Es
-            PersoniumSearchResponse response = dataSourceAccessor.searchForIndex(
-                    targetCell.getId(), query);
-            if (response.getHits().getCount() == 0) {
-                break;
-            }
-
+        try (SearchHitIterator hits = dataSourceAccessor.scanForIndex(targetCell.getId(), query)) {
             JSONObject resultJson = new JSONObject();
             StringBuilder builder = new StringBuilder();
-            for (PersoniumSearchHit hit : response.getHits().getHits()) {
+            int count = 0;
+            while (hits.hasNext()) {
+                PersoniumSearchHit hit = hits.next();
                 resultJson.put("_index", hit.getIndex());
                 resultJson.put("_type", hit.getType());
                 resultJson.put("_id", hit.getId());
@@ -295,22 +276,31 @@ public class SnapshotFileExportRunner implements Runnable {
                 builder.append(System.lineSeparator());
 
                 resultJson.clear();
+                count++;
+                if (count >= SEARCH_LIMIT) {
+                    writeDataPJson(snapshotFile, builder, count);
+                    count = 0;
+                }
             }
-            snapshotFile.writeDataPJson(builder.toString());
-
-            progressInfo.addDelta(response.getHits().getCount());
-            progressInfo.writeToCache();
-
-            // If the search result is smaller than LIMIT, the processing is terminated
-            if (SEARCH_LIMIT > response.getHits().getCount()) {
-                break;
+            if (count > 0) {
+                writeDataPJson(snapshotFile, builder, count);
             }
-            // If the search result is LIMIT, search again from the following
-            queryFrom += SEARCH_LIMIT;
-            query.put("from", queryFrom);
         }
     }
 
+    /**
+     * Write the buffered data to the zip file and report progress.
+     * @param snapshotFile snapshot file
+     * @param builder buffered data. Cleared after writing.
+     * @param count number of buffered documents
+     */
+    private void writeDataPJson(SnapshotFile snapshotFile, StringBuilder builder, int count) {
+        snapshotFile.writeDataPJson(builder.toString());
+        builder.setLength(0);
+        progressInfo.addDelta(count);
+        progressInfo.writeToCache();
+    }
+
     /**
      * Extract data from WebDAV and add it to the zip file.
      * Encrypted data is decrypted.
@@ -32,6 +32,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.personium.core.model.file.DataCryptor;
+import io.personium.core.model.impl.fs.DavCmpFsImpl;
 import io.personium.core.model.impl.fs.DavMetadataFile;
 
 /**
@@ -93,18 +94,26 @@ public class SnapshotFileExportVisitor implements FileVisitor<Path> {
             DavMetadataFile metadata = DavMetadataFile.newInstance(file.toFile());
             metadata.load();
             String encryptionType = metadata.getEncryptionType();
-            if (encryptionType != null
+            boolean encrypted = encryptionType != null
                     && !encryptionType.isEmpty()
-                    && !DataCryptor.ENCRYPTION_TYPE_NONE.equals(encryptionType)) {
-                metadata.setEncryptionType(DataCryptor.ENCRYPTION_TYPE_NONE);
+                    && !DataCryptor.ENCRYPTION_TYPE_NONE.equals(encryptionType);
+            boolean versioned = !DavCmpFsImpl.CONTENT_FILE_NAME.equals(metadata.getContentFileName());
+            if (encrypted || versioned) {
+                if (encrypted) {
+                    metadata.setEncryptionType(DataCryptor.ENCRYPTION_TYPE_NONE);
+                }
+                // Only the content file with the fixed name is exported.
+                metadata.setContentFileName(null);
                 try (BufferedWriter metadataWriter = Files.newBufferedWriter(pathInZip, Charsets.UTF_8)) {
                     metadataWriter.write(metadata.toJSONString());
                 }
             } else {
                 Files.copy(file, pathInZip);
             }
-        } else {
+        } else if (DavCmpFsImpl.CONTENT_FILE_NAME.equals(file.getFileName().toString())) {
             // Content file
+            // The content file with the fixed name always holds the current version.
+            // Other versions of the content and temporary files are not exported.
             // Load Metadata to determine whether it is encrypted or not
             Path metadataPath = file.getParent().resolve(DavMetadataFile.DAV_META_FILE_NAME);
             DavMetadataFile metadata = DavMetadataFile.newInstance(metadataPath.toFile());
@@ -42,6 +42,7 @@ import org.slf4j.LoggerFactory;
 import io.personium.common.es.EsBulkRequest;
 import io.personium.core.PersoniumCoreException;
 import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.auth.BasicAuthCache;
 import io.personium.core.event.EventBus;
 import io.personium.core.event.PersoniumEvent;
 import io.personium.core.event.PersoniumEventType;
@@ -52,6 +53,8 @@ import io.personium.core.model.impl.es.EsModel;
 import io.personium.core.model.impl.es.accessor.CellAccessor;
 import io.personium.core.model.impl.es.accessor.CellDataAccessor;
 import io.personium.core.model.impl.es.accessor.DataSourceAccessor;
+import io.personium.core.model.impl.es.cache.CellCtlCache;
+import io.personium.core.model.impl.es.cache.RoleUrlCache;
 import io.personium.core.model.impl.es.doc.OEntityDocHandler;
 import io.personium.core.model.lock.CellLockManager;
 import io.personium.core.rs.odata.MapBulkRequest;
@@ -137,6 +140,10 @@ public class SnapshotFileImportRunner implements Runnable {
         } finally {
             // Delete progress info.
             progressInfo.deleteFromCache();
+            // Discard the cell control objects cached before the import.
+            BasicAuthCache.clear(targetCell.getId());
+            RoleUrlCache.clear(targetCell.getId());
+            CellCtlCache.invalidate(targetCell.getId());
             // Unlock the cell.
             CellLockManager.setCellStatus(targetCell.getId(), CellLockManager.STATUS.NORMAL);
             log.info(String.format("End import. CellName:%s", targetCell.getName()));
@@ -27,6 +27,7 @@ import org.slf4j.LoggerFactory;
 
 import io.personium.core.PersoniumCoreLog;
 import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.metrics.RequestTiming;
 import net.spy.memcached.ConnectionFactoryBuilder;
 import net.spy.memcached.DefaultConnectionFactory;
 
@@ -73,6 +74,7 @@ public class MemcachedClient implements CacheClient {
     @Override
     @SuppressWarnings("unchecked")
     public <T> T get(String key, Class<T> clazz) {
+        RequestTiming.begin(RequestTiming.Phase.CACHE);
         try {
             T ret = (T) this.spyClient.get(key);
             if (isReportError) {
@@ -82,6 +84,8 @@ public class MemcachedClient implements CacheClient {
         } catch (RuntimeException e) {
             log.info(e.getMessage(), e);
             throw new MemcachedClientException(e);
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.CACHE);
         }
     }
 
@@ -93,6 +97,7 @@ public class MemcachedClient implements CacheClient {
      * @return Returns True on successful processing / False on failure.
      */
     public Boolean add(String key, int expiresIn, Object object) {
+        RequestTiming.begin(RequestTiming.Phase.CACHE);
         try {
             return this.spyClient.add(key, expiresIn, object).get();
         } catch (InterruptedException e) {
@@ -102,6 +107,8 @@ public class MemcachedClient implements CacheClient {
         } catch (RuntimeException e) {
             log.info(e.getMessage(), e);
             throw new MemcachedClientException(e);
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.CACHE);
         }
         return Boolean.FALSE;
     }
@@ -125,6 +132,7 @@ public class MemcachedClient implements CacheClient {
      */
     @Override
     public Boolean put(String key, int expiresIn, Object object) {
+        RequestTiming.begin(RequestTiming.Phase.CACHE);
         try {
             if (!this.spyClient.replace(key, expiresIn, object).get()) {
                 if (!this.spyClient.add(key, expiresIn, object).get()) { //NOPMD - To maintain readability
@@ -141,6 +149,8 @@ public class MemcachedClient implements CacheClient {
         } catch (RuntimeException e) {
             log.info(e.getMessage(), e);
             throw new MemcachedClientException(e);
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.CACHE);
         }
         return false;
     }
@@ -149,6 +159,7 @@ public class MemcachedClient implements CacheClient {
      * Clear all caches.
      */
     public void clear() {
+        RequestTiming.begin(RequestTiming.Phase.CACHE);
         try {
             this.spyClient.flush().get();
         } catch (InterruptedException e) {
@@ -158,6 +169,8 @@ public class MemcachedClient implements CacheClient {
         } catch (RuntimeException e) {
             log.info(e.getMessage(), e);
             throw new MemcachedClientException(e);
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.CACHE);
         }
     }
 
@@ -167,6 +180,7 @@ public class MemcachedClient implements CacheClient {
      */
     @Override
     public void delete(String key) {
+        RequestTiming.begin(RequestTiming.Phase.CACHE);
         try {
             this.spyClient.delete(key).get();
         } catch (InterruptedException e) {
@@ -176,6 +190,8 @@ public class MemcachedClient implements CacheClient {
         } catch (RuntimeException e) {
             log.info(e.getMessage(), e);
             throw new MemcachedClientException(e);
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.CACHE);
         }
     }
 
@@ -186,12 +202,15 @@ public class MemcachedClient implements CacheClient {
      * @return Returns true if creation succeeded or already exists, false if it fails
      */
     public Boolean createLongValue(String key, long initValue) {
+        RequestTiming.begin(RequestTiming.Phase.CACHE);
         try {
             long count = this.spyClient.incr(key, 0, initValue);
             return count == initValue;
         } catch (RuntimeException e) {
             log.info(e.getMessage(), e);
             throw new MemcachedClientException(e);
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.CACHE);
         }
     }
 
@@ -201,12 +220,15 @@ public class MemcachedClient implements CacheClient {
      * @return Specified key value
      */
     public long getLongValue(String key) {
+        RequestTiming.begin(RequestTiming.Phase.CACHE);
         try {
             //Acquire the current set value by incrementing with increment 0
             return this.spyClient.incr(key, 0);
         } catch (RuntimeException e) {
             log.info(e.getMessage(), e);
             throw new MemcachedClientException(e);
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.CACHE);
         }
     }
 
@@ -216,11 +238,14 @@ public class MemcachedClient implements CacheClient {
      * @return Value after increment
      */
     public long incrementLongValue(String key) {
+        RequestTiming.begin(RequestTiming.Phase.CACHE);
         try {
             return this.spyClient.incr(key, 1, 1);
         } catch (RuntimeException e) {
             log.info(e.getMessage(), e);
             throw new MemcachedClientException(e);
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.CACHE);
         }
     }
 
@@ -230,6 +255,7 @@ public class MemcachedClient implements CacheClient {
      * @return Value after decrementing
      */
     public long decrementLongValue(String key) {
+        RequestTiming.begin(RequestTiming.Phase.CACHE);
         try {
             long count = this.spyClient.decr(key, 1);
             if (count == 0) {
@@ -239,6 +265,8 @@ public class MemcachedClient implements CacheClient {
         } catch (RuntimeException e) {
             log.info(e.getMessage(), e);
             throw new MemcachedClientException(e);
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.CACHE);
         }
     }
 
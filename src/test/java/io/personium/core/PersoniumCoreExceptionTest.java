@@ -72,6 +72,35 @@ public final class PersoniumCoreExceptionTest {
         Assert.assertEquals(Severity.WARN, PersoniumCoreException.decideSeverity(200));
     }
 
+    /**
+     * Test params().
+     * normal.
+     * Exceptions of the expected outcomes are created without the stack trace.
+     */
+    @Test
+    public void params_Normal_expected_outcome_has_no_stack_trace() {
+        PersoniumCoreException e = PersoniumCoreException.Dav.BOX_NOT_FOUND.params("https://fqdn/cell/box");
+        Assert.assertEquals(0, e.getStackTrace().length);
+        Assert.assertEquals(404, e.getStatus());
+
+        PersoniumCoreAuthzException authz = PersoniumCoreAuthzException.AUTHORIZATION_REQUIRED.realm("https://fqdn/");
+        Assert.assertEquals(0, authz.getStackTrace().length);
+    }
+
+    /**
+     * Test reason().
+     * normal.
+     * Exceptions of server errors keep the stack trace and the cause.
+     */
+    @Test
+    public void reason_Normal_server_error_has_stack_trace() {
+        RuntimeException cause = new RuntimeException("cause");
+        PersoniumCoreException e = PersoniumCoreException.OData.DETECTED_INTERNAL_DATA_CONFLICT.reason(cause);
+        Assert.assertTrue(e.getStackTrace().length > 0);
+        Assert.assertSame(cause, e.getCause());
+        Assert.assertNotNull(e.getMessage());
+    }
+
     /**
      * メッセージコードのフォーマット異常.
      */
@@ -0,0 +1,166 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.auth;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.common.auth.token.Role;
+import io.personium.core.model.ctl.Account;
+import io.personium.core.model.ctl.ReceivedMessage;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for BasicAuthCache.
+ */
+@Category({ Unit.class })
+public class BasicAuthCacheTest {
+
+    private static final long EXPIRES_IN = 10000;
+    private static final long NOW = 1500000000000L;
+
+    /**
+     * Test get().
+     * normal.
+     * Cached authentication is returned only for the same password until expired.
+     */
+    @Test
+    public void get_Normal() {
+        BasicAuthCache cache = new BasicAuthCache(10, EXPIRES_IN);
+        cache.put("cell", "user", "pass", cache.generation("cell"), "accountId", new ArrayList<Role>(), NOW);
+
+        // Run method and confirm result
+        BasicAuthCache.Entry entry = cache.get("cell", "user", "pass", NOW + 1);
+        assertThat(entry, is(notNullValue()));
+        assertThat(entry.getAccountId(), is("accountId"));
+        assertThat(entry.getRoles().size(), is(0));
+        assertThat(cache.get("cell", "user", "wrong", NOW + 1), is(nullValue()));
+        assertThat(cache.get("other", "user", "pass", NOW + 1), is(nullValue()));
+        assertThat(cache.get("cell", "user", "pass", NOW + EXPIRES_IN), is(nullValue()));
+    }
+
+    /**
+     * Test invalidate().
+     * normal.
+     * Authentication of the cell is discarded.
+     */
+    @Test
+    public void invalidate_Normal() {
+        BasicAuthCache cache = new BasicAuthCache(10, EXPIRES_IN);
+        cache.put("cell", "user", "pass", cache.generation("cell"), "accountId", null, NOW);
+        cache.put("other", "user", "pass", cache.generation("other"), "accountId", null, NOW);
+
+        // Run method
+        cache.invalidate("cell");
+
+        // Confirm result
+        assertThat(cache.get("cell", "user", "pass", NOW + 1), is(nullValue()));
+        assertThat(cache.get("other", "user", "pass", NOW + 1), is(notNullValue()));
+    }
+
+    /**
+     * Test put().
+     * normal.
+     * Authentication verified before the change of the cell is not cached.
+     */
+    @Test
+    public void put_Normal_changed_meanwhile() {
+        BasicAuthCache cache = new BasicAuthCache(10, EXPIRES_IN);
+        long generation = cache.generation("cell");
+        cache.invalidate("cell");
+
+        // Run method
+        cache.put("cell", "user", "pass", generation, "accountId", null, NOW);
+
+        // Confirm result
+        assertThat(cache.get("cell", "user", "pass", NOW + 1), is(nullValue()));
+    }
+
+    /**
+     * Test put().
+     * normal.
+     * The least recently used authentication is discarded over the maximum size.
+     */
+    @Test
+    public void put_Normal_max_size() {
+        BasicAuthCache cache = new BasicAuthCache(2, EXPIRES_IN);
+        cache.put("cell", "user1", "pass", 0, "account1", null, NOW);
+        cache.put("cell", "user2", "pass", 0, "account2", null, NOW);
+        cache.get("cell", "user1", "pass", NOW);
+
+        // Run method
+        cache.put("cell", "user3", "pass", 0, "account3", null, NOW);
+
+        // Confirm result
+        assertThat(cache.get("cell", "user1", "pass", NOW), is(notNullValue()));
+        assertThat(cache.get("cell", "user2", "pass", NOW), is(nullValue()));
+        assertThat(cache.get("cell", "user3", "pass", NOW), is(notNullValue()));
+    }
+
+    /**
+     * Test clear().
+     * normal.
+     * Authentication verified by a read racing a write of the Account is not served after the write.
+     */
+    @Test
+    public void clear_Normal_read_racing_write() {
+        BasicAuthCache cache = BasicAuthCache.getInstance();
+        String cellId = "raceCell";
+        long now = System.currentTimeMillis();
+
+        // The read verifies the old password while the write is in progress, and caches it before the write ends
+        long generation = cache.generation(cellId);
+        cache.put(cellId, "user", "oldPass", generation, "accountId", null, now);
+
+        // Run method (the write ends)
+        BasicAuthCache.clear(cellId, Arrays.asList(Account.EDM_TYPE_NAME));
+
+        // Confirm result
+        assertThat(cache.get(cellId, "user", "oldPass", now + 1), is(nullValue()));
+
+        // The read caches it after the write ends
+        cache.put(cellId, "user", "oldPass", generation, "accountId", null, now);
+        assertThat(cache.get(cellId, "user", "oldPass", now + 1), is(nullValue()));
+    }
+
+    /**
+     * Test clear().
+     * normal.
+     * Authentication is kept when the entity sets it does not depend on are written.
+     */
+    @Test
+    public void clear_Normal_unrelated_entity_set() {
+        BasicAuthCache cache = BasicAuthCache.getInstance();
+        String cellId = "unrelatedCell";
+        long now = System.currentTimeMillis();
+        cache.put(cellId, "user", "pass", cache.generation(cellId), "accountId", null, now);
+
+        // Run method
+        BasicAuthCache.clear(cellId, Arrays.asList(ReceivedMessage.EDM_TYPE_NAME));
+
+        // Confirm result
+        assertThat(cache.get(cellId, "user", "pass", now + 1), is(notNullValue()));
+    }
+}
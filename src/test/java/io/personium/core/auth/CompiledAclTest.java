@@ -0,0 +1,140 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.auth;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.common.auth.token.Role;
+import io.personium.core.model.jaxb.Acl;
+import io.personium.core.model.jaxb.ObjectIo;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for CompiledAcl.
+ */
+@Category({ Unit.class })
+public class CompiledAclTest {
+
+    private static final String CELL_URL = "https://fqdn/aclTest/";
+
+    private static CompiledAcl compile(String aces) throws Exception {
+        String aclString = "<D:acl xmlns:D='DAV:' xml:base='" + CELL_URL + "__role/__/'>" + aces + "</D:acl>";
+        Acl acl = ObjectIo.unmarshal(new StringReader(aclString), Acl.class);
+        return acl.getCompiled();
+    }
+
+    private static String ace(String principal, String... privileges) {
+        StringBuilder sb = new StringBuilder("<D:ace><D:principal>").append(principal)
+                .append("</D:principal><D:grant>");
+        for (String privilege : privileges) {
+            sb.append("<D:privilege><D:").append(privilege).append("/></D:privilege>");
+        }
+        return sb.append("</D:grant></D:ace>").toString();
+    }
+
+    private static List<Role> roles(String... names) {
+        List<Role> ret = new ArrayList<Role>();
+        for (String name : names) {
+            ret.add(new Role(name, "__", null, CELL_URL));
+        }
+        return ret;
+    }
+
+    /**
+     * Test allows().
+     * normal.
+     * Principal all gives the privileges and the privileges they include to anyone.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void allows_Normal_principal_all() throws Exception {
+        CompiledAcl acl = compile(ace("<D:all/>", "read"));
+
+        // Run method and confirm result
+        assertThat(acl.allows(null, BoxPrivilege.READ, CELL_URL), is(true));
+        assertThat(acl.allows(null, BoxPrivilege.READ_PROPERTIES, CELL_URL), is(true));
+        assertThat(acl.allows(null, BoxPrivilege.WRITE, CELL_URL), is(false));
+        assertThat(acl.allows(roles("role1"), BoxPrivilege.READ, CELL_URL), is(true));
+    }
+
+    /**
+     * Test allows().
+     * normal.
+     * Privileges are given only to the role of the principal.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void allows_Normal_role() throws Exception {
+        CompiledAcl acl = compile(ace("<D:href>role1</D:href>", "write", "read-acl"));
+
+        // Run method and confirm result
+        assertThat(acl.allows(roles("role1"), BoxPrivilege.WRITE_CONTENT, CELL_URL), is(true));
+        assertThat(acl.allows(roles("role1"), BoxPrivilege.READ_ACL, CELL_URL), is(true));
+        assertThat(acl.allows(roles("role1"), BoxPrivilege.READ, CELL_URL), is(false));
+        assertThat(acl.allows(roles("role2", "role1"), BoxPrivilege.WRITE, CELL_URL), is(true));
+        assertThat(acl.allows(roles("role2"), BoxPrivilege.WRITE, CELL_URL), is(false));
+        assertThat(acl.allows(roles(), BoxPrivilege.WRITE, CELL_URL), is(false));
+        assertThat(acl.allows(null, BoxPrivilege.WRITE, CELL_URL), is(false));
+    }
+
+    /**
+     * Test allows().
+     * normal.
+     * Root gives all the privileges.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void allows_Normal_root() throws Exception {
+        CompiledAcl acl = compile(ace("<D:href>role1</D:href>", "root"));
+
+        // Run method and confirm result
+        assertThat(acl.allows(roles("role1"), CellPrivilege.ACL, CELL_URL), is(true));
+        assertThat(acl.allows(roles("role1"), BoxPrivilege.ALTER_SCHEMA, CELL_URL), is(true));
+        assertThat(acl.allows(roles("role2"), CellPrivilege.ACL, CELL_URL), is(false));
+    }
+
+    /**
+     * Test includes().
+     * normal.
+     * Result is the same as following the parents.
+     */
+    @Test
+    public void includes_Normal() {
+        List<Privilege> privileges = new ArrayList<Privilege>();
+        privileges.addAll(CellPrivilege.getPrivilegeMap().values());
+        privileges.addAll(BoxPrivilege.getPrivilegeMap().values());
+        for (Privilege p : privileges) {
+            for (Privilege q : privileges) {
+                boolean expected = false;
+                for (Privilege ancestor = q; ancestor != null; ancestor = ancestor.getParent()) {
+                    if (ancestor == p) {
+                        expected = true;
+                    }
+                }
+                assertThat(p.getName() + " includes " + q.getName(), p.includes(q), is(expected));
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.bar;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.io.Charsets;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for BarFileStreamWriter.
+ */
+@Category({ Unit.class })
+public class BarFileStreamWriterTest {
+
+    /** Executor. */
+    private ExecutorService compressor;
+
+    /**
+     * Before.
+     */
+    @Before
+    public void before() {
+        compressor = Executors.newFixedThreadPool(2);
+    }
+
+    /**
+     * After.
+     */
+    @After
+    public void after() {
+        compressor.shutdownNow();
+    }
+
+    /**
+     * Test finish().
+     * normal.
+     * Entries are written in the added order whether they are buffered or not.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void finish_Normal() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] small = createData(10);
+        byte[] large = createData(100);
+
+        // Run method
+        try (BarFileStreamWriter writer = new BarFileStreamWriter(output, compressor, 30)) {
+            writer.initDirCreating();
+            writer.writeManifestJson("{}");
+            writer.createDirectoryInContentsDir(Paths.get("col"));
+            writer.createFileInContentsDir(Paths.get("col", "small1"), toStreamingOutput(small), small.length);
+            writer.createFileInContentsDir(Paths.get("col", "large"), toStreamingOutput(large), large.length);
+            writer.createFileInContentsDir(Paths.get("col", "small2"), toStreamingOutput(small), small.length);
+            writer.writeMetadataXml(Paths.get("odata"), "<edmx/>");
+            writer.finish();
+        }
+
+        // Confirm result
+        List<String> names = new ArrayList<>();
+        List<byte[]> contents = new ArrayList<>();
+        try (ZipArchiveInputStream zip = new ZipArchiveInputStream(
+                new ByteArrayInputStream(output.toByteArray()))) {
+            ZipArchiveEntry entry;
+            while ((entry = zip.getNextZipEntry()) != null) {
+                names.add(entry.getName());
+                contents.add(IOUtils.toByteArray(zip));
+            }
+        }
+        assertThat(names, is(Arrays.asList(
+                "00_meta/",
+                "90_contents/",
+                "00_meta/00_manifest.json",
+                "90_contents/col/",
+                "90_contents/col/small1",
+                "90_contents/col/large",
+                "90_contents/col/small2",
+                "90_contents/odata/00_$metadata.xml")));
+        assertThat(new String(contents.get(2), Charsets.UTF_8), is("{}"));
+        assertThat(contents.get(4), is(small));
+        assertThat(contents.get(5), is(large));
+        assertThat(contents.get(6), is(small));
+        assertThat(new String(contents.get(7), Charsets.UTF_8), is("<edmx/>"));
+    }
+
+    private byte[] createData(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    private StreamingOutput toStreamingOutput(final byte[] data) {
+        return new StreamingOutput() {
+            @Override
+            public void write(OutputStream output) throws IOException {
+                output.write(data);
+            }
+        };
+    }
+}
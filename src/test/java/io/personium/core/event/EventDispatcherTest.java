@@ -0,0 +1,133 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.event;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for EventDispatcher.
+ */
+@Category({ Unit.class })
+public class EventDispatcherTest {
+
+    private static final int LANE_NUM = 4;
+    private static final int CELL_NUM = 10;
+    private static final int EVENT_NUM = 100;
+
+    /**
+     * Dispatcher recording the processed events instead of judging rules.
+     */
+    private static class RecordingDispatcher extends EventDispatcher {
+        private final Map<String, List<String>> processed =
+                Collections.synchronizedMap(new HashMap<String, List<String>>());
+
+        RecordingDispatcher(int laneNum, int queueSize) {
+            super(laneNum, queueSize);
+        }
+
+        @Override
+        void process(PersoniumEvent event) {
+            List<String> list = processed.get(event.getCellId());
+            synchronized (processed) {
+                if (list == null) {
+                    list = new ArrayList<String>();
+                    processed.put(event.getCellId(), list);
+                }
+            }
+            list.add(event.getInfo());
+        }
+    }
+
+    /**
+     * Test dispatch().
+     * normal.
+     * Events of each cell are processed in the dispatched order, and all are notified.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void dispatch_Normal() throws Exception {
+        RecordingDispatcher dispatcher = new RecordingDispatcher(LANE_NUM, 2);
+        dispatcher.start();
+        final CountDownLatch done = new CountDownLatch(CELL_NUM * EVENT_NUM);
+        Runnable onProcessed = new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        };
+
+        // Run method
+        for (int i = 0; i < EVENT_NUM; i++) {
+            for (int c = 0; c < CELL_NUM; c++) {
+                PersoniumEvent event = new PersoniumEvent.Builder().info(Integer.toString(i)).build();
+                event.setCellId("cell" + c);
+                dispatcher.dispatch(event.getCellId(), event, onProcessed);
+            }
+        }
+
+        // Confirm result
+        assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+        for (int c = 0; c < CELL_NUM; c++) {
+            List<String> list = dispatcher.processed.get("cell" + c);
+            assertThat(list.size(), is(EVENT_NUM));
+            for (int i = 0; i < EVENT_NUM; i++) {
+                assertThat(list.get(i), is(Integer.toString(i)));
+            }
+        }
+        long total = 0;
+        for (EventDispatcher.Lane lane : EventDispatcher.getLanes()) {
+            total += lane.getProcessedCount();
+            assertThat(lane.getQueueSize(), is(0));
+            assertThat(lane.getLagMillis(), is(0L));
+        }
+        assertThat(total, is((long) CELL_NUM * EVENT_NUM));
+        dispatcher.stop();
+        assertThat(EventDispatcher.getLanes().isEmpty(), is(true));
+    }
+
+    /**
+     * Test getLane().
+     * normal.
+     * The same key is assigned to the same lane, and partition numbers are assigned in turn.
+     */
+    @Test
+    public void getLane_Normal() {
+        EventDispatcher dispatcher = new EventDispatcher(LANE_NUM, 1);
+
+        // Run method and confirm result
+        assertThat(dispatcher.getLane("cell1"), is(sameInstance(dispatcher.getLane("cell1"))));
+        for (int partition = 0; partition < LANE_NUM * 2; partition++) {
+            assertThat(dispatcher.getLane(partition).getIndex(), is(partition % LANE_NUM));
+        }
+        assertThat(dispatcher.getLane(null).getIndex(), is(0));
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.eventlog;
+
+import static org.hamcrest.CoreMatchers.endsWith;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.core.event.PersoniumEvent;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for EventLogWriter.
+ */
+@Category({ Unit.class })
+public class EventLogWriterTest {
+
+    private File root;
+
+    /**
+     * Before.
+     * @throws IOException Unintended exception in test
+     */
+    @Before
+    public void before() throws IOException {
+        root = Files.createTempDirectory("eventlog").toFile();
+    }
+
+    /**
+     * After.
+     * @throws IOException Unintended exception in test
+     */
+    @After
+    public void after() throws IOException {
+        FileUtils.deleteDirectory(root);
+    }
+
+    /**
+     * Test append().
+     * normal.
+     * Records of each cell are written in order, while the files are closed and opened again.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void append_Normal() throws Exception {
+        EventLogWriter writer = new EventLogWriter(2, 1, Long.MAX_VALUE, 0, 12, false);
+        writer.startThreads();
+
+        // Run method
+        for (int i = 0; i < 10; i++) {
+            writer.append("cell1", cellDir("cell1"), record("cell1-" + i));
+            writer.append("cell2", cellDir("cell2"), record("cell2-" + i));
+        }
+        writer.stopThreads();
+
+        // Confirm result
+        for (String cell : new String[] {"cell1", "cell2"}) {
+            List<String> lines = Files.readAllLines(new File(cellDir(cell), "current/default.log").toPath(),
+                    StandardCharsets.UTF_8);
+            assertThat(lines.size(), is(10));
+            for (int i = 0; i < 10; i++) {
+                assertThat(lines.get(i), endsWith(",\"" + cell + "-" + i + "\""));
+            }
+        }
+    }
+
+    /**
+     * Test append().
+     * normal.
+     * The current file is rotated by size into the archive, keeping the newest files.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void append_Normal_rotate() throws Exception {
+        EventLogWriter writer = new EventLogWriter(2, 1, 1, 0, 2, false);
+
+        // Run method
+        for (int i = 0; i < 4; i++) {
+            writer.append("cell1", cellDir("cell1"), record("info" + i));
+        }
+        writer.closeSegment("cell1");
+
+        // Confirm result
+        File current = new File(cellDir("cell1"), "current");
+        assertThat(current.list().length, is(1));
+        assertThat(readFile(new File(current, "default.log")), endsWith(",\"info3\"" + System.lineSeparator()));
+        File archive = new File(cellDir("cell1"), "archive");
+        assertThat(archive.list().length, is(2));
+        assertThat(readZip(new File(archive, "default.log.1.zip")), endsWith(",\"info2\"" + System.lineSeparator()));
+        assertThat(readZip(new File(archive, "default.log.2.zip")), endsWith(",\"info1\"" + System.lineSeparator()));
+    }
+
+    /**
+     * Test closeDeleted().
+     * normal.
+     * Records of the deleted cell queued or written later, and its files being archived, do not create its files again.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void closeDeleted_Normal() throws Exception {
+        EventLogWriter writer = new EventLogWriter(1000, 2, 1, 0, 2, false);
+        writer.startThreads();
+        for (int i = 0; i < 100; i++) {
+            writer.append("cell1", cellDir("cell1"), record("cell1-" + i));
+        }
+
+        // Run method
+        writer.closeDeleted("cell1");
+        FileUtils.deleteDirectory(new File(cellDir("cell1")));
+        writer.append("cell1", cellDir("cell1"), record("cell1-after"));
+        writer.append("cell2", cellDir("cell2"), record("cell2-after"));
+        writer.stopThreads();
+
+        // Confirm result
+        assertThat(new File(cellDir("cell1")).exists(), is(false));
+        assertThat(readFile(new File(cellDir("cell2"), "current/default.log")),
+                endsWith(",\"cell2-after\"" + System.lineSeparator()));
+    }
+
+    /**
+     * Test closeDeleted().
+     * normal.
+     * Records of the deleted cell are dropped also when written on the calling thread.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void closeDeleted_Normal_not_started() throws Exception {
+        EventLogWriter writer = new EventLogWriter(2, 1, Long.MAX_VALUE, 0, 2, false);
+        writer.append("cell1", cellDir("cell1"), record("cell1-before"));
+
+        // Run method
+        writer.closeDeleted("cell1");
+        FileUtils.deleteDirectory(new File(cellDir("cell1")));
+        writer.append("cell1", cellDir("cell1"), record("cell1-after"));
+
+        // Confirm result
+        assertThat(new File(cellDir("cell1")).exists(), is(false));
+    }
+
+    private String cellDir(String cellId) {
+        return new File(root, cellId).getPath();
+    }
+
+    private static EventLogRecord record(String info) {
+        PersoniumEvent event = new PersoniumEvent.Builder().type("type").info(info).build();
+        return new EventLogRecord(event, "[INFO ]", "requestKey");
+    }
+
+    private static String readFile(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static String readZip(File file) throws IOException {
+        try (ZipFile zip = new ZipFile(file)) {
+            ZipEntry entry = zip.entries().nextElement();
+            return IOUtils.toString(zip.getInputStream(entry), StandardCharsets.UTF_8);
+        }
+    }
+}
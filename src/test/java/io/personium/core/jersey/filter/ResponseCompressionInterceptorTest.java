@@ -0,0 +1,228 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.jersey.filter;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
+
+import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.model.file.StreamingOutputForDavFile;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for ResponseCompressionInterceptor.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ PersoniumUnitConfig.class })
+@Category({ Unit.class })
+public class ResponseCompressionInterceptorTest {
+
+    private static final int MIN_SIZE = 100;
+
+    /** Stream set to the context. */
+    private OutputStream entityStream;
+
+    /**
+     * Before.
+     * @throws Exception Unintended exception in test
+     */
+    @Before
+    public void before() throws Exception {
+        PowerMockito.mockStatic(PersoniumUnitConfig.class);
+        PowerMockito.doReturn(true).when(PersoniumUnitConfig.class, "isCompressionEnabled");
+        PowerMockito.doReturn(MIN_SIZE).when(PersoniumUnitConfig.class, "getCompressionMinSize");
+        PowerMockito.doReturn(6).when(PersoniumUnitConfig.class, "getCompressionLevel");
+        PowerMockito.doReturn(2).when(PersoniumUnitConfig.class, "getCompressionPoolSize");
+        PowerMockito.doReturn("application/json,application/xml")
+                .when(PersoniumUnitConfig.class, "getCompressionMediaTypes");
+    }
+
+    /**
+     * Test negotiate().
+     * normal.
+     */
+    @Test
+    public void negotiate_Normal() {
+        assertThat(ResponseCompressionInterceptor.negotiate(null), is(nullValue()));
+        assertThat(ResponseCompressionInterceptor.negotiate("gzip, deflate"), is("gzip"));
+        assertThat(ResponseCompressionInterceptor.negotiate("deflate"), is("deflate"));
+        assertThat(ResponseCompressionInterceptor.negotiate("gzip;q=0.5, deflate"), is("deflate"));
+        assertThat(ResponseCompressionInterceptor.negotiate("gzip;q=0, *"), is("deflate"));
+        assertThat(ResponseCompressionInterceptor.negotiate("*"), is("gzip"));
+        assertThat(ResponseCompressionInterceptor.negotiate("identity, br"), is(nullValue()));
+    }
+
+    /**
+     * Test aroundWriteTo().
+     * normal.
+     * The body larger than the minimum size is compressed with gzip.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void aroundWriteTo_Normal_gzip() throws Exception {
+        byte[] body = body(MIN_SIZE * 10);
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<String, Object>();
+        headers.putSingle(HttpHeaders.CONTENT_LENGTH, body.length);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Run method
+        interceptor("gzip").aroundWriteTo(context(body, "{}", MediaType.APPLICATION_JSON_TYPE, headers, out));
+
+        // Confirm result
+        assertThat(headers.getFirst(HttpHeaders.CONTENT_ENCODING), is((Object) "gzip"));
+        assertThat(headers.getFirst(HttpHeaders.VARY), is((Object) HttpHeaders.ACCEPT_ENCODING));
+        assertThat(headers.containsKey(HttpHeaders.CONTENT_LENGTH), is(false));
+        byte[] decoded = IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())));
+        assertThat(Arrays.equals(decoded, body), is(true));
+    }
+
+    /**
+     * Test aroundWriteTo().
+     * normal.
+     * The body smaller than the minimum size is written as it is.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void aroundWriteTo_Normal_small_body() throws Exception {
+        byte[] body = body(MIN_SIZE - 1);
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<String, Object>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Run method
+        interceptor("gzip").aroundWriteTo(context(body, "{}", MediaType.APPLICATION_JSON_TYPE, headers, out));
+
+        // Confirm result
+        assertThat(headers.containsKey(HttpHeaders.CONTENT_ENCODING), is(false));
+        assertThat(headers.getFirst(HttpHeaders.VARY), is((Object) HttpHeaders.ACCEPT_ENCODING));
+        assertThat(Arrays.equals(out.toByteArray(), body), is(true));
+    }
+
+    /**
+     * Test aroundWriteTo().
+     * normal.
+     * The contents of Dav files are not compressed.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void aroundWriteTo_Normal_dav_file() throws Exception {
+        byte[] body = body(MIN_SIZE * 10);
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<String, Object>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamingOutputForDavFile entity = mock(StreamingOutputForDavFile.class);
+
+        // Run method
+        interceptor("gzip").aroundWriteTo(context(body, entity, MediaType.APPLICATION_JSON_TYPE, headers, out));
+
+        // Confirm result
+        assertThat(headers.isEmpty(), is(true));
+        assertThat(Arrays.equals(out.toByteArray(), body), is(true));
+    }
+
+    /**
+     * Test aroundWriteTo().
+     * normal.
+     * The media types not configured are not compressed.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void aroundWriteTo_Normal_media_type_not_configured() throws Exception {
+        byte[] body = body(MIN_SIZE * 10);
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<String, Object>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Run method
+        interceptor("gzip").aroundWriteTo(context(body, "", MediaType.valueOf("image/png"), headers, out));
+
+        // Confirm result
+        assertThat(headers.isEmpty(), is(true));
+        assertThat(Arrays.equals(out.toByteArray(), body), is(true));
+    }
+
+    private static byte[] body(int size) {
+        byte[] body = new byte[size];
+        for (int i = 0; i < size; i++) {
+            body[i] = (byte) ('a' + i % 26);
+        }
+        return body;
+    }
+
+    private static ResponseCompressionInterceptor interceptor(String acceptEncoding) {
+        ResponseCompressionInterceptor interceptor = new ResponseCompressionInterceptor();
+        HttpHeaders requestHeaders = mock(HttpHeaders.class);
+        doReturn(acceptEncoding).when(requestHeaders).getHeaderString(HttpHeaders.ACCEPT_ENCODING);
+        Whitebox.setInternalState(interceptor, "requestHeaders", requestHeaders);
+        return interceptor;
+    }
+
+    private WriterInterceptorContext context(final byte[] body, Object entity, MediaType mediaType,
+            MultivaluedMap<String, Object> headers, OutputStream out) throws Exception {
+        WriterInterceptorContext context = mock(WriterInterceptorContext.class);
+        entityStream = out;
+        doReturn(entity).when(context).getEntity();
+        doReturn(mediaType).when(context).getMediaType();
+        doReturn(headers).when(context).getHeaders();
+        doReturn(out).when(context).getOutputStream();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                entityStream = (OutputStream) invocation.getArguments()[0];
+                return null;
+            }
+        }).when(context).setOutputStream(any(OutputStream.class));
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Exception {
+                // Written in pieces with flush as streamed entities do.
+                int half = body.length / 2;
+                entityStream.write(body, 0, half);
+                entityStream.flush();
+                entityStream.write(body, half, body.length - half);
+                return null;
+            }
+        }).when(context).proceed();
+        return context;
+    }
+}
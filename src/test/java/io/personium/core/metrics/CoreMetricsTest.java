@@ -0,0 +1,52 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.metrics;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.core.model.lock.LockScheduler;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for CoreMetrics.
+ */
+@Category({ Unit.class })
+public class CoreMetricsTest {
+
+    /**
+     * Test toPrometheusText().
+     * normal.
+     * The yields of low priority lock holders are given as counters.
+     */
+    @Test
+    public void toPrometheusText_Normal_lock_yields() {
+        long yields = LockScheduler.getYieldCount();
+        double yieldSeconds = LockScheduler.getYieldTimeMillis() / 1000d;
+
+        // Run method
+        String text = CoreMetrics.toPrometheusText();
+
+        // Confirm result
+        assertTrue(text.contains("# TYPE " + CoreMetrics.LOCK_YIELD + " counter\n"));
+        assertTrue(text.contains("\n" + CoreMetrics.LOCK_YIELD + " " + yields + "\n"));
+        assertTrue(text.contains("# TYPE " + CoreMetrics.LOCK_YIELD_TIME + " counter\n"));
+        assertTrue(text.contains("\n" + CoreMetrics.LOCK_YIELD_TIME + " " + yieldSeconds + "\n"));
+    }
+}
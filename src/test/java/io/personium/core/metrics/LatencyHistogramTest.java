@@ -0,0 +1,94 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.metrics;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for LatencyHistogram.
+ */
+@Category({ Unit.class })
+public class LatencyHistogramTest {
+
+    /**
+     * Test bucketIndex().
+     * normal.
+     * Upper bounds of the buckets are powers of two microseconds.
+     */
+    @Test
+    public void bucketIndex_Normal() {
+        assertThat(LatencyHistogram.bucketIndex(0), is(0));
+        assertThat(LatencyHistogram.bucketIndex(1), is(0));
+        assertThat(LatencyHistogram.bucketIndex(2), is(1));
+        assertThat(LatencyHistogram.bucketIndex(3), is(2));
+        assertThat(LatencyHistogram.bucketIndex(4), is(2));
+        assertThat(LatencyHistogram.bucketIndex(1000), is(10));
+        assertThat(LatencyHistogram.bucketIndex(Long.MAX_VALUE), is(LatencyHistogram.BUCKET_COUNT - 1));
+    }
+
+    /**
+     * Test getValueAtPercentile().
+     * normal.
+     */
+    @Test
+    public void getValueAtPercentile_Normal() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.getValueAtPercentile(50), is(-1L));
+
+        // 99 requests of 1ms and 1 request of 1s.
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1000 * 1000L);
+        }
+        histogram.record(1000 * 1000 * 1000L);
+
+        assertThat(histogram.getCount(), is(100L));
+        assertThat(histogram.getSumMicros(), is(99 * 1000L + 1000 * 1000L));
+        assertThat(histogram.getValueAtPercentile(50), is(1024L));
+        assertThat(histogram.getValueAtPercentile(99), is(1024L));
+        assertThat(histogram.getValueAtPercentile(100), is(1L << 20));
+    }
+
+    /**
+     * Test writePrometheus().
+     * normal.
+     * Buckets are cumulative and written in seconds.
+     */
+    @Test
+    public void writePrometheus_Normal() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000L);
+        histogram.record(1000 * 1000L);
+
+        StringBuilder sb = new StringBuilder();
+        histogram.writePrometheus(sb, "test_seconds", "phase=\"es\"");
+        String text = sb.toString();
+
+        assertThat(text, containsString("test_seconds_bucket{phase=\"es\",le=\"0.000001\"} 1\n"));
+        assertThat(text, containsString("test_seconds_bucket{phase=\"es\",le=\"0.000512\"} 1\n"));
+        assertThat(text, containsString("test_seconds_bucket{phase=\"es\",le=\"0.001024\"} 2\n"));
+        assertThat(text, containsString("test_seconds_bucket{phase=\"es\",le=\"+Inf\"} 2\n"));
+        assertThat(text, containsString("test_seconds_sum{phase=\"es\"} 0.001001\n"));
+        assertThat(text, containsString("test_seconds_count{phase=\"es\"} 2\n"));
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.metrics;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.core.metrics.RequestTiming.Phase;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for RequestTiming.
+ */
+@Category({ Unit.class })
+public class RequestTimingTest {
+
+    /**
+     * After.
+     */
+    @After
+    public void after() {
+        RequestTiming.stop();
+    }
+
+    /**
+     * Test doBegin() and doEnd().
+     * normal.
+     * Nested calls of the same phase are measured only once.
+     */
+    @Test
+    public void doBegin_doEnd_Normal_nested() {
+        RequestTiming timing = new RequestTiming(0);
+
+        timing.doBegin(Phase.ES.ordinal(), 100);
+        timing.doBegin(Phase.ES.ordinal(), 150);
+        timing.doEnd(Phase.ES.ordinal(), 200);
+        timing.doEnd(Phase.ES.ordinal(), 300);
+        timing.doBegin(Phase.ES.ordinal(), 1000);
+        timing.doEnd(Phase.ES.ordinal(), 1100);
+
+        assertThat(timing.getElapsedNanos(Phase.ES), is(300L));
+        assertThat(timing.getElapsedNanos(Phase.LOCK), is(0L));
+    }
+
+    /**
+     * Test doEnd().
+     * normal.
+     * Phase begun before the measurement started is ignored.
+     */
+    @Test
+    public void doEnd_Normal_not_begun() {
+        RequestTiming timing = new RequestTiming(0);
+
+        timing.doEnd(Phase.CACHE.ordinal(), 100);
+        timing.doBegin(Phase.CACHE.ordinal(), 200);
+        timing.doEnd(Phase.CACHE.ordinal(), 250);
+
+        assertThat(timing.getElapsedNanos(Phase.CACHE), is(50L));
+    }
+
+    /**
+     * Test begin() and end().
+     * normal.
+     * Nothing is measured on threads not processing a request.
+     */
+    @Test
+    public void begin_end_Normal_not_started() {
+        RequestTiming.begin(Phase.LOCK);
+        RequestTiming.end(Phase.LOCK);
+
+        assertThat(RequestTiming.current(), is(nullValue()));
+    }
+
+    /**
+     * Test toServerTiming().
+     * normal.
+     * Phases not passed through are omitted.
+     */
+    @Test
+    public void toServerTiming_Normal() {
+        RequestTiming timing = RequestTiming.start();
+        timing.doBegin(Phase.ACCESS.ordinal(), 0);
+        timing.doEnd(Phase.ACCESS.ordinal(), 1500000);
+
+        String value = timing.toServerTiming();
+
+        assertTrue(value, value.startsWith("access;dur=1.500, total;dur="));
+        assertThat(RequestTiming.stop(), is(timing));
+        assertThat(RequestTiming.current(), is(nullValue()));
+    }
+}
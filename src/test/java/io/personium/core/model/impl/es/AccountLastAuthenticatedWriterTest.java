@@ -0,0 +1,80 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.es;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for AccountLastAuthenticatedWriter.
+ */
+@Category({ Unit.class })
+public class AccountLastAuthenticatedWriterTest {
+
+    /**
+     * Test drain().
+     * normal.
+     * Logins of the same Account are coalesced into the latest time.
+     */
+    @Test
+    public void drain_Normal_coalesced() {
+        AccountLastAuthenticatedWriter writer = new AccountLastAuthenticatedWriter();
+        writer.put("cell1", "account1", 100L);
+        writer.put("cell1", "account1", 300L);
+        writer.put("cell1", "account1", 200L);
+        writer.put("cell1", "account2", 150L);
+        writer.put("cell2", "account1", 50L);
+
+        // Run method
+        Map<String, Map<String, Long>> pending = writer.drain();
+
+        // Confirm result
+        assertThat(pending.size(), is(2));
+        assertThat(pending.get("cell1").size(), is(2));
+        assertThat(pending.get("cell1").get("account1"), is(300L));
+        assertThat(pending.get("cell1").get("account2"), is(150L));
+        assertThat(pending.get("cell2").get("account1"), is(50L));
+    }
+
+    /**
+     * Test drain().
+     * normal.
+     * Logins already taken out are not returned again.
+     */
+    @Test
+    public void drain_Normal_emptied() {
+        AccountLastAuthenticatedWriter writer = new AccountLastAuthenticatedWriter();
+        writer.put("cell1", "account1", 100L);
+        writer.drain();
+        writer.put("cell2", "account1", 200L);
+
+        // Run method
+        Map<String, Map<String, Long>> pending = writer.drain();
+
+        // Confirm result
+        assertThat(pending.size(), is(1));
+        assertThat(pending.get("cell2").get("account1"), is(200L));
+        assertThat(writer.drain().isEmpty(), is(true));
+    }
+}
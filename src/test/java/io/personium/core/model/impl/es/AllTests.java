@@ -25,7 +25,9 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 @RunWith(Suite.class)
 @SuiteClasses({
-    EsModelTest.class
+    EsModelTest.class,
+    AccountLastAuthenticatedWriterTest.class,
+    EsAuditLogTest.class
     })
 public class AllTests {
 }
@@ -0,0 +1,82 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.es;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.core.PersoniumCoreLog;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for EsAuditLog.
+ */
+@Category({ Unit.class })
+public class EsAuditLogTest {
+
+    /**
+     * Test truncate().
+     * normal.
+     * Parameters longer than the maximum are truncated.
+     */
+    @Test
+    public void truncate_Normal() {
+        Object[] result = EsAuditLog.truncate(new Object[] {"abcdefghij", 12345, null}, 5);
+
+        assertThat((String) result[0], is("abcde...(10 chars)"));
+        assertThat((String) result[1], is("12345"));
+        assertThat((String) result[2], is("null"));
+    }
+
+    /**
+     * Test submit().
+     * normal.
+     * Logs over the queue size are dropped and counted, and the parameters are built only when written.
+     */
+    @Test
+    public void submit_Normal_dropped() {
+        EsAuditLog auditLog = new EsAuditLog(2, 100);
+        final int[] built = new int[1];
+        EsAuditLog.Record record = new EsAuditLog.Record() {
+            @Override
+            public Object[] params() {
+                built[0]++;
+                return new Object[] {"data"};
+            }
+
+            @Override
+            public PersoniumCoreLog getLog() {
+                return PersoniumCoreLog.Es.AFTER_CREATE_BODY;
+            }
+        };
+
+        // Run method
+        for (int i = 0; i < 3; i++) {
+            auditLog.submit(record);
+        }
+
+        // Confirm result
+        assertThat(built[0], is(0));
+        assertThat(auditLog.getDroppedCount(), is(1L));
+        auditLog.drain();
+        assertThat(built[0], is(2));
+        assertThat(auditLog.getDroppedCount(), is(0L));
+    }
+}
@@ -27,7 +27,9 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({
     CellDataAccessorTest.class,
     DataSourceAccessorTest.class,
-    ODataEntityAccessorTest.class
+    EsGroupCommitterTest.class,
+    ODataEntityAccessorTest.class,
+    SearchHitIteratorTest.class
     })
 public class AllTests {
 }
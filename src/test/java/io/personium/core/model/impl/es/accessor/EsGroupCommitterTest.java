@@ -0,0 +1,340 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.es.accessor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.common.es.EsBulkRequest;
+import io.personium.common.es.response.PersoniumBulkItemResponse;
+import io.personium.common.es.response.PersoniumBulkResponse;
+import io.personium.core.PersoniumCoreException;
+import io.personium.core.rs.odata.MapBulkRequest;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for EsGroupCommitter.
+ */
+@Category({ Unit.class })
+public class EsGroupCommitterTest {
+
+    private static final long TIMEOUT_SECONDS = 10L;
+
+    /** Executor. */
+    private ExecutorService writers;
+
+    /**
+     * Before.
+     */
+    @Before
+    public void before() {
+        writers = Executors.newFixedThreadPool(4);
+    }
+
+    /**
+     * After.
+     */
+    @After
+    public void after() {
+        writers.shutdownNow();
+    }
+
+    /**
+     * Test write().
+     * normal.
+     * Writes of the same key issued while a bulk request is in flight are sent in the next bulk request
+     * and each writer receives the result of its own document.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void write_Normal_grouped() throws Exception {
+        EsGroupCommitter committer = new EsGroupCommitter(100);
+        CountDownLatch release = new CountDownLatch(1);
+        StubWriter writer = new StubWriter(-1, release);
+
+        // Run method
+        List<Future<PersoniumBulkItemResponse>> results = new ArrayList<Future<PersoniumBulkItemResponse>>();
+        results.add(writers.submit(write(committer, "key", "id0", writer)));
+        assertThat(writer.entered.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), is(true));
+        for (int i = 1; i < 4; i++) {
+            results.add(writers.submit(write(committer, "key", "id" + i, writer)));
+        }
+        awaitWaiting(committer, "key", 3);
+        release.countDown();
+
+        // Confirm result
+        for (int i = 0; i < 4; i++) {
+            assertThat(results.get(i).get().getId(), is("id" + i));
+        }
+        assertThat(writer.bulks.size(), is(2));
+        assertThat(writer.bulks.get(0).size(), is(1));
+        assertThat(writer.bulks.get(1).size(), is(3));
+    }
+
+    /**
+     * Test write().
+     * normal.
+     * A group is sent without waiting when no bulk request of the key is in flight.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void write_Normal_not_waiting() throws Exception {
+        EsGroupCommitter committer = new EsGroupCommitter(100);
+        StubWriter writer = new StubWriter(-1);
+
+        // Run method
+        Future<PersoniumBulkItemResponse> result = writers.submit(write(committer, "key", "id0", writer));
+
+        // Confirm result
+        assertThat(result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS).getId(), is("id0"));
+        assertThat(writer.bulks.size(), is(1));
+    }
+
+    /**
+     * Test write().
+     * normal.
+     * Writes of different keys are sent in different bulk requests.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void write_Normal_different_key() throws Exception {
+        EsGroupCommitter committer = new EsGroupCommitter(100);
+        StubWriter writer = new StubWriter(-1);
+
+        // Run method
+        PersoniumBulkItemResponse result1 = write(committer, "key1", "id1", writer).call();
+        PersoniumBulkItemResponse result2 = write(committer, "key2", "id2", writer).call();
+
+        // Confirm result
+        assertThat(result1.getId(), is("id1"));
+        assertThat(result2.getId(), is("id2"));
+        assertThat(writer.bulks.size(), is(2));
+    }
+
+    /**
+     * Test write().
+     * error.
+     * Only the writer of the failed document receives the error.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void write_Error_item_failed() throws Exception {
+        EsGroupCommitter committer = new EsGroupCommitter(100);
+        CountDownLatch release = new CountDownLatch(1);
+        StubWriter writer = new StubWriter(1, release);
+
+        // Run method
+        Future<PersoniumBulkItemResponse> result0 = writers.submit(write(committer, "key", "id0", writer));
+        assertThat(writer.entered.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), is(true));
+        Future<PersoniumBulkItemResponse> result1 = writers.submit(write(committer, "key", "id1", writer));
+        Future<PersoniumBulkItemResponse> result2 = writers.submit(write(committer, "key", "id2", writer));
+        awaitWaiting(committer, "key", 2);
+        release.countDown();
+
+        // Confirm result
+        List<String> succeeded = new ArrayList<String>();
+        int failed = 0;
+        for (Future<PersoniumBulkItemResponse> result : Arrays.asList(result0, result1, result2)) {
+            try {
+                succeeded.add(result.get().getId());
+            } catch (ExecutionException e) {
+                assertThat(e.getCause() instanceof PersoniumCoreException, is(true));
+                failed++;
+            }
+        }
+        assertThat(succeeded.size(), is(2));
+        assertThat(failed, is(1));
+    }
+
+    /**
+     * Test write().
+     * error.
+     * Failure of the document not matching the mapping is thrown as on the single document write.
+     */
+    @Test
+    public void write_Error_schema_mismatch() {
+        EsGroupCommitter committer = new EsGroupCommitter(100);
+        StubWriter writer = new StubWriter(0);
+
+        // Run method
+        try {
+            committer.write("key", createRequest("id0"), writer);
+            fail("Not throws exception.");
+        } catch (PersoniumCoreException e) {
+            // Confirm result
+            assertThat(e.getCode(), is(PersoniumCoreException.OData.SCHEMA_MISMATCH.getCode()));
+        }
+    }
+
+    /**
+     * Test toException().
+     * normal.
+     * Failures other than the mismatch with the mapping are thrown as unknown errors of the data store.
+     */
+    @Test
+    public void toException_Normal() {
+        PersoniumBulkItemResponse item = mock(PersoniumBulkItemResponse.class);
+        doReturn("EsRejectedExecutionException[rejected execution]").when(item).getFailureMessage();
+
+        // Run method and confirm result
+        assertThat(EsGroupCommitter.toException(item).getCode(),
+                is(PersoniumCoreException.Server.DATA_STORE_UNKNOWN_ERROR.getCode()));
+        doReturn(null).when(item).getFailureMessage();
+        assertThat(EsGroupCommitter.toException(item).getCode(),
+                is(PersoniumCoreException.Server.DATA_STORE_UNKNOWN_ERROR.getCode()));
+    }
+
+    /**
+     * Test write().
+     * error.
+     * Error of the bulk request is thrown to the writer.
+     */
+    @Test
+    public void write_Error_bulk_failed() {
+        EsGroupCommitter committer = new EsGroupCommitter(100);
+        EsGroupCommitter.BulkWriter writer = new EsGroupCommitter.BulkWriter() {
+            @Override
+            public PersoniumBulkResponse write(List<EsBulkRequest> requests) {
+                throw PersoniumCoreException.Server.ES_RETRY_OVER;
+            }
+        };
+
+        // Run method
+        try {
+            committer.write("key", createRequest("id0"), writer);
+            fail("Not throws exception.");
+        } catch (PersoniumCoreException e) {
+            // Confirm result
+            assertThat(e.getCode(), is(PersoniumCoreException.Server.ES_RETRY_OVER.getCode()));
+        }
+    }
+
+    private Callable<PersoniumBulkItemResponse> write(final EsGroupCommitter committer, final String key,
+            final String id, final EsGroupCommitter.BulkWriter writer) {
+        return new Callable<PersoniumBulkItemResponse>() {
+            @Override
+            public PersoniumBulkItemResponse call() {
+                return committer.write(key, createRequest(id), writer);
+            }
+        };
+    }
+
+    /**
+     * Wait until the latest group of the key has the given number of writes.
+     * @param committer EsGroupCommitter
+     * @param key key of the group
+     * @param count number of writes
+     * @throws Exception Unintended exception in test
+     */
+    @SuppressWarnings("unchecked")
+    private static void awaitWaiting(EsGroupCommitter committer, String key, int count) throws Exception {
+        Field groupsField = EsGroupCommitter.class.getDeclaredField("groups");
+        groupsField.setAccessible(true);
+        Map<String, Object> groups = (Map<String, Object>) groupsField.get(committer);
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+        while (System.currentTimeMillis() < deadline) {
+            synchronized (groups) {
+                Object group = groups.get(key);
+                if (group != null) {
+                    Field requestsField = group.getClass().getDeclaredField("requests");
+                    requestsField.setAccessible(true);
+                    if (((List<?>) requestsField.get(group)).size() >= count) {
+                        return;
+                    }
+                }
+            }
+            Thread.sleep(10);
+        }
+        fail("Writes are not waiting.");
+    }
+
+    private static EsBulkRequest createRequest(String id) {
+        return new MapBulkRequest(EsBulkRequest.BulkRequestType.INDEX, "type", id, null);
+    }
+
+    /**
+     * BulkWriter returning the result of each document.
+     */
+    private static class StubWriter implements EsGroupCommitter.BulkWriter {
+        private final int failedPosition;
+        /** Latch released to complete the first bulk request. null if not blocked. */
+        private final CountDownLatch release;
+        /** Counted down when a bulk request is sent. */
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final List<List<EsBulkRequest>> bulks = new ArrayList<List<EsBulkRequest>>();
+
+        StubWriter(int failedPosition) {
+            this(failedPosition, null);
+        }
+
+        StubWriter(int failedPosition, CountDownLatch release) {
+            this.failedPosition = failedPosition;
+            this.release = release;
+        }
+
+        @Override
+        public PersoniumBulkResponse write(List<EsBulkRequest> requests) {
+            entered.countDown();
+            if (release != null) {
+                try {
+                    release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return respond(requests);
+        }
+
+        private synchronized PersoniumBulkResponse respond(List<EsBulkRequest> requests) {
+            bulks.add(new ArrayList<EsBulkRequest>(requests));
+            PersoniumBulkItemResponse[] items = new PersoniumBulkItemResponse[requests.size()];
+            for (int i = 0; i < items.length; i++) {
+                PersoniumBulkItemResponse item = mock(PersoniumBulkItemResponse.class);
+                doReturn(requests.get(i).getId()).when(item).getId();
+                doReturn(i == failedPosition).when(item).isFailed();
+                if (i == failedPosition) {
+                    doReturn("MapperParsingException[failed to parse [p]]").when(item).getFailureMessage();
+                }
+                items[i] = item;
+            }
+            PersoniumBulkResponse response = mock(PersoniumBulkResponse.class);
+            doReturn(items).when(response).items();
+            return response;
+        }
+    }
+}
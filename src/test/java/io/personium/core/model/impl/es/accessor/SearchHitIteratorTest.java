@@ -0,0 +1,159 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.es.accessor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.common.es.response.PersoniumSearchHit;
+import io.personium.common.es.response.PersoniumSearchHits;
+import io.personium.common.es.response.PersoniumSearchResponse;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for SearchHitIterator.
+ */
+@Category({ Unit.class })
+public class SearchHitIteratorTest {
+
+    /**
+     * Test next().
+     * normal.
+     * Pages are read with search_after of the last hit.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void next_Normal() throws Exception {
+        StubSearcher searcher = new StubSearcher(5);
+        Map<String, Object> query = new HashMap<String, Object>();
+        query.put("from", 100);
+        query.put("size", 10);
+
+        // Run method
+        List<String> ids = new ArrayList<String>();
+        try (SearchHitIterator hits = new SearchHitIterator(searcher, query, 2, false)) {
+            while (hits.hasNext()) {
+                ids.add(hits.next().getId());
+            }
+        }
+
+        // Confirm result
+        assertThat(ids, is(Arrays.asList("id0", "id1", "id2", "id3", "id4")));
+        assertThat(searcher.queries.size(), is(3));
+        assertThat(searcher.queries.get(0).get("from"), is(nullValue()));
+        assertThat(searcher.queries.get(0).get("size"), is((Object) 2));
+        assertThat(searcher.queries.get(0).get("search_after"), is(nullValue()));
+        assertThat(searcher.queries.get(1).get("search_after"), is((Object) Arrays.asList("type#id1")));
+        assertThat(searcher.queries.get(2).get("search_after"), is((Object) Arrays.asList("type#id3")));
+    }
+
+    /**
+     * Test next().
+     * normal.
+     * Next pages are read on a background thread.
+     * An empty page is read when the last page is full.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void next_Normal_prefetch() throws Exception {
+        StubSearcher searcher = new StubSearcher(4);
+
+        // Run method
+        List<String> ids = new ArrayList<String>();
+        try (SearchHitIterator hits = new SearchHitIterator(searcher, null, 2, true)) {
+            while (hits.hasNext()) {
+                ids.add(hits.next().getId());
+            }
+        }
+
+        // Confirm result
+        assertThat(ids, is(Arrays.asList("id0", "id1", "id2", "id3")));
+        assertThat(searcher.queries.size(), is(3));
+    }
+
+    /**
+     * Test hasNext().
+     * normal.
+     * Index does not exist.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void hasNext_Normal_no_index() throws Exception {
+        SearchHitIterator.Searcher searcher = new SearchHitIterator.Searcher() {
+            @Override
+            public PersoniumSearchResponse search(Map<String, Object> query) {
+                return null;
+            }
+        };
+
+        // Run method
+        try (SearchHitIterator hits = new SearchHitIterator(searcher, null, 2, false)) {
+            // Confirm result
+            assertThat(hits.hasNext(), is(false));
+        }
+    }
+
+    /**
+     * Searcher returning the documents "id0", "id1", ... in order.
+     */
+    private static class StubSearcher implements SearchHitIterator.Searcher {
+        private final int total;
+        private final List<Map<String, Object>> queries = new ArrayList<Map<String, Object>>();
+
+        StubSearcher(int total) {
+            this.total = total;
+        }
+
+        @Override
+        public synchronized PersoniumSearchResponse search(Map<String, Object> query) {
+            queries.add(query);
+            int from = 0;
+            @SuppressWarnings("unchecked")
+            List<Object> searchAfter = (List<Object>) query.get("search_after");
+            if (searchAfter != null) {
+                String uid = (String) searchAfter.get(0);
+                from = Integer.parseInt(uid.substring("type#id".length())) + 1;
+            }
+            int size = (Integer) query.get("size");
+            int to = Math.min(total, from + size);
+            PersoniumSearchHit[] hits = new PersoniumSearchHit[to - from];
+            for (int i = from; i < to; i++) {
+                PersoniumSearchHit hit = mock(PersoniumSearchHit.class);
+                doReturn("id" + i).when(hit).getId();
+                doReturn("type").when(hit).getType();
+                hits[i - from] = hit;
+            }
+            PersoniumSearchHits searchHits = mock(PersoniumSearchHits.class);
+            doReturn(hits).when(searchHits).getHits();
+            PersoniumSearchResponse response = mock(PersoniumSearchResponse.class);
+            doReturn(searchHits).when(response).getHits();
+            return response;
+        }
+    }
+}
@@ -27,7 +27,9 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({
     CellCacheTest.class,
     BoxCacheTest.class,
-    UserDataSchemaCacheTest.class
+    UserDataSchemaCacheTest.class,
+    RoleUrlCacheTest.class,
+    CellCtlCacheTest.class
     })
 public class AllTests {
 }
@@ -0,0 +1,161 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.es.cache;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.core.event.PersoniumEvent;
+import io.personium.core.model.Cell;
+import io.personium.core.model.ctl.Account;
+import io.personium.core.model.ctl.ReceivedMessage;
+import io.personium.core.model.ctl.Role;
+import io.personium.core.model.ctl.Rule;
+import io.personium.core.model.impl.es.cache.RoleUrlCache.CellRoles;
+import io.personium.core.odata.OEntityWrapper;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for CellCtlCache.
+ */
+@Category({ Unit.class })
+public class CellCtlCacheTest {
+
+    private static OEntityWrapper entity(String uuid) {
+        OEntityWrapper oew = new OEntityWrapper(uuid, null, "1-1");
+        oew.put("u", 1L);
+        return oew;
+    }
+
+    /**
+     * Test get().
+     * normal.
+     * The entity put with the current version is returned as a copy.
+     */
+    @Test
+    public void get_Normal() {
+        String cellId = "cellCtlCacheTest1";
+        String key = CellCtlCache.keyForId(Role.EDM_TYPE_NAME, "id1");
+        OEntityWrapper oew = entity("id1");
+        long version = CellCtlCache.getVersion(cellId);
+
+        // Run method
+        CellCtlCache.put(cellId, key, oew, version);
+        OEntityWrapper cached = CellCtlCache.get(cellId, key);
+
+        // Confirm result
+        assertThat(cached.getUuid(), is("id1"));
+        assertThat(cached.getEtag(), is("1-1"));
+        assertThat(cached, is(not(sameInstance(oew))));
+        cached.put("u", 2L);
+        assertThat(CellCtlCache.get(cellId, key).get("u"), is((Object) 1L));
+    }
+
+    /**
+     * Test put().
+     * normal.
+     * The entity read before the cell is written is not cached.
+     */
+    @Test
+    public void put_Normal_written_while_reading() {
+        String cellId = "cellCtlCacheTest2";
+        String key = CellCtlCache.keyForId(Role.EDM_TYPE_NAME, "id1");
+        long version = CellCtlCache.getVersion(cellId);
+        CellCtlCache.invalidate(cellId);
+
+        // Run method
+        CellCtlCache.put(cellId, key, entity("id1"), version);
+
+        // Confirm result
+        assertThat(CellCtlCache.get(cellId, key), is(nullValue()));
+        CellCtlCache.put(cellId, key, entity("id1"), CellCtlCache.getVersion(cellId));
+        assertThat(CellCtlCache.get(cellId, key).getUuid(), is("id1"));
+    }
+
+    /**
+     * Test receive().
+     * normal.
+     * Entities of the notified cell are discarded and those of other cells are kept.
+     */
+    @Test
+    public void receive_Normal() {
+        String cellId = "cellCtlCacheTest3";
+        String otherId = "cellCtlCacheTest4";
+        String key = CellCtlCache.keyForSchema("https://fqdn/app/");
+        CellCtlCache.put(cellId, key, entity("id1"), CellCtlCache.getVersion(cellId));
+        CellCtlCache.put(otherId, key, entity("id2"), CellCtlCache.getVersion(otherId));
+        Cell cell = mock(Cell.class);
+        doReturn(cellId).when(cell).getId();
+        CellRoles roles = RoleUrlCache.get(cell);
+        PersoniumEvent event = new PersoniumEvent.Builder()
+                .type(CellCtlCache.EVENT_TYPE_CELLCTL_CHANGE)
+                .object(cellId)
+                .build();
+
+        // Run method
+        CellCtlCache.receive(event);
+
+        // Confirm result
+        assertThat(CellCtlCache.get(cellId, key), is(nullValue()));
+        assertThat(CellCtlCache.get(otherId, key).getUuid(), is("id2"));
+        assertThat(RoleUrlCache.get(cell), is(not(sameInstance(roles))));
+    }
+
+    /**
+     * Test invalidate() with the entity sets written.
+     * normal.
+     * Writes of Accounts do not discard the entities cached.
+     */
+    @Test
+    public void invalidate_Normal_entity_sets() {
+        String cellId = "cellCtlCacheTest5";
+        String key = CellCtlCache.keyForSchema("https://fqdn/app/");
+        CellCtlCache.put(cellId, key, entity("id1"), CellCtlCache.getVersion(cellId));
+
+        // Run method and confirm result
+        CellCtlCache.invalidate(cellId, Arrays.asList(Account.EDM_TYPE_NAME));
+        assertThat(CellCtlCache.get(cellId, key).getUuid(), is("id1"));
+        CellCtlCache.invalidate(cellId, Arrays.asList(Account.EDM_TYPE_NAME, Role.EDM_TYPE_NAME));
+        assertThat(CellCtlCache.get(cellId, key), is(nullValue()));
+    }
+
+    /**
+     * Test containsCached().
+     * normal.
+     * Writes of the entity sets not cached do not discard the cache.
+     */
+    @Test
+    public void containsCached_Normal() {
+        // Run method and confirm result
+        assertThat(CellCtlCache.containsCached(Arrays.asList(Role.EDM_TYPE_NAME)), is(true));
+        assertThat(CellCtlCache.containsCached(Arrays.asList(Account.EDM_TYPE_NAME, Role.EDM_TYPE_NAME)), is(true));
+        assertThat(CellCtlCache.containsCached(Arrays.asList(Account.EDM_TYPE_NAME,
+                ReceivedMessage.EDM_TYPE_NAME, Rule.EDM_TYPE_NAME)), is(false));
+        assertThat(CellCtlCache.containsCached(Collections.<String>emptySet()), is(false));
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.es.cache;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.core.model.Cell;
+import io.personium.core.model.ctl.Account;
+import io.personium.core.model.ctl.Role;
+import io.personium.core.model.impl.es.cache.RoleUrlCache.CellRoles;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for RoleUrlCache.
+ */
+@Category({ Unit.class })
+public class RoleUrlCacheTest {
+
+    private static Cell mockCell(String cellId) {
+        Cell cell = mock(Cell.class);
+        doReturn(cellId).when(cell).getId();
+        return cell;
+    }
+
+    /**
+     * Test getRoleResourceUrl().
+     * normal.
+     * Role URLs including missing roles are searched only once.
+     */
+    @Test
+    public void getRoleResourceUrl_Normal() {
+        Cell cell = mockCell("roleUrlCacheTest1");
+        doReturn("https://fqdn/cell/__role/__/role1").when(cell).roleIdToRoleResourceUrl("id1");
+        CellRoles roles = RoleUrlCache.get(cell);
+
+        // Run method and confirm result
+        assertThat(roles.getRoleResourceUrl(cell, "id1"), is("https://fqdn/cell/__role/__/role1"));
+        assertThat(roles.getRoleResourceUrl(cell, "id1"), is("https://fqdn/cell/__role/__/role1"));
+        assertThat(roles.getRoleResourceUrl(cell, "id2"), is(nullValue()));
+        assertThat(roles.getRoleResourceUrl(cell, "id2"), is(nullValue()));
+        verify(cell, times(1)).roleIdToRoleResourceUrl("id1");
+        verify(cell, times(1)).roleIdToRoleResourceUrl("id2");
+    }
+
+    /**
+     * Test clear().
+     * normal.
+     * Role URLs of the cell are replaced and those of other cells are kept.
+     */
+    @Test
+    public void clear_Normal() {
+        Cell cell = mockCell("roleUrlCacheTest2");
+        Cell other = mockCell("roleUrlCacheTest3");
+        CellRoles roles = RoleUrlCache.get(cell);
+        CellRoles otherRoles = RoleUrlCache.get(other);
+        assertThat(RoleUrlCache.get(cell), is(sameInstance(roles)));
+
+        // Run method
+        RoleUrlCache.clear("roleUrlCacheTest2");
+
+        // Confirm result
+        assertThat(RoleUrlCache.get(cell), is(not(sameInstance(roles))));
+        assertThat(RoleUrlCache.get(other), is(sameInstance(otherRoles)));
+    }
+
+    /**
+     * Test clear() with the entity sets written.
+     * normal.
+     * Role URLs are replaced only if the roles or the Boxes are written.
+     */
+    @Test
+    public void clear_Normal_entity_sets() {
+        Cell cell = mockCell("roleUrlCacheTest4");
+        CellRoles roles = RoleUrlCache.get(cell);
+
+        // Run method and confirm result
+        RoleUrlCache.clear("roleUrlCacheTest4", Arrays.asList(Account.EDM_TYPE_NAME));
+        assertThat(RoleUrlCache.get(cell), is(sameInstance(roles)));
+        RoleUrlCache.clear("roleUrlCacheTest4", Arrays.asList(Account.EDM_TYPE_NAME, Role.EDM_TYPE_NAME));
+        assertThat(RoleUrlCache.get(cell), is(not(sameInstance(roles))));
+    }
+}
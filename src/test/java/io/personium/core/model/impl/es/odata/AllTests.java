@@ -26,7 +26,8 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({
     MessageODataProducerTest.class,
-    UnitCtlODataProducerTest.class
+    UnitCtlODataProducerTest.class,
+    UserDataODataProducerTest.class
 })
 public class AllTests {
 }
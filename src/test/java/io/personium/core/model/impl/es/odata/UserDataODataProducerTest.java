@@ -0,0 +1,198 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.es.odata;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.odata4j.edm.EdmDataServices;
+import org.odata4j.edm.EdmEntityContainer;
+import org.odata4j.edm.EdmEntitySet;
+import org.odata4j.edm.EdmEntityType;
+import org.odata4j.edm.EdmProperty;
+import org.odata4j.edm.EdmProperty.CollectionKind;
+import org.odata4j.edm.EdmSchema;
+import org.odata4j.edm.EdmSimpleType;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
+
+import io.personium.core.model.DavCmp;
+import io.personium.core.model.ctl.Common;
+import io.personium.core.model.ctl.Property;
+import io.personium.core.model.impl.es.cache.UserDataSchemaCache;
+import io.personium.core.model.impl.es.doc.PropertyDocHandler;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit test class for UserDataODataProducer.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ UserDataSchemaCache.class })
+@Category({ Unit.class })
+public class UserDataODataProducerTest {
+
+    private static final String NODE_ID = "nodeId";
+    private static final String ENTITY_TYPE_ID = "entityTypeId";
+    private static final String ENTITY_TYPE_NAME = "SalesDetail";
+
+    /** Test class. */
+    private UserDataODataProducer producer;
+
+    /**
+     * Before.
+     */
+    @Before
+    public void before() {
+        PowerMockito.mockStatic(UserDataSchemaCache.class);
+        DavCmp davCmp = PowerMockito.mock(DavCmp.class);
+        doReturn(NODE_ID).when(davCmp).getId();
+        producer = new UserDataODataProducer(null, davCmp);
+
+        EdmEntityType.Builder entityType = EdmEntityType.newBuilder()
+                .setNamespace(UserDataODataProducer.USER_ODATA_NAMESPACE)
+                .setName(ENTITY_TYPE_NAME)
+                .addKeys("__id")
+                .addProperties(EdmProperty.newBuilder("__id").setType(EdmSimpleType.STRING));
+        EdmEntitySet.Builder entitySet = EdmEntitySet.newBuilder().setName(ENTITY_TYPE_NAME)
+                .setEntityType(entityType);
+        EdmEntityContainer.Builder container = EdmEntityContainer.newBuilder()
+                .setName(UserDataODataProducer.USER_ODATA_NAMESPACE)
+                .setIsDefault(true)
+                .addEntitySets(entitySet);
+        EdmSchema.Builder schema = EdmSchema.newBuilder()
+                .setNamespace(UserDataODataProducer.USER_ODATA_NAMESPACE)
+                .addEntityTypes(entityType)
+                .addEntityContainers(container);
+        Whitebox.setInternalState(producer, "metadata", EdmDataServices.newBuilder().addSchemas(schema).build());
+
+        Map<String, String> entityTypeIds = new HashMap<String, String>();
+        entityTypeIds.put(ENTITY_TYPE_NAME, ENTITY_TYPE_ID);
+        Whitebox.setInternalState(producer, "entityTypeIds", entityTypeIds);
+        Map<String, String> entityTypeMap = new HashMap<String, String>();
+        entityTypeMap.put(Property.P_ENTITYTYPE_NAME.getName() + ENTITY_TYPE_ID, ENTITY_TYPE_NAME);
+        producer.setEntityTypeMap(entityTypeMap);
+    }
+
+    /**
+     * Test addDynamicPropertiesToMetadata().
+     * normal.
+     * The property is built like one read from the data source, and the schema is cached.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void addDynamicPropertiesToMetadata_Normal_cached() {
+        Map<String, Object> cache = new HashMap<String, Object>();
+        PowerMockito.when(UserDataSchemaCache.get(NODE_ID)).thenReturn(cache);
+        PowerMockito.when(UserDataSchemaCache.isChanged(NODE_ID, cache)).thenReturn(false);
+
+        producer.addDynamicPropertiesToMetadata(createPropertyDocHandlers("dynamicProperty"));
+
+        EdmProperty property = producer.getMetadata().findEdmEntityType(
+                UserDataODataProducer.USER_ODATA_NAMESPACE + "." + ENTITY_TYPE_NAME).findProperty("dynamicProperty");
+        assertThat(property.getType(), is((Object) EdmSimpleType.STRING));
+        assertThat(property.isNullable(), is(true));
+        assertThat(property.getDefaultValue(), is(nullValue()));
+        assertThat(property.getCollectionKind(), is(CollectionKind.NONE));
+        assertThat(property.findAnnotation(Common.P_NAMESPACE.getUri(), Property.P_IS_DECLARED.getName())
+                .getValue().toString(), is(Boolean.FALSE.toString()));
+
+        PowerMockito.verifyStatic(UserDataSchemaCache.class, times(1));
+        UserDataSchemaCache.cache(eq(NODE_ID), anyMapOf(String.class, Object.class));
+        PowerMockito.verifyStatic(UserDataSchemaCache.class, never());
+        UserDataSchemaCache.clear(any(String.class));
+    }
+
+    /**
+     * Test addDynamicPropertiesToMetadata().
+     * normal.
+     * The schema is not cached if another request changed the cache while patching.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void addDynamicPropertiesToMetadata_Normal_cache_changed() {
+        Map<String, Object> cache = new HashMap<String, Object>();
+        cache.put("disabledTime", 1L);
+        PowerMockito.when(UserDataSchemaCache.get(NODE_ID)).thenReturn(cache);
+        PowerMockito.when(UserDataSchemaCache.isChanged(NODE_ID, cache)).thenReturn(true);
+
+        producer.addDynamicPropertiesToMetadata(createPropertyDocHandlers("dynamicProperty"));
+
+        PowerMockito.verifyStatic(UserDataSchemaCache.class, never());
+        UserDataSchemaCache.cache(eq(NODE_ID), anyMapOf(String.class, Object.class));
+        PowerMockito.verifyStatic(UserDataSchemaCache.class, times(1));
+        UserDataSchemaCache.clear(NODE_ID);
+    }
+
+    /**
+     * Test addDynamicPropertiesToMetadata().
+     * normal.
+     * The schema is not cached if another request cached it while patching.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void addDynamicPropertiesToMetadata_Normal_cached_by_another_request() {
+        PowerMockito.when(UserDataSchemaCache.get(NODE_ID)).thenReturn(null, new HashMap<String, Object>());
+
+        producer.addDynamicPropertiesToMetadata(createPropertyDocHandlers("dynamicProperty"));
+
+        PowerMockito.verifyStatic(UserDataSchemaCache.class, never());
+        UserDataSchemaCache.cache(eq(NODE_ID), anyMapOf(String.class, Object.class));
+    }
+
+    /**
+     * Create the PropertyDocHandlers of dynamic properties as createDynamicPropertyEntity does.
+     * @param names property names
+     * @return PropertyDocHandlers
+     */
+    private List<PropertyDocHandler> createPropertyDocHandlers(String... names) {
+        List<PropertyDocHandler> list = new ArrayList<PropertyDocHandler>();
+        for (String name : names) {
+            Map<String, Object> staticProperties = new HashMap<String, Object>();
+            staticProperties.put(Property.P_NAME.getName(), name);
+            staticProperties.put(Property.P_TYPE.getName(), EdmSimpleType.STRING.getFullyQualifiedTypeName());
+            staticProperties.put(Property.P_COLLECTION_KIND.getName(), Property.COLLECTION_KIND_NONE);
+            staticProperties.put(Property.P_DEFAULT_VALUE.getName(), null);
+            staticProperties.put(Property.P_IS_KEY.getName(), false);
+            staticProperties.put(Property.P_NULLABLE.getName(), true);
+            staticProperties.put(Property.P_UNIQUE_KEY.getName(), null);
+            staticProperties.put(Property.P_IS_DECLARED.getName(), false);
+            PropertyDocHandler handler = new PropertyDocHandler(
+                    "cellId", "boxId", NODE_ID, ENTITY_TYPE_ID, staticProperties);
+            handler.setEntityTypeMap(producer.getEntityTypeMap());
+            list.add(handler);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.fs;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
+
+import io.personium.core.model.Box;
+import io.personium.core.model.Cell;
+import io.personium.core.model.impl.es.EsModel;
+import io.personium.core.model.impl.es.accessor.CellDataAccessor;
+import io.personium.core.model.impl.es.accessor.ODataEntityAccessor;
+import io.personium.core.model.impl.es.cache.BoxCache;
+import io.personium.core.model.impl.es.cache.CellCtlCache;
+import io.personium.core.model.lock.Lock;
+import io.personium.core.odata.OEntityWrapper;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for BoxCmpFsImpl.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ EsModel.class, BoxCache.class })
+@Category({ Unit.class })
+public class BoxCmpFsImplTest {
+
+    /**
+     * Test makeEmpty().
+     * normal.
+     * The box deleted recursively is not found in the cache of the cell control objects afterwards.
+     */
+    @Test
+    public void makeEmpty_Normal_box_not_found_afterwards() {
+        String cellId = "boxCmpFsImplTestCell";
+        String boxId = "boxCmpFsImplTestBox";
+        Cell cell = mock(Cell.class);
+        doReturn(cellId).when(cell).getId();
+        doReturn("anon").when(cell).getDataBundleNameWithOutPrefix();
+        Box box = new Box(cell, "box1", null, boxId, 0L);
+
+        BoxCmpFsImpl boxCmp = PowerMockito.mock(BoxCmpFsImpl.class);
+        Whitebox.setInternalState(boxCmp, "cell", cell);
+        Whitebox.setInternalState(boxCmp, "box", box);
+        doCallRealMethod().when(boxCmp).makeEmpty();
+        doCallRealMethod().when(boxCmp).getCellId();
+        doCallRealMethod().when(boxCmp).getId();
+        doCallRealMethod().when(boxCmp).getCell();
+        doCallRealMethod().when(boxCmp).getBox();
+        doReturn(mock(Lock.class)).when(boxCmp).lockOData(cellId, boxId, null);
+        doNothing().when(boxCmp).doDelete();
+
+        CellDataAccessor cellDataAccessor = mock(CellDataAccessor.class);
+        ODataEntityAccessor boxAccessor = mock(ODataEntityAccessor.class);
+        PowerMockito.mockStatic(EsModel.class);
+        PowerMockito.when(EsModel.cellData(anyString(), anyString())).thenReturn(cellDataAccessor);
+        PowerMockito.when(EsModel.box(cell)).thenReturn(boxAccessor);
+        PowerMockito.mockStatic(BoxCache.class);
+
+        // The box has been read through the cache.
+        String key = CellCtlCache.keyForKey(Box.EDM_TYPE_NAME, "('box1')");
+        CellCtlCache.put(cellId, key, new OEntityWrapper(boxId, null, "1-1"), CellCtlCache.getVersion(cellId));
+
+        // Run method
+        boxCmp.makeEmpty();
+
+        // Confirm result
+        verify(cellDataAccessor).deleteBoxLinkData(boxId);
+        verify(boxAccessor).delete(boxId, -1);
+        verify(boxCmp).doDelete();
+        assertThat(CellCtlCache.get(cellId, key), is(nullValue()));
+    }
+}
@@ -31,6 +31,7 @@ import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -49,6 +50,7 @@ import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.http.HttpStatus;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -78,7 +80,6 @@ import io.personium.core.model.file.DataCryptor;
 import io.personium.core.model.file.StreamingOutputForDavFile;
 import io.personium.core.model.file.StreamingOutputForDavFileWithRange;
 import io.personium.core.model.impl.es.EsModel;
-import io.personium.core.model.impl.es.accessor.CellDataAccessor;
 import io.personium.core.model.lock.Lock;
 import io.personium.test.categories.Unit;
 
@@ -88,7 +89,7 @@ import io.personium.test.categories.Unit;
 @RunWith(PowerMockRunner.class)
 @PowerMockIgnore({ "javax.crypto.*" })
 @PrepareForTest({ DavCmpFsImpl.class, AccessContext.class, PersoniumUnitConfig.class, DavMetadataFile.class,
-    EsClient.class, EsModel.class })
+    EsClient.class, EsModel.class, DavTrashManager.class })
 @Category({ Unit.class })
 public class DavCmpFsImplTest {
 
@@ -100,6 +101,8 @@ public class DavCmpFsImplTest {
     private static final String CONTENT_FILE = "content";
     /** Temp content file name for update. */
     private static final String TEMP_CONTENT_FILE = "tmp";
+    /** New content version file name for update. */
+    private static final String NEW_CONTENT_FILE = "content.1";
     /** Source file name for move. */
     private static final String SOURCE_FILE = "source";
     /** Dest file name for move. */
@@ -328,10 +331,13 @@ public class DavCmpFsImplTest {
     public void doPutForUpdate_Normal_encrypt_false() throws Exception {
         String contentPath = TEST_DIR_PATH + CONTENT_FILE;
         String tempContentPath = TEST_DIR_PATH + TEMP_CONTENT_FILE;
+        String newContentPath = TEST_DIR_PATH + NEW_CONTENT_FILE;
         InputStream inputStream = null;
         FileInputStream contentStream = null;
+        FileInputStream newContentStream = null;
         File contentFile = new File(contentPath);
         File tempContentFile = new File(tempContentPath);
+        File newContentFile = new File(newContentPath);
         try {
             contentFile.createNewFile();
             // --------------------
@@ -360,11 +366,14 @@ public class DavCmpFsImplTest {
 
             PowerMockito.doReturn(tempContentPath).when(davCmpFsImpl, "getTempContentFilePath");
             PowerMockito.doReturn(contentPath).when(davCmpFsImpl, "getContentFilePath");
+            PowerMockito.doReturn(contentPath).when(davCmpFsImpl, "getCurrentContentFilePath");
+            PowerMockito.doReturn(newContentPath).when(davCmpFsImpl, "getNewContentFilePath");
 
             doNothing().when(davMetaDataFile).setUpdated(anyLong());
             doNothing().when(davMetaDataFile).setContentType(anyString());
             doNothing().when(davMetaDataFile).setContentLength(anyLong());
             doNothing().when(davMetaDataFile).setEncryptionType(anyString());
+            doNothing().when(davMetaDataFile).setContentFileName(anyString());
             doNothing().when(davMetaDataFile).save();
 
             // --------------------
@@ -395,6 +404,7 @@ public class DavCmpFsImplTest {
             verify(davMetaDataFile, times(1)).setContentType(contentTypeCaptor.capture());
             verify(davMetaDataFile, times(1)).setContentLength(contentLengthCaptor.capture());
             verify(davMetaDataFile, times(1)).setEncryptionType(encryptionTypeCaptor.capture());
+            verify(davMetaDataFile, times(1)).setContentFileName(NEW_CONTENT_FILE);
             verify(davMetaDataFile, times(1)).save();
             assertThat(contentTypeCaptor.getValue(), is(contentType));
             assertThat(contentLengthCaptor.getValue(), is(15L));
@@ -404,6 +414,8 @@ public class DavCmpFsImplTest {
             assertThat(tempContentFile.exists(), is(tempFileExists));
             contentStream = new FileInputStream(contentFile);
             assertThat(md5Hex(contentStream), is(sourceFileMD5));
+            newContentStream = new FileInputStream(newContentFile);
+            assertThat(md5Hex(newContentStream), is(sourceFileMD5));
             assertThat(actual.build().getStatus(), is(expected.build().getStatus()));
             assertThat(actual.build().getMetadata().toString(), is(expected.build().getMetadata().toString()));
         } finally {
@@ -413,8 +425,12 @@ public class DavCmpFsImplTest {
             if (contentStream != null) {
                 contentStream.close();
             }
+            if (newContentStream != null) {
+                newContentStream.close();
+            }
             contentFile.delete();
             tempContentFile.delete();
+            newContentFile.delete();
         }
     }
 
@@ -428,10 +444,13 @@ public class DavCmpFsImplTest {
     public void doPutForUpdate_Normal_encrypt_true() throws Exception {
         String contentPath = TEST_DIR_PATH + CONTENT_FILE;
         String tempContentPath = TEST_DIR_PATH + TEMP_CONTENT_FILE;
+        String newContentPath = TEST_DIR_PATH + NEW_CONTENT_FILE;
         InputStream inputStream = null;
         FileInputStream contentStream = null;
+        FileInputStream newContentStream = null;
         File contentFile = new File(contentPath);
         File tempContentFile = new File(tempContentPath);
+        File newContentFile = new File(newContentPath);
         try {
             contentFile.createNewFile();
             // --------------------
@@ -461,11 +480,14 @@ public class DavCmpFsImplTest {
 
             PowerMockito.doReturn(tempContentPath).when(davCmpFsImpl, "getTempContentFilePath");
             PowerMockito.doReturn(contentPath).when(davCmpFsImpl, "getContentFilePath");
+            PowerMockito.doReturn(contentPath).when(davCmpFsImpl, "getCurrentContentFilePath");
+            PowerMockito.doReturn(newContentPath).when(davCmpFsImpl, "getNewContentFilePath");
 
             doNothing().when(davMetaDataFile).setUpdated(anyLong());
             doNothing().when(davMetaDataFile).setContentType(anyString());
             doNothing().when(davMetaDataFile).setContentLength(anyLong());
             doNothing().when(davMetaDataFile).setEncryptionType(anyString());
+            doNothing().when(davMetaDataFile).setContentFileName(anyString());
             doNothing().when(davMetaDataFile).save();
 
             // --------------------
@@ -496,6 +518,7 @@ public class DavCmpFsImplTest {
             verify(davMetaDataFile, times(1)).setContentType(contentTypeCaptor.capture());
             verify(davMetaDataFile, times(1)).setContentLength(contentLengthCaptor.capture());
             verify(davMetaDataFile, times(1)).setEncryptionType(encryptionTypeCaptor.capture());
+            verify(davMetaDataFile, times(1)).setContentFileName(NEW_CONTENT_FILE);
             verify(davMetaDataFile, times(1)).save();
             assertThat(contentTypeCaptor.getValue(), is(contentType));
             assertThat(contentLengthCaptor.getValue(), is(94L));
@@ -505,6 +528,8 @@ public class DavCmpFsImplTest {
             assertThat(tempContentFile.exists(), is(tempFileExists));
             contentStream = new FileInputStream(contentFile);
             assertThat(md5Hex(contentStream), is(sourceFileMD5));
+            newContentStream = new FileInputStream(newContentFile);
+            assertThat(md5Hex(newContentStream), is(sourceFileMD5));
             assertThat(actual.build().getStatus(), is(expected.build().getStatus()));
             assertThat(actual.build().getMetadata().toString(), is(expected.build().getMetadata().toString()));
         } finally {
@@ -514,8 +539,12 @@ public class DavCmpFsImplTest {
             if (contentStream != null) {
                 contentStream.close();
             }
+            if (newContentStream != null) {
+                newContentStream.close();
+            }
             contentFile.delete();
             tempContentFile.delete();
+            newContentFile.delete();
         }
     }
 
@@ -1078,31 +1107,14 @@ public class DavCmpFsImplTest {
 
         doReturn(DavCmpFsImpl.TYPE_COL_ODATA).when(davCmpFsImpl).getType();
 
-        doReturn("cellId").when(davCmpFsImpl).getCellId();
-        Box box = mock(Box.class);
-        doReturn(box).when(davCmpFsImpl).getBox();
-        doReturn("boxId").when(box).getId();
-        doReturn("nodeId").when(davCmpFsImpl).getId();
-
-        Lock lock = mock(Lock.class);
-        doNothing().when(lock).release();
-        doReturn(lock).when(davCmpFsImpl).lockOData("cellId", "boxId", "nodeId");
-
-        PowerMockito.whenNew(EsClient.class).withAnyArguments().thenReturn(null);
-        PowerMockito.mockStatic(EsModel.class);
-        PowerMockito.doReturn(null).when(EsModel.class, "type", "", "", "", 0, 0);
-
-        CellDataAccessor cellDataAccessor = mock(CellDataAccessor.class);
-        PowerMockito.doReturn(cellDataAccessor).when(EsModel.class, "cellData", "bundleName", "cellId");
-
-        Cell cell = mock(Cell.class);
-        doReturn("bundleName").when(cell).getDataBundleNameWithOutPrefix();
-        davCmpFsImpl.cell = cell;
-        doNothing().when(cellDataAccessor).bulkDeleteODataCollection("boxId", "nodeId");
         doNothing().when(davCmpFsImpl).doDelete();
 
         // Run method
         davCmpFsImpl.makeEmpty();
+
+        // Confirm result
+        // Entities are deleted by the trash reaper, not synchronously.
+        verify(davCmpFsImpl, times(1)).doDelete();
     }
 
     /**
@@ -1122,8 +1134,6 @@ public class DavCmpFsImplTest {
         doReturn(children).when(davCmpFsImpl).getChildren();
         DavCmp child01 = mock(DavCmp.class);
         DavCmp child02 = mock(DavCmp.class);
-        doNothing().when(child01).makeEmpty();
-        doNothing().when(child02).makeEmpty();
         children.put("child01", child01);
         children.put("child02", child02);
 
@@ -1133,8 +1143,84 @@ public class DavCmpFsImplTest {
         davCmpFsImpl.makeEmpty();
 
         // Confirm result
-        verify(child01, times(1)).makeEmpty();
-        verify(child02, times(1)).makeEmpty();
+        // The whole tree is moved into the trash at once.
+        verify(child01, times(0)).makeEmpty();
+        verify(child02, times(0)).makeEmpty();
+        verify(davCmpFsImpl, times(1)).doDelete();
+    }
+
+    /**
+     * Test createTrashItem().
+     * normal.
+     * Type is WebDAV collection.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void createTrashItem_Normal_Type_WebDAVCollection() throws Exception {
+        // Mock settings
+        davCmpFsImpl = PowerMockito.spy(DavCmpFsImpl.create("", null));
+        doReturn(DavCmpFsImpl.TYPE_COL_WEBDAV).when(davCmpFsImpl).getType();
+        doReturn("cellId").when(davCmpFsImpl).getCellId();
+        Cell cell = mock(Cell.class);
+        doReturn("bundleName").when(cell).getDataBundleNameWithOutPrefix();
+        davCmpFsImpl.cell = cell;
+        Box box = mock(Box.class);
+        doReturn("boxId").when(box).getId();
+        davCmpFsImpl.box = box;
+
+        // Run method
+        DavTrashItem actual = davCmpFsImpl.createTrashItem();
+
+        // Confirm result
+        assertThat(actual.getScope(), is(DavTrashItem.SCOPE_COLLECTION));
+        assertThat(actual.unitUserName, is("bundleName"));
+        assertThat(actual.cellId, is("cellId"));
+        assertThat(actual.boxId, is("boxId"));
+    }
+
+    /**
+     * Test createTrashItem().
+     * normal.
+     * Type is Dav file.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void createTrashItem_Normal_Type_DavFile() throws Exception {
+        // Mock settings
+        davCmpFsImpl = PowerMockito.spy(DavCmpFsImpl.create("", null));
+        doReturn(DavCmpFsImpl.TYPE_DAV_FILE).when(davCmpFsImpl).getType();
+
+        // Run method
+        DavTrashItem actual = davCmpFsImpl.createTrashItem();
+
+        // Confirm result
+        assertThat(actual.getScope(), is(DavTrashItem.SCOPE_FILE));
+    }
+
+    /**
+     * Test doDelete().
+     * normal.
+     * Type is Dav file. The file is deleted without the trash.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void doDelete_Normal_Type_DavFile() throws Exception {
+        // Mock settings
+        File fileDir = new File(TEST_DIR_PATH, "doDeleteFile");
+        fileDir.mkdirs();
+        new File(fileDir, CONTENT_FILE).createNewFile();
+        davCmpFsImpl = PowerMockito.spy(DavCmpFsImpl.create("", null));
+        Whitebox.setInternalState(davCmpFsImpl, "fsDir", fileDir);
+        doReturn(DavCmpFsImpl.TYPE_DAV_FILE).when(davCmpFsImpl).getType();
+        PowerMockito.mockStatic(DavTrashManager.class);
+
+        // Run method
+        davCmpFsImpl.doDelete();
+
+        // Confirm result
+        assertThat(fileDir.exists(), is(false));
+        PowerMockito.verifyStatic(DavTrashManager.class, never());
+        DavTrashManager.moveToTrash(any(File.class), any(DavTrashItem.class));
     }
 
     /**
@@ -1261,5 +1347,107 @@ public class DavCmpFsImplTest {
         // Confirm result
         assertThat(actual, is(expected));
     }
-}
 
+    /**
+     * Test copyTree().
+     * normal.
+     * Collection is copied with its members, new IDs and the content shared with the source.
+     * @throws Exception Unintended exception in test
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void copyTree_Normal() throws Exception {
+        File srcDir = new File(TEST_DIR_PATH + SOURCE_FILE);
+        File destDir = new File(TEST_DIR_PATH + DEST_FILE);
+        try {
+            // Source tree: collection / file, collection / sub collection
+            DavMetadataFile srcCol = DavMetadataFile.prepareNewFile(
+                    new File(srcDir, DavMetadataFile.DAV_META_FILE_NAME), DavCmp.TYPE_COL_WEBDAV);
+            srcCol.getProperties().put("prop@urn:test", "<prop xmlns=\"urn:test\">value</prop>");
+            srcDir.mkdirs();
+            srcCol.save();
+            File srcFileDir = new File(srcDir, "file");
+            srcFileDir.mkdirs();
+            Files.write(new File(srcFileDir, "content.1").toPath(), "hello".getBytes("UTF-8"));
+            DavMetadataFile srcFile = DavMetadataFile.prepareNewFile(
+                    new File(srcFileDir, DavMetadataFile.DAV_META_FILE_NAME), DavCmp.TYPE_DAV_FILE);
+            srcFile.setContentType("text/plain");
+            srcFile.setContentLength(5L);
+            srcFile.setEncryptionType(DataCryptor.ENCRYPTION_TYPE_NONE);
+            srcFile.setContentFileName("content.1");
+            srcFile.save();
+            File srcSubDir = new File(srcDir, "sub");
+            srcSubDir.mkdirs();
+            DavMetadataFile.prepareNewFile(new File(srcSubDir, DavMetadataFile.DAV_META_FILE_NAME),
+                    DavCmp.TYPE_COL_WEBDAV).save();
+
+            // Mock settings
+            davCmpFsImpl = PowerMockito.spy(DavCmpFsImpl.create("", null));
+            PowerMockito.mockStatic(PersoniumUnitConfig.class);
+            PowerMockito.doReturn(5).when(PersoniumUnitConfig.class, "getMaxCollectionDepth");
+
+            // Run method
+            Method method = DavCmpFsImpl.class.getDeclaredMethod("copyTree",
+                    File.class, File.class, String.class, int.class, boolean.class);
+            method.setAccessible(true);
+            method.invoke(davCmpFsImpl, srcDir, destDir, "https://fqdn/cell/box/source", 1, true);
+
+            // Confirm result
+            DavMetadataFile destCol = DavMetadataFile.newInstance(destDir.getPath());
+            destCol.load();
+            assertThat(destCol.getNodeType(), is(DavCmp.TYPE_COL_WEBDAV));
+            assertThat(destCol.getNodeId().equals(srcCol.getNodeId()), is(false));
+            assertThat(destCol.getProperties(), is(srcCol.getProperties()));
+            DavMetadataFile destFile = DavMetadataFile.newInstance(destDir.getPath() + "/file");
+            destFile.load();
+            assertThat(destFile.getNodeId().equals(srcFile.getNodeId()), is(false));
+            assertThat(destFile.getContentType(), is("text/plain"));
+            assertThat(destFile.getContentLength(), is(5L));
+            assertThat(destFile.getContentFileName(), is(DavCmpFsImpl.CONTENT_FILE_NAME));
+            File destContent = new File(destDir, "file/" + DavCmpFsImpl.CONTENT_FILE_NAME);
+            assertThat(new String(Files.readAllBytes(destContent.toPath()), "UTF-8"), is("hello"));
+            assertThat(new File(destDir, "sub/" + DavMetadataFile.DAV_META_FILE_NAME).exists(), is(true));
+        } finally {
+            FileUtils.deleteDirectory(srcDir);
+            FileUtils.deleteDirectory(destDir);
+        }
+    }
+
+    /**
+     * Test copyTree().
+     * error.
+     * OData collection can not be copied.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void copyTree_Error_odata_collection() throws Exception {
+        File srcDir = new File(TEST_DIR_PATH + SOURCE_FILE);
+        File destDir = new File(TEST_DIR_PATH + DEST_FILE);
+        try {
+            srcDir.mkdirs();
+            DavMetadataFile.prepareNewFile(new File(srcDir, DavMetadataFile.DAV_META_FILE_NAME),
+                    DavCmp.TYPE_COL_ODATA).save();
+
+            // Mock settings
+            davCmpFsImpl = PowerMockito.spy(DavCmpFsImpl.create("", null));
+
+            // Run method
+            Method method = DavCmpFsImpl.class.getDeclaredMethod("copyTree",
+                    File.class, File.class, String.class, int.class, boolean.class);
+            method.setAccessible(true);
+            try {
+                method.invoke(davCmpFsImpl, srcDir, destDir, "https://fqdn/cell/box/source", 1, true);
+                fail("Not exception.");
+            } catch (InvocationTargetException e) {
+                // Confirm result
+                assertThat(e.getCause(), is(instanceOf(PersoniumCoreException.class)));
+                PersoniumCoreException exception = (PersoniumCoreException) e.getCause();
+                assertThat(exception.getCode(), is(PersoniumCoreException.Dav.RESOURCE_PROHIBITED_TO_COPY.getCode()));
+                assertThat(destDir.exists(), is(false));
+            }
+        } finally {
+            FileUtils.deleteDirectory(srcDir);
+            FileUtils.deleteDirectory(destDir);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.fs;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import io.personium.core.PersoniumUnitConfig;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for DavContentSweeper.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ PersoniumUnitConfig.class })
+@Category({ Unit.class })
+public class DavContentSweeperTest {
+
+    /** Grace period (msec). */
+    private static final long GRACE_PERIOD = 1000L;
+
+    /** Test dir. */
+    private File testDir;
+
+    /**
+     * Before.
+     * @throws Exception Unintended exception in test
+     */
+    @Before
+    public void before() throws Exception {
+        testDir = Files.createTempDirectory("DavContentSweeperTest").toFile();
+        PowerMockito.mockStatic(PersoniumUnitConfig.class);
+        PowerMockito.doReturn(GRACE_PERIOD).when(PersoniumUnitConfig.class, "getDavVersionGracePeriod");
+    }
+
+    /**
+     * After.
+     * @throws Exception Unintended exception in test
+     */
+    @After
+    public void after() throws Exception {
+        DavContentSweeper.stop();
+        FileUtils.deleteDirectory(testDir);
+    }
+
+    /**
+     * Test sweep().
+     * normal.
+     * Only the versions other than the current one that passed the grace period are deleted.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void sweep_Normal() throws Exception {
+        long old = System.currentTimeMillis() - GRACE_PERIOD * 2;
+        File content = createFile(DavCmpFsImpl.CONTENT_FILE_NAME, old);
+        File meta = createFile(DavMetadataFile.DAV_META_FILE_NAME, old);
+        File current = createFile("content.1", old);
+        File replaced = createFile("content.2", old);
+        File recent = createFile("content.3", System.currentTimeMillis());
+
+        // Run method
+        DavContentSweeper.sweep(testDir, current.getName());
+
+        // Confirm result
+        assertThat(content.exists(), is(true));
+        assertThat(meta.exists(), is(true));
+        assertThat(current.exists(), is(true));
+        assertThat(replaced.exists(), is(false));
+        assertThat(recent.exists(), is(true));
+    }
+
+    /**
+     * Test retire().
+     * normal.
+     * The version is kept during the grace period.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void retire_Normal() throws Exception {
+        File version = createFile("content.1", System.currentTimeMillis() - GRACE_PERIOD * 2);
+        DavContentSweeper.start();
+
+        // Run method
+        DavContentSweeper.retire(version);
+
+        // Confirm result
+        assertThat(version.exists(), is(true));
+        // Not deleted by sweep until the grace period passes, since the retired time is recorded.
+        DavContentSweeper.sweep(testDir, "content.2");
+        assertThat(version.exists(), is(true));
+        Thread.sleep(GRACE_PERIOD * 2);
+        assertThat(version.exists(), is(false));
+    }
+
+    /**
+     * Test retire().
+     * normal.
+     * The version is deleted immediately if the sweeper is not started.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void retire_Normal_not_started() throws Exception {
+        File version = createFile("content.1", System.currentTimeMillis());
+
+        // Run method
+        DavContentSweeper.retire(version);
+
+        // Confirm result
+        assertThat(version.exists(), is(false));
+    }
+
+    private File createFile(String name, long lastModified) throws Exception {
+        File file = new File(testDir, name);
+        Files.write(file.toPath(), name.getBytes("UTF-8"));
+        file.setLastModified(lastModified);
+        return file;
+    }
+}
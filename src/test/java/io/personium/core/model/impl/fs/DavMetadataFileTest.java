@@ -477,4 +477,35 @@ public class DavMetadataFileTest {
             metaFile.delete();
         }
     }
+
+    /**
+     * Test save().
+     * normal.
+     * The name of the content file is saved and no temporary file is left.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void save_Normal_content_file_name() throws Exception {
+        File metaFile = new File(TEST_DIR_PATH + "/.pmeta");
+        try {
+            davMetadataFile = DavMetadataFile.prepareNewFile(metaFile, "dav.file");
+            davMetadataFile.save();
+            DavMetadataFile loaded = DavMetadataFile.newInstance(metaFile);
+            loaded.load();
+            assertThat(loaded.getContentFileName(), is(DavCmpFsImpl.CONTENT_FILE_NAME));
+
+            // Run method
+            davMetadataFile.setContentFileName("content.1");
+            davMetadataFile.save();
+
+            // Confirm result
+            loaded = DavMetadataFile.newInstance(metaFile);
+            loaded.load();
+            assertThat(loaded.getContentFileName(), is("content.1"));
+            assertThat(loaded.getVersion(), is(2L));
+            assertThat(testDir.list().length, is(1));
+        } finally {
+            metaFile.delete();
+        }
+    }
 }
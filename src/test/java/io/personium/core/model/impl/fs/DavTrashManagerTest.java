@@ -0,0 +1,192 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.fs;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import io.personium.core.model.progress.ProgressManager;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for DavTrashManager.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ ProgressManager.class })
+@Category({ Unit.class })
+public class DavTrashManagerTest {
+
+    /** Test dir. */
+    private File testDir;
+    /** Trash root dir. */
+    private File trashRoot;
+
+    /**
+     * Before.
+     * @throws Exception Unintended exception in test
+     */
+    @Before
+    public void before() throws Exception {
+        testDir = Files.createTempDirectory("DavTrashManagerTest").toFile();
+        trashRoot = new File(testDir, DavTrashManager.TRASH_DIR_NAME);
+        PowerMockito.mockStatic(ProgressManager.class);
+    }
+
+    /**
+     * After.
+     * @throws Exception Unintended exception in test
+     */
+    @After
+    public void after() throws Exception {
+        FileUtils.deleteDirectory(testDir);
+    }
+
+    /**
+     * Test doMoveToTrash().
+     * normal.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void doMoveToTrash_Normal() throws Exception {
+        File target = createTree("col", 3);
+        DavTrashManager manager = new DavTrashManager(trashRoot, 10);
+        DavTrashItem item = DavTrashItem.forFile();
+
+        // Run method
+        manager.doMoveToTrash(target, item);
+
+        // Confirm result
+        File itemDir = new File(trashRoot, item.getId());
+        assertThat(target.exists(), is(false));
+        assertThat(new File(itemDir, DavTrashItem.ITEM_FILE_NAME).exists(), is(true));
+        assertThat(new File(itemDir, DavTrashItem.DATA_DIR_NAME + "/file2").exists(), is(true));
+        assertThat(new File(trashRoot, item.getId() + DavTrashManager.PREPARING_SUFFIX).exists(), is(false));
+    }
+
+    /**
+     * Test doMoveToTrash().
+     * normal.
+     * Target does not exist.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void doMoveToTrash_Normal_target_not_exists() throws Exception {
+        DavTrashManager manager = new DavTrashManager(trashRoot, 10);
+        DavTrashItem item = DavTrashItem.forFile();
+
+        // Run method
+        manager.doMoveToTrash(new File(testDir, "notExists"), item);
+
+        // Confirm result
+        File itemDir = new File(trashRoot, item.getId());
+        assertThat(new File(itemDir, DavTrashItem.ITEM_FILE_NAME).exists(), is(true));
+        assertThat(new File(itemDir, DavTrashItem.DATA_DIR_NAME).exists(), is(false));
+    }
+
+    /**
+     * Test reap().
+     * normal.
+     * Files are deleted within the batch size and resumed at the next run.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void reap_Normal_resumed_by_batch() throws Exception {
+        // 5 files and 1 directory.
+        File target = createTree("col", 5);
+        DavTrashManager manager = new DavTrashManager(trashRoot, 4);
+        DavTrashItem item = DavTrashItem.forFile();
+        manager.doMoveToTrash(target, item);
+        File itemDir = new File(trashRoot, item.getId());
+
+        // Run method
+        manager.reap();
+
+        // Confirm result
+        assertThat(itemDir.exists(), is(true));
+        DavTrashItem loaded = DavTrashItem.load(itemDir);
+        assertThat(loaded.getPurged(), is(4L));
+
+        // Run method
+        manager.reap();
+
+        // Confirm result
+        assertThat(itemDir.exists(), is(false));
+    }
+
+    /**
+     * Test reap().
+     * normal.
+     * Preparing item without data left by a crash is removed.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void reap_Normal_preparing_item_without_data() throws Exception {
+        File preparingDir = new File(trashRoot, "itemId" + DavTrashManager.PREPARING_SUFFIX);
+        Files.createDirectories(preparingDir.toPath());
+        DavTrashManager manager = new DavTrashManager(trashRoot, 10);
+
+        // Run method
+        manager.reap();
+
+        // Confirm result
+        assertThat(preparingDir.exists(), is(false));
+        assertThat(new File(trashRoot, "itemId").exists(), is(false));
+    }
+
+    /**
+     * Test reap().
+     * normal.
+     * Preparing item with data left by a crash is reaped.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void reap_Normal_preparing_item_with_data() throws Exception {
+        File preparingDir = new File(trashRoot, "itemId" + DavTrashManager.PREPARING_SUFFIX);
+        Files.createDirectories(new File(preparingDir, DavTrashItem.DATA_DIR_NAME).toPath());
+        DavTrashManager manager = new DavTrashManager(trashRoot, 10);
+
+        // Run method
+        manager.reap();
+
+        // Confirm result
+        assertThat(preparingDir.exists(), is(false));
+        assertThat(new File(trashRoot, "itemId").exists(), is(false));
+    }
+
+    private File createTree(String name, int fileCount) throws IOException {
+        File dir = new File(testDir, name);
+        Files.createDirectories(dir.toPath());
+        for (int i = 0; i < fileCount; i++) {
+            Files.write(new File(dir, "file" + i).toPath(), "test".getBytes());
+        }
+        return dir;
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.lock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for AccountFailureTracker.
+ */
+@Category({ Unit.class })
+public class AccountFailureTrackerTest {
+
+    private static final long WINDOW = 10000;
+    private static final long LOCK = 1000;
+    private static final long NOW = 1500000000000L;
+
+    /**
+     * Test recordFailure().
+     * normal.
+     * The account is locked when the failures within the window reach the threshold.
+     */
+    @Test
+    public void recordFailure_Normal_threshold() {
+        AccountFailureTracker tracker = new AccountFailureTracker(3, WINDOW, LOCK, LOCK, 100);
+
+        assertThat(tracker.recordFailure("account", NOW), is(0L));
+        assertThat(tracker.recordFailure("account", NOW + 1000), is(0L));
+        assertThat(tracker.isLocked("account", NOW + 1000), is(false));
+
+        // Run method
+        assertThat(tracker.recordFailure("account", NOW + 2000), is(LOCK));
+
+        // Confirm result
+        assertThat(tracker.isLocked("account", NOW + 2000), is(true));
+        assertThat(tracker.isLocked("account", NOW + 2000 + LOCK), is(false));
+        assertThat(tracker.isLocked("other", NOW + 2000), is(false));
+    }
+
+    /**
+     * Test recordFailure().
+     * normal.
+     * Failures out of the window are not counted.
+     */
+    @Test
+    public void recordFailure_Normal_window_slides() {
+        AccountFailureTracker tracker = new AccountFailureTracker(2, WINDOW, LOCK, LOCK, 100);
+
+        tracker.recordFailure("account", NOW);
+
+        // Run method
+        long result = tracker.recordFailure("account", NOW + WINDOW + 1000);
+
+        // Confirm result
+        assertThat(result, is(0L));
+        assertThat(tracker.isLocked("account", NOW + WINDOW + 1000), is(false));
+    }
+
+    /**
+     * Test recordFailure().
+     * normal.
+     * Lock time doubles on each lock up to the maximum.
+     */
+    @Test
+    public void recordFailure_Normal_backoff() {
+        AccountFailureTracker tracker = new AccountFailureTracker(1, WINDOW, LOCK, LOCK * 3, 100);
+
+        // Run method and confirm result
+        assertThat(tracker.recordFailure("account", NOW), is(LOCK));
+        assertThat(tracker.recordFailure("account", NOW + 100), is(LOCK * 2));
+        assertThat(tracker.recordFailure("account", NOW + 200), is(LOCK * 3));
+        assertThat(tracker.recordFailure("account", NOW + 300), is(LOCK * 3));
+        assertThat(tracker.isLocked("account", NOW + 300 + LOCK * 3 - 1), is(true));
+
+        // Back-off is reset after the window.
+        assertThat(tracker.recordFailure("account", NOW + 300 + LOCK * 3 + WINDOW + 1), is(LOCK));
+    }
+
+    /**
+     * Test lock().
+     * normal.
+     * Lock decided elsewhere is applied without failures.
+     */
+    @Test
+    public void lock_Normal() {
+        AccountFailureTracker tracker = new AccountFailureTracker(5, WINDOW, LOCK, LOCK, 100);
+
+        // Run method
+        tracker.lock("account", LOCK, NOW);
+
+        // Confirm result
+        assertThat(tracker.isLocked("account", NOW + LOCK - 1), is(true));
+        assertThat(tracker.isLocked("account", NOW + LOCK), is(false));
+    }
+
+    /**
+     * Test sweep().
+     * normal.
+     * Accounts without failures within the window are forgotten.
+     */
+    @Test
+    public void sweep_Normal() {
+        AccountFailureTracker tracker = new AccountFailureTracker(5, WINDOW, LOCK, LOCK, 100);
+        tracker.recordFailure("old", NOW);
+        tracker.recordFailure("new", NOW + WINDOW);
+
+        // Run method
+        tracker.sweep(NOW + WINDOW + 1);
+
+        // Confirm result
+        assertThat(tracker.size(), is(1));
+    }
+
+    /**
+     * Test recordFailure().
+     * normal.
+     * Number of accounts kept does not exceed the limit, and locked accounts are kept.
+     */
+    @Test
+    public void recordFailure_Normal_bounded() {
+        AccountFailureTracker tracker = new AccountFailureTracker(1, WINDOW, LOCK * 100, LOCK * 100, 10);
+        AccountFailureTracker counter = new AccountFailureTracker(5, WINDOW, LOCK, LOCK, 10);
+        tracker.recordFailure("locked", NOW);
+
+        // Run method
+        for (int i = 0; i < 100; i++) {
+            counter.recordFailure("account" + i, NOW);
+            tracker.lock("account" + i, 0, NOW);
+        }
+
+        // Confirm result
+        assertThat(counter.size() <= 10, is(true));
+        assertThat(tracker.size() <= 10, is(true));
+        assertThat(tracker.isLocked("locked", NOW + 1), is(true));
+    }
+}
@@ -27,7 +27,9 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({
     LockManagerTest.class,
     AccountLockManagerTest.class,
-    CellLockManagerTest.class
+    AccountFailureTrackerTest.class,
+    CellLockManagerTest.class,
+    LockSchedulerTest.class
     })
 public class AllTests {
 }
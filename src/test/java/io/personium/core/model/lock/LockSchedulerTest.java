@@ -0,0 +1,153 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.lock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for LockScheduler.
+ */
+@Category({ Unit.class })
+public class LockSchedulerTest {
+
+    /**
+     * After.
+     */
+    @After
+    public void after() {
+        LockScheduler.setLowPriority(false);
+    }
+
+    /**
+     * Test hasWaiters().
+     * normal.
+     * Waiters are counted until all of them end waiting.
+     */
+    @Test
+    public void hasWaiters_Normal() {
+        String key = "key" + new Date().getTime();
+        assertThat(LockScheduler.hasWaiters(key), is(false));
+
+        assertThat(LockScheduler.startWaiting(key), is(true));
+        assertThat(LockScheduler.startWaiting(key), is(true));
+        LockScheduler.endWaiting(key);
+        assertThat(LockScheduler.hasWaiters(key), is(true));
+        LockScheduler.endWaiting(key);
+        assertThat(LockScheduler.hasWaiters(key), is(false));
+    }
+
+    /**
+     * Test startWaiting().
+     * normal.
+     * Low priority threads are not counted.
+     */
+    @Test
+    public void startWaiting_Normal_low_priority() {
+        String key = "key" + new Date().getTime();
+        LockScheduler.setLowPriority(true);
+
+        // Run method
+        assertThat(LockScheduler.startWaiting(key), is(false));
+
+        // Confirm result
+        assertThat(LockScheduler.hasWaiters(key), is(false));
+    }
+
+    /**
+     * Test yieldTo().
+     * normal.
+     * Returns immediately when nobody is waiting.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void yieldTo_Normal_no_waiter() throws Exception {
+        String key = "key" + new Date().getTime();
+        long yields = LockScheduler.getYieldCount();
+
+        // Run method
+        assertThat(LockScheduler.yieldTo(key, 10000), is(false));
+
+        // Confirm result
+        assertThat(LockScheduler.getYieldCount(), is(yields));
+    }
+
+    /**
+     * Test yieldTo().
+     * normal.
+     * Waits until the waiter ends waiting.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void yieldTo_Normal_waiter() throws Exception {
+        final String key = "key" + new Date().getTime();
+        long yields = LockScheduler.getYieldCount();
+        LockScheduler.startWaiting(key);
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                LockScheduler.endWaiting(key);
+            }
+        });
+        waiter.start();
+
+        // Run method
+        long start = System.currentTimeMillis();
+        assertThat(LockScheduler.yieldTo(key, 10000), is(true));
+
+        // Confirm result
+        assertTrue(System.currentTimeMillis() - start < 10000);
+        assertThat(LockScheduler.hasWaiters(key), is(false));
+        assertThat(LockScheduler.getYieldCount(), is(yields + 1));
+        waiter.join();
+    }
+
+    /**
+     * Test yieldTo().
+     * normal.
+     * Stops waiting after the maximum time.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void yieldTo_Normal_timeout() throws Exception {
+        String key = "key" + new Date().getTime();
+        LockScheduler.startWaiting(key);
+        try {
+            // Run method
+            assertThat(LockScheduler.yieldTo(key, 50), is(true));
+
+            // Confirm result
+            assertThat(LockScheduler.hasWaiters(key), is(true));
+        } finally {
+            LockScheduler.endWaiting(key);
+        }
+    }
+}
@@ -29,6 +29,7 @@ import org.junit.runners.Suite.SuiteClasses;
     ODataSvcCollectionResourceTest.class,
     ODataSvcSchemaResourceTest.class,
     DavCollectionResourceTest.class,
+    EngineRelayExecutorTest.class,
     PersoniumEngineSvcCollectionResourceTest.class
 })
 public class AllTests {
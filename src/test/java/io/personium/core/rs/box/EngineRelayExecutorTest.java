@@ -0,0 +1,230 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.rs.box;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import io.personium.core.PersoniumCoreException;
+import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.metrics.RequestTiming;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for EngineRelayExecutor.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ PersoniumUnitConfig.class })
+@Category({ Unit.class })
+public class EngineRelayExecutorTest {
+
+    /**
+     * Before.
+     * @throws Exception Unintended exception in test
+     */
+    @Before
+    public void before() throws Exception {
+        PowerMockito.mockStatic(PersoniumUnitConfig.class);
+        PowerMockito.doReturn(2).when(PersoniumUnitConfig.class, "getEngineRelayThreadNum");
+        PowerMockito.doReturn(1).when(PersoniumUnitConfig.class, "getEngineRelayMaxConcurrency");
+        PowerMockito.doReturn(1).when(PersoniumUnitConfig.class, "getEngineRelayQueueSize");
+    }
+
+    /**
+     * After.
+     */
+    @After
+    public void after() {
+        EngineRelayExecutor.stop();
+    }
+
+    /**
+     * Test execute().
+     * normal.
+     * The relay runs on the thread of the executor.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void execute_Normal() throws Exception {
+        EngineRelayExecutor.start();
+        final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        // Run method
+        EngineRelayExecutor.execute("/route", new Runnable() {
+            @Override
+            public void run() {
+                thread.set(Thread.currentThread());
+                done.countDown();
+            }
+        });
+
+        // Confirm result
+        assertThat(done.await(1, TimeUnit.SECONDS), is(true));
+        assertThat(thread.get(), is(not(Thread.currentThread())));
+    }
+
+    /**
+     * Test execute().
+     * error.
+     * The relays over the limit of the route are rejected, and those of other routes are not.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void execute_Error_too_many_relays() throws Exception {
+        EngineRelayExecutor.start();
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+        Runnable blocking = new Runnable() {
+            @Override
+            public void run() {
+                running.countDown();
+                try {
+                    finish.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        EngineRelayExecutor.execute("/route1", blocking);
+        running.await(1, TimeUnit.SECONDS);
+
+        // Run method
+        try {
+            EngineRelayExecutor.execute("/route1", blocking);
+            fail("Not throws exception.");
+        } catch (PersoniumCoreException e) {
+            // Confirm result
+            assertThat(e.getCode(), is(PersoniumCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS.getCode()));
+        }
+        final CountDownLatch other = new CountDownLatch(1);
+        EngineRelayExecutor.execute("/route2", new Runnable() {
+            @Override
+            public void run() {
+                other.countDown();
+            }
+        });
+        assertThat(other.await(1, TimeUnit.SECONDS), is(true));
+        finish.countDown();
+    }
+
+    /**
+     * Test execute().
+     * normal.
+     * The relay runs on the calling thread if the executor is not started.
+     */
+    @Test
+    public void execute_Normal_not_started() {
+        final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+
+        // Run method
+        EngineRelayExecutor.execute("/route", new Runnable() {
+            @Override
+            public void run() {
+                thread.set(Thread.currentThread());
+            }
+        });
+
+        // Confirm result
+        assertThat(thread.get(), is(Thread.currentThread()));
+    }
+
+    /**
+     * Test execute().
+     * normal.
+     * The timing of the request is handed over to the thread of the relay.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void execute_Normal_timing_handed_over() throws Exception {
+        EngineRelayExecutor.start();
+        RequestTiming timing = RequestTiming.start();
+        final AtomicReference<RequestTiming> relayed = new AtomicReference<RequestTiming>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        // Run method
+        EngineRelayExecutor.execute("/route", new Runnable() {
+            @Override
+            public void run() {
+                relayed.set(RequestTiming.current());
+                done.countDown();
+            }
+        });
+
+        // Confirm result
+        assertThat(done.await(1, TimeUnit.SECONDS), is(true));
+        assertThat(relayed.get(), is(sameInstance(timing)));
+        assertThat(RequestTiming.current(), is(nullValue()));
+    }
+
+    /**
+     * Test execute().
+     * error.
+     * The relays over the limit of the queue are rejected.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void execute_Error_queue_full() throws Exception {
+        EngineRelayExecutor.start();
+        final CountDownLatch running = new CountDownLatch(2);
+        final CountDownLatch finish = new CountDownLatch(1);
+        Runnable blocking = new Runnable() {
+            @Override
+            public void run() {
+                running.countDown();
+                try {
+                    finish.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        // Both threads are busy, and one relay waits in the queue.
+        EngineRelayExecutor.execute("/route1", blocking);
+        EngineRelayExecutor.execute("/route2", blocking);
+        running.await(1, TimeUnit.SECONDS);
+        EngineRelayExecutor.execute("/route3", blocking);
+
+        // Run method
+        try {
+            EngineRelayExecutor.execute("/route4", blocking);
+            fail("Not throws exception.");
+        } catch (PersoniumCoreException e) {
+            // Confirm result
+            assertThat(e.getCode(), is(PersoniumCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS.getCode()));
+        } finally {
+            finish.countDown();
+        }
+    }
+}
@@ -25,7 +25,10 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 @RunWith(Suite.class)
 @SuiteClasses({
-    RuleManagerTest.class
+    RuleManagerTest.class,
+    TimerRuleManagerTest.class,
+    TimerTableTest.class,
+    TimingWheelTest.class
 })
 public class AllTests {
 }
@@ -20,12 +20,25 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Matchers.anyString;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
@@ -33,8 +46,11 @@ import org.junit.runner.RunWith;
 
 import org.slf4j.Logger;
 
+import io.personium.core.PersoniumUnitConfig;
 import io.personium.core.event.EventPublisher;
 import io.personium.core.event.PersoniumEvent;
+import io.personium.core.model.Cell;
+import io.personium.core.model.impl.es.odata.CellCtlODataProducer;
 import io.personium.core.utils.UriUtils;
 import io.personium.test.categories.Unit;
 
@@ -43,9 +59,11 @@ import io.personium.test.categories.Unit;
  */
 @Category({ Unit.class })
 @RunWith(PowerMockRunner.class)
-@PrepareForTest({ EventPublisher.class, UriUtils.class })
+@PrepareForTest({ EventPublisher.class, UriUtils.class, RuleManager.class })
 public class RuleManagerTest {
 
+    private static final long TIMEOUT_SECONDS = 10L;
+
     /**
      * Test match().
      * Normal test.
@@ -1184,4 +1202,141 @@ public class RuleManagerTest {
         publisher.send(event);
     }
 
+    /**
+     * Test rules cache.
+     * Normal test.
+     * Rules and boxes of the least recently used cell are evicted.
+     * @throws Exception exception occurred in some errors
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void rules_Normal_least_recently_used_cell_is_evicted() throws Exception {
+        String cacheSize = PersoniumUnitConfig.get(PersoniumUnitConfig.Rule.CACHE_SIZE);
+        PersoniumUnitConfig.set(PersoniumUnitConfig.Rule.CACHE_SIZE, "2");
+        try {
+            Constructor<RuleManager> constructor = RuleManager.class.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            RuleManager rman = constructor.newInstance();
+            Field rulesField = RuleManager.class.getDeclaredField("rules");
+            rulesField.setAccessible(true);
+            Map<String, Map<String, RuleManager.RuleInfo>> rules =
+                    (Map<String, Map<String, RuleManager.RuleInfo>>) rulesField.get(rman);
+            Field boxesField = RuleManager.class.getDeclaredField("boxes");
+            boxesField.setAccessible(true);
+            Map<String, Map<String, RuleManager.BoxInfo>> boxes =
+                    (Map<String, Map<String, RuleManager.BoxInfo>>) boxesField.get(rman);
+
+            Field lastAccessField = RuleManager.class.getDeclaredField("lastAccess");
+            lastAccessField.setAccessible(true);
+            Map<String, Long> lastAccess = (Map<String, Long>) lastAccessField.get(rman);
+
+            // --------------------
+            // Run method
+            // --------------------
+            boxes.put("cell1", new HashMap<String, RuleManager.BoxInfo>());
+            boxes.put("cell2", new HashMap<String, RuleManager.BoxInfo>());
+            rules.put("cell1", new HashMap<String, RuleManager.RuleInfo>());
+            lastAccess.put("cell1", 1L);
+            rules.put("cell2", new HashMap<String, RuleManager.RuleInfo>());
+            lastAccess.put("cell2", 2L);
+            lastAccess.put("cell1", 3L);
+            rules.put("cell3", new HashMap<String, RuleManager.RuleInfo>());
+            lastAccess.put("cell3", 4L);
+            Whitebox.invokeMethod(rman, "evictRules");
+
+            // --------------------
+            // Confirm result
+            // --------------------
+            assertThat(rules.containsKey("cell1"), is(true));
+            assertThat(rules.containsKey("cell2"), is(false));
+            assertThat(rules.containsKey("cell3"), is(true));
+            assertThat(boxes.containsKey("cell1"), is(true));
+            assertThat(boxes.containsKey("cell2"), is(false));
+        } finally {
+            PersoniumUnitConfig.set(PersoniumUnitConfig.Rule.CACHE_SIZE, cacheSize);
+        }
+    }
+
+    /**
+     * Test rules cache.
+     * Normal test.
+     * A slow change of the rules of a cell does not block loading the rules of another cell for judge().
+     * @throws Exception exception occurred in some errors
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void rules_Normal_rule_change_does_not_block_other_cell() throws Exception {
+        Constructor<RuleManager> constructor = RuleManager.class.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        final RuleManager rman = PowerMockito.spy(constructor.newInstance());
+        Field rulesField = RuleManager.class.getDeclaredField("rules");
+        rulesField.setAccessible(true);
+        Map<String, Map<String, RuleManager.RuleInfo>> rules =
+                (Map<String, Map<String, RuleManager.RuleInfo>>) rulesField.get(rman);
+        final Cell cell1 = PowerMockito.mock(Cell.class);
+        PowerMockito.doReturn("cell1").when(cell1).getId();
+        final Cell cell2 = PowerMockito.mock(Cell.class);
+        PowerMockito.doReturn("cell2").when(cell2).getId();
+        rules.put("cell1", new HashMap<String, RuleManager.RuleInfo>());
+
+        // The rule of cell1 is read from DB slowly.
+        final CountDownLatch changing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        PowerMockito.doAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                changing.countDown();
+                release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                return true;
+            }
+        }).when(rman, "registerRuleByOEntityKey", Mockito.any(), Mockito.any(), Mockito.any());
+        PowerMockito.doReturn(new ArrayList<RuleManager.RuleInfo>()).when(rman, "loadRule", cell2);
+        final String type = Whitebox.getInternalState(RuleManager.class, "RULEEVENT_RULE_CREATE");
+        final PersoniumEvent event = new PersoniumEvent.Builder()
+                .type(type)
+                .object("personium-localcell:/__ctl/Rule('rule1')")
+                .build();
+        Thread changer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Whitebox.invokeMethod(rman, "handleRuleChange",
+                            new Class<?>[] {String.class, PersoniumEvent.class, CellCtlODataProducer.class, Cell.class},
+                            type, event, null, cell1);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        changer.start();
+        try {
+            assertThat(changing.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), is(true));
+
+            // --------------------
+            // Run method
+            // --------------------
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                Future<Map<String, RuleManager.RuleInfo>> loaded = executor.submit(
+                        new Callable<Map<String, RuleManager.RuleInfo>>() {
+                    @Override
+                    public Map<String, RuleManager.RuleInfo> call() throws Exception {
+                        return Whitebox.invokeMethod(rman, "getRuleMap", cell2);
+                    }
+                });
+
+                // --------------------
+                // Confirm result
+                // --------------------
+                assertThat(loaded.get(TIMEOUT_SECONDS, TimeUnit.SECONDS).isEmpty(), is(true));
+                assertThat(rules.containsKey("cell2"), is(true));
+            } finally {
+                executor.shutdownNow();
+            }
+        } finally {
+            release.countDown();
+            changer.join();
+        }
+    }
+
 }
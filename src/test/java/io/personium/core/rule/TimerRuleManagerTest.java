@@ -0,0 +1,111 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.rule;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.powermock.reflect.Whitebox;
+
+import io.personium.core.event.PersoniumEventType;
+import io.personium.core.model.Cell;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for TimerRuleManager.
+ */
+@Category({ Unit.class })
+public class TimerRuleManagerTest {
+
+    private TimerRuleManager manager;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Before.
+     * @throws Exception Unintended exception in test
+     */
+    @Before
+    public void before() throws Exception {
+        Constructor<TimerRuleManager> constructor = TimerRuleManager.class.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        manager = constructor.newInstance();
+        // Start the wheel before the current minute, so that a oneshot timer of now expires at the next tick.
+        long start = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(2);
+        Whitebox.setInternalState(manager, "wheel", new TimingWheel<TimerRuleManager.TimerInfo>(
+                TimerRuleManager.TICK_MILLIS, TimerRuleManager.WHEEL_SIZE, TimerRuleManager.WHEEL_LEVELS, start));
+        scheduler = mock(ScheduledExecutorService.class);
+        Whitebox.setInternalState(manager, "scheduler", scheduler);
+    }
+
+    /**
+     * Test unregisterCellRules().
+     * normal.
+     * The rules of the cell are removed from their timers at once, and the rules of other cells are kept.
+     */
+    @Test
+    public void unregisterCellRules_Normal_removed_from_timers() {
+        manager.registerRule("rule1", null, PersoniumEventType.timerPeriodic(), "1", null, "cell1", null);
+        manager.registerRule("rule2", null, PersoniumEventType.timerPeriodic(), "1", null, "cell2", null);
+
+        // Run method
+        manager.unregisterCellRules("cell1");
+
+        // Confirm result
+        assertThat(manager.getTimerList(cell("cell1")).size(), is(0));
+        assertThat(manager.getTimerList(cell("cell2")).size(), is(1));
+        assertThat(manager.getCellIds().contains("cell1"), is(false));
+    }
+
+    /**
+     * Test tick().
+     * normal.
+     * The events of the expired timer are posted on the thread pool per cell, not on the ticking thread.
+     */
+    @Test
+    public void tick_Normal_events_posted_on_pool() {
+        String now = Long.toString(System.currentTimeMillis());
+        manager.registerRule("rule1", null, PersoniumEventType.timerOneshot(), now, null, "cell1", null);
+        manager.registerRule("rule2", null, PersoniumEventType.timerOneshot(), now, "info", "cell1", null);
+        manager.registerRule("rule3", null, PersoniumEventType.timerOneshot(), now, null, "cell2", null);
+
+        // Run method
+        manager.tick();
+
+        // Confirm result
+        verify(scheduler, times(2)).execute(any(Runnable.class));
+        assertThat(manager.getTimerList(cell("cell1")).size(), is(0));
+        assertThat(manager.getTimerList(cell("cell2")).size(), is(0));
+    }
+
+    private static Cell cell(String cellId) {
+        Cell cell = mock(Cell.class);
+        doReturn(cellId).when(cell).getId();
+        return cell;
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.rule;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.core.rule.TimerRuleManager.TimerRuleInfo;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for TimerTable.
+ */
+@Category({ Unit.class })
+public class TimerTableTest {
+
+    /**
+     * Test save() and load().
+     * normal.
+     * The saved rules are loaded as they were, including null fields.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void save_load_Normal() throws Exception {
+        File file = File.createTempFile("timers", null);
+        try {
+            TimerTable table = new TimerTable(file);
+            TimerRuleInfo periodic = new TimerRuleInfo();
+            periodic.type = "timer.periodic";
+            periodic.object = "10";
+            periodic.info = "info";
+            periodic.cellId = "cellId";
+            periodic.boxId = "boxId";
+            periodic.subject = "https://example.com/cell/#me";
+            periodic.count = 2;
+            TimerRuleInfo oneshot = new TimerRuleInfo();
+            oneshot.type = "timer.oneshot";
+            oneshot.object = "1500000000000";
+            oneshot.cellId = "cellId";
+            oneshot.count = 1;
+
+            // Run method
+            table.save(Arrays.asList(periodic, oneshot));
+            List<TimerRuleInfo> loaded = table.load();
+
+            // Confirm result
+            assertThat(loaded.size(), is(2));
+            assertThat(loaded.get(0).type, is(periodic.type));
+            assertThat(loaded.get(0).object, is(periodic.object));
+            assertThat(loaded.get(0).info, is(periodic.info));
+            assertThat(loaded.get(0).cellId, is(periodic.cellId));
+            assertThat(loaded.get(0).boxId, is(periodic.boxId));
+            assertThat(loaded.get(0).subject, is(periodic.subject));
+            assertThat(loaded.get(0).count, is(2L));
+            assertThat(loaded.get(1).object, is(oneshot.object));
+            assertThat(loaded.get(1).info, is(nullValue()));
+            assertThat(loaded.get(1).boxId, is(nullValue()));
+            assertThat(loaded.get(1).subject, is(nullValue()));
+            assertThat(loaded.get(1).count, is(1L));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test load().
+     * normal.
+     * null is returned if the table is not saved.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void load_Normal_not_saved() throws Exception {
+        File file = File.createTempFile("timers", null);
+        file.delete();
+
+        // Run method and confirm result
+        assertThat(new TimerTable(file).load(), is(nullValue()));
+    }
+}
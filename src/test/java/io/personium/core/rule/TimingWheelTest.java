@@ -0,0 +1,103 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.rule;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for TimingWheel.
+ */
+@Category({ Unit.class })
+public class TimingWheelTest {
+
+    private static final long TICK = 1000L;
+    private static final int WHEEL_SIZE = 8;
+    private static final int LEVELS = 3;
+    private static final long START = 1000000L;
+
+    /**
+     * Test advance().
+     * normal.
+     * Timeouts on each level expire at the tick of their expiration, not earlier.
+     */
+    @Test
+    public void advance_Normal() {
+        TimingWheel<String> wheel = new TimingWheel<String>(TICK, WHEEL_SIZE, LEVELS, START);
+        long[] delays = {TICK, TICK * 5, TICK * 20, TICK * 100, TICK * 1000};
+        for (long delay : delays) {
+            wheel.add(START + delay, Long.toString(delay));
+        }
+        assertThat(wheel.size(), is(delays.length));
+
+        // Run method and confirm result
+        for (long delay : delays) {
+            assertThat(wheel.advance(START + delay - 1).isEmpty(), is(true));
+            List<TimingWheel.Timeout<String>> expired = wheel.advance(START + delay);
+            assertThat(expired.size(), is(1));
+            assertThat(expired.get(0).getValue(), is(Long.toString(delay)));
+        }
+        assertThat(wheel.size(), is(0));
+    }
+
+    /**
+     * Test advance().
+     * normal.
+     * A timeout already expired when added is returned on the next advance.
+     */
+    @Test
+    public void advance_Normal_already_expired() {
+        TimingWheel<String> wheel = new TimingWheel<String>(TICK, WHEEL_SIZE, LEVELS, START);
+        wheel.add(START - TICK, "past");
+
+        // Run method
+        List<TimingWheel.Timeout<String>> expired = wheel.advance(START);
+
+        // Confirm result
+        assertThat(expired.size(), is(1));
+        assertThat(expired.get(0).getValue(), is("past"));
+    }
+
+    /**
+     * Test cancel().
+     * normal.
+     * A cancelled timeout does not expire.
+     */
+    @Test
+    public void cancel_Normal() {
+        TimingWheel<String> wheel = new TimingWheel<String>(TICK, WHEEL_SIZE, LEVELS, START);
+        TimingWheel.Timeout<String> timeout = wheel.add(START + TICK * 30, "cancelled");
+        wheel.add(START + TICK * 30, "kept");
+
+        // Run method
+        assertThat(wheel.cancel(timeout), is(true));
+
+        // Confirm result
+        assertThat(wheel.cancel(timeout), is(false));
+        assertThat(wheel.size(), is(1));
+        List<TimingWheel.Timeout<String>> expired = wheel.advance(START + TICK * 30);
+        assertThat(expired.size(), is(1));
+        assertThat(expired.get(0).getValue(), is("kept"));
+    }
+}
@@ -946,7 +946,7 @@ public class CrossDomainTest extends PersoniumTest {
                             .returns()
                             .statusCode(HttpStatus.SC_OK)
                             .debug();
-            checkXHR2Header(response, "OPTIONS, GET, PUT, DELETE, MKCOL, MOVE, PROPFIND, PROPPATCH, ACL");
+            checkXHR2Header(response, "OPTIONS, GET, PUT, DELETE, MKCOL, MOVE, COPY, PROPFIND, PROPPATCH, ACL");
         } finally {
             // コレクションの削除
             deleteDavCollection();
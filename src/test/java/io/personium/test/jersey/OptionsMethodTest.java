@@ -104,7 +104,8 @@ public class OptionsMethodTest extends PersoniumTest {
                 .returns()
                 .statusCode(HttpStatus.SC_OK)
                 .debug();
-        assertTrue(checkResponse(response, "OPTIONS,GET,POST,PUT,DELETE,HEAD,MERGE,MKCOL,MOVE,PROPFIND,PROPPATCH,ACL"));
+        assertTrue(checkResponse(response,
+                "OPTIONS,GET,POST,PUT,DELETE,HEAD,MERGE,MKCOL,MOVE,COPY,PROPFIND,PROPPATCH,ACL"));
     }
 
     /**
@@ -204,7 +205,7 @@ public class OptionsMethodTest extends PersoniumTest {
         // Collection(WebDAV/Service)
         assertTrue(checkResponse(
                 optionsRequest("/testcell1/box1/setdavcol"),
-                "OPTIONS,GET,PUT,DELETE,MKCOL,MOVE,PROPFIND,PROPPATCH,ACL"));
+                "OPTIONS,GET,PUT,DELETE,MKCOL,MOVE,COPY,PROPFIND,PROPPATCH,ACL"));
         assertTrue(checkResponse(
                 optionsRequest("/testcell1/box1/service_relay"), "OPTIONS,DELETE,MOVE,PROPFIND,PROPPATCH,ACL"));
 
@@ -215,7 +216,7 @@ public class OptionsMethodTest extends PersoniumTest {
         // WebDAVファイル
         assertTrue(checkResponse(optionsRequest(
                 "/testcell1/box1/setdavcol/dav.txt"),
-                "OPTIONS,GET,PUT,DELETE,MOVE,PROPFIND,PROPPATCH,ACL"));
+                "OPTIONS,GET,PUT,DELETE,MOVE,COPY,PROPFIND,PROPPATCH,ACL"));
 
         // TODO サービスソース 204が返却される
         // assertTrue(checkResponse(optionsRequest("/testcell1/box1/service_relay/svc"),
@@ -228,7 +229,7 @@ public class OptionsMethodTest extends PersoniumTest {
                     path, "hello", "text/javascript", HttpStatus.SC_CREATED);
             assertTrue(checkResponse(
                     optionsRequest("/testcell1/box1/service_relay/__src/test.js"),
-                    "OPTIONS,GET,PUT,DELETE,MOVE,PROPFIND,PROPPATCH,ACL"));
+                    "OPTIONS,GET,PUT,DELETE,MOVE,COPY,PROPFIND,PROPPATCH,ACL"));
         } finally {
             DavResourceUtils.deleteWebDavFile(Setup.TEST_CELL1, AbstractCase.MASTER_TOKEN_NAME, Setup.TEST_BOX1,
                     "service_relay/__src/test.js");
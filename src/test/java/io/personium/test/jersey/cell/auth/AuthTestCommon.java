@@ -63,6 +63,10 @@ public class AuthTestCommon extends PersoniumTest {
     static final String DEL_COL_FILE = "box/delete-col.txt";
     static final String MASTER_TOKEN = AbstractCase.MASTER_TOKEN_NAME;
     static final int SLEEP_MILLES = 1000;
+    /** 最終ログイン時刻の反映を待つ最大時間(ms). */
+    static final long LAST_AUTHENTICATED_WAIT_TIME = 10000;
+    /** 最終ログイン時刻の反映を確認する間隔(ms). */
+    static final long LAST_AUTHENTICATED_POLLING_INTERVAL = 200;
 
     /**
      * 認証トークン配列番号.
@@ -1006,11 +1010,21 @@ public class AuthTestCommon extends PersoniumTest {
      */
     public static void accountLastAuthenticatedCheck(String cell, String account,
             Long time) {
-        TResponse response = AccountUtils.get(MASTER_TOKEN, HttpStatus.SC_OK, cell, account);
-        JSONObject json = response.bodyAsJson();
         if (null == time) {
             time = 0L;
         }
+        // 最終ログイン時刻はバックグラウンドで書き込まれるため、反映されるまで待つ
+        long limit = System.currentTimeMillis() + LAST_AUTHENTICATED_WAIT_TIME;
+        while (getAccountLastAuthenticated(cell, account) <= time && System.currentTimeMillis() < limit) {
+            try {
+                Thread.sleep(LAST_AUTHENTICATED_POLLING_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        TResponse response = AccountUtils.get(MASTER_TOKEN, HttpStatus.SC_OK, cell, account);
+        JSONObject json = response.bodyAsJson();
 
         String lastAuthenticatedString = (String) ((JSONObject) ((JSONObject) json.get("d")).get("results"))
                 .get("LastAuthenticated");
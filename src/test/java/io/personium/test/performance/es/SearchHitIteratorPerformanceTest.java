@@ -0,0 +1,153 @@
+/**
+ * personium.io
+ * Copyright 2018 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.test.performance.es;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.personium.common.es.EsBulkRequest;
+import io.personium.common.es.EsClient;
+import io.personium.common.es.EsIndex;
+import io.personium.common.es.response.PersoniumSearchResponse;
+import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.model.impl.es.accessor.DataSourceAccessor;
+import io.personium.core.model.impl.es.accessor.SearchHitIterator;
+import io.personium.core.rs.odata.MapBulkRequest;
+import io.personium.test.categories.Performance;
+import io.personium.test.jersey.PersoniumIntegTestRunner;
+
+/**
+ * Benchmark of full scans comparing from/size paging with SearchHitIterator.
+ * Number of documents can be changed with the system property "io.personium.test.scan.count".
+ */
+@RunWith(PersoniumIntegTestRunner.class)
+@Category({Performance.class })
+public class SearchHitIteratorPerformanceTest {
+
+    static Logger log = LoggerFactory.getLogger(SearchHitIteratorPerformanceTest.class);
+
+    private static final String INDEX_NAME = "index_for_scan_test";
+    private static final String TYPE_NAME = "TypeForTest";
+    private static final String ROUTING_ID = "RoutingIdTest";
+    private static final int DOC_COUNT = Integer.getInteger("io.personium.test.scan.count", 1000000);
+    private static final int BULK_SIZE = 1000;
+    private static final int PAGE_SIZE = 1000;
+
+    private static EsClient esClient;
+    private static DataSourceAccessor accessor;
+
+    /**
+     * Register the documents.
+     * @throws Exception Unintended exception in test
+     */
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        esClient = new EsClient(PersoniumUnitConfig.getEsClusterName(), PersoniumUnitConfig.getEsHosts());
+        EsIndex index = esClient.idxAdmin(INDEX_NAME);
+        accessor = new DataSourceAccessor(index, TYPE_NAME, ROUTING_ID) {
+        };
+
+        List<EsBulkRequest> requests = new ArrayList<EsBulkRequest>();
+        for (int i = 0; i < DOC_COUNT; i++) {
+            Map<String, Object> source = new HashMap<String, Object>();
+            source.put("n", i);
+            requests.add(new MapBulkRequest(EsBulkRequest.BulkRequestType.INDEX, TYPE_NAME, "id" + i, source));
+            if (requests.size() >= BULK_SIZE) {
+                accessor.bulkCreate(requests, ROUTING_ID);
+                requests.clear();
+            }
+        }
+        if (!requests.isEmpty()) {
+            accessor.bulkCreate(requests, ROUTING_ID);
+        }
+    }
+
+    /**
+     * Delete the documents.
+     * @throws Exception Unintended exception in test
+     */
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        try {
+            esClient.idxAdmin(INDEX_NAME).delete();
+        } finally {
+            esClient.closeConnection();
+        }
+    }
+
+    /**
+     * Scan with from/size paging.
+     * Paging deeper than index.max_result_window of the index is rejected by Elasticsearch,
+     * in which case the elapsed time up to there is reported.
+     */
+    @Test
+    public void scan_from_size() {
+        long start = System.currentTimeMillis();
+        long count = 0;
+        int from = 0;
+        while (true) {
+            Map<String, Object> query = new HashMap<String, Object>();
+            query.put("from", from);
+            query.put("size", PAGE_SIZE);
+            PersoniumSearchResponse response;
+            try {
+                response = accessor.search(query);
+            } catch (RuntimeException e) {
+                log.info("from/size: rejected at from=" + from + " after "
+                        + (System.currentTimeMillis() - start) + " ms");
+                return;
+            }
+            int hits = response.getHits().getHits().length;
+            count += hits;
+            if (hits < PAGE_SIZE) {
+                break;
+            }
+            from += PAGE_SIZE;
+        }
+        log.info("from/size: " + count + " docs in " + (System.currentTimeMillis() - start) + " ms");
+        assertEquals(DOC_COUNT, count);
+    }
+
+    /**
+     * Scan with SearchHitIterator.
+     */
+    @Test
+    public void scan_search_after() {
+        long start = System.currentTimeMillis();
+        long count = 0;
+        try (SearchHitIterator hits = accessor.scan(new HashMap<String, Object>())) {
+            while (hits.hasNext()) {
+                hits.next();
+                count++;
+            }
+        }
+        log.info("search_after: " + count + " docs in " + (System.currentTimeMillis() - start) + " ms");
+        assertEquals(DOC_COUNT, count);
+    }
+}
@@ -17,12 +17,17 @@
 package io.personium.test.unit.core;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
@@ -87,4 +92,68 @@ public class PersoniumUnitConfigTest {
         }
         assertNotNull(properties.getProperty("io.personium.core.masterToken"));
     }
+
+    /**
+     * Snapshot returns typed values.
+     */
+    @Test
+    public void snapshot_returns_typed_values() {
+        Properties properties = new Properties();
+        properties.setProperty("int", "10");
+        properties.setProperty("long", "10000000000");
+        properties.setProperty("bool", "TRUE");
+        PersoniumUnitConfig.Snapshot snapshot = new PersoniumUnitConfig.Snapshot(properties);
+
+        assertEquals(10, snapshot.getInt("int"));
+        assertEquals(10, snapshot.getInt("int"));
+        assertEquals(10000000000L, snapshot.getLong("long"));
+        assertTrue(snapshot.getBoolean("bool"));
+        assertFalse(snapshot.getBoolean("none"));
+        assertNull(snapshot.get("none"));
+        try {
+            snapshot.getInt("none");
+            fail("NumberFormatException not thrown");
+        } catch (NumberFormatException e) {
+            assertNotNull(e);
+        }
+    }
+
+    /**
+     * Snapshot is not affected by the change of the source properties.
+     */
+    @Test
+    public void snapshot_is_not_affected_by_change_of_source() {
+        Properties properties = new Properties();
+        properties.setProperty("int", "10");
+        PersoniumUnitConfig.Snapshot snapshot = new PersoniumUnitConfig.Snapshot(properties);
+        properties.setProperty("int", "20");
+        snapshot.toProperties().setProperty("int", "30");
+
+        assertEquals(10, snapshot.getInt("int"));
+    }
+
+    /**
+     * Set replaces the snapshot and calls the reload listeners.
+     */
+    @Test
+    public void set_replaces_snapshot_and_calls_listeners() {
+        final String key = "io.personium.core.test.snapshot";
+        final AtomicInteger called = new AtomicInteger();
+        PersoniumUnitConfig.addReloadListener(new Runnable() {
+            @Override
+            public void run() {
+                called.incrementAndGet();
+            }
+        });
+        PersoniumUnitConfig.set(key, "1");
+        PersoniumUnitConfig.Snapshot before = PersoniumUnitConfig.snapshot();
+        PersoniumUnitConfig.set(key, "2");
+        PersoniumUnitConfig.Snapshot after = PersoniumUnitConfig.snapshot();
+
+        assertNotSame(before, after);
+        assertEquals(1, before.getInt(key));
+        assertEquals(2, after.getInt(key));
+        assertEquals("2", PersoniumUnitConfig.get(key));
+        assertEquals(2, called.get());
+    }
 }
@@ -84,6 +84,19 @@ public class BarFileContentsTest {
             return super.isValidODataContents(entryName, colMap, doneKeys);
         }
 
+        /**
+         * エントリが属する逐次インストール単位のキーを取得する.
+         * @param entryName barファイルのエントリ名
+         * @param entryType エントリのタイプ
+         * @param odataCols ODataコレクションの一覧
+         * @param serviceCols サービスコレクションの一覧
+         * @return インストール単位のキー
+         */
+        protected String getContentsUnitKey(String entryName, int entryType,
+                Map<String, DavCmp> odataCols, Map<String, DavCmp> serviceCols) {
+            return super.getContentsUnitKey(entryName, entryType, odataCols, serviceCols);
+        }
+
     }
 
     /**
@@ -541,4 +554,51 @@ public class BarFileContentsTest {
         boolean res = testBarRunner.isValidODataContents(entryName, odataCols, doneKeys);
         assertEquals(false, res);
     }
+
+    /**
+     * ODataコレクション配下のエントリの場合ODataコレクションのパスがインストール単位となること.
+     */
+    @Test
+    public void ODataコレクション配下のエントリの場合ODataコレクションのパスがインストール単位となること() {
+        Map<String, DavCmp> odataCols = new HashMap<>();
+        odataCols.put("bar/90_contents/webdavCol/odataCol/", newDavCmp(ODATA_COL_NAME));
+        Map<String, DavCmp> svcCols = new HashMap<>();
+
+        TestBarRunner testBarRunner = new TestBarRunner();
+        String res = testBarRunner.getContentsUnitKey(
+                "bar/90_contents/webdavCol/odataCol/90_data/entity1/1.json", 1, odataCols, svcCols);
+        assertEquals("bar/90_contents/webdavCol/odataCol/", res);
+    }
+
+    /**
+     * WebDAVファイルの場合親コレクションのパスがインストール単位となること.
+     */
+    @Test
+    public void WebDAVファイルの場合親コレクションのパスがインストール単位となること() {
+        Map<String, DavCmp> odataCols = new HashMap<>();
+        Map<String, DavCmp> svcCols = new HashMap<>();
+
+        TestBarRunner testBarRunner = new TestBarRunner();
+        String res = testBarRunner.getContentsUnitKey(
+                "bar/90_contents/webdavCol/file.txt", 3, odataCols, svcCols);
+        assertEquals("bar/90_contents/webdavCol/", res);
+
+        // コレクション自身も同じ単位となること
+        res = testBarRunner.getContentsUnitKey("bar/90_contents/webdavCol/", 0, odataCols, svcCols);
+        assertEquals("bar/90_contents/webdavCol/", res);
+    }
+
+    /**
+     * サービスファイルの場合サービスコレクションのパスがインストール単位となること.
+     */
+    @Test
+    public void サービスファイルの場合サービスコレクションのパスがインストール単位となること() {
+        Map<String, DavCmp> odataCols = new HashMap<>();
+        Map<String, DavCmp> svcCols = new HashMap<>();
+        svcCols.put("bar/90_contents/svcCol/", newDavCmp(SVC_COL_NAME));
+
+        TestBarRunner testBarRunner = new TestBarRunner();
+        String res = testBarRunner.getContentsUnitKey("bar/90_contents/svcCol/test.js", 4, odataCols, svcCols);
+        assertEquals("bar/90_contents/svcCol/", res);
+    }
 }